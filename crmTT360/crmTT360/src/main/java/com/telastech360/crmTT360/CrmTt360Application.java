@@ -4,10 +4,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaRepositories("com.telastech360.crmTT360.repository")
 @EntityScan("com.telastech360.crmTT360.entity")
+@EnableScheduling
 public class CrmTt360Application {
 	public static void main(String[] args) {
 		SpringApplication.run(CrmTt360Application.class, args);
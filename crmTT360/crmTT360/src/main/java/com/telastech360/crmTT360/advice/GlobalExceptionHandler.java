@@ -1,6 +1,8 @@
 package com.telastech360.crmTT360.advice;
 
 import com.telastech360.crmTT360.exception.*; // Importar todas las excepciones personalizadas
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -123,6 +125,32 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Object> handlePreconditionFailedException(PreconditionFailedException ex, WebRequest request) {
+        log.warn("Precondición fallida (If-Match): {} en {}", ex.getMessage(), request.getDescription(false));
+        Map<String, Object> body = createErrorBody(HttpStatus.PRECONDITION_FAILED, "Precondition Failed", ex.getMessage(), request);
+        return new ResponseEntity<>(body, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    // Cola de trabajo llena: el cliente debe reintentar pasado el tiempo indicado en Retry-After
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Object> handleTooManyRequestsException(TooManyRequestsException ex, WebRequest request) {
+        log.warn("Demasiadas solicitudes: {} en {}", ex.getMessage(), request.getDescription(false));
+        Map<String, Object> body = createErrorBody(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", ex.getMessage(), request);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getSegundosReintento()))
+                .body(body);
+    }
+
+    // Conflicto de concurrencia optimista (@Version) no resuelto por la política de reintentos
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex, WebRequest request) {
+        log.warn("Conflicto de concurrencia optimista: {} en {}", ex.getMessage(), request.getDescription(false));
+        Map<String, Object> body = createErrorBody(HttpStatus.CONFLICT, "Conflict",
+                "El recurso fue modificado por otra operación concurrente. Vuelva a leerlo e inténtelo de nuevo.", request);
+        return new ResponseEntity<>(body, HttpStatus.CONFLICT);
+    }
+
     // Manejador para errores de autorización (Spring Security)
     @ExceptionHandler({ AccessDeniedException.class, AuthorizationDeniedException.class })
     public ResponseEntity<Object> handleAccessDeniedException(Exception ex, WebRequest request) {
@@ -2,9 +2,12 @@
 package com.telastech360.crmTT360.controller;
 
 import com.telastech360.crmTT360.dto.BodegaDTO;
+import com.telastech360.crmTT360.dto.BodegaUtilizacionDTO;
+import com.telastech360.crmTT360.dto.PaginaDTO;
 import com.telastech360.crmTT360.entity.Bodega;
 import com.telastech360.crmTT360.mapper.BodegaMapper;
 import com.telastech360.crmTT360.service.BodegaService;
+import com.telastech360.crmTT360.util.ETagUtil;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,7 +82,7 @@ public class BodegaController {
         Bodega bodega = bodegaService.obtenerBodegaPorId(id);
         BodegaDTO dto = bodegaMapper.toDTO(bodega);
         log.info("GET /api/bodegas/{} - Bodega encontrada: {}", id, dto.getNombre());
-        return new ResponseEntity<>(dto, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(bodega.getVersion())).body(dto);
     }
 
     @PostMapping
@@ -117,19 +120,21 @@ public class BodegaController {
                     schema = @Schema(implementation = BodegaDTO.class)))
     @ApiResponse(responseCode = "400", description = "Datos inválidos (fallo de validación DTO o tipo de bodega inválido)", content = @Content)
     @ApiResponse(responseCode = "404", description = "No encontrado - Bodega, Estado o Responsable no existe", content = @Content)
-    @ApiResponse(responseCode = "409", description = "Conflicto - Nombre de bodega ya existe", content = @Content)
+    @ApiResponse(responseCode = "409", description = "Conflicto - Nombre de bodega ya existe o modificación concurrente no resuelta", content = @Content)
+    @ApiResponse(responseCode = "412", description = "Precondición fallida - El recurso cambió desde la versión indicada en If-Match", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
     public ResponseEntity<BodegaDTO> actualizarBodega(
             @PathVariable Long id,
+            @Parameter(description = "ETag de la versión leída; si no coincide con la actual se responde 412") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @Valid @RequestBody BodegaDTO bodegaDto
     ) {
         log.info("PUT /api/bodegas/{} - Solicitud para actualizar bodega", id);
         Bodega bodegaActualizada = bodegaMapper.toEntity(bodegaDto);
-        Bodega bodegaGuardada = bodegaService.actualizarBodega(id, bodegaActualizada);
+        Bodega bodegaGuardada = bodegaService.actualizarBodega(id, bodegaActualizada, ETagUtil.versionEsperada(ifMatch));
         BodegaDTO responseDto = bodegaMapper.toDTO(bodegaGuardada);
         log.info("PUT /api/bodegas/{} - Bodega actualizada", id);
-        return new ResponseEntity<>(responseDto, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(bodegaGuardada.getVersion())).body(responseDto);
     }
 
     @DeleteMapping("/{id}")
@@ -150,6 +155,34 @@ public class BodegaController {
 
     // --- Endpoints Adicionales ---
 
+    @GetMapping("/buscar")
+    @PreAuthorize("hasAuthority('BUSCAR_BODEGAS')")
+    @Operation(summary = "Búsqueda avanzada de bodegas", description = "Busca bodegas combinando filtros opcionales; solo los filtros informados se aplican. El nombre se busca por prefijo. Resultado paginado.")
+    @Parameter(name = "nombre", description = "Prefijo del nombre", example = "Bodega Cen")
+    @Parameter(name = "tipo", description = "Tipo de bodega", schema = @Schema(implementation = Bodega.TipoBodega.class))
+    @Parameter(name = "estadoId", description = "ID del estado", example = "1")
+    @Parameter(name = "pagina", description = "Número de página, desde 0", example = "0")
+    @Parameter(name = "tamano", description = "Elementos por página (1-200, por defecto 20)", example = "20")
+    @Parameter(name = "orden", description = "Orden 'campo,asc|desc' sobre nombre o bodegaId (por defecto nombre,asc)", example = "nombre,asc")
+    @ApiResponse(responseCode = "200", description = "Búsqueda realizada exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Filtros, paginación u orden inválidos", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<PaginaDTO<BodegaDTO>> buscarBodegas(
+            @RequestParam(value = "nombre", required = false) String nombre,
+            @RequestParam(value = "tipo", required = false) Bodega.TipoBodega tipo,
+            @RequestParam(value = "estadoId", required = false) Long estadoId,
+            @RequestParam(value = "pagina", required = false) Integer pagina,
+            @RequestParam(value = "tamano", required = false) Integer tamano,
+            @RequestParam(value = "orden", required = false) String orden) {
+        log.info("GET /api/bodegas/buscar - Búsqueda avanzada de bodegas");
+        PaginaDTO<BodegaDTO> resultado = PaginaDTO.de(bodegaService.buscarBodegas(nombre, tipo, estadoId,
+                pagina, tamano, orden), bodegaMapper::toDTO);
+        log.info("GET /api/bodegas/buscar - Devolviendo {} de {} bodegas", resultado.getContenido().size(), resultado.getTotalElementos());
+        return new ResponseEntity<>(resultado, HttpStatus.OK);
+    }
+
     @GetMapping("/tipo/{tipo}")
     @PreAuthorize("hasAuthority('BUSCAR_BODEGAS')") // Modificado (o LEER_BODEGAS)
     @Operation(summary = "Busca bodegas por tipo", description = "Obtiene una lista de bodegas filtradas por su tipo.")
@@ -207,6 +240,38 @@ public class BodegaController {
         return new ResponseEntity<>(dtos, HttpStatus.OK);
     }
 
+    @GetMapping("/utilizacion")
+    @PreAuthorize("hasAuthority('LEER_BODEGAS')")
+    @Operation(summary = "Lista la utilización de todas las bodegas", description = "Obtiene, para cada bodega, su capacidad máxima, ocupación actual, capacidad libre y porcentaje de uso a partir de los contadores de ocupación.")
+    @ApiResponse(responseCode = "200", description = "Utilización de las bodegas obtenida",
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = BodegaUtilizacionDTO.class))))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<List<BodegaUtilizacionDTO>> listarUtilizacion() {
+        log.info("GET /api/bodegas/utilizacion - Solicitud para listar la utilización de las bodegas");
+        List<BodegaUtilizacionDTO> utilizacion = bodegaService.listarUtilizacion();
+        log.info("GET /api/bodegas/utilizacion - Devolviendo utilización de {} bodegas", utilizacion.size());
+        return new ResponseEntity<>(utilizacion, HttpStatus.OK);
+    }
+
+    @GetMapping("/{id}/utilizacion")
+    @PreAuthorize("hasAuthority('LEER_BODEGAS')")
+    @Operation(summary = "Obtiene la utilización de una bodega", description = "Devuelve la capacidad máxima, ocupación actual, capacidad libre y porcentaje de uso de una bodega.")
+    @Parameter(name = "id", description = "ID único de la bodega", required = true, example = "1", schema = @Schema(type = "integer", format = "int64"))
+    @ApiResponse(responseCode = "200", description = "Utilización de la bodega obtenida",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = BodegaUtilizacionDTO.class)))
+    @ApiResponse(responseCode = "404", description = "Bodega no encontrada", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<BodegaUtilizacionDTO> obtenerUtilizacion(@PathVariable Long id) {
+        log.info("GET /api/bodegas/{}/utilizacion - Solicitud para obtener la utilización de la bodega", id);
+        BodegaUtilizacionDTO utilizacion = bodegaService.obtenerUtilizacion(id);
+        log.info("GET /api/bodegas/{}/utilizacion - Ocupación {} de {}", id, utilizacion.getOcupacion(), utilizacion.getCapacidadMaxima());
+        return new ResponseEntity<>(utilizacion, HttpStatus.OK);
+    }
+
     @GetMapping("/responsable/{responsableId}")
     @PreAuthorize("hasAuthority('BUSCAR_BODEGAS')") // Modificado (o LEER_BODEGAS)
     @Operation(summary = "Busca bodegas por responsable", description = "Obtiene una lista de bodegas asignadas a un usuario responsable específico.")
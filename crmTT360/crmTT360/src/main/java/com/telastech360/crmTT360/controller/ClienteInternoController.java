@@ -1,10 +1,12 @@
 // src/main/java/com/telastech360/crmTT360/controller/ClienteInternoController.java
 package com.telastech360.crmTT360.controller;
 
+import com.telastech360.crmTT360.dto.PaginaDTO;
 import com.telastech360.crmTT360.dto.ClienteInternoDTO;
 import com.telastech360.crmTT360.entity.ClienteInterno;
 import com.telastech360.crmTT360.mapper.ClienteInternoMapper;
 import com.telastech360.crmTT360.service.ClienteInternoService;
+import com.telastech360.crmTT360.util.ETagUtil;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,7 +82,7 @@ public class ClienteInternoController {
         ClienteInterno cliente = clienteService.obtenerClientePorId(id);
         ClienteInternoDTO dto = clienteInternoMapper.toDTO(cliente);
         log.info("GET /api/clientes-internos/{} - Cliente encontrado: {}", id, dto.getNombre());
-        return new ResponseEntity<>(dto, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(cliente.getVersion())).body(dto);
     }
 
     @PostMapping
@@ -118,19 +120,21 @@ public class ClienteInternoController {
                     schema = @Schema(implementation = ClienteInternoDTO.class)))
     @ApiResponse(responseCode = "400", description = "Datos inválidos", content = @Content)
     @ApiResponse(responseCode = "404", description = "No encontrado - Cliente o Usuario responsable no existe", content = @Content)
-    @ApiResponse(responseCode = "409", description = "Conflicto - Código interno ya existe", content = @Content)
+    @ApiResponse(responseCode = "409", description = "Conflicto - Código interno ya existe o modificación concurrente no resuelta", content = @Content)
+    @ApiResponse(responseCode = "412", description = "Precondición fallida - El recurso cambió desde la versión indicada en If-Match", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
     public ResponseEntity<ClienteInternoDTO> actualizarCliente(
             @PathVariable Long id,
+            @Parameter(description = "ETag de la versión leída; si no coincide con la actual se responde 412") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @Valid @RequestBody ClienteInternoDTO clienteDto
     ) {
         log.info("PUT /api/clientes-internos/{} - Solicitud para actualizar cliente", id);
         ClienteInterno clienteActualizado = clienteInternoMapper.toEntity(clienteDto);
-        ClienteInterno clienteGuardado = clienteService.actualizarCliente(id, clienteActualizado);
+        ClienteInterno clienteGuardado = clienteService.actualizarCliente(id, clienteActualizado, ETagUtil.versionEsperada(ifMatch));
         ClienteInternoDTO responseDto = clienteInternoMapper.toDTO(clienteGuardado);
         log.info("PUT /api/clientes-internos/{} - Cliente actualizado", id);
-        return new ResponseEntity<>(responseDto, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(clienteGuardado.getVersion())).body(responseDto);
     }
 
     @DeleteMapping("/{id}")
@@ -151,6 +155,36 @@ public class ClienteInternoController {
 
     // --- Endpoints Adicionales ---
 
+    @GetMapping("/buscar")
+    @PreAuthorize("hasAuthority('BUSCAR_CLIENTES')")
+    @Operation(summary = "Búsqueda avanzada de clientes internos", description = "Busca clientes combinando filtros opcionales; solo los filtros informados se aplican. Código y nombre se buscan por prefijo. Resultado paginado.")
+    @Parameter(name = "codigo", description = "Prefijo del código interno", example = "CLI-")
+    @Parameter(name = "nombre", description = "Prefijo del nombre", example = "Depart")
+    @Parameter(name = "tipo", description = "Tipo de cliente", schema = @Schema(implementation = ClienteInterno.TipoCliente.class))
+    @Parameter(name = "responsableId", description = "ID del usuario responsable", example = "3")
+    @Parameter(name = "pagina", description = "Número de página, desde 0", example = "0")
+    @Parameter(name = "tamano", description = "Elementos por página (1-200, por defecto 20)", example = "20")
+    @Parameter(name = "orden", description = "Orden 'campo,asc|desc' sobre nombre, codigoInterno o clienteId (por defecto nombre,asc)", example = "nombre,asc")
+    @ApiResponse(responseCode = "200", description = "Búsqueda realizada exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Filtros, paginación u orden inválidos", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<PaginaDTO<ClienteInternoDTO>> buscarClientes(
+            @RequestParam(value = "codigo", required = false) String codigo,
+            @RequestParam(value = "nombre", required = false) String nombre,
+            @RequestParam(value = "tipo", required = false) ClienteInterno.TipoCliente tipo,
+            @RequestParam(value = "responsableId", required = false) Long responsableId,
+            @RequestParam(value = "pagina", required = false) Integer pagina,
+            @RequestParam(value = "tamano", required = false) Integer tamano,
+            @RequestParam(value = "orden", required = false) String orden) {
+        log.info("GET /api/clientes-internos/buscar - Búsqueda avanzada de clientes");
+        PaginaDTO<ClienteInternoDTO> resultado = PaginaDTO.de(clienteService.buscarClientes(codigo, nombre, tipo,
+                responsableId, pagina, tamano, orden), clienteInternoMapper::toDTO);
+        log.info("GET /api/clientes-internos/buscar - Devolviendo {} de {} clientes", resultado.getContenido().size(), resultado.getTotalElementos());
+        return new ResponseEntity<>(resultado, HttpStatus.OK);
+    }
+
     @GetMapping("/buscar/nombre")
     @PreAuthorize("hasAuthority('BUSCAR_CLIENTES')") // Modificado (o LEER_CLIENTES)
     @Operation(summary = "Busca clientes internos por nombre", description = "Obtiene una lista de clientes internos cuyo nombre contiene el texto de búsqueda (case-insensitive).")
@@ -1,10 +1,18 @@
 // src/main/java/com/telastech360/crmTT360/controller/FacturaController.java
 package com.telastech360.crmTT360.controller;
 
+import com.telastech360.crmTT360.dto.PaginaDTO;
+import com.telastech360.crmTT360.dto.TotalFacturadoDiaDTO;
 import com.telastech360.crmTT360.dto.FacturaDTO;
+import com.telastech360.crmTT360.dto.FacturacionMasivaDTO;
+import com.telastech360.crmTT360.dto.InformeAntiguedadSaldosDTO;
 import com.telastech360.crmTT360.entity.Factura;
 import com.telastech360.crmTT360.mapper.FacturaMapper;
+import com.telastech360.crmTT360.service.AntiguedadSaldosService;
 import com.telastech360.crmTT360.service.FacturaService;
+import com.telastech360.crmTT360.service.FacturacionMasivaService;
+import com.telastech360.crmTT360.service.IdempotenciaService;
+import com.telastech360.crmTT360.util.ETagUtil;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +24,7 @@ import org.springframework.security.access.prepost.PreAuthorize; // Asegurar imp
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.net.URI;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -42,11 +51,20 @@ public class FacturaController {
 
     private final FacturaService facturaService;
     private final FacturaMapper facturaMapper;
+    private final IdempotenciaService idempotenciaService;
+    private final FacturacionMasivaService facturacionMasivaService;
+    private final AntiguedadSaldosService antiguedadSaldosService;
 
     @Autowired
-    public FacturaController(FacturaService facturaService, FacturaMapper facturaMapper) {
+    public FacturaController(FacturaService facturaService, FacturaMapper facturaMapper,
+                             IdempotenciaService idempotenciaService,
+                             FacturacionMasivaService facturacionMasivaService,
+                             AntiguedadSaldosService antiguedadSaldosService) {
         this.facturaService = facturaService;
         this.facturaMapper = facturaMapper;
+        this.idempotenciaService = idempotenciaService;
+        this.facturacionMasivaService = facturacionMasivaService;
+        this.antiguedadSaldosService = antiguedadSaldosService;
     }
 
     @GetMapping
@@ -78,27 +96,35 @@ public class FacturaController {
         log.info("GET /api/facturas/{} - Solicitud para obtener factura por ID", id);
         FacturaDTO factura = facturaService.obtenerFacturaPorId(id);
         log.info("GET /api/facturas/{} - Factura encontrada", id);
-        return new ResponseEntity<>(factura, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(factura.getVersion())).body(factura);
     }
 
     @PostMapping
     @PreAuthorize("hasAuthority('CREAR_FACTURA')") // Modificado
-    @Operation(summary = "Crea una nueva factura", description = "Registra una nueva factura asociada a un pedido existente.")
+    @Operation(summary = "Crea una nueva factura", description = "Registra una nueva factura asociada a un pedido existente. El total se calcula a partir de los detalles del pedido.")
     @RequestBody(description = "Datos de la factura a crear. Se debe incluir ID del pedido, tipo, total y fecha.", required = true,
             content = @Content(mediaType = "application/json",
                     schema = @Schema(implementation = FacturaDTO.class)))
     @ApiResponse(responseCode = "201", description = "Factura creada exitosamente",
             content = @Content(mediaType = "application/json",
                     schema = @Schema(implementation = FacturaDTO.class)))
-    @ApiResponse(responseCode = "400", description = "Datos inválidos (ej. falta pedidoId, fallo de validación)", content = @Content)
+    @ApiResponse(responseCode = "400", description = "Datos inválidos (ej. falta pedidoId, fallo de validación, pedido sin importe)", content = @Content)
     @ApiResponse(responseCode = "404", description = "No encontrado - Pedido asociado no existe", content = @Content)
+    @ApiResponse(responseCode = "409", description = "Conflicto - El pedido ya tiene factura, u otra solicitud con la misma Idempotency-Key sigue en curso", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
-    public ResponseEntity<FacturaDTO> crearFactura(@Valid @RequestBody FacturaDTO facturaDTO) {
+    public ResponseEntity<FacturaDTO> crearFactura(
+            @Parameter(description = "Clave única por factura; los reintentos con la misma clave devuelven la factura ya creada sin volver a crearla") @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @Valid @RequestBody FacturaDTO facturaDTO
+    ) {
         log.info("POST /api/facturas - Solicitud para crear factura para pedido ID {}", facturaDTO.getPedidoId());
-        FacturaDTO nuevaFactura = facturaService.crearFactura(facturaDTO);
-        log.info("POST /api/facturas - Factura creada con ID: {}", nuevaFactura.getFacturaId());
-        return new ResponseEntity<>(nuevaFactura, HttpStatus.CREATED);
+        IdempotenciaService.Resultado<FacturaDTO> resultado = idempotenciaService.ejecutar("CREAR_FACTURA",
+                claveIdempotencia, facturaDTO, FacturaDTO.class, () -> facturaService.crearFactura(facturaDTO));
+        FacturaDTO nuevaFactura = resultado.respuesta();
+        log.info("POST /api/facturas - Factura {} con ID: {}", resultado.repetida() ? "ya creada" : "creada", nuevaFactura.getFacturaId());
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Idempotent-Replayed", String.valueOf(resultado.repetida()))
+                .body(nuevaFactura);
     }
 
     @PutMapping("/{id}")
@@ -113,16 +139,19 @@ public class FacturaController {
                     schema = @Schema(implementation = FacturaDTO.class)))
     @ApiResponse(responseCode = "400", description = "Datos inválidos", content = @Content)
     @ApiResponse(responseCode = "404", description = "Factura no encontrada", content = @Content)
+    @ApiResponse(responseCode = "409", description = "Conflicto - Modificación concurrente no resuelta tras reintentar", content = @Content)
+    @ApiResponse(responseCode = "412", description = "Precondición fallida - El recurso cambió desde la versión indicada en If-Match", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
     public ResponseEntity<FacturaDTO> actualizarFactura(
             @PathVariable Long id,
+            @Parameter(description = "ETag de la versión leída; si no coincide con la actual se responde 412") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @Valid @RequestBody FacturaDTO facturaDTO
     ) {
         log.info("PUT /api/facturas/{} - Solicitud para actualizar factura", id);
-        FacturaDTO facturaActualizada = facturaService.actualizarFactura(id, facturaDTO);
+        FacturaDTO facturaActualizada = facturaService.actualizarFactura(id, facturaDTO, ETagUtil.versionEsperada(ifMatch));
         log.info("PUT /api/facturas/{} - Factura actualizada", id);
-        return new ResponseEntity<>(facturaActualizada, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(facturaActualizada.getVersion())).body(facturaActualizada);
     }
 
     @DeleteMapping("/{id}")
@@ -140,8 +169,72 @@ public class FacturaController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    @PostMapping("/masiva")
+    @PreAuthorize("hasAuthority('CREAR_FACTURA')")
+    @Operation(summary = "Inicia la facturación masiva", description = "Crea en segundo plano una factura de VENTA pendiente de pago para cada pedido COMPLETADO sin factura, con el total calculado a partir de sus detalles. Si una ejecución anterior quedó interrumpida, la reanuda. El progreso se consulta en GET /api/facturas/masiva/{id}.")
+    @ApiResponse(responseCode = "202", description = "Facturación masiva iniciada",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = FacturacionMasivaDTO.class)))
+    @ApiResponse(responseCode = "409", description = "Conflicto - Ya hay una facturación masiva en curso", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<FacturacionMasivaDTO> iniciarFacturacionMasiva() {
+        log.info("POST /api/facturas/masiva - Solicitud para iniciar la facturación masiva");
+        FacturacionMasivaDTO ejecucion = facturacionMasivaService.iniciar();
+        log.info("POST /api/facturas/masiva - Ejecución {} iniciada", ejecucion.getEjecucionId());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/facturas/masiva/" + ejecucion.getEjecucionId()))
+                .body(ejecucion);
+    }
+
+    @GetMapping("/masiva/{id}")
+    @PreAuthorize("hasAnyAuthority('CREAR_FACTURA', 'LEER_FACTURAS')")
+    @Operation(summary = "Consulta el progreso de una facturación masiva", description = "Devuelve el estado (EN_CURSO, COMPLETADA o FALLIDA), los pedidos facturados y omitidos, el importe facturado, el último pedido procesado y el ritmo en pedidos por segundo.")
+    @Parameter(name = "id", description = "ID de la ejecución", required = true, example = "1", schema = @Schema(type = "integer", format = "int64"))
+    @ApiResponse(responseCode = "200", description = "Progreso de la ejecución",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = FacturacionMasivaDTO.class)))
+    @ApiResponse(responseCode = "404", description = "Ejecución no encontrada", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    public ResponseEntity<FacturacionMasivaDTO> consultarFacturacionMasiva(@PathVariable Long id) {
+        log.debug("GET /api/facturas/masiva/{} - Consultando progreso", id);
+        return new ResponseEntity<>(facturacionMasivaService.consultar(id), HttpStatus.OK);
+    }
+
     // --- Endpoints Adicionales ---
 
+    @GetMapping("/buscar")
+    @PreAuthorize("hasAuthority('BUSCAR_FACTURAS')")
+    @Operation(summary = "Búsqueda avanzada de facturas", description = "Busca facturas combinando filtros opcionales; solo los filtros informados se aplican. Resultado paginado.")
+    @Parameter(name = "pedidoId", description = "ID del pedido", example = "1")
+    @Parameter(name = "tipoMovimiento", description = "Tipo de movimiento (VENTA, COMPRA)", example = "VENTA", schema = @Schema(implementation = Factura.TipoMovimiento.class))
+    @Parameter(name = "minTotal", description = "Total mínimo, inclusive", example = "100.00")
+    @Parameter(name = "maxTotal", description = "Total máximo, inclusive", example = "5000.00")
+    @Parameter(name = "estadoPago", description = "true para pagadas, false para pendientes", example = "false")
+    @Parameter(name = "pagina", description = "Número de página, desde 0", example = "0")
+    @Parameter(name = "tamano", description = "Elementos por página (1-200, por defecto 20)", example = "20")
+    @Parameter(name = "orden", description = "Orden 'campo,asc|desc' sobre fechaCreacion, total o facturaId (por defecto fechaCreacion,desc)", example = "fechaCreacion,desc")
+    @ApiResponse(responseCode = "200", description = "Búsqueda realizada exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Filtros, paginación u orden inválidos", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<PaginaDTO<FacturaDTO>> buscarFacturas(
+            @RequestParam(value = "pedidoId", required = false) Long pedidoId,
+            @RequestParam(value = "tipoMovimiento", required = false) Factura.TipoMovimiento tipoMovimiento,
+            @RequestParam(value = "minTotal", required = false) BigDecimal minTotal,
+            @RequestParam(value = "maxTotal", required = false) BigDecimal maxTotal,
+            @RequestParam(value = "estadoPago", required = false) Boolean estadoPago,
+            @RequestParam(value = "pagina", required = false) Integer pagina,
+            @RequestParam(value = "tamano", required = false) Integer tamano,
+            @RequestParam(value = "orden", required = false) String orden) {
+        log.info("GET /api/facturas/buscar - Búsqueda avanzada de facturas");
+        PaginaDTO<FacturaDTO> resultado = PaginaDTO.de(facturaService.buscarFacturas(pedidoId, tipoMovimiento,
+                minTotal, maxTotal, estadoPago, pagina, tamano, orden), facturaMapper::toDTO);
+        log.info("GET /api/facturas/buscar - Devolviendo {} de {} facturas", resultado.getContenido().size(), resultado.getTotalElementos());
+        return new ResponseEntity<>(resultado, HttpStatus.OK);
+    }
+
     @GetMapping("/tipo-movimiento/{tipoMovimiento}")
     @PreAuthorize("hasAuthority('BUSCAR_FACTURAS')") // Modificado (o LEER_FACTURAS)
     @Operation(summary = "Busca facturas por tipo de movimiento", description = "Obtiene una lista de facturas filtradas por su tipo (VENTA o COMPRA).")
@@ -203,22 +296,43 @@ public class FacturaController {
         return new ResponseEntity<>(dtos, HttpStatus.OK);
     }
 
+    @GetMapping("/antiguedad-saldos")
+    @PreAuthorize("hasAuthority('VER_REPORTES_FACTURACION')")
+    @Operation(summary = "Informe de antigüedad de saldos", description = "Devuelve el saldo pendiente de pago por cliente y tipo de movimiento, repartido en tramos de 0-30, 31-60, 61-90 y más de 90 días desde la creación de la factura. El informe se recalcula como mucho una vez por minuto.")
+    @Parameter(name = "clienteId", description = "ID del cliente para filtrar", example = "1")
+    @Parameter(name = "tipoMovimiento", description = "Tipo de movimiento (VENTA, COMPRA); por defecto ambos", example = "VENTA", schema = @Schema(implementation = Factura.TipoMovimiento.class))
+    @ApiResponse(responseCode = "200", description = "Informe de antigüedad de saldos obtenido exitosamente.",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = InformeAntiguedadSaldosDTO.class)))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<InformeAntiguedadSaldosDTO> obtenerAntiguedadSaldos(
+            @RequestParam(value = "clienteId", required = false) Long clienteId,
+            @RequestParam(value = "tipoMovimiento", required = false) Factura.TipoMovimiento tipoMovimiento) {
+        log.info("GET /api/facturas/antiguedad-saldos?clienteId={}&tipoMovimiento={} - Obteniendo informe", clienteId, tipoMovimiento);
+        InformeAntiguedadSaldosDTO informe = antiguedadSaldosService.obtenerInforme(clienteId, tipoMovimiento);
+        log.info("GET /api/facturas/antiguedad-saldos - Informe con {} saldos (calculado en {}).",
+                informe.getSaldos().size(), informe.getCalculadoEn());
+        return new ResponseEntity<>(informe, HttpStatus.OK);
+    }
+
     @GetMapping("/total-facturado-por-dia")
     @PreAuthorize("hasAuthority('VER_REPORTES_FACTURACION')") // Modificado (permiso de reportes)
-    @Operation(summary = "Calcula el total facturado por día", description = "Agrupa el monto total facturado por día dentro de un rango de fechas.")
-    @Parameter(name = "inicio", description = "Fecha/hora de inicio (Timestamp ISO 8601)", required = true, example = "2023-01-01T00:00:00.000Z")
-    @Parameter(name = "fin", description = "Fecha/hora de fin (Timestamp ISO 8601)", required = true, example = "2023-12-31T23:59:59.999Z")
+    @Operation(summary = "Calcula el total facturado por día", description = "Devuelve, por día y tipo de movimiento, el número de facturas, el total facturado y el total pagado. El rango se aplica por días completos.")
+    @Parameter(name = "inicio", description = "Fecha/hora de inicio (Timestamp ISO 8601); cuenta desde el comienzo de ese día", required = true, example = "2023-01-01T00:00:00.000Z")
+    @Parameter(name = "fin", description = "Fecha/hora de fin (Timestamp ISO 8601); cuenta hasta el final de ese día", required = true, example = "2023-12-31T23:59:59.999Z")
+    @Parameter(name = "tipoMovimiento", description = "Tipo de movimiento (VENTA, COMPRA); por defecto ambos", example = "VENTA", schema = @Schema(implementation = Factura.TipoMovimiento.class))
     @ApiResponse(responseCode = "200", description = "Total facturado por día calculado exitosamente.",
             content = @Content(mediaType = "application/json",
-                    array = @ArraySchema(schema = @Schema(type = "array", example = "[\"2023-10-26\", 1500.75]"))))
-    @ApiResponse(responseCode = "400", description = "Formato de fecha inválido", content = @Content)
+                    array = @ArraySchema(schema = @Schema(implementation = TotalFacturadoDiaDTO.class))))
+    @ApiResponse(responseCode = "400", description = "Formato de fecha inválido o inicio posterior al fin", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
-    public ResponseEntity<List<Object[]>> calcularTotalFacturadoPorDia(
+    public ResponseEntity<List<TotalFacturadoDiaDTO>> calcularTotalFacturadoPorDia(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Timestamp inicio,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Timestamp fin) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Timestamp fin,
+            @RequestParam(value = "tipoMovimiento", required = false) Factura.TipoMovimiento tipoMovimiento) {
         log.info("GET /api/facturas/total-facturado-por-dia?inicio={}&fin={} - Calculando total por día", inicio, fin);
-        List<Object[]> resultado = facturaService.calcularTotalFacturadoPorDia(inicio, fin);
+        List<TotalFacturadoDiaDTO> resultado = facturaService.calcularTotalFacturadoPorDia(inicio, fin, tipoMovimiento);
         log.info("GET /api/facturas/total-facturado-por-dia - Cálculo completado, {} resultados.", resultado.size());
         return new ResponseEntity<>(resultado, HttpStatus.OK);
     }
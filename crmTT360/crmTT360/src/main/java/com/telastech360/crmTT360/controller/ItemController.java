@@ -1,17 +1,30 @@
 // src/main/java/com/telastech360/crmTT360/controller/ItemController.java
 package com.telastech360.crmTT360.controller;
 
+import com.telastech360.crmTT360.dto.AjusteStockDTO;
+import com.telastech360.crmTT360.dto.AjusteStockLoteResultadoDTO;
 import com.telastech360.crmTT360.dto.ItemDTO;
+import com.telastech360.crmTT360.dto.ResumenInventarioDTO;
+import com.telastech360.crmTT360.entity.Item;
+import com.telastech360.crmTT360.mapper.ItemMapper;
+import com.telastech360.crmTT360.service.AjusteStockLoteService;
+import com.telastech360.crmTT360.service.AlertaStockBajoService;
 import com.telastech360.crmTT360.service.ItemService;
+import com.telastech360.crmTT360.util.ETagUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize; // Asegurar importación
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 
 // Importaciones de Swagger/OpenAPI
@@ -35,10 +48,17 @@ public class ItemController {
     private static final Logger log = LoggerFactory.getLogger(ItemController.class);
 
     private final ItemService itemService;
+    private final ItemMapper itemMapper;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final AjusteStockLoteService ajusteStockLoteService;
 
     @Autowired
-    public ItemController(ItemService itemService) {
+    public ItemController(ItemService itemService, ItemMapper itemMapper, AlertaStockBajoService alertaStockBajoService,
+                          AjusteStockLoteService ajusteStockLoteService) {
         this.itemService = itemService;
+        this.itemMapper = itemMapper;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.ajusteStockLoteService = ajusteStockLoteService;
     }
 
     @GetMapping
@@ -70,7 +90,7 @@ public class ItemController {
         log.info("GET /api/items/{} - Solicitud para obtener ítem por ID", id);
         ItemDTO item = itemService.obtenerItemPorId(id);
         log.info("GET /api/items/{} - Ítem encontrado: {}", id, item.getNombre());
-        return new ResponseEntity<>(item, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(item.getVersion())).body(item);
     }
 
     @PostMapping
@@ -106,17 +126,19 @@ public class ItemController {
                     schema = @Schema(implementation = ItemDTO.class)))
     @ApiResponse(responseCode = "400", description = "Datos inválidos", content = @Content)
     @ApiResponse(responseCode = "404", description = "No encontrado - Ítem o alguna relación no existe", content = @Content)
-    @ApiResponse(responseCode = "409", description = "Conflicto - Código de ítem ya existe", content = @Content)
+    @ApiResponse(responseCode = "409", description = "Conflicto - Código de ítem ya existe o modificación concurrente no resuelta", content = @Content)
+    @ApiResponse(responseCode = "412", description = "Precondición fallida - El recurso cambió desde la versión indicada en If-Match", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
     public ResponseEntity<ItemDTO> actualizarItem(
             @PathVariable Long id,
+            @Parameter(description = "ETag de la versión leída; si no coincide con la actual se responde 412") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @Valid @RequestBody ItemDTO itemDTO
     ) {
         log.info("PUT /api/items/{} - Solicitud para actualizar ítem genérico", id);
-        ItemDTO itemActualizado = itemService.actualizarItem(id, itemDTO);
+        ItemDTO itemActualizado = itemService.actualizarItem(id, itemDTO, ETagUtil.versionEsperada(ifMatch));
         log.info("PUT /api/items/{} - Ítem actualizado", id);
-        return new ResponseEntity<>(itemActualizado, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(itemActualizado.getVersion())).body(itemActualizado);
     }
 
     @DeleteMapping("/{id}")
@@ -134,4 +156,91 @@ public class ItemController {
         log.info("DELETE /api/items/{} - Ítem eliminado", id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
-}
\ No newline at end of file
+
+    @PutMapping("/{id}/stock-fragmentado")
+    @PreAuthorize("hasAuthority('EDITAR_ITEM')")
+    @Operation(summary = "Configura el stock fragmentado de un ítem", description = "Reparte el stock disponible del ítem entre N sub-contadores para reducir la contención en ítems muy demandados. Con shards=0 se desactiva y el stock vuelve a la fila del ítem.")
+    @Parameter(name = "id", description = "ID del ítem", required = true, example = "1", schema = @Schema(type="integer", format="int64"))
+    @Parameter(name = "shards", description = "Número de sub-contadores (0 para desactivar)", required = true, example = "8")
+    @ApiResponse(responseCode = "200", description = "Configuración aplicada",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = ItemDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Número de shards inválido", content = @Content)
+    @ApiResponse(responseCode = "404", description = "Ítem no encontrado", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<ItemDTO> configurarStockFragmentado(@PathVariable Long id, @RequestParam int shards) {
+        log.info("PUT /api/items/{}/stock-fragmentado - Configurando {} shards", id, shards);
+        ItemDTO item = itemService.configurarStockFragmentado(id, shards);
+        log.info("PUT /api/items/{}/stock-fragmentado - Stock total: {}", id, item.getStockDisponible());
+        return new ResponseEntity<>(item, HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/stock/ajustes", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasAuthority('EDITAR_ITEM')")
+    @Operation(summary = "Aplica un lote de ajustes de stock", description = "Recibe un array JSON de ajustes {itemId, cantidad, motivo} (recepciones, conteos cíclicos) y lo procesa en tramos, cada uno en su propia transacción y con lotes JDBC. El cuerpo se lee de forma incremental. Devuelve el resultado de cada fila; una fila rechazada no impide aplicar el resto.")
+    @RequestBody(description = "Array JSON de ajustes de stock", required = true,
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = AjusteStockDTO.class))))
+    @ApiResponse(responseCode = "200", description = "Lote procesado; el informe indica el resultado de cada fila",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = AjusteStockLoteResultadoDTO.class)))
+    @ApiResponse(responseCode = "400", description = "El cuerpo no es un array JSON de ajustes", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<AjusteStockLoteResultadoDTO> ajustarStockEnLote(HttpServletRequest request) throws IOException {
+        log.info("POST /api/items/stock/ajustes - Solicitud de ajustes de stock por lote");
+        AjusteStockLoteResultadoDTO informe = ajusteStockLoteService.procesar(request.getInputStream());
+        log.info("POST /api/items/stock/ajustes - {} filas: {} aplicadas, {} rechazadas",
+                informe.getTotal(), informe.getAplicados(), informe.getRechazados());
+        return new ResponseEntity<>(informe, HttpStatus.OK);
+    }
+
+    @GetMapping("/stock-bajo")
+    @PreAuthorize("hasAuthority('LEER_ITEMS')")
+    @Operation(summary = "Lista los ítems con stock bajo", description = "Obtiene los ítems cuyo stock disponible es menor que su stock mínimo.")
+    @ApiResponse(responseCode = "200", description = "Lista de ítems con stock bajo",
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = ItemDTO.class))))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<List<ItemDTO>> listarItemsConStockBajo() {
+        log.info("GET /api/items/stock-bajo - Solicitud para listar ítems con stock bajo");
+        List<ItemDTO> items = itemService.buscarItemsConStockBajo().stream()
+                .map(itemMapper::toDTO)
+                .toList();
+        log.info("GET /api/items/stock-bajo - Devolviendo {} ítems", items.size());
+        return new ResponseEntity<>(items, HttpStatus.OK);
+    }
+
+    @GetMapping("/resumen")
+    @PreAuthorize("hasAuthority('LEER_ITEMS')")
+    @Operation(summary = "Resumen del inventario por tipo de ítem", description = "Devuelve, por tipo de ítem, el número de ítems, las unidades en stock y el valor total, opcionalmente filtrado por categoría y/o bodega.")
+    @Parameter(name = "categoriaId", description = "ID de categoría para filtrar", required = false, example = "1", schema = @Schema(type = "integer", format = "int64"))
+    @Parameter(name = "bodegaId", description = "ID de bodega para filtrar", required = false, example = "1", schema = @Schema(type = "integer", format = "int64"))
+    @ApiResponse(responseCode = "200", description = "Resumen de inventario obtenido",
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = ResumenInventarioDTO.class))))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<List<ResumenInventarioDTO>> obtenerResumenInventario(
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) Long bodegaId) {
+        log.info("GET /api/items/resumen - Solicitud de resumen de inventario (categoría: {}, bodega: {})", categoriaId, bodegaId);
+        List<ResumenInventarioDTO> resumen = itemService.obtenerResumenInventario(categoriaId, bodegaId).stream()
+                .map(fila -> new ResumenInventarioDTO((Item.TipoItem) fila[0], (Long) fila[1], (Long) fila[2], (BigDecimal) fila[3]))
+                .toList();
+        log.info("GET /api/items/resumen - Devolviendo resumen de {} tipos", resumen.size());
+        return new ResponseEntity<>(resumen, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/stock-bajo/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('LEER_ITEMS')")
+    @Operation(summary = "Suscribe a las alertas de stock bajo (SSE)", description = "Abre un flujo Server-Sent Events que emite un evento 'stock-bajo' cuando un ítem cae por debajo de su stock mínimo y 'stock-repuesto' cuando vuelve a superarlo.")
+    @ApiResponse(responseCode = "200", description = "Flujo de eventos abierto", content = @Content(mediaType = "text/event-stream"))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    public SseEmitter suscribirAlertasStockBajo() {
+        log.info("GET /api/items/stock-bajo/eventos - Nueva suscripción a alertas de stock bajo");
+        return alertaStockBajoService.suscribir();
+    }
+}
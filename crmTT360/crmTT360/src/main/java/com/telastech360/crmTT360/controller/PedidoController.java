@@ -1,25 +1,54 @@
 // src/main/java/com/telastech360/crmTT360/controller/PedidoController.java
 package com.telastech360.crmTT360.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telastech360.crmTT360.dto.AgregadoVentasDTO;
+import com.telastech360.crmTT360.dto.PaginaDTO;
 import com.telastech360.crmTT360.dto.PedidoDTO;
+import com.telastech360.crmTT360.dto.PedidoEstadoLoteDTO;
+import com.telastech360.crmTT360.dto.PedidoEstadoLoteResultadoDTO;
+import com.telastech360.crmTT360.dto.PedidoLoteResultadoDTO;
+import com.telastech360.crmTT360.dto.PedidoPaginaDTO;
+import com.telastech360.crmTT360.dto.PedidoResumenDTO;
+import com.telastech360.crmTT360.dto.PedidosSlaResumenDTO;
+import com.telastech360.crmTT360.dto.SolicitudPedidoDTO;
 import com.telastech360.crmTT360.entity.ClienteInterno; // <-- Importación añadida
 import com.telastech360.crmTT360.entity.Estado;       // <-- Importación añadida
 import com.telastech360.crmTT360.entity.Pedido;
 import com.telastech360.crmTT360.mapper.PedidoMapper;
+import com.telastech360.crmTT360.service.ArchivadorPedidosService;
+import com.telastech360.crmTT360.service.ColaSlaPedidosService;
+import com.telastech360.crmTT360.service.HechosVentaService;
+import com.telastech360.crmTT360.service.IdempotenciaService;
+import com.telastech360.crmTT360.service.PedidoEstadoLoteService;
+import com.telastech360.crmTT360.service.PedidoLoteService;
 import com.telastech360.crmTT360.service.PedidoService;
+import com.telastech360.crmTT360.service.PedidosRecientesService;
+import com.telastech360.crmTT360.service.SolicitudesPedidoService;
+import com.telastech360.crmTT360.util.ETagUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.net.URI;
 import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 // Importaciones de Swagger/OpenAPI
@@ -44,30 +73,57 @@ public class PedidoController {
 
     private final PedidoService pedidoService;
     private final PedidoMapper pedidoMapper;
+    private final PedidoLoteService pedidoLoteService;
+    private final ObjectMapper objectMapper;
+    private final IdempotenciaService idempotenciaService;
+    private final PedidoEstadoLoteService pedidoEstadoLoteService;
+    private final PedidosRecientesService pedidosRecientesService;
+    private final ColaSlaPedidosService colaSlaPedidosService;
+    private final SolicitudesPedidoService solicitudesPedidoService;
+    private final ArchivadorPedidosService archivadorPedidosService;
+    private final HechosVentaService hechosVentaService;
 
     @Autowired
-    public PedidoController(PedidoService pedidoService, PedidoMapper pedidoMapper) {
+    public PedidoController(PedidoService pedidoService, PedidoMapper pedidoMapper,
+                            PedidoLoteService pedidoLoteService, ObjectMapper objectMapper,
+                            IdempotenciaService idempotenciaService, PedidoEstadoLoteService pedidoEstadoLoteService,
+                            PedidosRecientesService pedidosRecientesService,
+                            ColaSlaPedidosService colaSlaPedidosService,
+                            SolicitudesPedidoService solicitudesPedidoService,
+                            ArchivadorPedidosService archivadorPedidosService,
+                            HechosVentaService hechosVentaService) {
         this.pedidoService = pedidoService;
         this.pedidoMapper = pedidoMapper;
+        this.pedidoLoteService = pedidoLoteService;
+        this.objectMapper = objectMapper;
+        this.idempotenciaService = idempotenciaService;
+        this.pedidoEstadoLoteService = pedidoEstadoLoteService;
+        this.pedidosRecientesService = pedidosRecientesService;
+        this.colaSlaPedidosService = colaSlaPedidosService;
+        this.solicitudesPedidoService = solicitudesPedidoService;
+        this.archivadorPedidosService = archivadorPedidosService;
+        this.hechosVentaService = hechosVentaService;
     }
 
     // --- listarTodosLosPedidos, obtenerPedidoPorId, crearPedido (sin cambios respecto a la versión anterior) ---
     @GetMapping
     @PreAuthorize("hasAuthority('LEER_PEDIDO')")
-    @Operation(summary = "Lista todos los pedidos", description = "Obtiene una lista completa de todos los pedidos registrados en el sistema.")
-    @ApiResponse(responseCode = "200", description = "Lista de pedidos obtenida exitosamente",
+    @Operation(summary = "Lista los pedidos por páginas", description = "Obtiene una página de pedidos, del más reciente al más antiguo, con sus detalles. Para la página siguiente se envía el 'siguienteCursor' de la respuesta; es null en la última página.")
+    @Parameter(name = "cursor", description = "Cursor devuelto por la página anterior (omitir para la primera)")
+    @Parameter(name = "limite", description = "Pedidos por página (1-200, por defecto 50)", example = "50")
+    @ApiResponse(responseCode = "200", description = "Página de pedidos obtenida exitosamente",
             content = @Content(mediaType = "application/json",
-                    array = @ArraySchema(schema = @Schema(implementation = PedidoDTO.class))))
+                    schema = @Schema(implementation = PedidoPaginaDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Cursor o límite inválido", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
-    public ResponseEntity<List<PedidoDTO>> listarTodosLosPedidos() {
-        log.info("GET /api/pedidos - Solicitud para listar todos los pedidos");
-        List<Pedido> pedidos = pedidoService.listarTodosLosPedidos();
-        List<PedidoDTO> dtos = pedidos.stream()
-                .map(pedidoMapper::toDTO)
-                .collect(Collectors.toList());
-        log.info("GET /api/pedidos - Devolviendo {} pedidos", dtos.size());
-        return new ResponseEntity<>(dtos, HttpStatus.OK);
+    public ResponseEntity<PedidoPaginaDTO> listarTodosLosPedidos(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limite", required = false) Integer limite) {
+        log.info("GET /api/pedidos - Solicitud para listar pedidos (cursor: {}, límite: {})", cursor, limite);
+        PedidoPaginaDTO pagina = pedidoService.listarPedidosPaginados(cursor, limite);
+        log.info("GET /api/pedidos - Devolviendo {} pedidos", pagina.getPedidos().size());
+        return new ResponseEntity<>(pagina, HttpStatus.OK);
     }
 
     @GetMapping("/{id}")
@@ -85,7 +141,7 @@ public class PedidoController {
         Pedido pedido = pedidoService.obtenerPedidoPorId(id);
         PedidoDTO dto = pedidoMapper.toDTO(pedido);
         log.info("GET /api/pedidos/{} - Pedido encontrado. Cliente ID: {}, Estado ID: {}, #Detalles: {}", id, dto.getClienteId(), dto.getEstadoId(), dto.getDetalles().size());
-        return new ResponseEntity<>(dto, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(pedido.getVersion())).body(dto);
     }
 
     @PostMapping
@@ -99,14 +155,112 @@ public class PedidoController {
                     schema = @Schema(implementation = PedidoDTO.class)))
     @ApiResponse(responseCode = "400", description = "Datos inválidos (DTO, lista detalles vacía, cantidad/precio inválido)", content = @Content)
     @ApiResponse(responseCode = "404", description = "No encontrado - Cliente, Estado o algún Ítem no existe", content = @Content)
+    @ApiResponse(responseCode = "409", description = "Conflicto - Otra solicitud con la misma Idempotency-Key sigue en curso", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
-    public ResponseEntity<PedidoDTO> crearPedido(@Valid @RequestBody PedidoDTO pedidoDto) {
+    public ResponseEntity<PedidoDTO> crearPedido(
+            @Parameter(description = "Clave única por pedido; los reintentos con la misma clave devuelven el pedido ya creado sin volver a crearlo") @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @Valid @RequestBody PedidoDTO pedidoDto
+    ) {
         log.info("POST /api/pedidos - Solicitud para crear pedido para cliente ID {}", pedidoDto.getClienteId());
-        Pedido pedidoCreado = pedidoService.crearPedidoConDetalles(pedidoDto);
-        PedidoDTO responseDto = pedidoMapper.toDTO(pedidoCreado);
-        log.info("POST /api/pedidos - Pedido creado con ID: {}", responseDto.getPedidoId());
-        return new ResponseEntity<>(responseDto, HttpStatus.CREATED);
+        IdempotenciaService.Resultado<PedidoDTO> resultado = idempotenciaService.ejecutar("CREAR_PEDIDO",
+                claveIdempotencia, pedidoDto, PedidoDTO.class,
+                () -> pedidoMapper.toDTO(pedidoService.crearPedidoConDetalles(pedidoDto)));
+        PedidoDTO responseDto = resultado.respuesta();
+        log.info("POST /api/pedidos - Pedido {} con ID: {}", resultado.repetida() ? "ya creado" : "creado", responseDto.getPedidoId());
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Idempotent-Replayed", String.valueOf(resultado.repetida()))
+                .body(responseDto);
+    }
+
+    @PostMapping(params = "asincrono=true")
+    @PreAuthorize("hasAuthority('CREAR_PEDIDO')")
+    @Operation(summary = "Crea un pedido de forma asíncrona", description = "Valida el pedido sin acceder a la base de datos, lo encola y responde de inmediato con un identificador de seguimiento. El pedido se crea en segundo plano con las mismas reglas que POST /api/pedidos; su estado se consulta en GET /api/pedidos/solicitudes/{id}.")
+    @RequestBody(description = "Datos del pedido a crear, con el mismo formato que POST /api/pedidos.", required = true,
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = PedidoDTO.class)))
+    @ApiResponse(responseCode = "202", description = "Solicitud aceptada y encolada",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = SolicitudPedidoDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Datos inválidos (DTO, lista detalles vacía, cantidad/precio inválido)", content = @Content)
+    @ApiResponse(responseCode = "429", description = "Cola llena - Reintentar pasados los segundos indicados en Retry-After", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    public ResponseEntity<SolicitudPedidoDTO> crearPedidoAsincrono(
+            @Parameter(description = "Clave única por pedido; se aplica al crear el pedido en segundo plano") @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @Valid @RequestBody PedidoDTO pedidoDto
+    ) {
+        log.info("POST /api/pedidos?asincrono=true - Solicitud asíncrona de pedido para cliente ID {}", pedidoDto.getClienteId());
+        SolicitudPedidoDTO solicitud = solicitudesPedidoService.encolar(pedidoDto, claveIdempotencia);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .location(URI.create("/api/pedidos/solicitudes/" + solicitud.getSolicitudId()))
+                .body(solicitud);
+    }
+
+    @GetMapping("/solicitudes/{id}")
+    @PreAuthorize("hasAnyAuthority('CREAR_PEDIDO', 'LEER_PEDIDO')")
+    @Operation(summary = "Consulta una solicitud asíncrona de pedido", description = "Devuelve el estado (EN_COLA, PROCESANDO, COMPLETADA o FALLIDA) de una solicitud aceptada por POST /api/pedidos?asincrono=true, con el ID del pedido creado o el motivo del fallo.")
+    @Parameter(name = "id", description = "Identificador de seguimiento devuelto al encolar", required = true)
+    @ApiResponse(responseCode = "200", description = "Estado de la solicitud",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = SolicitudPedidoDTO.class)))
+    @ApiResponse(responseCode = "404", description = "Solicitud inexistente o ya caducada", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    public ResponseEntity<SolicitudPedidoDTO> consultarSolicitud(@PathVariable String id) {
+        log.debug("GET /api/pedidos/solicitudes/{} - Consultando solicitud asíncrona", id);
+        return new ResponseEntity<>(solicitudesPedidoService.consultar(id), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/lote", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority('CREAR_PEDIDO')")
+    @Operation(summary = "Importa pedidos por lotes", description = "Recibe pedidos en NDJSON (uno por línea) o como array JSON, con el mismo formato que POST /api/pedidos, y los crea por tramos, cada uno en su propia transacción. El cuerpo se lee de forma incremental y la respuesta se envía en NDJSON a medida que se confirma cada tramo, con una línea por pedido (fila, pedidoId, estado, mensaje).")
+    @RequestBody(description = "Pedidos a importar (NDJSON o array JSON de PedidoDTO)", required = true,
+            content = @Content(mediaType = "application/x-ndjson",
+                    schema = @Schema(implementation = PedidoDTO.class)))
+    @ApiResponse(responseCode = "200", description = "Resultados por pedido en NDJSON, en el orden de entrada",
+            content = @Content(mediaType = "application/x-ndjson",
+                    schema = @Schema(implementation = PedidoLoteResultadoDTO.class)))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<StreamingResponseBody> importarPedidos(HttpServletRequest request) {
+        log.info("POST /api/pedidos/lote - Solicitud de importación de pedidos por lotes");
+        StreamingResponseBody cuerpo = salida -> pedidoLoteService.importar(request.getInputStream(),
+                resultados -> escribirResultados(salida, resultados));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(cuerpo);
+    }
+
+    @PostMapping("/estado/lote")
+    @PreAuthorize("hasAuthority('EDITAR_PEDIDO')")
+    @Operation(summary = "Cambia el estado de varios pedidos", description = "Cambia al estado indicado todos los pedidos de la lista cuya transición esté permitida por la máquina de estados (p. ej. PENDIENTE -> CANCELADO). Los pedidos se actualizan con una sola sentencia y, en las cancelaciones, su stock se restaura agregado por ítem. Los pedidos inexistentes o con transición no permitida se informan como rechazados sin impedir el cambio de los demás.")
+    @RequestBody(description = "IDs de los pedidos (máximo 1000) y ID del estado destino", required = true,
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = PedidoEstadoLoteDTO.class)))
+    @ApiResponse(responseCode = "200", description = "Cambio de estado aplicado; incluye pedidos actualizados, sin cambios y rechazados",
+            content = @Content(mediaType = "application/json",
+                    schema = @Schema(implementation = PedidoEstadoLoteResultadoDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Datos inválidos (lista vacía o demasiado grande, falta estadoId)", content = @Content)
+    @ApiResponse(responseCode = "404", description = "Estado destino no encontrado", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<PedidoEstadoLoteResultadoDTO> cambiarEstadoEnLote(@Valid @RequestBody PedidoEstadoLoteDTO solicitud) {
+        log.info("POST /api/pedidos/estado/lote - Solicitud para cambiar {} pedidos al estado ID {}",
+                solicitud.getPedidoIds().size(), solicitud.getEstadoId());
+        PedidoEstadoLoteResultadoDTO resultado = pedidoEstadoLoteService.cambiarEstado(solicitud);
+        log.info("POST /api/pedidos/estado/lote - {} pedidos actualizados, {} rechazados",
+                resultado.getActualizados().size(), resultado.getRechazados().size());
+        return new ResponseEntity<>(resultado, HttpStatus.OK);
+    }
+
+    private void escribirResultados(OutputStream salida, List<PedidoLoteResultadoDTO> resultados) {
+        try {
+            for (PedidoLoteResultadoDTO resultado : resultados) {
+                salida.write(objectMapper.writeValueAsBytes(resultado));
+                salida.write('\n');
+            }
+            salida.flush(); // Enviar al cliente los resultados del tramo ya confirmado
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @PutMapping("/{id}")
@@ -121,20 +275,23 @@ public class PedidoController {
                     schema = @Schema(implementation = PedidoDTO.class)))
     @ApiResponse(responseCode = "400", description = "Datos inválidos", content = @Content)
     @ApiResponse(responseCode = "404", description = "No encontrado - Pedido, Cliente o Estado no existe", content = @Content)
+    @ApiResponse(responseCode = "409", description = "Conflicto - Modificación concurrente no resuelta tras reintentar", content = @Content)
+    @ApiResponse(responseCode = "412", description = "Precondición fallida - El recurso cambió desde la versión indicada en If-Match", content = @Content)
     @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
     @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
     public ResponseEntity<PedidoDTO> actualizarPedido(
             @PathVariable Long id,
+            @Parameter(description = "ETag de la versión leída; si no coincide con la actual se responde 412") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @Valid @RequestBody PedidoDTO pedidoDto // La validación @NotEmpty de detalles no aplica aquí
     ) {
         log.info("PUT /api/pedidos/{} - Solicitud para actualizar información principal del pedido", id);
 
         // Llamar al servicio pasando el DTO directamente
-        Pedido pedidoActualizado = pedidoService.actualizarPedido(id, pedidoDto);
+        Pedido pedidoActualizado = pedidoService.actualizarPedido(id, pedidoDto, ETagUtil.versionEsperada(ifMatch));
 
         PedidoDTO responseDto = pedidoMapper.toDTO(pedidoActualizado);
         log.info("PUT /api/pedidos/{} - Información principal del pedido actualizada", id);
-        return new ResponseEntity<>(responseDto, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(ETagUtil.etag(pedidoActualizado.getVersion())).body(responseDto);
     }
 
 
@@ -175,6 +332,62 @@ public class PedidoController {
         return new ResponseEntity<>(dtos, HttpStatus.OK);
     }
 
+    @GetMapping("/buscar")
+    @PreAuthorize("hasAuthority('LEER_PEDIDO')")
+    @Operation(summary = "Búsqueda avanzada de pedidos", description = "Busca pedidos combinando filtros opcionales; solo los filtros informados se aplican. Resultado paginado con sus detalles.")
+    @Parameter(name = "clienteId", description = "ID del cliente", example = "10")
+    @Parameter(name = "estadoId", description = "ID del estado", example = "1")
+    @Parameter(name = "fechaInicio", description = "Fecha del pedido desde, inclusive (ISO 8601)", example = "2024-01-01T00:00:00")
+    @Parameter(name = "fechaFin", description = "Fecha de fin hasta, inclusive (ISO 8601)", example = "2024-12-31T23:59:59")
+    @Parameter(name = "responsableId", description = "ID del usuario responsable del cliente", example = "3")
+    @Parameter(name = "pagina", description = "Número de página, desde 0", example = "0")
+    @Parameter(name = "tamano", description = "Elementos por página (1-200, por defecto 20)", example = "20")
+    @Parameter(name = "orden", description = "Orden 'campo,asc|desc' sobre fechaPedido o pedidoId (por defecto fechaPedido,desc)", example = "fechaPedido,desc")
+    @ApiResponse(responseCode = "200", description = "Búsqueda realizada exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Paginación u orden inválidos", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<PaginaDTO<PedidoDTO>> buscarPedidos(
+            @RequestParam(value = "clienteId", required = false) Long clienteId,
+            @RequestParam(value = "estadoId", required = false) Long estadoId,
+            @RequestParam(value = "fechaInicio", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Timestamp fechaInicio,
+            @RequestParam(value = "fechaFin", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Timestamp fechaFin,
+            @RequestParam(value = "responsableId", required = false) Long responsableId,
+            @RequestParam(value = "pagina", required = false) Integer pagina,
+            @RequestParam(value = "tamano", required = false) Integer tamano,
+            @RequestParam(value = "orden", required = false) String orden) {
+        log.info("GET /api/pedidos/buscar - Búsqueda avanzada de pedidos");
+        PaginaDTO<PedidoDTO> resultado = pedidoService.buscarPedidos(clienteId, estadoId, fechaInicio, fechaFin,
+                responsableId, pagina, tamano, orden);
+        log.info("GET /api/pedidos/buscar - Devolviendo {} de {} pedidos", resultado.getContenido().size(), resultado.getTotalElementos());
+        return new ResponseEntity<>(resultado, HttpStatus.OK);
+    }
+
+    @GetMapping("/cliente/{clienteId}/historico")
+    @PreAuthorize("hasAuthority('LEER_PEDIDO')")
+    @Operation(summary = "Histórico de pedidos de un cliente", description = "Devuelve el resumen de los pedidos de un cliente, incluidos los ya archivados, del más reciente al más antiguo. Los demás listados solo leen los pedidos activos.")
+    @Parameter(name = "clienteId", description = "ID del cliente", required = true, example = "10", schema = @Schema(type="integer", format="int64"))
+    @Parameter(name = "desde", description = "Fecha inicial, inclusive (ISO 8601; por defecto sin límite)", example = "2024-01-01T00:00:00")
+    @Parameter(name = "hasta", description = "Fecha final, exclusive (ISO 8601; por defecto ahora)", example = "2025-01-01T00:00:00")
+    @Parameter(name = "limite", description = "Número máximo de pedidos (por defecto 100, máximo 1000)", example = "100")
+    @ApiResponse(responseCode = "200", description = "Histórico obtenido exitosamente",
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = PedidoResumenDTO.class))))
+    @ApiResponse(responseCode = "400", description = "Rango de fechas o límite inválido", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<List<PedidoResumenDTO>> buscarHistoricoPorCliente(
+            @PathVariable Long clienteId,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Timestamp desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Timestamp hasta,
+            @RequestParam(value = "limite", required = false) Integer limite) {
+        log.info("GET /api/pedidos/cliente/{}/historico - Buscando histórico de pedidos", clienteId);
+        List<PedidoResumenDTO> historico = archivadorPedidosService.buscarHistoricoCliente(clienteId, desde, hasta, limite);
+        log.info("GET /api/pedidos/cliente/{}/historico - Encontrados {} pedidos", clienteId, historico.size());
+        return new ResponseEntity<>(historico, HttpStatus.OK);
+    }
+
     @GetMapping("/estado/{estadoValor}")
     @PreAuthorize("hasAuthority('LEER_PEDIDO')")
     @Operation(summary = "Busca pedidos por estado", description = "Obtiene una lista de pedidos que se encuentran en un estado específico (usando el valor del estado).")
@@ -194,9 +407,89 @@ public class PedidoController {
         return new ResponseEntity<>(dtos, HttpStatus.OK);
     }
 
+    @GetMapping("/recientes")
+    @PreAuthorize("hasAuthority('LEER_PEDIDO')")
+    @Operation(summary = "Lista los pedidos más recientes", description = "Devuelve el resumen (cliente, estado, fecha y total) de los últimos pedidos, del más nuevo al más antiguo, desde un buffer en memoria sin consultar la base de datos.")
+    @Parameter(name = "limite", description = "Número máximo de pedidos (por defecto 10; se acota a la capacidad del buffer)", example = "10")
+    @ApiResponse(responseCode = "200", description = "Pedidos recientes obtenidos exitosamente",
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = PedidoResumenDTO.class))))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<List<PedidoResumenDTO>> listarPedidosRecientes(
+            @RequestParam(value = "limite", defaultValue = "10") int limite) {
+        log.debug("GET /api/pedidos/recientes - Solicitud de los {} pedidos más recientes", limite);
+        return new ResponseEntity<>(pedidosRecientesService.obtenerRecientes(limite), HttpStatus.OK);
+    }
+
+    @GetMapping("/ventas/agregados")
+    @PreAuthorize("hasAuthority('LEER_PEDIDO')")
+    @Operation(summary = "Agrega las ventas para el panel", description = "Devuelve el número de líneas, las unidades y el importe de las líneas de pedidos no cancelados de un rango de días, en total o agrupados por día, ítem, cliente, categoría o bodega. Se calcula sobre un almacén en memoria, sin consultar la base de datos; los pedidos nuevos aparecen en un segundo y las cancelaciones tras la reconstrucción nocturna.")
+    @Parameter(name = "agrupacion", description = "Criterio de agrupación (por defecto TOTAL)", example = "DIA", schema = @Schema(implementation = HechosVentaService.Agrupacion.class))
+    @Parameter(name = "desde", description = "Primer día, inclusive (ISO 8601; por defecto 30 días antes de hasta)", example = "2024-01-01")
+    @Parameter(name = "hasta", description = "Último día, inclusive (ISO 8601; por defecto hoy)", example = "2024-01-31")
+    @Parameter(name = "clienteId", description = "ID del cliente para filtrar", example = "1")
+    @Parameter(name = "itemId", description = "ID del ítem para filtrar", example = "1")
+    @ApiResponse(responseCode = "200", description = "Agregación calculada exitosamente",
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = AgregadoVentasDTO.class))))
+    @ApiResponse(responseCode = "400", description = "Rango de días inválido", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "409", description = "El almacén de ventas aún se está cargando", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<List<AgregadoVentasDTO>> agregarVentas(
+            @RequestParam(value = "agrupacion", required = false) HechosVentaService.Agrupacion agrupacion,
+            @RequestParam(value = "desde", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(value = "hasta", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(value = "clienteId", required = false) Long clienteId,
+            @RequestParam(value = "itemId", required = false) Long itemId) {
+        log.debug("GET /api/pedidos/ventas/agregados?agrupacion={}&desde={}&hasta={} - Agregando ventas", agrupacion, desde, hasta);
+        return new ResponseEntity<>(hechosVentaService.agregar(agrupacion, desde, hasta, clienteId, itemId), HttpStatus.OK);
+    }
+
+    @GetMapping("/sla")
+    @PreAuthorize("hasAuthority('LEER_PEDIDO')")
+    @Operation(summary = "Resumen de la cola de SLA de pedidos", description = "Devuelve cuántos pedidos pendientes hay, cuántos están próximos a vencer su SLA y cuántos ya lo han superado, junto con los primeros por fecha límite (vencidos primero). Se responde desde una cola en memoria sin consultar la base de datos.")
+    @Parameter(name = "limite", description = "Número máximo de pedidos a listar (por defecto 20)", example = "20")
+    @ApiResponse(responseCode = "200", description = "Resumen obtenido exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PedidosSlaResumenDTO.class)))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<PedidosSlaResumenDTO> obtenerResumenSla(
+            @RequestParam(value = "limite", defaultValue = "20") int limite) {
+        log.debug("GET /api/pedidos/sla - Solicitud de resumen de SLA (limite {})", limite);
+        return new ResponseEntity<>(colaSlaPedidosService.obtenerResumen(Math.max(limite, 0)), HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/sla/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority('LEER_PEDIDO')")
+    @Operation(summary = "Suscribe a los avisos de SLA vencido (SSE)", description = "Abre un flujo Server-Sent Events que emite un evento 'sla-vencido' cuando un pedido pendiente supera su fecha límite.")
+    @ApiResponse(responseCode = "200", description = "Flujo de eventos abierto", content = @Content(mediaType = "text/event-stream"))
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    public SseEmitter suscribirAvisosSla() {
+        log.info("GET /api/pedidos/sla/eventos - Nueva suscripción a avisos de SLA");
+        return colaSlaPedidosService.suscribir();
+    }
+
+    @GetMapping("/totales")
+    @PreAuthorize("hasAuthority('LEER_PEDIDO')")
+    @Operation(summary = "Obtiene los totales de varios pedidos", description = "Devuelve en una sola consulta el total persistido de cada pedido indicado, como un objeto pedidoId -> total. Los pedidos inexistentes se omiten.")
+    @Parameter(name = "ids", description = "IDs de los pedidos separados por comas (máximo 1000)", required = true, example = "1,2,3")
+    @ApiResponse(responseCode = "200", description = "Totales obtenidos exitosamente",
+            content = @Content(mediaType = "application/json"))
+    @ApiResponse(responseCode = "400", description = "Lista de IDs vacía o demasiado grande", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<Map<Long, BigDecimal>> obtenerTotales(@RequestParam("ids") List<Long> ids) {
+        log.info("GET /api/pedidos/totales - Obteniendo totales de {} pedidos", ids.size());
+        Map<Long, BigDecimal> totales = pedidoService.obtenerTotales(ids);
+        log.info("GET /api/pedidos/totales - Devolviendo {} totales", totales.size());
+        return new ResponseEntity<>(totales, HttpStatus.OK);
+    }
+
     @GetMapping("/{id}/total")
     @PreAuthorize("hasAuthority('LEER_PEDIDO')")
-    @Operation(summary = "Calcula el total de un pedido", description = "Calcula y devuelve el monto total de un pedido sumando los subtotales de todos sus detalles.")
+    @Operation(summary = "Calcula el total de un pedido", description = "Devuelve el monto total de un pedido (suma de los subtotales de sus detalles), guardado en el propio pedido.")
     @Parameter(name = "id", description = "ID del pedido", required = true, example = "1", schema = @Schema(type="integer", format="int64"))
     @ApiResponse(responseCode = "200", description = "Total calculado exitosamente",
             content = @Content(mediaType = "application/json",
@@ -1,9 +1,12 @@
 // src/main/java/com/telastech360/crmTT360/controller/ProductoController.java
 package com.telastech360.crmTT360.controller;
 
+import com.telastech360.crmTT360.dto.ItemMasVendidoDTO;
+import com.telastech360.crmTT360.dto.PaginaDTO;
 import com.telastech360.crmTT360.dto.ProductoDTO;
 import com.telastech360.crmTT360.entity.Producto;
 import com.telastech360.crmTT360.mapper.ProductoMapper;
+import com.telastech360.crmTT360.service.ItemsMasVendidosService;
 import com.telastech360.crmTT360.service.ProductoService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -22,6 +25,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -37,11 +41,14 @@ public class ProductoController {
 
     private final ProductoService productoService;
     private final ProductoMapper productoMapper;
+    private final ItemsMasVendidosService itemsMasVendidosService;
 
     @Autowired
-    public ProductoController(ProductoService productoService, ProductoMapper productoMapper) {
+    public ProductoController(ProductoService productoService, ProductoMapper productoMapper,
+                              ItemsMasVendidosService itemsMasVendidosService) {
         this.productoService = productoService;
         this.productoMapper = productoMapper;
+        this.itemsMasVendidosService = itemsMasVendidosService;
     }
 
     @GetMapping
@@ -146,6 +153,60 @@ public class ProductoController {
 
     // --- Endpoints Adicionales (usar 'BUSCAR_PRODUCTOS' o 'LEER_PRODUCTOS') ---
 
+    @GetMapping("/buscar")
+    @PreAuthorize("hasAuthority('BUSCAR_PRODUCTOS')")
+    @Operation(summary = "Búsqueda avanzada de productos", description = "Busca productos combinando filtros opcionales; solo los filtros informados se aplican. El color se busca por prefijo. Resultado paginado.")
+    @Parameter(name = "tipoPrenda", description = "Tipo de prenda", example = "CAMISA", schema = @Schema(implementation = Producto.TipoPrenda.class))
+    @Parameter(name = "talla", description = "Talla", example = "M", schema = @Schema(implementation = Producto.Talla.class))
+    @Parameter(name = "color", description = "Prefijo del color", example = "Azul")
+    @Parameter(name = "temporada", description = "Temporada", example = "Verano 2024")
+    @Parameter(name = "minPrecio", description = "Precio mínimo, inclusive", example = "10.00")
+    @Parameter(name = "maxPrecio", description = "Precio máximo, inclusive", example = "100.00")
+    @Parameter(name = "pagina", description = "Número de página, desde 0", example = "0")
+    @Parameter(name = "tamano", description = "Elementos por página (1-200, por defecto 20)", example = "20")
+    @Parameter(name = "orden", description = "Orden 'campo,asc|desc' sobre nombre o itemId (por defecto nombre,asc)", example = "nombre,asc")
+    @ApiResponse(responseCode = "200", description = "Búsqueda realizada exitosamente",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaDTO.class)))
+    @ApiResponse(responseCode = "400", description = "Filtros, paginación u orden inválidos", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<PaginaDTO<ProductoDTO>> buscarProductos(
+            @RequestParam(value = "tipoPrenda", required = false) Producto.TipoPrenda tipoPrenda,
+            @RequestParam(value = "talla", required = false) Producto.Talla talla,
+            @RequestParam(value = "color", required = false) String color,
+            @RequestParam(value = "temporada", required = false) String temporada,
+            @RequestParam(value = "minPrecio", required = false) BigDecimal minPrecio,
+            @RequestParam(value = "maxPrecio", required = false) BigDecimal maxPrecio,
+            @RequestParam(value = "pagina", required = false) Integer pagina,
+            @RequestParam(value = "tamano", required = false) Integer tamano,
+            @RequestParam(value = "orden", required = false) String orden) {
+        log.info("GET /api/productos/buscar - Búsqueda avanzada de productos");
+        PaginaDTO<ProductoDTO> resultado = PaginaDTO.de(productoService.buscarProductos(tipoPrenda, talla, color,
+                temporada, minPrecio, maxPrecio, pagina, tamano, orden), productoMapper::toDTO);
+        log.info("GET /api/productos/buscar - Devolviendo {} de {} productos", resultado.getContenido().size(), resultado.getTotalElementos());
+        return new ResponseEntity<>(resultado, HttpStatus.OK);
+    }
+
+    @GetMapping("/mas-vendidos")
+    @PreAuthorize("hasAuthority('LEER_PRODUCTOS')")
+    @Operation(summary = "Ranking de más vendidos", description = "Devuelve los ítems con más unidades vendidas (pedidos no cancelados) en las últimas horas, incluida la hora en curso. Los periodos dentro de las horas retenidas se responden desde memoria y sus cantidades pueden ser estimadas (errorMaximo > 0); los más largos se calculan de forma exacta.")
+    @Parameter(name = "horas", description = "Número de horas del periodo (24 = último día, 168 = última semana)", example = "24")
+    @Parameter(name = "limite", description = "Número máximo de ítems (1-100)", example = "10")
+    @ApiResponse(responseCode = "200", description = "Ranking obtenido exitosamente",
+            content = @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = ItemMasVendidoDTO.class))))
+    @ApiResponse(responseCode = "400", description = "Horas o límite inválidos", content = @Content)
+    @ApiResponse(responseCode = "403", description = "No autorizado", content = @Content)
+    @ApiResponse(responseCode = "500", description = "Error interno del servidor", content = @Content)
+    public ResponseEntity<List<ItemMasVendidoDTO>> obtenerMasVendidos(
+            @RequestParam(value = "horas", defaultValue = "24") int horas,
+            @RequestParam(value = "limite", defaultValue = "10") int limite) {
+        log.info("GET /api/productos/mas-vendidos?horas={}&limite={} - Obteniendo ranking", horas, limite);
+        List<ItemMasVendidoDTO> ranking = itemsMasVendidosService.obtenerMasVendidos(horas, limite);
+        log.info("GET /api/productos/mas-vendidos - Devolviendo {} ítems", ranking.size());
+        return new ResponseEntity<>(ranking, HttpStatus.OK);
+    }
+
     @GetMapping("/tipo-prenda/{tipoPrenda}")
     @PreAuthorize("hasAuthority('BUSCAR_PRODUCTOS')") // Modificado (o LEER_PRODUCTOS)
     @Operation(summary = "Busca productos por tipo de prenda", description = "Obtiene una lista de productos terminados filtrados por su tipo de prenda.")
@@ -0,0 +1,51 @@
+package com.telastech360.crmTT360.dto;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+
+/**
+ * DTO con un grupo de una agregación de ventas del panel: número de líneas de pedido, unidades e
+ * importe (cantidad * precio unitario) del grupo.
+ */
+public class AgregadoVentasDTO {
+
+    private Long id;
+    private Date dia;
+    private long lineas;
+    private long cantidad;
+    private BigDecimal importe;
+
+    /**
+     * Constructor por defecto.
+     */
+    public AgregadoVentasDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param id ID del ítem, cliente, categoría o bodega del grupo (null al agrupar por día, en el
+     *           total y para los pedidos sin cliente).
+     * @param dia Día del grupo (solo al agrupar por día).
+     * @param lineas Número de líneas de pedido.
+     * @param cantidad Unidades vendidas.
+     * @param importe Suma de cantidad * precio unitario.
+     */
+    public AgregadoVentasDTO(Long id, Date dia, long lineas, long cantidad, BigDecimal importe) {
+        this.id = id;
+        this.dia = dia;
+        this.lineas = lineas;
+        this.cantidad = cantidad;
+        this.importe = importe;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Date getDia() { return dia; }
+    public void setDia(Date dia) { this.dia = dia; }
+    public long getLineas() { return lineas; }
+    public void setLineas(long lineas) { this.lineas = lineas; }
+    public long getCantidad() { return cantidad; }
+    public void setCantidad(long cantidad) { this.cantidad = cantidad; }
+    public BigDecimal getImporte() { return importe; }
+    public void setImporte(BigDecimal importe) { this.importe = importe; }
+}
@@ -0,0 +1,36 @@
+package com.telastech360.crmTT360.dto;
+
+/**
+ * DTO de un ajuste de stock dentro de un lote (recepción de mercancía, conteo cíclico).
+ */
+public class AjusteStockDTO {
+
+    private Long itemId;
+    private Integer cantidad; // Positiva para sumar, negativa para restar
+    private String motivo;
+
+    /**
+     * Constructor por defecto.
+     */
+    public AjusteStockDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param itemId ID del ítem a ajustar.
+     * @param cantidad Cantidad a sumar (positiva) o restar (negativa).
+     * @param motivo Motivo del ajuste (opcional).
+     */
+    public AjusteStockDTO(Long itemId, Integer cantidad, String motivo) {
+        this.itemId = itemId;
+        this.cantidad = cantidad;
+        this.motivo = motivo;
+    }
+
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+    public String getMotivo() { return motivo; }
+    public void setMotivo(String motivo) { this.motivo = motivo; }
+}
@@ -0,0 +1,39 @@
+package com.telastech360.crmTT360.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO con el informe de un lote de ajustes de stock: totales y resultado de cada fila, en el
+ * orden en que se recibieron.
+ */
+public class AjusteStockLoteResultadoDTO {
+
+    private int total;
+    private int aplicados;
+    private int rechazados;
+    private List<AjusteStockResultadoDTO> resultados = new ArrayList<>();
+
+    /**
+     * Añade el resultado de una fila y actualiza los totales.
+     * @param resultado Resultado de la fila.
+     */
+    public void agregar(AjusteStockResultadoDTO resultado) {
+        resultados.add(resultado);
+        total++;
+        if (resultado.getEstado() == AjusteStockResultadoDTO.Estado.APLICADO) {
+            aplicados++;
+        } else {
+            rechazados++;
+        }
+    }
+
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+    public int getAplicados() { return aplicados; }
+    public void setAplicados(int aplicados) { this.aplicados = aplicados; }
+    public int getRechazados() { return rechazados; }
+    public void setRechazados(int rechazados) { this.rechazados = rechazados; }
+    public List<AjusteStockResultadoDTO> getResultados() { return resultados; }
+    public void setResultados(List<AjusteStockResultadoDTO> resultados) { this.resultados = resultados; }
+}
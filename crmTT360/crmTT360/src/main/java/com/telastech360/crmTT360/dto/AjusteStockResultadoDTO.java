@@ -0,0 +1,53 @@
+package com.telastech360.crmTT360.dto;
+
+/**
+ * DTO con el resultado de una fila de un lote de ajustes de stock.
+ */
+public class AjusteStockResultadoDTO {
+
+    /**
+     * Resultado de la fila.
+     */
+    public enum Estado {
+        APLICADO, RECHAZADO, NO_ENCONTRADO, INVALIDO, ERROR
+    }
+
+    private int fila;
+    private Long itemId;
+    private Integer cantidad;
+    private Estado estado;
+    private String mensaje;
+
+    /**
+     * Constructor por defecto.
+     */
+    public AjusteStockResultadoDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param fila Posición de la fila en el lote (desde 0).
+     * @param itemId ID del ítem (null si la fila no lo indicaba).
+     * @param cantidad Cantidad del ajuste (null si la fila no la indicaba).
+     * @param estado Resultado de la fila.
+     * @param mensaje Detalle del rechazo o error (null si se aplicó).
+     */
+    public AjusteStockResultadoDTO(int fila, Long itemId, Integer cantidad, Estado estado, String mensaje) {
+        this.fila = fila;
+        this.itemId = itemId;
+        this.cantidad = cantidad;
+        this.estado = estado;
+        this.mensaje = mensaje;
+    }
+
+    public int getFila() { return fila; }
+    public void setFila(int fila) { this.fila = fila; }
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+    public Integer getCantidad() { return cantidad; }
+    public void setCantidad(Integer cantidad) { this.cantidad = cantidad; }
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+    public String getMensaje() { return mensaje; }
+    public void setMensaje(String mensaje) { this.mensaje = mensaje; }
+}
@@ -0,0 +1,47 @@
+package com.telastech360.crmTT360.dto;
+
+/**
+ * DTO con el evento enviado a los clientes suscritos cuando un ítem cruza su umbral de stock mínimo,
+ * ya sea al quedar por debajo (stock bajo) o al reponerse.
+ */
+public class AlertaStockDTO {
+
+    private Long itemId;
+    private String nombre;
+    private Integer stockDisponible;
+    private Integer stockMinimo;
+    private boolean stockBajo;
+
+    /**
+     * Constructor por defecto.
+     */
+    public AlertaStockDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param itemId ID del ítem.
+     * @param nombre Nombre del ítem.
+     * @param stockDisponible Stock total disponible tras el cambio.
+     * @param stockMinimo Stock mínimo del ítem.
+     * @param stockBajo true si el ítem quedó por debajo del mínimo, false si se repuso.
+     */
+    public AlertaStockDTO(Long itemId, String nombre, Integer stockDisponible, Integer stockMinimo, boolean stockBajo) {
+        this.itemId = itemId;
+        this.nombre = nombre;
+        this.stockDisponible = stockDisponible;
+        this.stockMinimo = stockMinimo;
+        this.stockBajo = stockBajo;
+    }
+
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+    public String getNombre() { return nombre; }
+    public void setNombre(String nombre) { this.nombre = nombre; }
+    public Integer getStockDisponible() { return stockDisponible; }
+    public void setStockDisponible(Integer stockDisponible) { this.stockDisponible = stockDisponible; }
+    public Integer getStockMinimo() { return stockMinimo; }
+    public void setStockMinimo(Integer stockMinimo) { this.stockMinimo = stockMinimo; }
+    public boolean isStockBajo() { return stockBajo; }
+    public void setStockBajo(boolean stockBajo) { this.stockBajo = stockBajo; }
+}
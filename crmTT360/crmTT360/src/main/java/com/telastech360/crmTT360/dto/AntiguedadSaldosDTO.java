@@ -0,0 +1,59 @@
+package com.telastech360.crmTT360.dto;
+
+import com.telastech360.crmTT360.entity.Factura.TipoMovimiento;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO con el saldo pendiente de cobro de un cliente y tipo de movimiento, repartido en tramos de
+ * antigüedad según los días transcurridos desde la creación de cada factura.
+ */
+public class AntiguedadSaldosDTO {
+
+    private Long clienteId;
+    private String clienteNombre;
+    private TipoMovimiento tipoMovimiento;
+    private long numeroFacturas;
+    private BigDecimal hasta30Dias = BigDecimal.ZERO;
+    private BigDecimal de31a60Dias = BigDecimal.ZERO;
+    private BigDecimal de61a90Dias = BigDecimal.ZERO;
+    private BigDecimal masDe90Dias = BigDecimal.ZERO;
+    private BigDecimal total = BigDecimal.ZERO;
+
+    /**
+     * Constructor por defecto.
+     */
+    public AntiguedadSaldosDTO() {
+    }
+
+    /**
+     * Constructor con los datos del grupo; los importes empiezan en cero.
+     * @param clienteId ID del cliente del pedido (null si el pedido no tiene cliente).
+     * @param clienteNombre Nombre del cliente.
+     * @param tipoMovimiento Tipo de movimiento (VENTA o COMPRA).
+     */
+    public AntiguedadSaldosDTO(Long clienteId, String clienteNombre, TipoMovimiento tipoMovimiento) {
+        this.clienteId = clienteId;
+        this.clienteNombre = clienteNombre;
+        this.tipoMovimiento = tipoMovimiento;
+    }
+
+    public Long getClienteId() { return clienteId; }
+    public void setClienteId(Long clienteId) { this.clienteId = clienteId; }
+    public String getClienteNombre() { return clienteNombre; }
+    public void setClienteNombre(String clienteNombre) { this.clienteNombre = clienteNombre; }
+    public TipoMovimiento getTipoMovimiento() { return tipoMovimiento; }
+    public void setTipoMovimiento(TipoMovimiento tipoMovimiento) { this.tipoMovimiento = tipoMovimiento; }
+    public long getNumeroFacturas() { return numeroFacturas; }
+    public void setNumeroFacturas(long numeroFacturas) { this.numeroFacturas = numeroFacturas; }
+    public BigDecimal getHasta30Dias() { return hasta30Dias; }
+    public void setHasta30Dias(BigDecimal hasta30Dias) { this.hasta30Dias = hasta30Dias; }
+    public BigDecimal getDe31a60Dias() { return de31a60Dias; }
+    public void setDe31a60Dias(BigDecimal de31a60Dias) { this.de31a60Dias = de31a60Dias; }
+    public BigDecimal getDe61a90Dias() { return de61a90Dias; }
+    public void setDe61a90Dias(BigDecimal de61a90Dias) { this.de61a90Dias = de61a90Dias; }
+    public BigDecimal getMasDe90Dias() { return masDe90Dias; }
+    public void setMasDe90Dias(BigDecimal masDe90Dias) { this.masDe90Dias = masDe90Dias; }
+    public BigDecimal getTotal() { return total; }
+    public void setTotal(BigDecimal total) { this.total = total; }
+}
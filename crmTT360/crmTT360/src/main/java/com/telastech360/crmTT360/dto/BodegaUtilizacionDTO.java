@@ -0,0 +1,55 @@
+package com.telastech360.crmTT360.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO con la utilización de una bodega: capacidad máxima, ocupación actual (stock total de sus ítems),
+ * capacidad libre y porcentaje de uso.
+ */
+public class BodegaUtilizacionDTO {
+
+    private Long bodegaId;
+    private String nombre;
+    private Integer capacidadMaxima;
+    private Long ocupacion;
+    private Long capacidadDisponible;
+    private BigDecimal porcentajeUtilizacion;
+
+    /**
+     * Constructor por defecto.
+     */
+    public BodegaUtilizacionDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param bodegaId ID de la bodega.
+     * @param nombre Nombre de la bodega.
+     * @param capacidadMaxima Capacidad máxima de la bodega.
+     * @param ocupacion Unidades de stock almacenadas.
+     * @param capacidadDisponible Capacidad libre (puede ser negativa si la bodega está sobreocupada).
+     * @param porcentajeUtilizacion Porcentaje de la capacidad en uso, con dos decimales.
+     */
+    public BodegaUtilizacionDTO(Long bodegaId, String nombre, Integer capacidadMaxima, Long ocupacion,
+                                Long capacidadDisponible, BigDecimal porcentajeUtilizacion) {
+        this.bodegaId = bodegaId;
+        this.nombre = nombre;
+        this.capacidadMaxima = capacidadMaxima;
+        this.ocupacion = ocupacion;
+        this.capacidadDisponible = capacidadDisponible;
+        this.porcentajeUtilizacion = porcentajeUtilizacion;
+    }
+
+    public Long getBodegaId() { return bodegaId; }
+    public void setBodegaId(Long bodegaId) { this.bodegaId = bodegaId; }
+    public String getNombre() { return nombre; }
+    public void setNombre(String nombre) { this.nombre = nombre; }
+    public Integer getCapacidadMaxima() { return capacidadMaxima; }
+    public void setCapacidadMaxima(Integer capacidadMaxima) { this.capacidadMaxima = capacidadMaxima; }
+    public Long getOcupacion() { return ocupacion; }
+    public void setOcupacion(Long ocupacion) { this.ocupacion = ocupacion; }
+    public Long getCapacidadDisponible() { return capacidadDisponible; }
+    public void setCapacidadDisponible(Long capacidadDisponible) { this.capacidadDisponible = capacidadDisponible; }
+    public BigDecimal getPorcentajeUtilizacion() { return porcentajeUtilizacion; }
+    public void setPorcentajeUtilizacion(BigDecimal porcentajeUtilizacion) { this.porcentajeUtilizacion = porcentajeUtilizacion; }
+}
@@ -33,6 +33,8 @@ public class FacturaDTO {
     // Añadir estadoPago si se maneja desde el DTO
     private boolean estadoPago; // Asumiendo que lo quieres manejar
 
+    private Long version; // Versión para concurrencia optimista (solo lectura; también se envía como ETag)
+
     /**
      * Constructor por defecto.
      */
@@ -69,6 +71,22 @@ public class FacturaDTO {
         this.facturaId = facturaId;
     }
 
+    /**
+     * Obtiene la versión de la factura (control de concurrencia optimista).
+     * @return La versión de la factura.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Establece la versión de la factura.
+     * @param version La versión de la factura.
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     /**
      * Obtiene el ID del pedido asociado.
      * @return El ID del pedido.
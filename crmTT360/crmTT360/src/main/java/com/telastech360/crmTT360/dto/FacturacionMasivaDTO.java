@@ -0,0 +1,81 @@
+package com.telastech360.crmTT360.dto;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * DTO con el progreso de una ejecución de la facturación masiva de pedidos completados.
+ */
+public class FacturacionMasivaDTO {
+
+    private Long ejecucionId;
+    private String estado;
+    private Long ultimoPedidoId;
+    private int pedidosFacturados;
+    private int pedidosOmitidos;
+    private BigDecimal totalFacturado;
+    private Timestamp fechaInicio;
+    private Timestamp fechaActualizacion;
+    private Timestamp fechaFin;
+    private double pedidosPorSegundo;
+    private String mensaje;
+
+    /**
+     * Constructor por defecto.
+     */
+    public FacturacionMasivaDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param ejecucionId ID de la ejecución.
+     * @param estado Estado de la ejecución (EN_CURSO, COMPLETADA o FALLIDA).
+     * @param ultimoPedidoId ID del último pedido procesado; la ejecución continúa a partir de él.
+     * @param pedidosFacturados Pedidos facturados hasta ahora.
+     * @param pedidosOmitidos Pedidos omitidos por no tener importe que facturar.
+     * @param totalFacturado Suma de los totales de las facturas creadas.
+     * @param fechaInicio Inicio de la ejecución.
+     * @param fechaActualizacion Momento del último lote confirmado.
+     * @param fechaFin Fin de la ejecución (null si sigue en curso).
+     * @param mensaje Motivo del fallo (solo si está FALLIDA).
+     */
+    public FacturacionMasivaDTO(Long ejecucionId, String estado, Long ultimoPedidoId, int pedidosFacturados,
+                                int pedidosOmitidos, BigDecimal totalFacturado, Timestamp fechaInicio,
+                                Timestamp fechaActualizacion, Timestamp fechaFin, String mensaje) {
+        this.ejecucionId = ejecucionId;
+        this.estado = estado;
+        this.ultimoPedidoId = ultimoPedidoId;
+        this.pedidosFacturados = pedidosFacturados;
+        this.pedidosOmitidos = pedidosOmitidos;
+        this.totalFacturado = totalFacturado;
+        this.fechaInicio = fechaInicio;
+        this.fechaActualizacion = fechaActualizacion;
+        this.fechaFin = fechaFin;
+        this.mensaje = mensaje;
+        long milisegundos = fechaActualizacion.getTime() - fechaInicio.getTime();
+        this.pedidosPorSegundo = milisegundos > 0 ? (pedidosFacturados + pedidosOmitidos) * 1000.0 / milisegundos : 0;
+    }
+
+    public Long getEjecucionId() { return ejecucionId; }
+    public void setEjecucionId(Long ejecucionId) { this.ejecucionId = ejecucionId; }
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+    public Long getUltimoPedidoId() { return ultimoPedidoId; }
+    public void setUltimoPedidoId(Long ultimoPedidoId) { this.ultimoPedidoId = ultimoPedidoId; }
+    public int getPedidosFacturados() { return pedidosFacturados; }
+    public void setPedidosFacturados(int pedidosFacturados) { this.pedidosFacturados = pedidosFacturados; }
+    public int getPedidosOmitidos() { return pedidosOmitidos; }
+    public void setPedidosOmitidos(int pedidosOmitidos) { this.pedidosOmitidos = pedidosOmitidos; }
+    public BigDecimal getTotalFacturado() { return totalFacturado; }
+    public void setTotalFacturado(BigDecimal totalFacturado) { this.totalFacturado = totalFacturado; }
+    public Timestamp getFechaInicio() { return fechaInicio; }
+    public void setFechaInicio(Timestamp fechaInicio) { this.fechaInicio = fechaInicio; }
+    public Timestamp getFechaActualizacion() { return fechaActualizacion; }
+    public void setFechaActualizacion(Timestamp fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+    public Timestamp getFechaFin() { return fechaFin; }
+    public void setFechaFin(Timestamp fechaFin) { this.fechaFin = fechaFin; }
+    public double getPedidosPorSegundo() { return pedidosPorSegundo; }
+    public void setPedidosPorSegundo(double pedidosPorSegundo) { this.pedidosPorSegundo = pedidosPorSegundo; }
+    public String getMensaje() { return mensaje; }
+    public void setMensaje(String mensaje) { this.mensaje = mensaje; }
+}
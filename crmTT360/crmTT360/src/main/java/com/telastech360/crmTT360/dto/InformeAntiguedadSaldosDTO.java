@@ -0,0 +1,41 @@
+package com.telastech360.crmTT360.dto;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * DTO con el informe de antigüedad de saldos pendientes de cobro: una fila por cliente y tipo de
+ * movimiento, con la fecha de corte usada para calcular los tramos.
+ */
+public class InformeAntiguedadSaldosDTO {
+
+    private Date fechaCorte;
+    private Timestamp calculadoEn;
+    private List<AntiguedadSaldosDTO> saldos;
+
+    /**
+     * Constructor por defecto.
+     */
+    public InformeAntiguedadSaldosDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param fechaCorte Día respecto al que se cuentan los días de antigüedad.
+     * @param calculadoEn Momento en que se calculó el informe (puede servirse desde caché).
+     * @param saldos Saldos por cliente y tipo de movimiento.
+     */
+    public InformeAntiguedadSaldosDTO(Date fechaCorte, Timestamp calculadoEn, List<AntiguedadSaldosDTO> saldos) {
+        this.fechaCorte = fechaCorte;
+        this.calculadoEn = calculadoEn;
+        this.saldos = saldos;
+    }
+
+    public Date getFechaCorte() { return fechaCorte; }
+    public void setFechaCorte(Date fechaCorte) { this.fechaCorte = fechaCorte; }
+    public Timestamp getCalculadoEn() { return calculadoEn; }
+    public void setCalculadoEn(Timestamp calculadoEn) { this.calculadoEn = calculadoEn; }
+    public List<AntiguedadSaldosDTO> getSaldos() { return saldos; }
+    public void setSaldos(List<AntiguedadSaldosDTO> saldos) { this.saldos = saldos; }
+}
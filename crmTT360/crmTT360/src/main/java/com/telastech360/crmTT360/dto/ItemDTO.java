@@ -64,6 +64,8 @@ public class ItemDTO {
     @NotBlank(message = "El tipo de item es obligatorio")
     private String tipoItem; // "MATERIA_PRIMA" o "PRODUCTO_TERMINADO" (String representation of enum)
 
+    private Long version; // Versión para concurrencia optimista (solo lectura; también se envía como ETag)
+
     // --- Constructores ---
     /**
      * Constructor por defecto.
@@ -121,6 +123,22 @@ public class ItemDTO {
     }
     // ---------------------------------------------------
 
+    /**
+     * Obtiene la versión del ítem (control de concurrencia optimista).
+     * @return La versión del ítem.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Establece la versión del ítem.
+     * @param version La versión del ítem.
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     /**
      * Obtiene el código único del ítem.
      * @return El código.
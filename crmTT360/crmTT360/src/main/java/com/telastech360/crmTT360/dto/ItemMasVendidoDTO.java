@@ -0,0 +1,36 @@
+package com.telastech360.crmTT360.dto;
+
+/**
+ * DTO con la cantidad vendida de un ítem en un periodo, para el ranking de más vendidos.
+ */
+public class ItemMasVendidoDTO {
+
+    private Long itemId;
+    private long cantidad;
+    private long errorMaximo;
+
+    /**
+     * Constructor por defecto.
+     */
+    public ItemMasVendidoDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param itemId ID del ítem.
+     * @param cantidad Cantidad vendida (estimada si errorMaximo es mayor que 0).
+     * @param errorMaximo Cota de lo que la cantidad puede exceder a la real (0 si es exacta).
+     */
+    public ItemMasVendidoDTO(Long itemId, long cantidad, long errorMaximo) {
+        this.itemId = itemId;
+        this.cantidad = cantidad;
+        this.errorMaximo = errorMaximo;
+    }
+
+    public Long getItemId() { return itemId; }
+    public void setItemId(Long itemId) { this.itemId = itemId; }
+    public long getCantidad() { return cantidad; }
+    public void setCantidad(long cantidad) { this.cantidad = cantidad; }
+    public long getErrorMaximo() { return errorMaximo; }
+    public void setErrorMaximo(long errorMaximo) { this.errorMaximo = errorMaximo; }
+}
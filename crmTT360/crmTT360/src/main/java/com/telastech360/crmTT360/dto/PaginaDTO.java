@@ -0,0 +1,66 @@
+package com.telastech360.crmTT360.dto;
+
+import org.springframework.data.domain.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * DTO genérico con una página de resultados de una búsqueda paginada por número de página.
+ * @param <T> Tipo de los elementos.
+ */
+public class PaginaDTO<T> {
+
+    private List<T> contenido = new ArrayList<>();
+    private int pagina;
+    private int tamano;
+    private long totalElementos;
+    private int totalPaginas;
+
+    /**
+     * Constructor por defecto.
+     */
+    public PaginaDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param contenido Elementos de la página.
+     * @param pagina Número de página (desde 0).
+     * @param tamano Tamaño de página pedido.
+     * @param totalElementos Número total de elementos que cumplen los filtros.
+     * @param totalPaginas Número total de páginas.
+     */
+    public PaginaDTO(List<T> contenido, int pagina, int tamano, long totalElementos, int totalPaginas) {
+        this.contenido = contenido;
+        this.pagina = pagina;
+        this.tamano = tamano;
+        this.totalElementos = totalElementos;
+        this.totalPaginas = totalPaginas;
+    }
+
+    /**
+     * Construye la página de DTOs a partir de una página de entidades.
+     * @param pagina Página de entidades.
+     * @param mapeo Conversión de entidad a DTO.
+     * @return Página de DTOs.
+     * @param <E> Tipo de las entidades.
+     * @param <T> Tipo de los DTOs.
+     */
+    public static <E, T> PaginaDTO<T> de(Page<E> pagina, Function<? super E, T> mapeo) {
+        return new PaginaDTO<>(pagina.getContent().stream().<T>map(mapeo).toList(), pagina.getNumber(),
+                pagina.getSize(), pagina.getTotalElements(), pagina.getTotalPages());
+    }
+
+    public List<T> getContenido() { return contenido; }
+    public void setContenido(List<T> contenido) { this.contenido = contenido; }
+    public int getPagina() { return pagina; }
+    public void setPagina(int pagina) { this.pagina = pagina; }
+    public int getTamano() { return tamano; }
+    public void setTamano(int tamano) { this.tamano = tamano; }
+    public long getTotalElementos() { return totalElementos; }
+    public void setTotalElementos(long totalElementos) { this.totalElementos = totalElementos; }
+    public int getTotalPaginas() { return totalPaginas; }
+    public void setTotalPaginas(int totalPaginas) { this.totalPaginas = totalPaginas; }
+}
@@ -0,0 +1,42 @@
+package com.telastech360.crmTT360.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO para cambiar el estado de varios pedidos a la vez (p. ej. cancelar o completar en lote).
+ */
+public class PedidoEstadoLoteDTO {
+
+    @NotEmpty(message = "Debe indicar al menos un pedido")
+    @Size(max = 1000, message = "No se pueden cambiar más de 1000 pedidos por solicitud")
+    private List<@NotNull Long> pedidoIds = new ArrayList<>();
+
+    @NotNull(message = "El ID del estado destino es obligatorio")
+    private Long estadoId;
+
+    /**
+     * Constructor por defecto.
+     */
+    public PedidoEstadoLoteDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param pedidoIds IDs de los pedidos a cambiar.
+     * @param estadoId ID del estado destino.
+     */
+    public PedidoEstadoLoteDTO(List<Long> pedidoIds, Long estadoId) {
+        this.pedidoIds = pedidoIds;
+        this.estadoId = estadoId;
+    }
+
+    public List<Long> getPedidoIds() { return pedidoIds; }
+    public void setPedidoIds(List<Long> pedidoIds) { this.pedidoIds = pedidoIds; }
+    public Long getEstadoId() { return estadoId; }
+    public void setEstadoId(Long estadoId) { this.estadoId = estadoId; }
+}
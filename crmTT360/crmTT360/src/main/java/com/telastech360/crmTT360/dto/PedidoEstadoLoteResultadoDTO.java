@@ -0,0 +1,55 @@
+package com.telastech360.crmTT360.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO con el resultado de un cambio de estado por lotes: pedidos actualizados, pedidos que ya
+ * estaban en el estado destino y pedidos rechazados con su motivo.
+ */
+public class PedidoEstadoLoteResultadoDTO {
+
+    private Long estadoId;
+    private String estado;
+    private List<Long> actualizados = new ArrayList<>();
+    private List<Long> sinCambios = new ArrayList<>();
+    private List<Rechazo> rechazados = new ArrayList<>();
+    private int itemsConStockRestaurado;
+
+    /**
+     * Constructor por defecto.
+     */
+    public PedidoEstadoLoteResultadoDTO() {
+    }
+
+    /**
+     * Constructor con el estado destino.
+     * @param estadoId ID del estado destino.
+     * @param estado Valor del estado destino.
+     */
+    public PedidoEstadoLoteResultadoDTO(Long estadoId, String estado) {
+        this.estadoId = estadoId;
+        this.estado = estado;
+    }
+
+    public Long getEstadoId() { return estadoId; }
+    public void setEstadoId(Long estadoId) { this.estadoId = estadoId; }
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+    public List<Long> getActualizados() { return actualizados; }
+    public void setActualizados(List<Long> actualizados) { this.actualizados = actualizados; }
+    public List<Long> getSinCambios() { return sinCambios; }
+    public void setSinCambios(List<Long> sinCambios) { this.sinCambios = sinCambios; }
+    public List<Rechazo> getRechazados() { return rechazados; }
+    public void setRechazados(List<Rechazo> rechazados) { this.rechazados = rechazados; }
+    public int getItemsConStockRestaurado() { return itemsConStockRestaurado; }
+    public void setItemsConStockRestaurado(int itemsConStockRestaurado) { this.itemsConStockRestaurado = itemsConStockRestaurado; }
+
+    /**
+     * Pedido cuyo estado no se cambió y el motivo.
+     * @param pedidoId ID del pedido.
+     * @param mensaje Motivo del rechazo.
+     */
+    public record Rechazo(Long pedidoId, String mensaje) {
+    }
+}
@@ -0,0 +1,48 @@
+package com.telastech360.crmTT360.dto;
+
+/**
+ * DTO con el resultado de un pedido dentro de una importación por lotes.
+ */
+public class PedidoLoteResultadoDTO {
+
+    /**
+     * Resultado del pedido.
+     */
+    public enum Estado {
+        CREADO, RECHAZADO, NO_ENCONTRADO, INVALIDO, ERROR
+    }
+
+    private int fila;
+    private Long pedidoId;
+    private Estado estado;
+    private String mensaje;
+
+    /**
+     * Constructor por defecto.
+     */
+    public PedidoLoteResultadoDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param fila Posición del pedido en el lote (desde 0).
+     * @param pedidoId ID del pedido creado (null si no se creó).
+     * @param estado Resultado del pedido.
+     * @param mensaje Detalle del rechazo o error (null si se creó).
+     */
+    public PedidoLoteResultadoDTO(int fila, Long pedidoId, Estado estado, String mensaje) {
+        this.fila = fila;
+        this.pedidoId = pedidoId;
+        this.estado = estado;
+        this.mensaje = mensaje;
+    }
+
+    public int getFila() { return fila; }
+    public void setFila(int fila) { this.fila = fila; }
+    public Long getPedidoId() { return pedidoId; }
+    public void setPedidoId(Long pedidoId) { this.pedidoId = pedidoId; }
+    public Estado getEstado() { return estado; }
+    public void setEstado(Estado estado) { this.estado = estado; }
+    public String getMensaje() { return mensaje; }
+    public void setMensaje(String mensaje) { this.mensaje = mensaje; }
+}
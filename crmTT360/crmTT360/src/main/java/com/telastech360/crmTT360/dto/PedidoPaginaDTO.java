@@ -0,0 +1,34 @@
+package com.telastech360.crmTT360.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO con una página del listado de pedidos paginado por cursor.
+ */
+public class PedidoPaginaDTO {
+
+    private List<PedidoDTO> pedidos = new ArrayList<>();
+    private String siguienteCursor;
+
+    /**
+     * Constructor por defecto.
+     */
+    public PedidoPaginaDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param pedidos Pedidos de la página, del más reciente al más antiguo.
+     * @param siguienteCursor Cursor para pedir la página siguiente (null si es la última).
+     */
+    public PedidoPaginaDTO(List<PedidoDTO> pedidos, String siguienteCursor) {
+        this.pedidos = pedidos;
+        this.siguienteCursor = siguienteCursor;
+    }
+
+    public List<PedidoDTO> getPedidos() { return pedidos; }
+    public void setPedidos(List<PedidoDTO> pedidos) { this.pedidos = pedidos; }
+    public String getSiguienteCursor() { return siguienteCursor; }
+    public void setSiguienteCursor(String siguienteCursor) { this.siguienteCursor = siguienteCursor; }
+}
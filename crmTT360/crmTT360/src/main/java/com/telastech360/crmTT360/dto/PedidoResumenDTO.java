@@ -0,0 +1,56 @@
+package com.telastech360.crmTT360.dto;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * DTO con el resumen de un pedido, para el feed de pedidos recientes del panel principal y el
+ * histórico de pedidos de un cliente.
+ */
+public class PedidoResumenDTO {
+
+    private Long pedidoId;
+    private Long clienteId;
+    private Long estadoId;
+    private String estado;
+    private Timestamp fechaPedido;
+    private BigDecimal total;
+
+    /**
+     * Constructor por defecto.
+     */
+    public PedidoResumenDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param pedidoId ID del pedido.
+     * @param clienteId ID del cliente (puede ser null).
+     * @param estadoId ID del estado del pedido.
+     * @param estado Valor del estado del pedido.
+     * @param fechaPedido Fecha de creación del pedido.
+     * @param total Total del pedido.
+     */
+    public PedidoResumenDTO(Long pedidoId, Long clienteId, Long estadoId, String estado,
+                            Timestamp fechaPedido, BigDecimal total) {
+        this.pedidoId = pedidoId;
+        this.clienteId = clienteId;
+        this.estadoId = estadoId;
+        this.estado = estado;
+        this.fechaPedido = fechaPedido;
+        this.total = total;
+    }
+
+    public Long getPedidoId() { return pedidoId; }
+    public void setPedidoId(Long pedidoId) { this.pedidoId = pedidoId; }
+    public Long getClienteId() { return clienteId; }
+    public void setClienteId(Long clienteId) { this.clienteId = clienteId; }
+    public Long getEstadoId() { return estadoId; }
+    public void setEstadoId(Long estadoId) { this.estadoId = estadoId; }
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+    public Timestamp getFechaPedido() { return fechaPedido; }
+    public void setFechaPedido(Timestamp fechaPedido) { this.fechaPedido = fechaPedido; }
+    public BigDecimal getTotal() { return total; }
+    public void setTotal(BigDecimal total) { this.total = total; }
+}
@@ -0,0 +1,43 @@
+package com.telastech360.crmTT360.dto;
+
+import java.sql.Timestamp;
+
+/**
+ * DTO con la situación de un pedido pendiente respecto a su plazo de servicio (SLA).
+ */
+public class PedidoSlaDTO {
+
+    private Long pedidoId;
+    private Timestamp fechaPedido;
+    private Timestamp fechaLimite;
+    private boolean vencido;
+
+    /**
+     * Constructor por defecto.
+     */
+    public PedidoSlaDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param pedidoId ID del pedido.
+     * @param fechaPedido Fecha de creación del pedido.
+     * @param fechaLimite Fecha límite para atenderlo según el SLA.
+     * @param vencido true si la fecha límite ya pasó.
+     */
+    public PedidoSlaDTO(Long pedidoId, Timestamp fechaPedido, Timestamp fechaLimite, boolean vencido) {
+        this.pedidoId = pedidoId;
+        this.fechaPedido = fechaPedido;
+        this.fechaLimite = fechaLimite;
+        this.vencido = vencido;
+    }
+
+    public Long getPedidoId() { return pedidoId; }
+    public void setPedidoId(Long pedidoId) { this.pedidoId = pedidoId; }
+    public Timestamp getFechaPedido() { return fechaPedido; }
+    public void setFechaPedido(Timestamp fechaPedido) { this.fechaPedido = fechaPedido; }
+    public Timestamp getFechaLimite() { return fechaLimite; }
+    public void setFechaLimite(Timestamp fechaLimite) { this.fechaLimite = fechaLimite; }
+    public boolean isVencido() { return vencido; }
+    public void setVencido(boolean vencido) { this.vencido = vencido; }
+}
@@ -0,0 +1,45 @@
+package com.telastech360.crmTT360.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO con el resumen de la cola de SLA de pedidos pendientes: cuántos hay, cuántos están próximos a
+ * vencer (urgentes) y cuántos ya vencieron, junto con los primeros por fecha límite.
+ */
+public class PedidosSlaResumenDTO {
+
+    private int pendientes;
+    private int urgentes;
+    private int vencidos;
+    private List<PedidoSlaDTO> primeros = new ArrayList<>();
+
+    /**
+     * Constructor por defecto.
+     */
+    public PedidosSlaResumenDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param pendientes Número de pedidos pendientes en la cola.
+     * @param urgentes Número de pedidos en plazo cuya fecha límite cae dentro de la ventana de aviso.
+     * @param vencidos Número de pedidos con la fecha límite ya pasada.
+     * @param primeros Primeros pedidos por fecha límite (los vencidos primero).
+     */
+    public PedidosSlaResumenDTO(int pendientes, int urgentes, int vencidos, List<PedidoSlaDTO> primeros) {
+        this.pendientes = pendientes;
+        this.urgentes = urgentes;
+        this.vencidos = vencidos;
+        this.primeros = primeros;
+    }
+
+    public int getPendientes() { return pendientes; }
+    public void setPendientes(int pendientes) { this.pendientes = pendientes; }
+    public int getUrgentes() { return urgentes; }
+    public void setUrgentes(int urgentes) { this.urgentes = urgentes; }
+    public int getVencidos() { return vencidos; }
+    public void setVencidos(int vencidos) { this.vencidos = vencidos; }
+    public List<PedidoSlaDTO> getPrimeros() { return primeros; }
+    public void setPrimeros(List<PedidoSlaDTO> primeros) { this.primeros = primeros; }
+}
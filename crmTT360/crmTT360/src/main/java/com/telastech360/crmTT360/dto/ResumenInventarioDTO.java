@@ -0,0 +1,45 @@
+package com.telastech360.crmTT360.dto;
+
+import com.telastech360.crmTT360.entity.Item;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO con el resumen de inventario de un tipo de ítem: número de ítems, unidades en stock y valor total.
+ */
+public class ResumenInventarioDTO {
+
+    private Item.TipoItem tipoItem;
+    private Long numeroItems;
+    private Long unidades;
+    private BigDecimal valorTotal;
+
+    /**
+     * Constructor por defecto.
+     */
+    public ResumenInventarioDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param tipoItem Tipo de ítem.
+     * @param numeroItems Número de ítems del tipo.
+     * @param unidades Stock total (incluido el fragmentado) de los ítems del tipo.
+     * @param valorTotal Valor del stock (precio * unidades).
+     */
+    public ResumenInventarioDTO(Item.TipoItem tipoItem, Long numeroItems, Long unidades, BigDecimal valorTotal) {
+        this.tipoItem = tipoItem;
+        this.numeroItems = numeroItems;
+        this.unidades = unidades;
+        this.valorTotal = valorTotal;
+    }
+
+    public Item.TipoItem getTipoItem() { return tipoItem; }
+    public void setTipoItem(Item.TipoItem tipoItem) { this.tipoItem = tipoItem; }
+    public Long getNumeroItems() { return numeroItems; }
+    public void setNumeroItems(Long numeroItems) { this.numeroItems = numeroItems; }
+    public Long getUnidades() { return unidades; }
+    public void setUnidades(Long unidades) { this.unidades = unidades; }
+    public BigDecimal getValorTotal() { return valorTotal; }
+    public void setValorTotal(BigDecimal valorTotal) { this.valorTotal = valorTotal; }
+}
@@ -0,0 +1,54 @@
+package com.telastech360.crmTT360.dto;
+
+import java.sql.Timestamp;
+
+/**
+ * DTO con el estado de una solicitud de creación de pedido recibida en modo asíncrono.
+ */
+public class SolicitudPedidoDTO {
+
+    private String solicitudId;
+    private String estado;
+    private Long pedidoId;
+    private String mensaje;
+    private Timestamp fechaRecepcion;
+    private Timestamp fechaActualizacion;
+
+    /**
+     * Constructor por defecto.
+     */
+    public SolicitudPedidoDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param solicitudId Identificador de seguimiento de la solicitud.
+     * @param estado Estado de la solicitud (EN_COLA, PROCESANDO, COMPLETADA o FALLIDA).
+     * @param pedidoId ID del pedido creado (solo si está COMPLETADA).
+     * @param mensaje Motivo del fallo (solo si está FALLIDA).
+     * @param fechaRecepcion Momento en que se aceptó la solicitud.
+     * @param fechaActualizacion Momento del último cambio de estado.
+     */
+    public SolicitudPedidoDTO(String solicitudId, String estado, Long pedidoId, String mensaje,
+                              Timestamp fechaRecepcion, Timestamp fechaActualizacion) {
+        this.solicitudId = solicitudId;
+        this.estado = estado;
+        this.pedidoId = pedidoId;
+        this.mensaje = mensaje;
+        this.fechaRecepcion = fechaRecepcion;
+        this.fechaActualizacion = fechaActualizacion;
+    }
+
+    public String getSolicitudId() { return solicitudId; }
+    public void setSolicitudId(String solicitudId) { this.solicitudId = solicitudId; }
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+    public Long getPedidoId() { return pedidoId; }
+    public void setPedidoId(Long pedidoId) { this.pedidoId = pedidoId; }
+    public String getMensaje() { return mensaje; }
+    public void setMensaje(String mensaje) { this.mensaje = mensaje; }
+    public Timestamp getFechaRecepcion() { return fechaRecepcion; }
+    public void setFechaRecepcion(Timestamp fechaRecepcion) { this.fechaRecepcion = fechaRecepcion; }
+    public Timestamp getFechaActualizacion() { return fechaActualizacion; }
+    public void setFechaActualizacion(Timestamp fechaActualizacion) { this.fechaActualizacion = fechaActualizacion; }
+}
@@ -0,0 +1,52 @@
+package com.telastech360.crmTT360.dto;
+
+import com.telastech360.crmTT360.entity.Factura.TipoMovimiento;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+
+/**
+ * DTO con el total facturado en un día para un tipo de movimiento.
+ */
+public class TotalFacturadoDiaDTO {
+
+    private Date fecha;
+    private TipoMovimiento tipoMovimiento;
+    private long numeroFacturas;
+    private BigDecimal total;
+    private BigDecimal totalPagado;
+
+    /**
+     * Constructor por defecto.
+     */
+    public TotalFacturadoDiaDTO() {
+    }
+
+    /**
+     * Constructor con parámetros.
+     * @param fecha Día de creación de las facturas.
+     * @param tipoMovimiento Tipo de movimiento (VENTA o COMPRA).
+     * @param numeroFacturas Número de facturas del día.
+     * @param total Suma de los totales de las facturas del día.
+     * @param totalPagado Parte del total correspondiente a facturas pagadas.
+     */
+    public TotalFacturadoDiaDTO(Date fecha, TipoMovimiento tipoMovimiento, long numeroFacturas, BigDecimal total,
+                                BigDecimal totalPagado) {
+        this.fecha = fecha;
+        this.tipoMovimiento = tipoMovimiento;
+        this.numeroFacturas = numeroFacturas;
+        this.total = total;
+        this.totalPagado = totalPagado;
+    }
+
+    public Date getFecha() { return fecha; }
+    public void setFecha(Date fecha) { this.fecha = fecha; }
+    public TipoMovimiento getTipoMovimiento() { return tipoMovimiento; }
+    public void setTipoMovimiento(TipoMovimiento tipoMovimiento) { this.tipoMovimiento = tipoMovimiento; }
+    public long getNumeroFacturas() { return numeroFacturas; }
+    public void setNumeroFacturas(long numeroFacturas) { this.numeroFacturas = numeroFacturas; }
+    public BigDecimal getTotal() { return total; }
+    public void setTotal(BigDecimal total) { this.total = total; }
+    public BigDecimal getTotalPagado() { return totalPagado; }
+    public void setTotalPagado(BigDecimal totalPagado) { this.totalPagado = totalPagado; }
+}
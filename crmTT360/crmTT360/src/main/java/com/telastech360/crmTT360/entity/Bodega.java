@@ -52,12 +52,18 @@ public class Bodega {
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private Timestamp fechaCreacion = new Timestamp(System.currentTimeMillis());
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "bodega", fetch = FetchType.LAZY)
     private List<Item> items = new ArrayList<>();
 
     // Getters y Setters (completos)
     public Long getBodegaId() { return bodegaId; }
     public void setBodegaId(Long bodegaId) { this.bodegaId = bodegaId; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
     public String getNombre() { return nombre; }
     public void setNombre(String nombre) { this.nombre = nombre; }
     public TipoBodega getTipoBodega() { return tipoBodega; }
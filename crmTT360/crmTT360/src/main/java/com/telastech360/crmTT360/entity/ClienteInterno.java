@@ -39,6 +39,10 @@ public class ClienteInterno {
     @Column(nullable = false, updatable = false)
     private Timestamp fechaRegistro = new Timestamp(System.currentTimeMillis());
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     // Enum interno
     public enum TipoCliente {
         INTERNO, EXTERNO
@@ -53,6 +57,14 @@ public class ClienteInterno {
         this.clienteId = clienteId;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getCodigoInterno() {
         return codigoInterno;
     }
@@ -38,6 +38,10 @@ public class Factura {
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private Timestamp fechaCreacion = new Timestamp(System.currentTimeMillis());
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     // Constructores
     public Factura() {}
 
@@ -57,6 +61,8 @@ public class Factura {
     // Getters y Setters
     public Long getFacturaId() { return facturaId; }
     public void setFacturaId(Long facturaId) { this.facturaId = facturaId; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 
     public Pedido getPedido() { return pedido; }
     public void setPedido(Pedido pedido) { this.pedido = pedido; }
@@ -62,6 +62,24 @@ public class Item {
     @Column(name = "stock_maximo")
     private Integer stockMaximo;
 
+    /**
+     * Número de sub-contadores (shards) en los que se reparte el stock; 0 = stock no fragmentado.
+     * Solo se modifica a través de ItemStockShardService.
+     */
+    @Column(name = "stock_shards", nullable = false, insertable = false, updatable = false)
+    private Integer stockShards = 0;
+
+    /**
+     * Columna generada e indexada (stock_disponible < stock_minimo). Es un superconjunto de los ítems
+     * con stock bajo: en los fragmentados hay que sumar además el stock de los shards.
+     */
+    @Column(name = "stock_bajo", insertable = false, updatable = false)
+    private Boolean stockBajo;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(name = "fecha_ingreso", nullable = false, updatable = false)
     private Timestamp fechaIngreso = new Timestamp(System.currentTimeMillis());
 
@@ -120,6 +138,8 @@ public class Item {
     // --- Getters y Setters (sin cambios relevantes, solo asegurar que no haya refs a stock_actual) ---
     public Long getItemId() { return itemId; }
     public void setItemId(Long itemId) { this.itemId = itemId; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
     public String getCodigo() { return codigo; }
     public void setCodigo(String codigo) { this.codigo = codigo; }
     public String getNombre() { return nombre; }
@@ -136,6 +156,10 @@ public class Item {
     public void setStockMinimo(Integer stockMinimo) { this.stockMinimo = stockMinimo; }
     public Integer getStockMaximo() { return stockMaximo; }
     public void setStockMaximo(Integer stockMaximo) { this.stockMaximo = stockMaximo; }
+    public Integer getStockShards() { return stockShards; }
+    public void setStockShards(Integer stockShards) { this.stockShards = stockShards; }
+    public Boolean getStockBajo() { return stockBajo; }
+
     public Timestamp getFechaIngreso() { return fechaIngreso; }
     public void setFechaIngreso(Timestamp fechaIngreso) { this.fechaIngreso = fechaIngreso; }
     public Date getFechaVencimiento() { return fechaVencimiento; }
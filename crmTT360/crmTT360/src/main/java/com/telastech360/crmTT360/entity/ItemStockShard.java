@@ -0,0 +1,76 @@
+package com.telastech360.crmTT360.entity;
+
+import jakarta.persistence.*;
+import java.util.Objects;
+
+/**
+ * Sub-contador de stock de un ítem con stock fragmentado.
+ * El stock efectivo de un ítem es {@code item.stock_disponible} más la suma de sus shards.
+ */
+@Entity
+@Table(name = "item_stock_shard")
+public class ItemStockShard {
+
+    @EmbeddedId
+    private ItemStockShardId id = new ItemStockShardId();
+
+    @Column(name = "stock", nullable = false)
+    private Integer stock = 0;
+
+    public ItemStockShard() {}
+
+    public ItemStockShard(Long itemId, Integer shardNo, Integer stock) {
+        this.id = new ItemStockShardId(itemId, shardNo);
+        this.stock = stock;
+    }
+
+    public ItemStockShardId getId() { return id; }
+    public void setId(ItemStockShardId id) { this.id = id; }
+    public Integer getStock() { return stock; }
+    public void setStock(Integer stock) { this.stock = stock; }
+
+    @Override
+    public String toString() {
+        return "ItemStockShard{" +
+                "itemId=" + (id != null ? id.getItemId() : null) +
+                ", shardNo=" + (id != null ? id.getShardNo() : null) +
+                ", stock=" + stock +
+                '}';
+    }
+
+    // ===================== ID EMBEDDABLE ====================== //
+    @Embeddable
+    public static class ItemStockShardId implements java.io.Serializable {
+        @Column(name = "item_id")
+        private Long itemId;
+
+        @Column(name = "shard_no")
+        private Integer shardNo;
+
+        public ItemStockShardId() {}
+
+        public ItemStockShardId(Long itemId, Integer shardNo) {
+            this.itemId = itemId;
+            this.shardNo = shardNo;
+        }
+
+        public Long getItemId() { return itemId; }
+        public void setItemId(Long itemId) { this.itemId = itemId; }
+        public Integer getShardNo() { return shardNo; }
+        public void setShardNo(Integer shardNo) { this.shardNo = shardNo; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ItemStockShardId that = (ItemStockShardId) o;
+            return Objects.equals(itemId, that.itemId) &&
+                    Objects.equals(shardNo, that.shardNo);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemId, shardNo);
+        }
+    }
+}
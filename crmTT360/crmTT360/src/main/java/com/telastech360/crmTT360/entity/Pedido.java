@@ -2,6 +2,7 @@ package com.telastech360.crmTT360.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
+import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
@@ -32,6 +33,14 @@ public class Pedido {
     @NotNull(message = "El estado del pedido es obligatorio")
     private Estado estado;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Solo se escribe al insertar; después lo ajustan los UPDATE atómicos de PedidoRepository.ajustarTotal
+    @Column(name = "total", nullable = false, updatable = false, columnDefinition = "DECIMAL(14,4)")
+    private BigDecimal total = BigDecimal.ZERO;
+
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<PedidoDetalle> detalles = new ArrayList<>();
 
@@ -70,6 +79,10 @@ public class Pedido {
     // Getters y setters existentes...
     public Long getPedidoId() { return pedidoId; }
     public void setPedidoId(Long pedidoId) { this.pedidoId = pedidoId; }
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+    public BigDecimal getTotal() { return total; }
+    public void setTotal(BigDecimal total) { this.total = total; }
 
     public Timestamp getFechaPedido() { return fechaPedido; }
     public void setFechaPedido(Timestamp fechaPedido) { this.fechaPedido = fechaPedido; }
@@ -0,0 +1,12 @@
+package com.telastech360.crmTT360.exception;
+
+/**
+ * Excepción lanzada cuando la versión indicada por el cliente (cabecera If-Match) no coincide con la
+ * versión actual del recurso, es decir, el recurso cambió desde que el cliente lo leyó.
+ * Generalmente mapeada a HTTP 412 (Precondition Failed).
+ */
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
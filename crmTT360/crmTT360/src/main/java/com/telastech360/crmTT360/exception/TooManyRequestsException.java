@@ -0,0 +1,20 @@
+package com.telastech360.crmTT360.exception;
+
+/**
+ * Excepción lanzada cuando el servidor no puede aceptar más trabajo en este momento (por ejemplo,
+ * la cola de solicitudes asíncronas está llena) y el cliente debe reintentar más tarde.
+ * Generalmente mapeada a HTTP 429 (Too Many Requests) con la cabecera Retry-After.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long segundosReintento;
+
+    public TooManyRequestsException(String message, long segundosReintento) {
+        super(message);
+        this.segundosReintento = segundosReintento;
+    }
+
+    public long getSegundosReintento() {
+        return segundosReintento;
+    }
+}
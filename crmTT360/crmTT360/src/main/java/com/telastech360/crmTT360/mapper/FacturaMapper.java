@@ -26,6 +26,7 @@ public class FacturaMapper {
 
         // --- CAMBIO: Descomentado/Añadido mapeo de IDs ---
         dto.setFacturaId(factura.getFacturaId()); // Mapea el ID de la factura
+        dto.setVersion(factura.getVersion());
 
         if (factura.getPedido() != null) {
             dto.setPedidoId(factura.getPedido().getPedidoId()); // Mapea el ID del pedido
@@ -68,7 +69,7 @@ public class FacturaMapper {
 
     /**
      * Actualiza los campos de una entidad {@link Factura} existente desde un {@link FacturaDTO}.
-     * <strong>Importante:</strong> No actualiza la relación con el Pedido.
+     * <strong>Importante:</strong> No actualiza la relación con el Pedido ni el total.
      *
      * @param dto El DTO {@link FacturaDTO} con los datos actualizados.
      * @param factura La entidad {@link Factura} a actualizar. No realiza ninguna acción si alguno es null.
@@ -76,9 +77,9 @@ public class FacturaMapper {
     public void updateEntityFromDTO(FacturaDTO dto, Factura factura) {
         if (dto == null || factura == null) return;
 
-        // No se actualiza el ID de la factura ni el pedido aquí
+        // No se actualiza el ID de la factura ni el pedido aquí, ni el total: lo calcula el servidor
+        // a partir de los detalles del pedido al crear la factura
         factura.setTipoMovimiento(dto.getTipoMovimiento());
-        factura.setTotal(dto.getTotal());
         factura.setFechaCreacion(dto.getFechaCreacion());
         factura.setEstadoPago(dto.isEstadoPago()); // Actualiza el estado de pago
     }
@@ -10,6 +10,8 @@ import com.telastech360.crmTT360.entity.Proveedor;
 import com.telastech360.crmTT360.entity.Usuario;
 import com.telastech360.crmTT360.entity.Item.TipoItem; // Importar el enum TipoItem
 import com.telastech360.crmTT360.exception.InvalidDataException; // Importar InvalidDataException
+import com.telastech360.crmTT360.service.ItemStockShardService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -20,6 +22,17 @@ import org.springframework.stereotype.Component;
 @Component
 public class ItemMapper {
 
+    private final ItemStockShardService itemStockShardService;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param itemStockShardService Servicio del stock fragmentado, para el stock total de los ítems fragmentados.
+     */
+    @Autowired
+    public ItemMapper(ItemStockShardService itemStockShardService) {
+        this.itemStockShardService = itemStockShardService;
+    }
+
     /**
      * Convierte una entidad {@link Item} (o sus subclases) a un {@link ItemDTO} genérico.
      * Mapea los campos comunes, el ID del ítem y los IDs de las relaciones.
@@ -35,6 +48,7 @@ public class ItemMapper {
 
         // --- CAMBIO: Añadido mapeo de itemId ---
         dto.setItemId(item.getItemId()); // Copiar el ID de la entidad al DTO
+        dto.setVersion(item.getVersion());
 
         // Mapeo de atributos directos (existentes)
         dto.setCodigo(item.getCodigo());
@@ -42,7 +56,7 @@ public class ItemMapper {
         dto.setDescripcion(item.getDescripcion());
         dto.setUnidadMedida(item.getUnidadMedida());
         dto.setPrecio(item.getPrecio());
-        dto.setStockDisponible(item.getStockDisponible());
+        dto.setStockDisponible(itemStockShardService.stockTotal(item)); // Incluye el stock repartido en shards
         dto.setStockMinimo(item.getStockMinimo());
         dto.setStockMaximo(item.getStockMaximo());
         dto.setFechaVencimiento(item.getFechaVencimiento());
@@ -10,6 +10,8 @@ import com.telastech360.crmTT360.entity.Proveedor;
 import com.telastech360.crmTT360.entity.Usuario;
 import com.telastech360.crmTT360.entity.MateriaPrima.TipoMaterial; // Importar el enum TipoMaterial
 import com.telastech360.crmTT360.exception.InvalidDataException; // Importar InvalidDataException
+import com.telastech360.crmTT360.service.ItemStockShardService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -20,6 +22,17 @@ import org.springframework.stereotype.Component;
 @Component
 public class MateriaPrimaMapper {
 
+    private final ItemStockShardService itemStockShardService;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param itemStockShardService Servicio del stock fragmentado, para el stock total de los ítems fragmentados.
+     */
+    @Autowired
+    public MateriaPrimaMapper(ItemStockShardService itemStockShardService) {
+        this.itemStockShardService = itemStockShardService;
+    }
+
     /**
      * Convierte una entidad {@link MateriaPrima} a un {@link MateriaPrimaDTO}.
      * Incluye campos base de Item y campos específicos de MateriaPrima.
@@ -41,7 +54,7 @@ public class MateriaPrimaMapper {
         dto.setDescripcion(materiaPrima.getDescripcion());
         dto.setUnidadMedida(materiaPrima.getUnidadMedida());
         dto.setPrecio(materiaPrima.getPrecio());
-        dto.setStockDisponible(materiaPrima.getStockDisponible());
+        dto.setStockDisponible(itemStockShardService.stockTotal(materiaPrima)); // Incluye el stock repartido en shards
         dto.setStockMinimo(materiaPrima.getStockMinimo());
         dto.setStockMaximo(materiaPrima.getStockMaximo());
         dto.setFechaVencimiento(materiaPrima.getFechaVencimiento());
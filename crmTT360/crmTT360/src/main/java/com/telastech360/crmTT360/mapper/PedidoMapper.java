@@ -43,6 +43,22 @@ public class PedidoMapper {
      * @return El DTO {@link PedidoDTO} poblado, o null si la entrada fue null.
      */
     public PedidoDTO toDTO(Pedido pedido) {
+        if (pedido == null) {
+            return null;
+        }
+        return toDTO(pedido, pedido.getDetalles());
+    }
+
+    /**
+     * Convierte una entidad {@link Pedido} a un {@link PedidoDTO} usando detalles ya cargados,
+     * sin acceder a la colección LAZY del pedido (p. ej. detalles de toda una página obtenidos
+     * con una sola consulta).
+     *
+     * @param pedido La entidad Pedido a convertir. Si es null, retorna null.
+     * @param detallesEntidad Detalles del pedido (puede ser null).
+     * @return El DTO {@link PedidoDTO} poblado, o null si la entrada fue null.
+     */
+    public PedidoDTO toDTO(Pedido pedido, List<PedidoDetalle> detallesEntidad) {
         if (pedido == null) {
             return null;
         }
@@ -68,7 +84,6 @@ public class PedidoMapper {
         // a menos que sean específicamente requeridas por el frontend.
 
         // Mapear la lista de PedidoDetalle a lista de PedidoDetalleDTO
-        List<PedidoDetalle> detallesEntidad = pedido.getDetalles();
         // Forzar inicialización si la carga es LAZY y estamos fuera de una transacción
         // if (!Hibernate.isInitialized(detallesEntidad)) {
         //     Hibernate.initialize(detallesEntidad);
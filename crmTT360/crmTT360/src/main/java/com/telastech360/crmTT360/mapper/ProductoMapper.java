@@ -11,6 +11,8 @@ import com.telastech360.crmTT360.entity.Usuario;
 import com.telastech360.crmTT360.entity.Producto.TipoPrenda; // Importar enum TipoPrenda
 import com.telastech360.crmTT360.entity.Producto.Talla; // Importar enum Talla
 import com.telastech360.crmTT360.exception.InvalidDataException; // Importar InvalidDataException
+import com.telastech360.crmTT360.service.ItemStockShardService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -21,6 +23,17 @@ import org.springframework.stereotype.Component;
 @Component
 public class ProductoMapper {
 
+    private final ItemStockShardService itemStockShardService;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param itemStockShardService Servicio del stock fragmentado, para el stock total de los ítems fragmentados.
+     */
+    @Autowired
+    public ProductoMapper(ItemStockShardService itemStockShardService) {
+        this.itemStockShardService = itemStockShardService;
+    }
+
     /**
      * Convierte una entidad {@link Producto} a un {@link ProductoDTO}.
      * Incluye campos base de Item y campos específicos de Producto.
@@ -42,7 +55,7 @@ public class ProductoMapper {
         dto.setDescripcion(producto.getDescripcion());
         dto.setUnidadMedida(producto.getUnidadMedida());
         dto.setPrecio(producto.getPrecio());
-        dto.setStockDisponible(producto.getStockDisponible());
+        dto.setStockDisponible(itemStockShardService.stockTotal(producto)); // Incluye el stock repartido en shards
         dto.setStockMinimo(producto.getStockMinimo());
         dto.setStockMaximo(producto.getStockMaximo());
         dto.setFechaVencimiento(producto.getFechaVencimiento());
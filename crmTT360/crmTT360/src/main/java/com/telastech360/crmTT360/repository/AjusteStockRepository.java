@@ -0,0 +1,60 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.dto.AjusteStockDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acceso JDBC para los ajustes de stock por lotes: aplica los deltas netos sobre la tabla item y
+ * registra cada ajuste aplicado en ajuste_stock, ambos con lotes JDBC.
+ * Participa en la transacción activa, ya que JdbcTemplate usa la misma conexión.
+ */
+@Repository
+public class AjusteStockRepository {
+
+    private static final String SQL_SUMAR_STOCK =
+            "UPDATE item SET stock_disponible = stock_disponible + ?, version = version + 1 WHERE item_id = ?";
+    private static final String SQL_REGISTRAR_AJUSTE =
+            "INSERT INTO ajuste_stock (item_id, cantidad, motivo) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public AjusteStockRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Suma a cada ítem su delta neto en un único lote JDBC. Se asume que las filas ya fueron
+     * bloqueadas y validadas por el llamador.
+     * @param deltasPorItem Mapa itemId -> delta neto (positivo o negativo).
+     */
+    public void aplicarDeltas(Map<Long, Integer> deltasPorItem) {
+        if (deltasPorItem.isEmpty()) {
+            return;
+        }
+        List<Object[]> parametros = new ArrayList<>(deltasPorItem.size());
+        deltasPorItem.forEach((itemId, delta) -> parametros.add(new Object[]{delta, itemId}));
+        jdbcTemplate.batchUpdate(SQL_SUMAR_STOCK, parametros);
+    }
+
+    /**
+     * Registra los ajustes aplicados en un único lote JDBC.
+     * @param ajustes Ajustes aplicados.
+     */
+    public void registrarAjustes(List<AjusteStockDTO> ajustes) {
+        if (ajustes.isEmpty()) {
+            return;
+        }
+        List<Object[]> parametros = new ArrayList<>(ajustes.size());
+        for (AjusteStockDTO ajuste : ajustes) {
+            parametros.add(new Object[]{ajuste.getItemId(), ajuste.getCantidad(), ajuste.getMotivo()});
+        }
+        jdbcTemplate.batchUpdate(SQL_REGISTRAR_AJUSTE, parametros);
+    }
+}
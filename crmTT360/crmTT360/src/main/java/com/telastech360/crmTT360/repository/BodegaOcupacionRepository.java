@@ -0,0 +1,144 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Acceso JDBC a los contadores materializados de ocupación por bodega (tabla bodega_ocupacion).
+ * Los triggers de item e item_stock_shard solo insertan deltas en bodega_ocupacion_delta; aquí se
+ * trasladan a los contadores, se leen (contadores más deltas pendientes) y se corrigen durante la
+ * conciliación.
+ */
+@Repository
+public class BodegaOcupacionRepository {
+
+    // Contadores y deltas pendientes en una sola sentencia: el job de aplicación mueve ambos en la
+    // misma transacción, así que la instantánea nunca cuenta un delta dos veces ni lo pierde
+    private static final String SQL_OCUPACION_CON_PENDIENTES =
+            "SELECT bodega_id, ocupacion FROM bodega_ocupacion " +
+            "UNION ALL SELECT bodega_id, ocupacion FROM bodega_ocupacion_delta";
+    private static final String SQL_OCUPACION =
+            "SELECT COALESCE(SUM(ocupacion), 0) FROM (" +
+            "SELECT ocupacion FROM bodega_ocupacion WHERE bodega_id = ? " +
+            "UNION ALL SELECT ocupacion FROM bodega_ocupacion_delta WHERE bodega_id = ?) o";
+    private static final String SQL_OCUPACIONES =
+            "SELECT bodega_id, SUM(ocupacion) FROM (" + SQL_OCUPACION_CON_PENDIENTES + ") o GROUP BY bodega_id";
+    // Una sola sentencia: la ocupación real y los contadores se leen de la misma instantánea
+    private static final String SQL_DERIVAS =
+            "SELECT b.bodega_id, COALESCE(r.ocupacion, 0) - COALESCE(c.ocupacion, 0) " +
+            "FROM bodega b " +
+            "LEFT JOIN (SELECT i.bodega_id, SUM(i.stock_disponible) + COALESCE(SUM(s.stock), 0) AS ocupacion " +
+            "           FROM item i " +
+            "           LEFT JOIN (SELECT item_id, SUM(stock) AS stock FROM item_stock_shard GROUP BY item_id) s " +
+            "             ON s.item_id = i.item_id " +
+            "           GROUP BY i.bodega_id) r ON r.bodega_id = b.bodega_id " +
+            "LEFT JOIN (SELECT bodega_id, SUM(ocupacion) AS ocupacion FROM (" + SQL_OCUPACION_CON_PENDIENTES + ") o " +
+            "           GROUP BY bodega_id) c " +
+            "  ON c.bodega_id = b.bodega_id " +
+            "WHERE COALESCE(r.ocupacion, 0) <> COALESCE(c.ocupacion, 0)";
+    private static final String SQL_CORREGIR =
+            "INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion) VALUES (?, 0, ?) " +
+            "ON DUPLICATE KEY UPDATE ocupacion = ocupacion + ?";
+    // SKIP LOCKED: los deltas de transacciones aún abiertas (o ya tomados por otra instancia) se
+    // dejan para la siguiente pasada en lugar de esperar por ellos
+    private static final String SQL_DELTAS_PENDIENTES =
+            "SELECT delta_id, bodega_id, ocupacion FROM bodega_ocupacion_delta " +
+            "ORDER BY delta_id LIMIT ? FOR UPDATE SKIP LOCKED";
+    // Las bodegas eliminadas ya no tienen contadores (ON DELETE CASCADE): sus deltas se descartan
+    private static final String SQL_SUMAR_DELTA =
+            "INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion) " +
+            "SELECT bodega_id, 0, ? FROM bodega WHERE bodega_id = ? " +
+            "ON DUPLICATE KEY UPDATE ocupacion = ocupacion + ?";
+    private static final String SQL_BORRAR_DELTAS = "DELETE FROM bodega_ocupacion_delta WHERE delta_id IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public BodegaOcupacionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Obtiene la ocupación de una bodega sumando sus ranuras y sus deltas pendientes (búsquedas por índice).
+     * @param bodegaId ID de la bodega.
+     * @return Unidades de stock almacenadas en la bodega.
+     */
+    public long obtenerOcupacion(Long bodegaId) {
+        Long ocupacion = jdbcTemplate.queryForObject(SQL_OCUPACION, Long.class, bodegaId, bodegaId);
+        return ocupacion != null ? ocupacion : 0L;
+    }
+
+    /**
+     * Obtiene la ocupación de todas las bodegas con stock.
+     * @return Mapa bodegaId -> ocupación. Las bodegas sin contadores no aparecen.
+     */
+    public Map<Long, Long> obtenerOcupaciones() {
+        Map<Long, Long> ocupaciones = new HashMap<>();
+        jdbcTemplate.query(SQL_OCUPACIONES, rs -> {
+            ocupaciones.put(rs.getLong(1), rs.getLong(2));
+        });
+        return ocupaciones;
+    }
+
+    /**
+     * Compara los contadores con la ocupación recalculada desde item e item_stock_shard.
+     * Es un recorrido completo de ambas tablas: solo lo usa el job de conciliación.
+     * @return Mapa bodegaId -> corrección a sumar al contador (ocupación real - contador), solo para
+     * las bodegas con deriva.
+     */
+    public Map<Long, Long> calcularDerivas() {
+        Map<Long, Long> derivas = new TreeMap<>(); // En orden de bodega, como el job de aplicación
+        jdbcTemplate.query(SQL_DERIVAS, rs -> {
+            derivas.put(rs.getLong(1), rs.getLong(2));
+        });
+        return derivas;
+    }
+
+    /**
+     * Suma las correcciones a la ranura 0 de cada bodega. Al ser incrementales, no pisan los
+     * cambios confirmados después de calcular las derivas.
+     * @param correcciones Mapa bodegaId -> corrección.
+     */
+    public void corregir(Map<Long, Long> correcciones) {
+        List<Object[]> parametros = new ArrayList<>(correcciones.size());
+        correcciones.forEach((bodegaId, correccion) -> parametros.add(new Object[]{bodegaId, correccion, correccion}));
+        jdbcTemplate.batchUpdate(SQL_CORREGIR, parametros);
+    }
+
+    /**
+     * Traslada a bodega_ocupacion un lote de deltas pendientes, sumados por bodega y aplicados en
+     * orden de ID de bodega, y los borra. Debe ejecutarse dentro de una transacción: los deltas quedan
+     * bloqueados hasta que se confirma el traslado.
+     * @param lote Número máximo de deltas a trasladar.
+     * @return Número de deltas trasladados.
+     */
+    public int aplicarPendientes(int lote) {
+        List<Long> deltaIds = new ArrayList<>();
+        Map<Long, Long> porBodega = new TreeMap<>();
+        jdbcTemplate.query(SQL_DELTAS_PENDIENTES, rs -> {
+            deltaIds.add(rs.getLong(1));
+            porBodega.merge(rs.getLong(2), rs.getLong(3), Long::sum);
+        }, lote);
+        if (deltaIds.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> parametros = new ArrayList<>(porBodega.size());
+        porBodega.forEach((bodegaId, delta) -> {
+            if (delta != 0) {
+                parametros.add(new Object[]{delta, bodegaId, delta});
+            }
+        });
+        jdbcTemplate.batchUpdate(SQL_SUMAR_DELTA, parametros);
+        String marcadores = String.join(",", Collections.nCopies(deltaIds.size(), "?"));
+        jdbcTemplate.update(String.format(SQL_BORRAR_DELTAS, marcadores), deltaIds.toArray());
+        return deltaIds.size();
+    }
+}
@@ -3,6 +3,7 @@ package com.telastech360.crmTT360.repository;
 import com.telastech360.crmTT360.entity.Bodega;
 import com.telastech360.crmTT360.entity.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.repository.query.Param;
@@ -11,7 +12,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BodegaRepository extends JpaRepository<Bodega, Long> {
+public interface BodegaRepository extends JpaRepository<Bodega, Long>, JpaSpecificationExecutor<Bodega> {
 
     // <<<--- MÉTODO AÑADIDO --- >>>
     /**
@@ -33,12 +34,21 @@ public interface BodegaRepository extends JpaRepository<Bodega, Long> {
     List<Bodega> findByResponsable(Usuario responsable);
     List<Bodega> findByUbicacionContaining(String ubicacion);
 
-    @Query("SELECT b FROM Bodega b WHERE b.capacidadMaxima > (SELECT COALESCE(SUM(i.stockDisponible), 0) FROM Item i WHERE i.bodega = b)")
+    /**
+     * Busca las bodegas cuya capacidad máxima supera su ocupación actual.
+     * La ocupación se lee de los contadores materializados de bodega_ocupacion más sus deltas
+     * pendientes en lugar de sumar el stock de todos los ítems de cada bodega.
+     * @return Lista de bodegas con capacidad disponible.
+     */
+    @Query(value = "SELECT b.* FROM bodega b " +
+            "LEFT JOIN (SELECT bodega_id, SUM(ocupacion) AS ocupacion FROM (" +
+            "           SELECT bodega_id, ocupacion FROM bodega_ocupacion " +
+            "           UNION ALL SELECT bodega_id, ocupacion FROM bodega_ocupacion_delta) c GROUP BY bodega_id) o " +
+            "ON o.bodega_id = b.bodega_id " +
+            "WHERE b.capacidad_maxima > COALESCE(o.ocupacion, 0)", nativeQuery = true)
     List<Bodega> findBodegasConCapacidadDisponible();
 
     @Query("SELECT CASE WHEN COUNT(i) > 0 THEN true ELSE false END FROM Item i WHERE i.bodega.bodegaId = :bodegaId")
     boolean existsBodegaWithItems(@Param("bodegaId") Long bodegaId);
 
-    @Query("SELECT b FROM Bodega b WHERE (:nombre IS NULL OR b.nombre LIKE %:nombre%) AND (:tipo IS NULL OR b.tipoBodega = :tipo) AND (:estadoId IS NULL OR b.estado.estadoId = :estadoId)")
-    List<Bodega> buscarBodegasFiltradas(@Param("nombre") String nombre, @Param("tipo") Bodega.TipoBodega tipo, @Param("estadoId") Long estadoId);
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Acceso JDBC a la tabla clave_idempotencia. La reserva de una clave es un INSERT sobre la clave
+ * primaria (operacion, clave): la base de datos decide qué solicitud llegó primero aunque haya
+ * varias instancias de la aplicación. La fecha de creación de la reserva (en segundos exactos)
+ * identifica a la solicitud que la tiene, de modo que completar o liberar una reserva que otra
+ * solicitud ya reclamó no tiene efecto.
+ */
+@Repository
+public class ClaveIdempotenciaRepository {
+
+    private static final String EN_CURSO = "EN_CURSO";
+    private static final String COMPLETADA = "COMPLETADA";
+
+    private static final String SQL_RESERVAR =
+            "INSERT INTO clave_idempotencia (operacion, clave, huella, estado, fecha_creacion, fecha_expiracion) "
+                    + "VALUES (?, ?, ?, '" + EN_CURSO + "', ?, ?)";
+    private static final String SQL_BUSCAR =
+            "SELECT huella, estado, respuesta, fecha_creacion, fecha_expiracion FROM clave_idempotencia "
+                    + "WHERE operacion = ? AND clave = ?";
+    private static final String SQL_RECLAMAR =
+            "UPDATE clave_idempotencia SET huella = ?, estado = '" + EN_CURSO + "', respuesta = NULL, "
+                    + "fecha_creacion = ?, fecha_expiracion = ? WHERE operacion = ? AND clave = ? AND fecha_creacion = ?";
+    private static final String SQL_COMPLETAR =
+            "UPDATE clave_idempotencia SET estado = '" + COMPLETADA + "', respuesta = ? "
+                    + "WHERE operacion = ? AND clave = ? AND fecha_creacion = ? AND estado = '" + EN_CURSO + "'";
+    private static final String SQL_LIBERAR =
+            "DELETE FROM clave_idempotencia WHERE operacion = ? AND clave = ? AND fecha_creacion = ? "
+                    + "AND estado = '" + EN_CURSO + "'";
+    private static final String SQL_ELIMINAR_CADUCADAS =
+            "DELETE FROM clave_idempotencia WHERE fecha_expiracion < ? LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ClaveIdempotenciaRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reserva una clave en estado EN_CURSO.
+     * @return true si se reservó; false si la clave ya existe.
+     */
+    public boolean reservar(String operacion, String clave, String huella, Timestamp creacion, Timestamp expiracion) {
+        try {
+            jdbcTemplate.update(SQL_RESERVAR, operacion, clave, huella, creacion, expiracion);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Busca el registro de una clave.
+     * @return El registro, o vacío si la clave no existe.
+     */
+    public Optional<Registro> buscar(String operacion, String clave) {
+        List<Registro> registros = jdbcTemplate.query(SQL_BUSCAR, (rs, fila) -> new Registro(
+                rs.getString("huella"),
+                COMPLETADA.equals(rs.getString("estado")),
+                rs.getString("respuesta"),
+                rs.getTimestamp("fecha_creacion"),
+                rs.getTimestamp("fecha_expiracion")), operacion, clave);
+        return registros.stream().findFirst();
+    }
+
+    /**
+     * Vuelve a reservar una clave caducada o abandonada en curso. La fecha de creación leída actúa
+     * como versión: si otra solicitud la reclamó antes, no se modifica nada.
+     * @return true si se reclamó la clave.
+     */
+    public boolean reclamar(String operacion, String clave, String huella, Timestamp creacionLeida,
+                            Timestamp creacion, Timestamp expiracion) {
+        return jdbcTemplate.update(SQL_RECLAMAR, huella, creacion, expiracion, operacion, clave, creacionLeida) == 1;
+    }
+
+    /**
+     * Guarda la respuesta de una clave reservada y la marca como COMPLETADA. Participa en la
+     * transacción activa, de modo que se confirma junto con el recurso creado.
+     * @return true si la clave seguía reservada por esta solicitud.
+     */
+    public boolean completar(String operacion, String clave, Timestamp creacion, String respuesta) {
+        return jdbcTemplate.update(SQL_COMPLETAR, respuesta, operacion, clave, creacion) == 1;
+    }
+
+    /**
+     * Elimina una reserva en curso cuya operación falló, para que el cliente pueda reintentar.
+     */
+    public void liberar(String operacion, String clave, Timestamp creacion) {
+        jdbcTemplate.update(SQL_LIBERAR, operacion, clave, creacion);
+    }
+
+    /**
+     * Elimina hasta {@code limite} claves caducadas.
+     * @return Número de claves eliminadas.
+     */
+    public int eliminarCaducadas(Timestamp ahora, int limite) {
+        return jdbcTemplate.update(SQL_ELIMINAR_CADUCADAS, ahora, limite);
+    }
+
+    /**
+     * Registro de una clave de idempotencia.
+     * @param huella SHA-256 de la solicitud original.
+     * @param completada true si la operación terminó y su respuesta está guardada.
+     * @param respuesta Respuesta serializada en JSON (null mientras está en curso).
+     * @param fechaCreacion Momento de la reserva.
+     * @param fechaExpiracion Momento a partir del cual la clave caduca.
+     */
+    public record Registro(String huella, boolean completada, String respuesta,
+                           Timestamp fechaCreacion, Timestamp fechaExpiracion) {
+    }
+}
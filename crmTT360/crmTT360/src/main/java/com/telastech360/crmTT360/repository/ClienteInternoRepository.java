@@ -2,13 +2,14 @@ package com.telastech360.crmTT360.repository;
 
 import com.telastech360.crmTT360.entity.ClienteInterno;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface ClienteInternoRepository extends JpaRepository<ClienteInterno, Long> {
+public interface ClienteInternoRepository extends JpaRepository<ClienteInterno, Long>, JpaSpecificationExecutor<ClienteInterno> {
 
     // Métodos básicos de consulta
     boolean existsByCodigoInterno(String codigoInterno);
@@ -32,12 +33,4 @@ public interface ClienteInternoRepository extends JpaRepository<ClienteInterno,
     @Query("SELECT COUNT(p) FROM Pedido p WHERE p.cliente.clienteId = :clienteId")
     long countPedidosByClienteId(Long clienteId);
 
-    @Query("SELECT c FROM ClienteInterno c WHERE " +
-            "(:codigo IS NULL OR c.codigoInterno LIKE %:codigo%) AND " +
-            "(:nombre IS NULL OR c.nombre LIKE %:nombre%) AND " +
-            "(:tipo IS NULL OR c.tipo = :tipo) AND " +
-            "(:responsableId IS NULL OR c.responsable.id = :responsableId)")
-    List<ClienteInterno> busquedaAvanzada(String codigo, String nombre,
-                                          ClienteInterno.TipoCliente tipo,
-                                          Long responsableId);
 }
\ No newline at end of file
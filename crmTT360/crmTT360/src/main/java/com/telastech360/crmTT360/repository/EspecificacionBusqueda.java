@@ -0,0 +1,111 @@
+package com.telastech360.crmTT360.repository;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Constructor de {@link Specification} para las búsquedas avanzadas con filtros opcionales.
+ * <p>
+ * Cada método añade un predicado solo si el valor del filtro está informado; los filtros vacíos no
+ * generan SQL. Así la consulta final contiene únicamente las condiciones realmente pedidas y MySQL
+ * puede elegir el índice adecuado, en lugar de evaluar "(:p IS NULL OR col = :p)" para cada fila.
+ * Las búsquedas de texto son por prefijo (LIKE 'x%'), que se resuelven con un rango del índice.
+ * <p>
+ * Las rutas de atributos admiten navegación con puntos (p. ej. "cliente.clienteId"); acceder al ID
+ * de una relación usa directamente la clave foránea, sin JOIN.
+ * @param <T> Entidad buscada.
+ */
+public final class EspecificacionBusqueda<T> {
+
+    private static final char ESCAPE = '\\';
+
+    private final List<Specification<T>> predicados = new ArrayList<>();
+
+    private EspecificacionBusqueda() {
+    }
+
+    /**
+     * Inicia una búsqueda sobre una entidad.
+     * @param entidad Clase de la entidad (solo para inferir el tipo).
+     * @return Constructor vacío.
+     * @param <T> Entidad buscada.
+     */
+    public static <T> EspecificacionBusqueda<T> de(Class<T> entidad) {
+        return new EspecificacionBusqueda<>();
+    }
+
+    /**
+     * Añade "ruta = valor" si el valor no es null.
+     */
+    public EspecificacionBusqueda<T> igual(String ruta, Object valor) {
+        if (valor != null) {
+            predicados.add((root, query, cb) -> cb.equal(ruta(root, ruta), valor));
+        }
+        return this;
+    }
+
+    /**
+     * Añade "ruta >= valor" si el valor no es null.
+     */
+    public <Y extends Comparable<? super Y>> EspecificacionBusqueda<T> desde(String ruta, Y valor) {
+        if (valor != null) {
+            predicados.add((root, query, cb) -> cb.greaterThanOrEqualTo(ruta(root, ruta), valor));
+        }
+        return this;
+    }
+
+    /**
+     * Añade "ruta <= valor" si el valor no es null.
+     */
+    public <Y extends Comparable<? super Y>> EspecificacionBusqueda<T> hasta(String ruta, Y valor) {
+        if (valor != null) {
+            predicados.add((root, query, cb) -> cb.lessThanOrEqualTo(ruta(root, ruta), valor));
+        }
+        return this;
+    }
+
+    /**
+     * Añade "ruta LIKE 'prefijo%'" si el prefijo no está vacío. Los comodines % y _ del prefijo se
+     * escapan para que se comparen literalmente.
+     */
+    public EspecificacionBusqueda<T> empiezaPor(String ruta, String prefijo) {
+        if (prefijo != null && !prefijo.isBlank()) {
+            String patron = escaparLike(prefijo.trim()) + "%";
+            predicados.add((root, query, cb) -> cb.like(ruta(root, ruta), patron, ESCAPE));
+        }
+        return this;
+    }
+
+    /**
+     * Combina con AND los predicados añadidos.
+     * @return La especificación, o una que no filtra nada si no se informó ningún filtro.
+     */
+    public Specification<T> construir() {
+        return Specification.allOf(predicados);
+    }
+
+    static String escaparLike(String texto) {
+        StringBuilder sb = new StringBuilder(texto.length() + 4);
+        for (char c : texto.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                sb.append(ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static <Y> Path<Y> ruta(Root<?> root, String ruta) {
+        Path<?> path = root;
+        for (String atributo : ruta.split("\\.")) {
+            path = path.get(atributo);
+        }
+        @SuppressWarnings("unchecked")
+        Path<Y> tipado = (Path<Y>) path;
+        return tipado;
+    }
+}
@@ -0,0 +1,55 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.entity.Factura;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Acceso JDBC de solo lectura a las facturas pendientes de pago para el informe de antigüedad de saldos.
+ * Las filas se entregan una a una mientras se leen del servidor, sin cargar entidades ni listas.
+ */
+@Repository
+public class FacturaAntiguedadRepository {
+
+    // Rango estado_pago = FALSE de idx_factura_estado_pago_fecha; el cliente se obtiene por clave primaria
+    private static final String SQL_PENDIENTES =
+            "SELECT p.cliente_id, c.nombre, f.tipo_movimiento, f.fecha_creacion, f.total " +
+            "FROM factura f JOIN pedido p ON p.pedido_id = f.pedido_id " +
+            "LEFT JOIN cliente_interno c ON c.cliente_id = p.cliente_id " +
+            "WHERE f.estado_pago = FALSE";
+
+    private final JdbcTemplate jdbcTemplateStreaming;
+
+    @Autowired
+    public FacturaAntiguedadRepository(JdbcTemplate jdbcTemplate) {
+        // Con fetchSize Integer.MIN_VALUE el driver de MySQL lee el resultado fila a fila en lugar de
+        // cargarlo entero en memoria
+        this.jdbcTemplateStreaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplateStreaming.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Recorre en una sola pasada todas las facturas pendientes de pago.
+     * @param consumidor Recibe cada factura; no debe acceder a la base de datos mientras dura el recorrido.
+     */
+    public void recorrerPendientes(ConsumidorFacturaPendiente consumidor) {
+        jdbcTemplateStreaming.query(SQL_PENDIENTES, rs -> {
+            long clienteId = rs.getLong(1);
+            consumidor.aceptar(rs.wasNull() ? null : clienteId, rs.getString(2),
+                    Factura.TipoMovimiento.valueOf(rs.getString(3)), rs.getTimestamp(4), rs.getBigDecimal(5));
+        });
+    }
+
+    /**
+     * Receptor de las facturas pendientes recorridas por {@link #recorrerPendientes(ConsumidorFacturaPendiente)}.
+     */
+    @FunctionalInterface
+    public interface ConsumidorFacturaPendiente {
+        void aceptar(Long clienteId, String clienteNombre, Factura.TipoMovimiento tipoMovimiento,
+                     Timestamp fechaCreacion, BigDecimal total);
+    }
+}
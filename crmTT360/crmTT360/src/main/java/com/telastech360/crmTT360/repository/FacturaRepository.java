@@ -3,6 +3,7 @@ package com.telastech360.crmTT360.repository;
 import com.telastech360.crmTT360.entity.Factura;
 import com.telastech360.crmTT360.entity.Factura.TipoMovimiento;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,7 +16,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface FacturaRepository extends JpaRepository<Factura, Long> {
+public interface FacturaRepository extends JpaRepository<Factura, Long>, JpaSpecificationExecutor<Factura> {
 
     // ========== MÉTODOS CRUD BÁSICOS ========== //
     List<Factura> findByTipoMovimiento(TipoMovimiento tipo);
@@ -29,12 +30,7 @@ public interface FacturaRepository extends JpaRepository<Factura, Long> {
     List<Factura> findFacturasPendientesDePago();
     // -------------------------------------------------------
 
-
-    @Query("SELECT FUNCTION('DATE', f.fechaCreacion), SUM(f.total) " +
-            "FROM Factura f " +
-            "WHERE f.fechaCreacion BETWEEN :inicio AND :fin " +
-            "GROUP BY FUNCTION('DATE', f.fechaCreacion)")
-    List<Object[]> getTotalFacturadoPorDia(@Param("inicio") Timestamp inicio, @Param("fin") Timestamp fin);
+    // El total facturado por día se lee de la tabla rollup factura_resumen_diario (FacturaResumenDiarioRepository)
 
     @Query("SELECT f FROM Factura f WHERE f.total > :montoMinimo ORDER BY f.total DESC")
     List<Factura> findFacturasConTotalMayorA(@Param("montoMinimo") BigDecimal montoMinimo);
@@ -57,21 +53,6 @@ public interface FacturaRepository extends JpaRepository<Factura, Long> {
     int actualizarEstadoPago(@Param("id") Long id, @Param("estadoPago") boolean estadoPago);
     // -------------------------------------------------------
 
-    @Query("SELECT f FROM Factura f WHERE " +
-            // Corregido: Usar el nombre real de la propiedad ID en Pedido (pedidoId) y añadir @Param
-            "(:pedidoId IS NULL OR f.pedido.pedidoId = :pedidoId) AND " +
-            "(:tipoMovimiento IS NULL OR f.tipoMovimiento = :tipoMovimiento) AND " +
-            "(:minTotal IS NULL OR f.total >= :minTotal) AND " +
-            "(:maxTotal IS NULL OR f.total <= :maxTotal) AND " +
-            // Asegúrate que el nombre de la propiedad sea 'estadoPago' si es un boolean
-            "(:estadoPago IS NULL OR f.estadoPago = :estadoPago)")
-    List<Factura> busquedaAvanzada(
-            @Param("pedidoId") Long pedidoId,
-            @Param("tipoMovimiento") TipoMovimiento tipoMovimiento,
-            @Param("minTotal") BigDecimal minTotal,
-            @Param("maxTotal") BigDecimal maxTotal,
-            @Param("estadoPago") Boolean estadoPago); // Usar Boolean para permitir NULL en el filtro
-
     // Si necesitas buscar por ID de Factura, usa el método findById(Long id) de JpaRepository
     // Asumo que el ID de Factura es Long y se llama 'facturaId'
     // Optional<Factura> findByFacturaId(Long facturaId); // Si necesitas buscar por el nombre real del ID
@@ -0,0 +1,103 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.dto.TotalFacturadoDiaDTO;
+import com.telastech360.crmTT360.entity.Factura;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acceso JDBC a la tabla rollup factura_resumen_diario (número de facturas, total y total pagado por
+ * día y tipo de movimiento). La tabla la mantienen los triggers de factura y factura_archivo; aquí solo
+ * se lee y se corrige durante la conciliación.
+ */
+@Repository
+public class FacturaResumenDiarioRepository {
+
+    // Rango sobre la primera columna de la clave primaria: lee solo las ranuras de los días pedidos
+    private static final String SQL_TOTALES_POR_DIA =
+            "SELECT dia, tipo_movimiento, SUM(num_facturas), SUM(total), SUM(total_pagado) FROM factura_resumen_diario " +
+            "WHERE dia BETWEEN ? AND ? AND (? IS NULL OR tipo_movimiento = ?) " +
+            "GROUP BY dia, tipo_movimiento HAVING SUM(num_facturas) > 0 ORDER BY dia, tipo_movimiento";
+    // Una sola sentencia: el recálculo y el rollup se leen de la misma instantánea
+    private static final String SQL_DIFERENCIAS =
+            "SELECT k.dia, k.tipo_movimiento, " +
+            "       COALESCE(r.num_facturas, 0) - COALESCE(c.num_facturas, 0), " +
+            "       COALESCE(r.total, 0) - COALESCE(c.total, 0), " +
+            "       COALESCE(r.total_pagado, 0) - COALESCE(c.total_pagado, 0) " +
+            "FROM (SELECT dia, tipo_movimiento FROM factura_resumen_diario WHERE dia >= ? " +
+            "      UNION SELECT DATE(fecha_creacion), tipo_movimiento FROM factura WHERE fecha_creacion >= ? " +
+            "      UNION SELECT DATE(fecha_creacion), tipo_movimiento FROM factura_archivo WHERE fecha_creacion >= ?) k " +
+            "LEFT JOIN (SELECT DATE(f.fecha_creacion) AS dia, f.tipo_movimiento, COUNT(*) AS num_facturas, " +
+            "                  SUM(f.total) AS total, SUM(CASE WHEN f.estado_pago THEN f.total ELSE 0 END) AS total_pagado " +
+            "           FROM (SELECT fecha_creacion, tipo_movimiento, total, estado_pago FROM factura WHERE fecha_creacion >= ? " +
+            "                 UNION ALL " +
+            "                 SELECT fecha_creacion, tipo_movimiento, total, estado_pago FROM factura_archivo WHERE fecha_creacion >= ?) f " +
+            "           GROUP BY DATE(f.fecha_creacion), f.tipo_movimiento) r " +
+            "  ON r.dia = k.dia AND r.tipo_movimiento = k.tipo_movimiento " +
+            "LEFT JOIN (SELECT dia, tipo_movimiento, SUM(num_facturas) AS num_facturas, SUM(total) AS total, " +
+            "                  SUM(total_pagado) AS total_pagado " +
+            "           FROM factura_resumen_diario WHERE dia >= ? GROUP BY dia, tipo_movimiento) c " +
+            "  ON c.dia = k.dia AND c.tipo_movimiento = k.tipo_movimiento " +
+            "WHERE COALESCE(r.num_facturas, 0) <> COALESCE(c.num_facturas, 0) " +
+            "   OR COALESCE(r.total, 0) <> COALESCE(c.total, 0) " +
+            "   OR COALESCE(r.total_pagado, 0) <> COALESCE(c.total_pagado, 0)";
+    private static final String SQL_CORREGIR =
+            "INSERT INTO factura_resumen_diario (dia, tipo_movimiento, ranura, num_facturas, total, total_pagado) " +
+            "VALUES (?, ?, 0, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE num_facturas = num_facturas + ?, total = total + ?, total_pagado = total_pagado + ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public FacturaResumenDiarioRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Lee del rollup el total facturado por día y tipo de movimiento.
+     * @param desde Primer día (inclusive).
+     * @param hasta Último día (inclusive).
+     * @param tipoMovimiento Tipo de movimiento para filtrar (null para ambos).
+     * @return Totales por día y tipo, en orden de día; los días sin facturas no aparecen.
+     */
+    public List<TotalFacturadoDiaDTO> obtenerTotalesPorDia(Date desde, Date hasta, Factura.TipoMovimiento tipoMovimiento) {
+        String tipo = tipoMovimiento != null ? tipoMovimiento.name() : null;
+        return jdbcTemplate.query(SQL_TOTALES_POR_DIA, (rs, i) -> new TotalFacturadoDiaDTO(rs.getDate(1),
+                        Factura.TipoMovimiento.valueOf(rs.getString(2)), rs.getLong(3), rs.getBigDecimal(4), rs.getBigDecimal(5)),
+                desde, hasta, tipo, tipo);
+    }
+
+    /**
+     * Compara el rollup con un recálculo desde factura y factura_archivo a partir de un día.
+     * Recorre las facturas del periodo: solo lo usa el job de conciliación.
+     * @param desde Primer día a comprobar.
+     * @return Lista de Object[] con [dia (Date), tipo_movimiento (String), corrección de número de facturas (Long),
+     * de total (BigDecimal) y de total pagado (BigDecimal)], solo para las claves con deriva.
+     */
+    public List<Object[]> calcularDiferencias(Date desde) {
+        return jdbcTemplate.query(SQL_DIFERENCIAS, (rs, i) -> new Object[]{
+                        rs.getDate(1), rs.getString(2), rs.getLong(3), rs.getBigDecimal(4), rs.getBigDecimal(5)},
+                desde, desde, desde, desde, desde, desde);
+    }
+
+    /**
+     * Suma las correcciones a la ranura 0 de cada clave. Al ser incrementales, no pisan los cambios
+     * confirmados después de calcular las diferencias.
+     * @param correcciones Filas devueltas por {@link #calcularDiferencias(Date)}.
+     */
+    public void corregir(List<Object[]> correcciones) {
+        List<Object[]> parametros = new ArrayList<>(correcciones.size());
+        for (Object[] c : correcciones) {
+            BigDecimal total = (BigDecimal) c[3];
+            BigDecimal totalPagado = (BigDecimal) c[4];
+            parametros.add(new Object[]{c[0], c[1], c[2], total, totalPagado, c[2], total, totalPagado});
+        }
+        jdbcTemplate.batchUpdate(SQL_CORREGIR, parametros);
+    }
+}
@@ -0,0 +1,164 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.dto.FacturacionMasivaDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Acceso JDBC para la facturación masiva: localiza pedidos completados sin factura, inserta sus
+ * facturas por lotes (batch JDBC) y guarda el avance de cada ejecución en facturacion_masiva.
+ * Participa en la transacción activa, ya que JdbcTemplate usa la misma conexión.
+ */
+@Repository
+public class FacturacionMasivaRepository {
+
+    // Anti-join por clave ascendente: solo pedidos COMPLETADO posteriores al último procesado y sin ninguna factura
+    private static final String SQL_BLOQUEAR_SIN_FACTURA =
+            "SELECT p.pedido_id FROM pedido p JOIN estado e ON e.estado_id = p.estado_id " +
+            "WHERE e.valor = 'COMPLETADO' AND p.pedido_id > ? " +
+            "AND NOT EXISTS (SELECT 1 FROM factura f WHERE f.pedido_id = p.pedido_id) " +
+            "ORDER BY p.pedido_id LIMIT ? FOR UPDATE OF p";
+    private static final String SQL_PEDIDOS_FACTURADOS = "SELECT DISTINCT pedido_id FROM factura WHERE pedido_id IN (%s)";
+    private static final String SQL_INSERTAR_FACTURA =
+            "INSERT INTO factura (pedido_id, tipo_movimiento, total, estado_pago, fecha_creacion, version) " +
+            "VALUES (?, 'VENTA', ?, FALSE, ?, 0)";
+    private static final String SQL_CREAR_EJECUCION =
+            "INSERT INTO facturacion_masiva (estado, fecha_inicio, fecha_actualizacion) VALUES ('EN_CURSO', ?, ?)";
+    private static final String SQL_REGISTRAR_AVANCE =
+            "UPDATE facturacion_masiva SET ultimo_pedido_id = ?, pedidos_facturados = pedidos_facturados + ?, " +
+            "pedidos_omitidos = pedidos_omitidos + ?, total_facturado = total_facturado + ?, fecha_actualizacion = ? " +
+            "WHERE ejecucion_id = ?";
+    private static final String SQL_FINALIZAR =
+            "UPDATE facturacion_masiva SET estado = ?, mensaje = ?, fecha_actualizacion = ?, fecha_fin = ? WHERE ejecucion_id = ?";
+    private static final String SQL_SELECT_EJECUCION =
+            "SELECT ejecucion_id, estado, ultimo_pedido_id, pedidos_facturados, pedidos_omitidos, total_facturado, " +
+            "fecha_inicio, fecha_actualizacion, fecha_fin, mensaje FROM facturacion_masiva ";
+
+    private static final RowMapper<FacturacionMasivaDTO> EJECUCION = (rs, i) -> new FacturacionMasivaDTO(
+            rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getInt(4), rs.getInt(5), rs.getBigDecimal(6),
+            rs.getTimestamp(7), rs.getTimestamp(8), rs.getTimestamp(9), rs.getString(10));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public FacturacionMasivaRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Bloquea el siguiente tramo de pedidos completados sin factura, por ID ascendente.
+     * @param despuesDePedidoId Solo pedidos con ID mayor que este.
+     * @param tamanoLote Número máximo de pedidos.
+     * @return IDs de los pedidos bloqueados, en orden ascendente (vacío si no queda ninguno).
+     */
+    public List<Long> bloquearPedidosSinFactura(long despuesDePedidoId, int tamanoLote) {
+        return jdbcTemplate.queryForList(SQL_BLOQUEAR_SIN_FACTURA, Long.class, despuesDePedidoId, tamanoLote);
+    }
+
+    /**
+     * Indica cuáles de los pedidos tienen ya alguna factura. Se consulta después de bloquear los pedidos
+     * para descartar los que otra ejecución facturó mientras se esperaba el bloqueo.
+     * @param pedidoIds IDs de los pedidos.
+     * @return IDs de los pedidos con factura.
+     */
+    public Set<Long> buscarPedidosFacturados(List<Long> pedidoIds) {
+        if (pedidoIds.isEmpty()) {
+            return Set.of();
+        }
+        String marcadores = String.join(",", Collections.nCopies(pedidoIds.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(String.format(SQL_PEDIDOS_FACTURADOS, marcadores), Long.class,
+                pedidoIds.toArray()));
+    }
+
+    /**
+     * Inserta una factura de VENTA pendiente de pago por pedido, en un único batch JDBC.
+     * @param totales Mapa pedidoId -> total de la factura.
+     * @param fechaCreacion Fecha de creación de las facturas.
+     * @return Número de facturas insertadas.
+     */
+    public int insertarFacturas(Map<Long, BigDecimal> totales, Timestamp fechaCreacion) {
+        List<Map.Entry<Long, BigDecimal>> filas = new ArrayList<>(totales.entrySet());
+        jdbcTemplate.batchUpdate(SQL_INSERTAR_FACTURA, filas, filas.size(), (ps, fila) -> {
+            ps.setLong(1, fila.getKey());
+            ps.setBigDecimal(2, fila.getValue());
+            ps.setTimestamp(3, fechaCreacion);
+        });
+        return filas.size();
+    }
+
+    /**
+     * Registra una nueva ejecución EN_CURSO.
+     * @param fechaInicio Inicio de la ejecución.
+     * @return ID de la ejecución.
+     */
+    public Long crearEjecucion(Timestamp fechaInicio) {
+        KeyHolder claves = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_CREAR_EJECUCION, Statement.RETURN_GENERATED_KEYS);
+            ps.setTimestamp(1, fechaInicio);
+            ps.setTimestamp(2, fechaInicio);
+            return ps;
+        }, claves);
+        return claves.getKey().longValue();
+    }
+
+    /**
+     * Acumula el avance de un lote confirmado en la ejecución.
+     * @param ejecucionId ID de la ejecución.
+     * @param ultimoPedidoId ID del último pedido del lote.
+     * @param facturados Pedidos facturados en el lote.
+     * @param omitidos Pedidos omitidos en el lote.
+     * @param total Importe facturado en el lote.
+     * @param fecha Momento del avance.
+     */
+    public void registrarAvance(Long ejecucionId, long ultimoPedidoId, int facturados, int omitidos,
+                                BigDecimal total, Timestamp fecha) {
+        jdbcTemplate.update(SQL_REGISTRAR_AVANCE, ultimoPedidoId, facturados, omitidos, total, fecha, ejecucionId);
+    }
+
+    /**
+     * Cierra una ejecución.
+     * @param ejecucionId ID de la ejecución.
+     * @param estado Estado final (COMPLETADA o FALLIDA).
+     * @param mensaje Motivo del fallo (null si terminó bien).
+     * @param fecha Momento del cierre.
+     */
+    public void finalizar(Long ejecucionId, String estado, String mensaje, Timestamp fecha) {
+        jdbcTemplate.update(SQL_FINALIZAR, estado, mensaje, fecha, fecha, ejecucionId);
+    }
+
+    /**
+     * Busca una ejecución por su ID.
+     * @param ejecucionId ID de la ejecución.
+     * @return La ejecución, si existe.
+     */
+    public Optional<FacturacionMasivaDTO> buscarEjecucion(Long ejecucionId) {
+        return jdbcTemplate.query(SQL_SELECT_EJECUCION + "WHERE ejecucion_id = ?", EJECUCION, ejecucionId)
+                .stream().findFirst();
+    }
+
+    /**
+     * Busca la ejecución EN_CURSO más reciente, que tras una caída de la aplicación queda sin terminar.
+     * @return La ejecución interrumpida, si existe.
+     */
+    public Optional<FacturacionMasivaDTO> buscarEjecucionEnCurso() {
+        return jdbcTemplate.query(SQL_SELECT_EJECUCION + "WHERE estado = 'EN_CURSO' ORDER BY ejecucion_id DESC LIMIT 1",
+                EJECUCION).stream().findFirst();
+    }
+}
@@ -0,0 +1,75 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Acceso JDBC de solo lectura a las líneas de pedidos no cancelados, con las dimensiones del ítem,
+ * para cargar el almacén columnar de ventas del panel. Las filas se entregan una a una mientras se
+ * leen del servidor.
+ */
+@Repository
+public class HechosVentaRepository {
+
+    private static final String SQL_LINEAS =
+            "SELECT p.pedido_id, pd.item_id, p.cliente_id, p.fecha_pedido, pd.cantidad, pd.precio_unitario, " +
+            "       i.categoria_id, i.bodega_id " +
+            "FROM pedido p JOIN estado e ON e.estado_id = p.estado_id " +
+            "JOIN pedido_detalle pd ON pd.pedido_id = p.pedido_id " +
+            "JOIN item i ON i.item_id = pd.item_id " +
+            "WHERE e.valor <> 'CANCELADO'";
+
+    private final JdbcTemplate jdbcTemplateStreaming;
+
+    @Autowired
+    public HechosVentaRepository(JdbcTemplate jdbcTemplate) {
+        // Con fetchSize Integer.MIN_VALUE el driver de MySQL lee el resultado fila a fila
+        this.jdbcTemplateStreaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplateStreaming.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Recorre en una sola pasada todas las líneas de pedidos no cancelados.
+     * @param consumidor Recibe cada línea; no debe acceder a la base de datos mientras dura el recorrido.
+     */
+    public void recorrerLineas(ConsumidorLinea consumidor) {
+        jdbcTemplateStreaming.query(SQL_LINEAS, (ResultSet rs) -> entregar(rs, consumidor));
+    }
+
+    /**
+     * Recorre las líneas de unos pedidos (si no están cancelados).
+     * @param pedidoIds IDs de los pedidos.
+     * @param consumidor Recibe cada línea.
+     */
+    public void recorrerLineas(Collection<Long> pedidoIds, ConsumidorLinea consumidor) {
+        if (pedidoIds.isEmpty()) {
+            return;
+        }
+        String marcadores = String.join(",", Collections.nCopies(pedidoIds.size(), "?"));
+        jdbcTemplateStreaming.query(SQL_LINEAS + " AND p.pedido_id IN (" + marcadores + ")",
+                (ResultSet rs) -> entregar(rs, consumidor), pedidoIds.toArray());
+    }
+
+    private static void entregar(ResultSet rs, ConsumidorLinea consumidor) throws SQLException {
+        long clienteId = rs.getLong(3);
+        consumidor.aceptar(rs.getLong(1), rs.getLong(2), rs.wasNull() ? null : clienteId, rs.getTimestamp(4),
+                rs.getInt(5), rs.getBigDecimal(6), rs.getLong(7), rs.getLong(8));
+    }
+
+    /**
+     * Receptor de las líneas recorridas.
+     */
+    @FunctionalInterface
+    public interface ConsumidorLinea {
+        void aceptar(long pedidoId, long itemId, Long clienteId, Timestamp fechaPedido, int cantidad,
+                     BigDecimal precioUnitario, long categoriaId, long bodegaId);
+    }
+}
@@ -0,0 +1,155 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.entity.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Acceso JDBC a la tabla rollup inventario_resumen (número de ítems, unidades y valor por tipo de
+ * ítem, categoría y bodega). Los triggers de item e item_stock_shard solo insertan deltas en
+ * inventario_resumen_delta; aquí se trasladan al rollup, se lee (rollup más deltas pendientes) y se
+ * corrige durante la conciliación.
+ */
+@Repository
+public class InventarioResumenRepository {
+
+    private static final String FILTRO_RESUMEN = "WHERE (? IS NULL OR categoria_id = ?) AND (? IS NULL OR bodega_id = ?) ";
+    // Rollup y deltas pendientes en una sola sentencia: el job de aplicación mueve ambos en la misma
+    // transacción, así que la instantánea nunca cuenta un delta dos veces ni lo pierde
+    private static final String SQL_RESUMEN =
+            "SELECT tipo_item, SUM(num_items), SUM(unidades), SUM(valor) FROM (" +
+            "SELECT tipo_item, num_items, unidades, valor FROM inventario_resumen " + FILTRO_RESUMEN +
+            "UNION ALL SELECT tipo_item, num_items, unidades, valor FROM inventario_resumen_delta " + FILTRO_RESUMEN +
+            ") r GROUP BY tipo_item HAVING SUM(num_items) > 0 ORDER BY tipo_item";
+    // Una sola sentencia: el recálculo completo y el rollup se leen de la misma instantánea
+    private static final String SQL_DIFERENCIAS =
+            "SELECT k.tipo_item, k.categoria_id, k.bodega_id, " +
+            "       COALESCE(r.num_items, 0) - COALESCE(c.num_items, 0), " +
+            "       COALESCE(r.unidades, 0) - COALESCE(c.unidades, 0), " +
+            "       COALESCE(r.valor, 0) - COALESCE(c.valor, 0) " +
+            "FROM (SELECT tipo_item, categoria_id, bodega_id FROM item " +
+            "      UNION SELECT tipo_item, categoria_id, bodega_id FROM inventario_resumen " +
+            "      UNION SELECT tipo_item, categoria_id, bodega_id FROM inventario_resumen_delta) k " +
+            "LEFT JOIN (SELECT i.tipo_item, i.categoria_id, i.bodega_id, COUNT(*) AS num_items, " +
+            "                  SUM(i.stock_disponible + COALESCE(s.stock, 0)) AS unidades, " +
+            "                  SUM(i.precio * (i.stock_disponible + COALESCE(s.stock, 0))) AS valor " +
+            "           FROM item i " +
+            "           LEFT JOIN (SELECT item_id, SUM(stock) AS stock FROM item_stock_shard GROUP BY item_id) s " +
+            "             ON s.item_id = i.item_id " +
+            "           GROUP BY i.tipo_item, i.categoria_id, i.bodega_id) r " +
+            "  ON r.tipo_item = k.tipo_item AND r.categoria_id = k.categoria_id AND r.bodega_id = k.bodega_id " +
+            "LEFT JOIN (SELECT tipo_item, categoria_id, bodega_id, SUM(num_items) AS num_items, " +
+            "                  SUM(unidades) AS unidades, SUM(valor) AS valor " +
+            "           FROM (SELECT tipo_item, categoria_id, bodega_id, num_items, unidades, valor FROM inventario_resumen " +
+            "                 UNION ALL SELECT tipo_item, categoria_id, bodega_id, num_items, unidades, valor " +
+            "                 FROM inventario_resumen_delta) p " +
+            "           GROUP BY tipo_item, categoria_id, bodega_id) c " +
+            "  ON c.tipo_item = k.tipo_item AND c.categoria_id = k.categoria_id AND c.bodega_id = k.bodega_id " +
+            "WHERE COALESCE(r.num_items, 0) <> COALESCE(c.num_items, 0) " +
+            "   OR COALESCE(r.unidades, 0) <> COALESCE(c.unidades, 0) " +
+            "   OR COALESCE(r.valor, 0) <> COALESCE(c.valor, 0) " +
+            "ORDER BY k.tipo_item, k.categoria_id, k.bodega_id"; // El mismo orden que el job de aplicación
+    private static final String SQL_CORREGIR =
+            "INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor) " +
+            "VALUES (?, ?, ?, 0, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE num_items = num_items + ?, unidades = unidades + ?, valor = valor + ?";
+    // SKIP LOCKED: los deltas de transacciones aún abiertas (o ya tomados por otra instancia) se
+    // dejan para la siguiente pasada en lugar de esperar por ellos
+    private static final String SQL_DELTAS_PENDIENTES =
+            "SELECT delta_id, tipo_item, categoria_id, bodega_id, num_items, unidades, valor " +
+            "FROM inventario_resumen_delta ORDER BY delta_id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String SQL_BORRAR_DELTAS = "DELETE FROM inventario_resumen_delta WHERE delta_id IN (%s)";
+    private static final Comparator<Clave> ORDEN_CLAVES = Comparator.comparing(Clave::tipoItem)
+            .thenComparingLong(Clave::categoriaId).thenComparingLong(Clave::bodegaId);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public InventarioResumenRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Lee el resumen de inventario por tipo de ítem desde el rollup, opcionalmente filtrado.
+     * @param categoriaId ID de categoría para filtrar (null para todas).
+     * @param bodegaId ID de bodega para filtrar (null para todas).
+     * @return Lista de Object[] con [TipoItem (enum), Long (conteo), Long (stock total), BigDecimal (valor total)].
+     */
+    public List<Object[]> obtenerResumen(Long categoriaId, Long bodegaId) {
+        return jdbcTemplate.query(SQL_RESUMEN,
+                (rs, i) -> new Object[]{Item.TipoItem.valueOf(rs.getString(1)), rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4)},
+                categoriaId, categoriaId, bodegaId, bodegaId, categoriaId, categoriaId, bodegaId, bodegaId);
+    }
+
+    /**
+     * Compara el rollup con un recálculo completo desde item e item_stock_shard.
+     * Es un recorrido completo de ambas tablas: solo lo usa el job de conciliación.
+     * @return Lista de Object[] con [tipo_item (String), categoria_id (Long), bodega_id (Long),
+     * corrección de conteo (Long), de unidades (Long) y de valor (BigDecimal)], solo para las claves con deriva.
+     */
+    public List<Object[]> calcularDiferencias() {
+        return jdbcTemplate.query(SQL_DIFERENCIAS, (rs, i) -> new Object[]{
+                rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getBigDecimal(6)});
+    }
+
+    /**
+     * Suma las correcciones a la ranura 0 de cada clave. Al ser incrementales, no pisan los cambios
+     * confirmados después de calcular las diferencias.
+     * @param correcciones Filas devueltas por {@link #calcularDiferencias()}.
+     */
+    public void corregir(List<Object[]> correcciones) {
+        List<Object[]> parametros = new ArrayList<>(correcciones.size());
+        for (Object[] c : correcciones) {
+            BigDecimal valor = (BigDecimal) c[5];
+            parametros.add(new Object[]{c[0], c[1], c[2], c[3], c[4], valor, c[3], c[4], valor});
+        }
+        jdbcTemplate.batchUpdate(SQL_CORREGIR, parametros);
+    }
+
+    /**
+     * Traslada al rollup un lote de deltas pendientes, sumados por clave y aplicados en orden de clave,
+     * y los borra. Debe ejecutarse dentro de una transacción: los deltas quedan bloqueados hasta que se
+     * confirma el traslado.
+     * @param lote Número máximo de deltas a trasladar.
+     * @return Número de deltas trasladados.
+     */
+    public int aplicarPendientes(int lote) {
+        List<Long> deltaIds = new ArrayList<>();
+        Map<Clave, Suma> porClave = new TreeMap<>(ORDEN_CLAVES);
+        jdbcTemplate.query(SQL_DELTAS_PENDIENTES, rs -> {
+            deltaIds.add(rs.getLong(1));
+            Suma suma = porClave.computeIfAbsent(new Clave(rs.getString(2), rs.getLong(3), rs.getLong(4)), clave -> new Suma());
+            suma.numItems += rs.getLong(5);
+            suma.unidades += rs.getLong(6);
+            suma.valor = suma.valor.add(rs.getBigDecimal(7));
+        }, lote);
+        if (deltaIds.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> sumas = new ArrayList<>(porClave.size());
+        porClave.forEach((clave, suma) -> sumas.add(new Object[]{clave.tipoItem(), clave.categoriaId(), clave.bodegaId(),
+                suma.numItems, suma.unidades, suma.valor}));
+        corregir(sumas);
+        String marcadores = String.join(",", Collections.nCopies(deltaIds.size(), "?"));
+        jdbcTemplate.update(String.format(SQL_BORRAR_DELTAS, marcadores), deltaIds.toArray());
+        return deltaIds.size();
+    }
+
+    private record Clave(String tipoItem, long categoriaId, long bodegaId) {
+    }
+
+    private static final class Suma {
+        private long numItems;
+        private long unidades;
+        private BigDecimal valor = BigDecimal.ZERO;
+    }
+}
@@ -10,11 +10,13 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ItemRepository extends JpaRepository<Item, Long> {
+public interface ItemRepository extends JpaRepository<Item, Long>, ItemRepositoryCustom {
 
     boolean existsByCodigo(String codigo);
     List<Item> findAllByOrderByNombreAsc();
@@ -36,18 +38,102 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
     @Query("SELECT COUNT(i) > 0 FROM Item i WHERE i.estado.estadoId = :estadoId")
     boolean existsByEstadoId(@Param("estadoId") Long estadoId);
 
-    @Query("SELECT i FROM Item i WHERE i.stockDisponible < i.stockMinimo")
+    /**
+     * Busca los ítems cuyo stock total es menor que su stock mínimo.
+     * El filtro por la columna generada e indexada stock_bajo evita recorrer toda la tabla; la
+     * segunda condición descarta los ítems fragmentados con stock suficiente en sus shards.
+     * @return Lista de ítems con stock bajo.
+     */
+    @Query("SELECT i FROM Item i WHERE i.stockBajo = true " +
+            "AND i.stockDisponible + COALESCE((SELECT SUM(s.stock) FROM ItemStockShard s WHERE s.id.itemId = i.itemId), 0) < i.stockMinimo")
     List<Item> findItemsConStockBajo();
 
+    /**
+     * Obtiene el stock total y el stock mínimo de varios ítems, sin cargar las entidades.
+     * @param itemIds IDs de los ítems.
+     * @return Lista de Object[] con [itemId (Long), nombre (String), stock total (Integer), stock mínimo (Integer)].
+     */
+    @Query("SELECT i.itemId, i.nombre, (i.stockDisponible + " +
+            "COALESCE((SELECT SUM(s.stock) FROM ItemStockShard s WHERE s.id.itemId = i.itemId), 0)), i.stockMinimo FROM Item i WHERE i.itemId IN :itemIds")
+    List<Object[]> findNivelesDeStock(@Param("itemIds") Collection<Long> itemIds);
+
     @Query("SELECT i FROM Item i WHERE i.fechaVencimiento BETWEEN :hoy AND :fechaLimite")
     List<Item> findItemsPorVencer(@Param("hoy") Date hoy, @Param("fechaLimite") Date fechaLimite);
 
-    @Modifying
-    @Query("UPDATE Item i SET i.stockDisponible = i.stockDisponible + :cantidad WHERE i.itemId = :itemId")
-    void actualizarStock(@Param("itemId") Long itemId, @Param("cantidad") Integer cantidad);
+    /**
+     * Obtiene las fechas de vencimiento a partir de una fecha, sin cargar las entidades.
+     * Usada por {@code ProgramadorVencimientos} para construir su índice en memoria al arrancar.
+     * @param desde Fecha inicial (inclusive).
+     * @return Lista de Object[] con [itemId (Long), fechaVencimiento (Date)].
+     */
+    @Query("SELECT i.itemId, i.fechaVencimiento FROM Item i WHERE i.fechaVencimiento >= :desde")
+    List<Object[]> findVencimientosDesde(@Param("desde") Date desde);
+
+    /**
+     * Ajusta el stock disponible de un ítem con una única sentencia UPDATE condicional.
+     * El ajuste solo se aplica si el stock resultante no queda negativo, por lo que
+     * es seguro frente a ajustes concurrentes sin cargar la entidad ni bloquearla antes.
+     * Incrementa también la versión del ítem, de modo que un PUT con un ETag anterior detecte el cambio.
+     * @param itemId ID del ítem a ajustar.
+     * @param cantidad Cantidad a sumar (positivo) o restar (negativo).
+     * @return 1 si el ajuste se aplicó; 0 si el ítem no existe, tiene stock fragmentado o el stock sería insuficiente.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE item SET stock_disponible = stock_disponible + :cantidad, version = version + 1 " +
+            "WHERE item_id = :itemId AND stock_shards = 0 AND stock_disponible + :cantidad >= 0", nativeQuery = true)
+    int actualizarStock(@Param("itemId") Long itemId, @Param("cantidad") Integer cantidad);
+
+    /**
+     * Bloquea (SELECT ... FOR UPDATE) las filas de los ítems indicados en orden ascendente de ID,
+     * de modo que dos pedidos que comparten ítems siempre adquieren los bloqueos en el mismo orden.
+     * @param itemIds IDs de los ítems a bloquear.
+     * @return Lista de Object[] con [item_id (Number), nombre (String), stock_disponible (Number), stock_shards (Number)].
+     */
+    @Query(value = "SELECT item_id, nombre, stock_disponible, stock_shards FROM item " +
+            "WHERE item_id IN (:itemIds) ORDER BY item_id FOR UPDATE", nativeQuery = true)
+    List<Object[]> bloquearStockParaActualizar(@Param("itemIds") Collection<Long> itemIds);
+
+    /**
+     * Devuelve al stock de los ítems indicados las cantidades de los detalles de varios pedidos
+     * con un único UPDATE ... JOIN sobre las cantidades agregadas por ítem. Solo afecta a ítems
+     * sin stock fragmentado; los demás se restauran por su propio camino.
+     * El UPDATE ... JOIN bloquea las filas en el orden que produzca el join: quien lo llama debe
+     * bloquearlas antes con {@link #bloquearStockParaActualizar(Collection)}, en el mismo orden
+     * ascendente que las reservas de stock, para no provocar interbloqueos con ellas.
+     * @param pedidoIds IDs de los pedidos cuyos detalles se restauran.
+     * @param itemIds IDs de los ítems a restaurar en la tabla item.
+     * @return Número de ítems actualizados.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE item i JOIN (SELECT pd.item_id, SUM(pd.cantidad) AS cantidad FROM pedido_detalle pd " +
+            "WHERE pd.pedido_id IN (:pedidoIds) GROUP BY pd.item_id) r ON r.item_id = i.item_id " +
+            "SET i.stock_disponible = i.stock_disponible + r.cantidad, i.version = i.version + 1 " +
+            "WHERE i.item_id IN (:itemIds) AND i.stock_shards = 0", nativeQuery = true)
+    int restaurarStockDePedidos(@Param("pedidoIds") Collection<Long> pedidoIds, @Param("itemIds") Collection<Long> itemIds);
+
+    /**
+     * Obtiene el número de shards de stock de un ítem sin cargar la entidad.
+     * @param itemId ID del ítem.
+     * @return El valor de stock_shards, o vacío si el ítem no existe.
+     */
+    @Query(value = "SELECT stock_shards FROM item WHERE item_id = :itemId", nativeQuery = true)
+    Optional<Integer> findStockShardsById(@Param("itemId") Long itemId);
+
+    /**
+     * Devuelve, de entre los IDs dados, los ítems que tienen stock fragmentado (lectura sin bloqueo).
+     * @param itemIds IDs de los ítems a consultar.
+     * @return IDs de los ítems con stock_shards > 0.
+     */
+    @Query(value = "SELECT item_id FROM item WHERE item_id IN (:itemIds) AND stock_shards > 0", nativeQuery = true)
+    List<Long> findItemIdsFragmentados(@Param("itemIds") Collection<Long> itemIds);
+
+    /**
+     * Fija el número de shards y el stock de la fila item (usado al activar/desactivar la fragmentación).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE item SET stock_shards = :stockShards, stock_disponible = :stockDisponible, version = version + 1 WHERE item_id = :itemId", nativeQuery = true)
+    int actualizarFragmentacion(@Param("itemId") Long itemId, @Param("stockShards") Integer stockShards, @Param("stockDisponible") Integer stockDisponible);
 
-    @Query("SELECT i.tipoItem, COUNT(i), SUM(i.stockDisponible), SUM(i.precio * i.stockDisponible) FROM Item i GROUP BY i.tipoItem")
-    List<Object[]> getResumenInventario();
 
     @Query("SELECT CASE WHEN COUNT(pd) > 0 THEN true ELSE false END FROM PedidoDetalle pd WHERE pd.producto.itemId = :itemId AND pd.pedido.estado.valor NOT IN ('COMPLETADO', 'CANCELADO')")
     boolean existeEnPedidosActivos(@Param("itemId") Long itemId);
@@ -0,0 +1,20 @@
+package com.telastech360.crmTT360.repository;
+
+import java.util.Map;
+
+/**
+ * Operaciones de stock sobre la tabla item que se ejecutan con JDBC en lote,
+ * fuera del ciclo de vida de las entidades JPA.
+ * Implementada por {@link ItemRepositoryCustomImpl} y expuesta a través de {@link ItemRepository}.
+ */
+public interface ItemRepositoryCustom {
+
+    /**
+     * Descuenta stock de varios ítems en un único lote JDBC.
+     * Se asume que las filas ya fueron bloqueadas y validadas por el llamador
+     * (ver {@link ItemRepository#bloquearStockParaActualizar(java.util.Collection)}).
+     * @param cantidadesPorItem Mapa itemId -> cantidad a descontar (positiva).
+     * @return Número total de filas actualizadas.
+     */
+    int descontarStockEnLote(Map<Long, Integer> cantidadesPorItem);
+}
@@ -0,0 +1,41 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementación JDBC de {@link ItemRepositoryCustom}.
+ * Participa en la transacción JPA activa, ya que JdbcTemplate usa la misma conexión.
+ */
+public class ItemRepositoryCustomImpl implements ItemRepositoryCustom {
+
+    private static final String SQL_DESCONTAR_STOCK =
+            "UPDATE item SET stock_disponible = stock_disponible - ?, version = version + 1 WHERE item_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public ItemRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int descontarStockEnLote(Map<Long, Integer> cantidadesPorItem) {
+        if (cantidadesPorItem.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> parametros = new ArrayList<>(cantidadesPorItem.size());
+        cantidadesPorItem.forEach((itemId, cantidad) -> parametros.add(new Object[]{cantidad, itemId}));
+        int total = 0;
+        for (int filas : jdbcTemplate.batchUpdate(SQL_DESCONTAR_STOCK, parametros)) {
+            // Con rewriteBatchedStatements el driver puede devolver SUCCESS_NO_INFO (-2)
+            total += filas > 0 ? filas : (filas == Statement.SUCCESS_NO_INFO ? 1 : 0);
+        }
+        return total;
+    }
+}
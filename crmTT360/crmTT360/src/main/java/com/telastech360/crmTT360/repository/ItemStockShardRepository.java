@@ -0,0 +1,43 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.entity.ItemStockShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ItemStockShardRepository extends JpaRepository<ItemStockShard, ItemStockShard.ItemStockShardId> {
+
+    /**
+     * Ajusta el stock de un shard con un UPDATE condicional (el resultado no puede quedar negativo).
+     * @return 1 si se aplicó el ajuste; 0 si el shard no existe o no tiene stock suficiente.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE item_stock_shard SET stock = stock + :cantidad " +
+            "WHERE item_id = :itemId AND shard_no = :shardNo AND stock + :cantidad >= 0", nativeQuery = true)
+    int ajustarStockShard(@Param("itemId") Long itemId, @Param("shardNo") Integer shardNo, @Param("cantidad") Integer cantidad);
+
+    /**
+     * Lee el stock de un shard sin bloquearlo (lectura consistente).
+     * @return El stock, o vacío si el shard no existe.
+     */
+    @Query("SELECT s.stock FROM ItemStockShard s WHERE s.id.itemId = :itemId AND s.id.shardNo = :shardNo")
+    Optional<Integer> leerStockShard(@Param("itemId") Long itemId, @Param("shardNo") Integer shardNo);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ItemStockShard s WHERE s.id.itemId = :itemId ORDER BY s.id.shardNo")
+    List<ItemStockShard> findByItemIdParaActualizar(@Param("itemId") Long itemId);
+
+    @Query("SELECT COALESCE(SUM(s.stock), 0) FROM ItemStockShard s WHERE s.id.itemId = :itemId")
+    long sumarStockPorItem(@Param("itemId") Long itemId);
+
+    @Query("SELECT DISTINCT s.id.itemId FROM ItemStockShard s")
+    List<Long> findItemIdsFragmentados();
+}
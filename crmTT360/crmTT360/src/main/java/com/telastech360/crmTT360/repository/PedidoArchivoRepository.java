@@ -0,0 +1,88 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Acceso JDBC para el archivo de pedidos: mueve pedidos cerrados, con sus detalles y facturas, de las
+ * tablas activas a pedido_archivo, pedido_detalle_archivo y factura_archivo, y lee el histórico
+ * completo a través de la vista pedido_historico.
+ * Participa en la transacción activa, ya que JdbcTemplate usa la misma conexión.
+ */
+@Repository
+public class PedidoArchivoRepository {
+
+    // Pedidos cerrados anteriores a la fecha límite y sin facturas pendientes de pago (siguen siendo cartera activa)
+    private static final String SQL_BLOQUEAR_ARCHIVABLES =
+            "SELECT p.pedido_id FROM pedido p JOIN estado e ON e.estado_id = p.estado_id " +
+            "WHERE e.valor IN ('COMPLETADO', 'CANCELADO') AND p.fecha_pedido < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM factura f WHERE f.pedido_id = p.pedido_id AND f.estado_pago = FALSE) " +
+            "ORDER BY p.fecha_pedido, p.pedido_id LIMIT ? FOR UPDATE";
+    private static final String SQL_ARCHIVAR_PEDIDOS =
+            "INSERT INTO pedido_archivo (pedido_id, fecha_pedido, fecha_fin, cliente_id, estado_id, version, total) " +
+            "SELECT pedido_id, fecha_pedido, fecha_fin, cliente_id, estado_id, version, total FROM pedido WHERE pedido_id IN (%s)";
+    private static final String SQL_ARCHIVAR_DETALLES =
+            "INSERT INTO pedido_detalle_archivo (pedido_id, item_id, cantidad, precio_unitario) " +
+            "SELECT pedido_id, item_id, cantidad, precio_unitario FROM pedido_detalle WHERE pedido_id IN (%s)";
+    private static final String SQL_ARCHIVAR_FACTURAS =
+            "INSERT INTO factura_archivo (factura_id, pedido_id, tipo_movimiento, total, estado_pago, fecha_creacion, version) " +
+            "SELECT factura_id, pedido_id, tipo_movimiento, total, estado_pago, fecha_creacion, version FROM factura WHERE pedido_id IN (%s)";
+    private static final String SQL_BORRAR_FACTURAS = "DELETE FROM factura WHERE pedido_id IN (%s)";
+    private static final String SQL_BORRAR_DETALLES = "DELETE FROM pedido_detalle WHERE pedido_id IN (%s)";
+    private static final String SQL_BORRAR_PEDIDOS = "DELETE FROM pedido WHERE pedido_id IN (%s)";
+    private static final String SQL_HISTORICO_CLIENTE =
+            "SELECT h.pedido_id, h.cliente_id, h.estado_id, e.valor, h.fecha_pedido, h.total " +
+            "FROM pedido_historico h JOIN estado e ON e.estado_id = h.estado_id " +
+            "WHERE h.cliente_id = ? AND h.fecha_pedido >= ? AND h.fecha_pedido < ? " +
+            "ORDER BY h.fecha_pedido DESC, h.pedido_id DESC LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public PedidoArchivoRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Archiva un lote de pedidos COMPLETADO o CANCELADO anteriores a la fecha límite: bloquea sus filas,
+     * copia pedidos, detalles y facturas a las tablas de archivo y los borra de las tablas activas.
+     * Debe ejecutarse dentro de una transacción para que la copia y el borrado sean atómicos.
+     * @param fechaLimite Solo se archivan pedidos con fecha_pedido anterior a esta.
+     * @param tamanoLote Número máximo de pedidos del lote.
+     * @return IDs de los pedidos archivados (vacío si no queda ninguno).
+     */
+    public List<Long> archivarLote(Timestamp fechaLimite, int tamanoLote) {
+        List<Long> ids = jdbcTemplate.queryForList(SQL_BLOQUEAR_ARCHIVABLES, Long.class, fechaLimite, tamanoLote);
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        String marcadores = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] parametros = ids.toArray();
+        // Primero las copias, después los borrados de hijos a padre (factura y pedido_detalle referencian a pedido)
+        for (String sql : List.of(SQL_ARCHIVAR_PEDIDOS, SQL_ARCHIVAR_DETALLES, SQL_ARCHIVAR_FACTURAS,
+                SQL_BORRAR_FACTURAS, SQL_BORRAR_DETALLES, SQL_BORRAR_PEDIDOS)) {
+            jdbcTemplate.update(String.format(sql, marcadores), parametros);
+        }
+        return ids;
+    }
+
+    /**
+     * Lee el resumen de los pedidos de un cliente en un rango de fechas, incluidos los archivados.
+     * @param clienteId ID del cliente.
+     * @param desde Inicio del rango (inclusive).
+     * @param hasta Fin del rango (exclusive).
+     * @param limite Número máximo de pedidos.
+     * @return Lista de Object[] con [pedidoId (Long), clienteId (Long), estadoId (Long), valor del estado (String),
+     *         fechaPedido (Timestamp), total (BigDecimal)], del más reciente al más antiguo.
+     */
+    public List<Object[]> buscarHistoricoCliente(Long clienteId, Timestamp desde, Timestamp hasta, int limite) {
+        return jdbcTemplate.query(SQL_HISTORICO_CLIENTE, (rs, i) -> new Object[]{
+                        rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4), rs.getTimestamp(5), rs.getBigDecimal(6)},
+                clienteId, desde, hasta, limite);
+    }
+}
@@ -9,7 +9,7 @@ import org.springframework.data.repository.query.Param;
 
 
 import java.math.BigDecimal;
-import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,17 +32,37 @@ public interface PedidoDetalleRepository extends JpaRepository<PedidoDetalle, Pe
             "WHERE pd.producto.itemId = :itemId AND pd.pedido.estado.valor = 'PENDIENTE'")
     int actualizarPreciosEnPedidosPendientes(Long itemId, BigDecimal nuevoPrecio);
 
-    @Query("SELECT pd.producto, SUM(pd.cantidad) as totalPedido " +
-            "FROM PedidoDetalle pd " +
-            "WHERE pd.pedido.fechaPedido BETWEEN :fechaInicio AND :fechaFin " +
-            "GROUP BY pd.producto " +
-            "ORDER BY totalPedido DESC")
-    List<Object[]> findProductosMasPedidos(Timestamp fechaInicio, Timestamp fechaFin);
-
     @Query("SELECT CASE WHEN COUNT(pd) > 0 THEN true ELSE false END " +
             "FROM PedidoDetalle pd " +
             "WHERE pd.producto.itemId = :itemId " +
             "AND pd.pedido.estado.valor NOT IN ('COMPLETADO', 'CANCELADO')")
     boolean existeEnPedidosActivos(Long itemId);
 
-}
\ No newline at end of file
+    /**
+     * Obtiene los detalles de varios pedidos en una sola consulta.
+     * @param pedidoIds IDs de los pedidos.
+     * @return Detalles de todos los pedidos indicados.
+     */
+    @Query("SELECT pd FROM PedidoDetalle pd WHERE pd.id.pedidoId IN :pedidoIds")
+    List<PedidoDetalle> findByPedidoIds(@Param("pedidoIds") Collection<Long> pedidoIds);
+
+    /**
+     * Suma las cantidades de los detalles de varios pedidos agrupadas por ítem.
+     * @param pedidoIds IDs de los pedidos.
+     * @return Lista de Object[] con [item_id (Number), cantidad total (Number), stock_shards (Number)], por ID de ítem.
+     */
+    @Query(value = "SELECT pd.item_id, SUM(pd.cantidad), i.stock_shards FROM pedido_detalle pd " +
+            "JOIN item i ON i.item_id = pd.item_id WHERE pd.pedido_id IN (:pedidoIds) " +
+            "GROUP BY pd.item_id, i.stock_shards ORDER BY pd.item_id", nativeQuery = true)
+    List<Object[]> sumarCantidadesPorItem(@Param("pedidoIds") Collection<Long> pedidoIds);
+
+    /**
+     * Calcula el importe de varios pedidos a partir de sus detalles (suma de cantidad * precio unitario),
+     * en una sola consulta agregada.
+     * @param pedidoIds IDs de los pedidos.
+     * @return Lista de Object[] con [pedidoId (Long), importe (BigDecimal)]; los pedidos sin detalles no aparecen.
+     */
+    @Query("SELECT pd.id.pedidoId, SUM(pd.cantidad * pd.precioUnitario) FROM PedidoDetalle pd " +
+            "WHERE pd.id.pedidoId IN :pedidoIds GROUP BY pd.id.pedidoId")
+    List<Object[]> sumarImportesPorPedido(@Param("pedidoIds") Collection<Long> pedidoIds);
+}
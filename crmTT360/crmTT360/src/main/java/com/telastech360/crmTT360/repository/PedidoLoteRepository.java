@@ -0,0 +1,85 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acceso JDBC para la importación de pedidos por lotes: inserta pedidos y detalles con lotes JDBC,
+ * fuera del ciclo de vida de las entidades JPA.
+ * Participa en la transacción activa, ya que JdbcTemplate usa la misma conexión.
+ */
+@Repository
+public class PedidoLoteRepository {
+
+    private static final String SQL_INSERTAR_PEDIDO =
+            "INSERT INTO pedido (fecha_pedido, cliente_id, estado_id, total) VALUES (?, ?, ?, ?)";
+    private static final String SQL_INSERTAR_DETALLE =
+            "INSERT INTO pedido_detalle (pedido_id, item_id, cantidad, precio_unitario) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public PedidoLoteRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserta varios pedidos en un único lote JDBC y devuelve sus IDs generados.
+     * Con rewriteBatchedStatements el lote se envía como un INSERT multi-fila, cuyos IDs
+     * AUTO_INCREMENT son consecutivos y se devuelven en el orden de inserción.
+     * @param pedidos Lista de Object[] con [fecha_pedido (Timestamp), cliente_id (Long, puede ser null), estado_id (Long), total (BigDecimal)].
+     * @return IDs generados, en el mismo orden que los pedidos.
+     */
+    public List<Long> insertarPedidos(List<Object[]> pedidos) {
+        if (pedidos.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) conexion -> {
+            try (PreparedStatement ps = conexion.prepareStatement(SQL_INSERTAR_PEDIDO, Statement.RETURN_GENERATED_KEYS)) {
+                for (Object[] pedido : pedidos) {
+                    ps.setTimestamp(1, (Timestamp) pedido[0]);
+                    if (pedido[1] != null) {
+                        ps.setLong(2, (Long) pedido[1]);
+                    } else {
+                        ps.setNull(2, Types.BIGINT);
+                    }
+                    ps.setLong(3, (Long) pedido[2]);
+                    ps.setBigDecimal(4, (BigDecimal) pedido[3]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                List<Long> ids = new ArrayList<>(pedidos.size());
+                try (ResultSet claves = ps.getGeneratedKeys()) {
+                    while (claves.next()) {
+                        ids.add(claves.getLong(1));
+                    }
+                }
+                if (ids.size() != pedidos.size()) {
+                    throw new IllegalStateException("Se esperaban " + pedidos.size() + " IDs generados y se obtuvieron " + ids.size());
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Inserta detalles de pedido en un único lote JDBC.
+     * @param detalles Lista de Object[] con [pedido_id (Long), item_id (Long), cantidad (Integer), precio_unitario (BigDecimal)].
+     */
+    public void insertarDetalles(List<Object[]> detalles) {
+        if (!detalles.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_INSERTAR_DETALLE, detalles);
+        }
+    }
+}
@@ -1,18 +1,22 @@
 package com.telastech360.crmTT360.repository;
 
 import com.telastech360.crmTT360.entity.*;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional; // Importar Optional
 
 @Repository
-public interface PedidoRepository extends JpaRepository<Pedido, Long> {
+public interface PedidoRepository extends JpaRepository<Pedido, Long>, JpaSpecificationExecutor<Pedido> {
 
     List<Pedido> findByEstado_Valor(String valor);
     List<Pedido> findByCliente(ClienteInterno cliente);
@@ -22,23 +26,23 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     @Query("SELECT p FROM Pedido p WHERE p.cliente.responsable.usuarioId = :responsableId")
     List<Pedido> findByResponsableId(@Param("responsableId") Long responsableId);
 
-    @Query("SELECT p FROM Pedido p WHERE " +
-            "p.fechaPedido >= FUNCTION('DATE_SUB', CURRENT_TIMESTAMP, 1, 'DAY') AND " +
-            "p.estado.valor = 'PENDIENTE'")
-    List<Pedido> findPedidosUrgentes();
-
-    @Query("SELECT p FROM Pedido p WHERE " +
-            "(:clienteId IS NULL OR p.cliente.clienteId = :clienteId) AND " +
-            "(:estadoId IS NULL OR p.estado.estadoId = :estadoId) AND " +
-            "(:fechaInicio IS NULL OR p.fechaPedido >= :fechaInicio) AND " +
-            "(:fechaFin IS NULL OR p.fechaFin <= :fechaFin) AND " +
-            "(:responsableId IS NULL OR p.cliente.responsable.usuarioId = :responsableId)")
-    List<Pedido> busquedaAvanzada(
-            @Param("clienteId") Long clienteId,
-            @Param("estadoId") Long estadoId,
-            @Param("fechaInicio") Timestamp fechaInicio,
-            @Param("fechaFin") Timestamp fechaFin,
-            @Param("responsableId") Long responsableId);
+    /**
+     * Obtiene el ID y la fecha de los pedidos en los estados indicados, con un rango del índice
+     * (estado_id, fecha_pedido).
+     * @param estadoIds IDs de los estados.
+     * @return Lista de Object[] con [pedidoId (Long), fechaPedido (Timestamp)].
+     */
+    @Query("SELECT p.pedidoId, p.fechaPedido FROM Pedido p WHERE p.estado.estadoId IN :estadoIds")
+    List<Object[]> findFechasPorEstados(@Param("estadoIds") Collection<Long> estadoIds);
+
+    /**
+     * Obtiene el ID y la fecha de los pedidos indicados.
+     * @param ids IDs de los pedidos.
+     * @return Lista de Object[] con [pedidoId (Long), fechaPedido (Timestamp)].
+     */
+    @Query("SELECT p.pedidoId, p.fechaPedido FROM Pedido p WHERE p.pedidoId IN :ids")
+    List<Object[]> findFechasByIds(@Param("ids") Collection<Long> ids);
+
 
     @Query("SELECT e.valor, COUNT(p) FROM Pedido p JOIN p.estado e GROUP BY e.valor")
     List<Object[]> getEstadisticasPorEstado();
@@ -46,14 +50,88 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     @Query("SELECT DISTINCT p FROM Pedido p JOIN p.detalles pd WHERE pd.producto.itemId = :itemId")
     List<Pedido> findPedidosConteniendoItem(@Param("itemId") Long itemId);
 
-    @Modifying
-    @Query("UPDATE Pedido p SET p.estado = :estado WHERE p.pedidoId IN :ids")
+    /**
+     * Cambia el estado de varios pedidos en una única sentencia, incrementando su versión para
+     * que las actualizaciones concurrentes con @Version detecten el cambio.
+     * @param ids IDs de los pedidos.
+     * @param estado Estado destino.
+     * @return Número de pedidos actualizados.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Pedido p SET p.estado = :estado, p.version = p.version + 1 WHERE p.pedidoId IN :ids")
     int actualizarEstadoPedidos(
             @Param("ids") List<Long> ids,
             @Param("estado") Estado estado);
 
-    @Query(value = "SELECT p FROM Pedido p ORDER BY p.fechaPedido DESC")
-    List<Pedido> findTop10ByOrderByFechaPedidoDesc();
+    /**
+     * Bloquea (SELECT ... FOR UPDATE) las filas de los pedidos indicados en orden ascendente de ID
+     * y devuelve su estado actual.
+     * @param ids IDs de los pedidos.
+     * @return Lista de Object[] con [pedido_id (Number), estado_id (Number)].
+     */
+    @Query(value = "SELECT pedido_id, estado_id FROM pedido WHERE pedido_id IN (:ids) ORDER BY pedido_id FOR UPDATE",
+            nativeQuery = true)
+    List<Object[]> bloquearEstados(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Suma (o resta, con delta negativo) una cantidad al total persistido de un pedido con un
+     * UPDATE atómico, sin leer ni reescribir la entidad.
+     * @param pedidoId ID del pedido.
+     * @param delta Variación del total.
+     * @return Número de pedidos actualizados (0 si no existe).
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE pedido SET total = total + :delta WHERE pedido_id = :pedidoId", nativeQuery = true)
+    int ajustarTotal(@Param("pedidoId") Long pedidoId, @Param("delta") BigDecimal delta);
+
+    /**
+     * Obtiene el total persistido de un pedido sin cargar la entidad ni sus detalles.
+     * @param pedidoId ID del pedido.
+     * @return Optional con el total, o vacío si el pedido no existe.
+     */
+    @Query("SELECT p.total FROM Pedido p WHERE p.pedidoId = :pedidoId")
+    Optional<BigDecimal> findTotalById(@Param("pedidoId") Long pedidoId);
+
+    /**
+     * Obtiene los totales persistidos de varios pedidos en una sola consulta por clave primaria.
+     * @param ids IDs de los pedidos.
+     * @return Lista de Object[] con [pedidoId (Long), total (BigDecimal)]; los IDs inexistentes no aparecen.
+     */
+    @Query("SELECT p.pedidoId, p.total FROM Pedido p WHERE p.pedidoId IN :ids")
+    List<Object[]> findTotalesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Obtiene la primera página del listado de pedidos, del más reciente al más antiguo.
+     * @param limite Número máximo de pedidos.
+     * @return Pedidos de la página, sin detalles.
+     */
+    @Query("SELECT p FROM Pedido p ORDER BY p.fechaPedido DESC, p.pedidoId DESC")
+    List<Pedido> findPrimeraPagina(Limit limite);
+
+    /**
+     * Obtiene la página del listado de pedidos que sigue a la posición (fechaPedido, pedidoId)
+     * del cursor, recorriendo el índice (fecha_pedido, pedido_id) sin OFFSET.
+     * @param fechaPedido Fecha del último pedido de la página anterior.
+     * @param pedidoId ID del último pedido de la página anterior.
+     * @param limite Número máximo de pedidos.
+     * @return Pedidos de la página, sin detalles.
+     */
+    @Query("SELECT p FROM Pedido p WHERE p.fechaPedido < :fechaPedido " +
+            "OR (p.fechaPedido = :fechaPedido AND p.pedidoId < :pedidoId) " +
+            "ORDER BY p.fechaPedido DESC, p.pedidoId DESC")
+    List<Pedido> findPaginaDespuesDe(@Param("fechaPedido") Timestamp fechaPedido,
+                                     @Param("pedidoId") Long pedidoId,
+                                     Limit limite);
+
+    /**
+     * Obtiene el resumen de los pedidos más recientes, recorriendo el índice (fecha_pedido, pedido_id).
+     * @param limite Número máximo de pedidos.
+     * @return Lista de Object[] con [pedidoId (Long), clienteId (Long, puede ser null), estadoId (Long),
+     *         valor del estado (String), fechaPedido (Timestamp), total (BigDecimal)], del más reciente al más antiguo.
+     */
+    @Query("SELECT p.pedidoId, c.clienteId, e.estadoId, e.valor, p.fechaPedido, p.total FROM Pedido p " +
+            "LEFT JOIN p.cliente c JOIN p.estado e ORDER BY p.fechaPedido DESC, p.pedidoId DESC")
+    List<Object[]> findResumenesRecientes(Limit limite);
 
     @Query("SELECT COUNT(p) > 0 FROM Pedido p WHERE p.estado.estadoId = :estadoId")
     boolean existsByEstadoId(@Param("estadoId") Long estadoId);
@@ -4,6 +4,7 @@ import com.telastech360.crmTT360.entity.Producto;
 import com.telastech360.crmTT360.entity.Producto.TipoPrenda;
 import com.telastech360.crmTT360.entity.Producto.Talla;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,7 +15,7 @@ import java.util.Date;
 import java.util.List;
 
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSpecificationExecutor<Producto> {
 
     // Búsqueda por tipo de prenda
     List<Producto> findByTipoPrenda(TipoPrenda tipoPrenda);
@@ -32,30 +33,9 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     @Query("SELECT p FROM Producto p WHERE p.fechaVencimiento BETWEEN CURRENT_DATE AND :fechaLimite")
     List<Producto> findProductosPorVencer(@Param("fechaLimite") Date fechaLimite);
 
-    // Búsqueda avanzada multicriterio
-    @Query("SELECT p FROM Producto p WHERE " +
-            "(:tipoPrenda IS NULL OR p.tipoPrenda = :tipoPrenda) AND " +
-            "(:talla IS NULL OR p.talla = :talla) AND " +
-            "(:color IS NULL OR p.color LIKE %:color%) AND " +
-            "(:temporada IS NULL OR p.temporada = :temporada) AND " +
-            "(:minPrecio IS NULL OR p.precio >= :minPrecio) AND " + // Corregido a p.precio
-            "(:maxPrecio IS NULL OR p.precio <= :maxPrecio)") // Corregido a p.precio
-    List<Producto> busquedaAvanzada(
-            @Param("tipoPrenda") TipoPrenda tipoPrenda,
-            @Param("talla") Talla talla,
-            @Param("color") String color,
-            @Param("temporada") String temporada,
-            @Param("minPrecio") BigDecimal minPrecio,
-            @Param("maxPrecio") BigDecimal maxPrecio);
+    // La búsqueda avanzada multicriterio se construye con EspecificacionBusqueda (JpaSpecificationExecutor)
 
-    // Productos más vendidos (para dashboard)
-    @Query("SELECT p, SUM(pd.cantidad) as totalVendido " +
-            "FROM Producto p JOIN p.pedidoDetalles pd " +
-            "WHERE pd.pedido.fechaPedido BETWEEN :fechaInicio AND :fechaFin " +
-            "GROUP BY p ORDER BY totalVendido DESC")
-    List<Object[]> findProductosMasVendidos(
-            @Param("fechaInicio") Date fechaInicio,
-            @Param("fechaFin") Date fechaFin);
+    // Los más vendidos se sirven desde memoria (ItemsMasVendidosService), con VentasItemRepository como respaldo exacto
 
     // Método para actualizar temporada en lote
     @Modifying
@@ -0,0 +1,116 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Acceso JDBC usado por el motor de stock en memoria (StockEngine): carga del stock de un ítem,
+ * lectura del punto de control del journal, registro de las transacciones confirmadas pendientes de
+ * volcar y aplicación por lotes de los deltas netos pendientes.
+ */
+@Repository
+public class StockEngineRepository {
+
+    private static final String SQL_CARGAR_STOCK =
+            "SELECT nombre, stock_disponible, stock_shards FROM item WHERE item_id = ?";
+    private static final String SQL_APLICAR_DELTA =
+            "UPDATE item SET stock_disponible = stock_disponible + ?, version = version + 1 WHERE item_id = ?";
+    private static final String SQL_LEER_CHECKPOINT =
+            "SELECT epoca, posicion FROM stock_engine_checkpoint WHERE checkpoint_id = 1";
+    private static final String SQL_GUARDAR_CHECKPOINT =
+            "UPDATE stock_engine_checkpoint SET epoca = ?, posicion = ? WHERE checkpoint_id = 1";
+    private static final String SQL_REGISTRAR_TRANSACCION =
+            "INSERT INTO stock_engine_transaccion (transaccion_id) VALUES (?)";
+    private static final String SQL_TRANSACCIONES_REGISTRADAS =
+            "SELECT transaccion_id FROM stock_engine_transaccion WHERE transaccion_id IN (%s)";
+    private static final String SQL_BORRAR_TRANSACCION =
+            "DELETE FROM stock_engine_transaccion WHERE transaccion_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public StockEngineRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Carga el nombre, el stock disponible y el número de shards de un ítem.
+     * Se lee en una transacción propia para ver el último volcado confirmado, y no la
+     * instantánea de la transacción del llamador.
+     * @param itemId ID del ítem.
+     * @return Object[] con [nombre (String), stock_disponible (Number), stock_shards (Number)], o null si no existe.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public Object[] cargarStock(Long itemId) {
+        List<Object[]> filas = jdbcTemplate.query(SQL_CARGAR_STOCK,
+                (rs, i) -> new Object[]{rs.getString(1), rs.getInt(2), rs.getInt(3)}, itemId);
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    /**
+     * Lee el punto de control del journal: época del archivo y posición (en bytes) hasta la que
+     * los deltas ya están aplicados en la tabla item.
+     * @return long[] con [epoca, posicion].
+     */
+    public long[] leerCheckpoint() {
+        return jdbcTemplate.queryForObject(SQL_LEER_CHECKPOINT,
+                (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+    }
+
+    /**
+     * Registra una transacción del motor dentro de la transacción del llamador, de modo que la fila
+     * existe si y solo si esa transacción se confirma.
+     * @param transaccionId ID de la transacción en el journal.
+     */
+    public void registrarTransaccion(long transaccionId) {
+        jdbcTemplate.update(SQL_REGISTRAR_TRANSACCION, transaccionId);
+    }
+
+    /**
+     * Devuelve cuáles de las transacciones indicadas están registradas como confirmadas y sin volcar.
+     * @param transaccionIds IDs de transacción del journal.
+     * @return Subconjunto de los IDs con fila en stock_engine_transaccion.
+     */
+    public Set<Long> transaccionesRegistradas(Collection<Long> transaccionIds) {
+        if (transaccionIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String marcadores = String.join(",", Collections.nCopies(transaccionIds.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(String.format(SQL_TRANSACCIONES_REGISTRADAS, marcadores),
+                Long.class, transaccionIds.toArray()));
+    }
+
+    /**
+     * Aplica los deltas netos de stock, avanza el punto de control y borra el registro de las
+     * transacciones volcadas en una misma transacción, independiente de la transacción del llamador.
+     * @param deltasPorItem Mapa itemId -> delta neto (positivo o negativo).
+     * @param epoca Época del journal hasta la que llegan los deltas.
+     * @param posicion Posición en bytes dentro de esa época.
+     * @param transaccionesVolcadas IDs de las transacciones cuyos deltas incluye el lote.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void aplicarDeltas(Map<Long, Integer> deltasPorItem, long epoca, long posicion,
+                              Collection<Long> transaccionesVolcadas) {
+        if (!deltasPorItem.isEmpty()) {
+            List<Object[]> parametros = new ArrayList<>(deltasPorItem.size());
+            deltasPorItem.forEach((itemId, delta) -> parametros.add(new Object[]{delta, itemId}));
+            jdbcTemplate.batchUpdate(SQL_APLICAR_DELTA, parametros);
+        }
+        if (!transaccionesVolcadas.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_BORRAR_TRANSACCION,
+                    transaccionesVolcadas.stream().map(id -> new Object[]{id}).toList());
+        }
+        jdbcTemplate.update(SQL_GUARDAR_CHECKPOINT, epoca, posicion);
+    }
+}
@@ -0,0 +1,38 @@
+package com.telastech360.crmTT360.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Acceso JDBC a la máquina de estados de los pedidos (tabla transicion_estado_pedido).
+ */
+@Repository
+public class TransicionEstadoPedidoRepository {
+
+    private static final String SQL_ORIGENES_PERMITIDOS =
+            "SELECT estado_origen, restaura_stock FROM transicion_estado_pedido WHERE estado_destino = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public TransicionEstadoPedidoRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Obtiene los estados desde los que se permite pasar al estado destino.
+     * @param estadoDestino Valor del estado destino, en mayúsculas.
+     * @return Mapa estado origen -> si la transición restaura el stock de los detalles.
+     */
+    public Map<String, Boolean> buscarOrigenesPermitidos(String estadoDestino) {
+        Map<String, Boolean> origenes = new HashMap<>();
+        jdbcTemplate.query(SQL_ORIGENES_PERMITIDOS, rs -> {
+            origenes.put(rs.getString("estado_origen"), rs.getBoolean("restaura_stock"));
+        }, estadoDestino);
+        return origenes;
+    }
+}
@@ -0,0 +1,102 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.dto.ItemMasVendidoDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acceso JDBC a las cantidades vendidas por ítem (líneas de pedidos no cancelados), para el
+ * seguimiento de los más vendidos: carga inicial por horas, líneas y estados de pedidos y
+ * cálculo exacto de los rangos que no se conservan en memoria.
+ */
+@Repository
+public class VentasItemRepository {
+
+    private static final String FILTRO_VENTAS =
+            "FROM pedido p JOIN estado e ON e.estado_id = p.estado_id " +
+            "JOIN pedido_detalle pd ON pd.pedido_id = p.pedido_id " +
+            "WHERE p.fecha_pedido >= ? AND e.valor <> 'CANCELADO' ";
+    // Hora UTC desde la época, igual que Math.floorDiv(millis, 3_600_000) en Java, sea cual sea la zona de la sesión
+    private static final String HORA_UTC = "FLOOR(UNIX_TIMESTAMP(p.fecha_pedido) / 3600)";
+    private static final String SQL_CANTIDADES_POR_HORA =
+            "SELECT pd.item_id, " + HORA_UTC + " AS hora, SUM(pd.cantidad) " +
+            FILTRO_VENTAS +
+            "GROUP BY pd.item_id, hora";
+    private static final String SQL_MAS_VENDIDOS =
+            "SELECT pd.item_id, SUM(pd.cantidad) AS cantidad " +
+            FILTRO_VENTAS +
+            "GROUP BY pd.item_id ORDER BY cantidad DESC, pd.item_id LIMIT ?";
+    private static final String SQL_LINEAS_DE_PEDIDOS =
+            "SELECT p.fecha_pedido, pd.item_id, pd.cantidad FROM pedido p " +
+            "JOIN pedido_detalle pd ON pd.pedido_id = p.pedido_id WHERE p.pedido_id IN (%s)";
+    private static final String SQL_ESTADOS_DE_PEDIDOS = "SELECT pedido_id, estado_id FROM pedido WHERE pedido_id IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public VentasItemRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Suma las cantidades vendidas por ítem y hora desde una fecha.
+     * Las horas se numeran en UTC desde la época, como las agrupa ItemsMasVendidosService con los
+     * pedidos que llegan en vivo, y no con la zona horaria de la sesión de la base de datos.
+     * @param desde Inicio del periodo (inclusive).
+     * @return Lista de Object[] con [item_id (Long), hora UTC desde la época (Long), cantidad (Long)].
+     */
+    public List<Object[]> sumarCantidadesPorHora(Timestamp desde) {
+        return jdbcTemplate.query(SQL_CANTIDADES_POR_HORA,
+                (rs, i) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)}, desde);
+    }
+
+    /**
+     * Calcula de forma exacta los ítems más vendidos desde una fecha.
+     * @param desde Inicio del periodo (inclusive).
+     * @param limite Número máximo de ítems.
+     * @return Ítems de mayor a menor cantidad vendida.
+     */
+    public List<ItemMasVendidoDTO> buscarMasVendidos(Timestamp desde, int limite) {
+        return jdbcTemplate.query(SQL_MAS_VENDIDOS,
+                (rs, i) -> new ItemMasVendidoDTO(rs.getLong(1), rs.getLong(2), 0L), desde, limite);
+    }
+
+    /**
+     * Obtiene las líneas de unos pedidos con su fecha.
+     * @param pedidoIds IDs de los pedidos.
+     * @return Lista de Object[] con [fecha_pedido (Timestamp), item_id (Long), cantidad (Integer)].
+     */
+    public List<Object[]> buscarLineas(Collection<Long> pedidoIds) {
+        if (pedidoIds.isEmpty()) {
+            return List.of();
+        }
+        String marcadores = String.join(",", Collections.nCopies(pedidoIds.size(), "?"));
+        return jdbcTemplate.query(String.format(SQL_LINEAS_DE_PEDIDOS, marcadores),
+                (rs, i) -> new Object[]{rs.getTimestamp(1), rs.getLong(2), rs.getInt(3)}, pedidoIds.toArray());
+    }
+
+    /**
+     * Obtiene el estado actual de unos pedidos.
+     * @param pedidoIds IDs de los pedidos.
+     * @return Mapa pedidoId -> estadoId. Los pedidos inexistentes no aparecen.
+     */
+    public Map<Long, Long> buscarEstados(Collection<Long> pedidoIds) {
+        Map<Long, Long> estados = new HashMap<>();
+        if (pedidoIds.isEmpty()) {
+            return estados;
+        }
+        String marcadores = String.join(",", Collections.nCopies(pedidoIds.size(), "?"));
+        jdbcTemplate.query(String.format(SQL_ESTADOS_DE_PEDIDOS, marcadores), rs -> {
+            estados.put(rs.getLong(1), rs.getLong(2));
+        }, pedidoIds.toArray());
+        return estados;
+    }
+}
@@ -0,0 +1,252 @@
+package com.telastech360.crmTT360.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telastech360.crmTT360.dto.AjusteStockDTO;
+import com.telastech360.crmTT360.dto.AjusteStockLoteResultadoDTO;
+import com.telastech360.crmTT360.dto.AjusteStockResultadoDTO;
+import com.telastech360.crmTT360.dto.AjusteStockResultadoDTO.Estado;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.AjusteStockRepository;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Servicio de ajustes de stock por lotes (recepción de mercancía, cierre de conteos cíclicos).
+ * <p>
+ * Lee el array JSON de ajustes de forma incremental, sin cargarlo entero en memoria, y lo procesa en
+ * tramos de tamaño configurable, cada uno en su propia transacción: bloquea las filas de los ítems
+ * del tramo con un único SELECT ... FOR UPDATE, valida las filas en orden sobre el stock bloqueado y
+ * aplica los deltas netos y el registro de los ajustes con lotes JDBC. Una fila rechazada no afecta
+ * al resto; un error de base de datos deshace solo su tramo.
+ */
+@Service
+public class AjusteStockLoteService {
+
+    private static final Logger log = LoggerFactory.getLogger(AjusteStockLoteService.class);
+
+    private static final int LONGITUD_MAXIMA_MOTIVO = 255;
+
+    private final ItemRepository itemRepository;
+    private final AjusteStockRepository ajusteStockRepository;
+    private final ItemStockShardService itemStockShardService;
+    private final StockEngine stockEngine;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int tamanoTramo;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param itemRepository Repositorio para Items.
+     * @param ajusteStockRepository Repositorio JDBC de ajustes de stock.
+     * @param itemStockShardService Servicio para el stock fragmentado de ítems muy demandados.
+     * @param stockEngine Motor de stock en memoria (opcional, desactivado por defecto).
+     * @param alertaStockBajoService Servicio de alertas de stock bajo.
+     * @param transactionManager Gestor de transacciones, para una transacción por tramo.
+     * @param objectMapper Mapper JSON para leer el lote de forma incremental.
+     * @param tamanoTramo Número de ajustes por tramo (transacción y lote JDBC).
+     */
+    @Autowired
+    public AjusteStockLoteService(ItemRepository itemRepository,
+                                  AjusteStockRepository ajusteStockRepository,
+                                  ItemStockShardService itemStockShardService,
+                                  StockEngine stockEngine,
+                                  AlertaStockBajoService alertaStockBajoService,
+                                  PlatformTransactionManager transactionManager,
+                                  ObjectMapper objectMapper,
+                                  @Value("${crmtt360.inventario.ajustes.tamano-lote:1000}") int tamanoTramo) {
+        this.itemRepository = itemRepository;
+        this.ajusteStockRepository = ajusteStockRepository;
+        this.itemStockShardService = itemStockShardService;
+        this.stockEngine = stockEngine;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.tamanoTramo = Math.max(1, tamanoTramo);
+    }
+
+    /**
+     * Procesa un lote de ajustes leído de un array JSON de objetos {itemId, cantidad, motivo}.
+     * @param entrada Flujo con el array JSON.
+     * @return Informe con el resultado de cada fila, en el orden recibido.
+     * @throws InvalidDataException si el cuerpo no es un array JSON de objetos. Los tramos anteriores
+     *                              al error ya quedan aplicados; el mensaje indica cuántas filas se procesaron.
+     * @throws IOException si falla la lectura del flujo.
+     */
+    public AjusteStockLoteResultadoDTO procesar(InputStream entrada) throws IOException {
+        AjusteStockLoteResultadoDTO informe = new AjusteStockLoteResultadoDTO();
+        long inicio = System.nanoTime();
+        try (JsonParser parser = objectMapper.getFactory().createParser(entrada)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidDataException("Se esperaba un array JSON de ajustes de stock.");
+            }
+            List<Fila> tramo = new ArrayList<>(tamanoTramo);
+            int numFila = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    throw new InvalidDataException("Fila " + numFila + ": se esperaba un objeto JSON.");
+                }
+                tramo.add(leerFila(numFila++, parser.readValueAsTree()));
+                if (tramo.size() == tamanoTramo) {
+                    procesarTramo(tramo, informe);
+                    tramo.clear();
+                }
+            }
+            if (!tramo.isEmpty()) {
+                procesarTramo(tramo, informe);
+            }
+        } catch (JsonProcessingException e) {
+            // Los tramos anteriores ya están confirmados: se indica hasta dónde se procesó el lote
+            throw new InvalidDataException("JSON inválido tras procesar " + informe.getTotal()
+                    + " filas (" + informe.getAplicados() + " aplicadas): " + e.getOriginalMessage());
+        }
+        log.info("Lote de ajustes de stock procesado: {} filas, {} aplicadas, {} rechazadas en {} ms.",
+                informe.getTotal(), informe.getAplicados(), informe.getRechazados(), (System.nanoTime() - inicio) / 1_000_000);
+        return informe;
+    }
+
+    private Fila leerFila(int numFila, JsonNode nodo) {
+        JsonNode itemId = nodo.get("itemId");
+        JsonNode cantidad = nodo.get("cantidad");
+        JsonNode motivo = nodo.get("motivo");
+        Long id = itemId != null && itemId.canConvertToLong() && itemId.isIntegralNumber() ? itemId.asLong() : null;
+        Integer cant = cantidad != null && cantidad.canConvertToInt() && cantidad.isIntegralNumber() ? cantidad.asInt() : null;
+        String mot = motivo != null && !motivo.isNull() ? motivo.asText() : null;
+        String error = null;
+        if (id == null) {
+            error = "itemId es obligatorio y debe ser un entero.";
+        } else if (cant == null || cant == 0) {
+            error = "cantidad es obligatoria y debe ser un entero distinto de cero.";
+        } else if (mot != null && mot.length() > LONGITUD_MAXIMA_MOTIVO) {
+            error = "motivo no puede superar " + LONGITUD_MAXIMA_MOTIVO + " caracteres.";
+        }
+        return new Fila(numFila, new AjusteStockDTO(id, cant, mot), error);
+    }
+
+    private void procesarTramo(List<Fila> tramo, AjusteStockLoteResultadoDTO informe) {
+        AjusteStockResultadoDTO[] resultados = new AjusteStockResultadoDTO[tramo.size()];
+        try {
+            transactionTemplate.executeWithoutResult(estado -> aplicarTramo(tramo, resultados));
+        } catch (DataAccessException e) {
+            log.error("Error de base de datos en un tramo de {} ajustes (filas {}-{}); tramo deshecho: {}",
+                    tramo.size(), tramo.get(0).numero(), tramo.get(tramo.size() - 1).numero(), e.getMessage());
+            for (int i = 0; i < tramo.size(); i++) {
+                if (resultados[i] == null || resultados[i].getEstado() == Estado.APLICADO) {
+                    resultados[i] = resultado(tramo.get(i), Estado.ERROR, "Error de base de datos; el ajuste no se aplicó.");
+                }
+            }
+        }
+        for (AjusteStockResultadoDTO resultado : resultados) {
+            informe.agregar(resultado);
+        }
+    }
+
+    /**
+     * Aplica un tramo dentro de su transacción. Las filas se validan en el orden recibido, de modo
+     * que varias filas del mismo ítem se encadenan sobre el stock resultante de las anteriores.
+     */
+    private void aplicarTramo(List<Fila> tramo, AjusteStockResultadoDTO[] resultados) {
+        Set<Long> itemsModificados = new LinkedHashSet<>();
+        Set<Long> itemsEnBaseDeDatos = new TreeSet<>();
+        for (int i = 0; i < tramo.size(); i++) {
+            Fila fila = tramo.get(i);
+            if (fila.error() != null) {
+                resultados[i] = resultado(fila, Estado.INVALIDO, fila.error());
+                continue;
+            }
+            Boolean ajustadoEnMotor = stockEngine.activo()
+                    ? stockEngine.intentarAjustar(fila.ajuste().getItemId(), fila.ajuste().getCantidad()) : null;
+            if (ajustadoEnMotor == null) {
+                itemsEnBaseDeDatos.add(fila.ajuste().getItemId());
+            } else if (ajustadoEnMotor) {
+                resultados[i] = resultado(fila, Estado.APLICADO, null);
+                itemsModificados.add(fila.ajuste().getItemId());
+            } else {
+                resultados[i] = resultado(fila, Estado.RECHAZADO, "Stock insuficiente.");
+            }
+        }
+
+        Map<Long, Object[]> filasPorItem = new HashMap<>();
+        if (!itemsEnBaseDeDatos.isEmpty()) {
+            for (Object[] fila : itemRepository.bloquearStockParaActualizar(itemsEnBaseDeDatos)) {
+                filasPorItem.put(((Number) fila[0]).longValue(), fila);
+            }
+        }
+        Map<Long, Integer> stockPorItem = new HashMap<>();
+        Map<Long, Integer> deltasPorItem = new TreeMap<>();
+        List<AjusteStockDTO> aplicados = new ArrayList<>();
+        for (int i = 0; i < tramo.size(); i++) {
+            if (resultados[i] != null && resultados[i].getEstado() != Estado.APLICADO) {
+                continue;
+            }
+            Fila fila = tramo.get(i);
+            Long itemId = fila.ajuste().getItemId();
+            int cantidad = fila.ajuste().getCantidad();
+            if (resultados[i] != null) {
+                aplicados.add(fila.ajuste()); // Aplicado en el motor: solo falta registrarlo
+                continue;
+            }
+            Object[] filaItem = filasPorItem.get(itemId);
+            if (filaItem == null) {
+                resultados[i] = resultado(fila, Estado.NO_ENCONTRADO, "Ítem no encontrado con ID: " + itemId);
+                continue;
+            }
+            int numShards = ((Number) filaItem[3]).intValue();
+            boolean aplicado;
+            if (numShards > 0) {
+                aplicado = itemStockShardService.intentarAjustarStock(itemId, numShards, cantidad);
+            } else {
+                int disponible = stockPorItem.computeIfAbsent(itemId, id -> ((Number) filaItem[2]).intValue());
+                aplicado = disponible + cantidad >= 0;
+                if (aplicado) {
+                    stockPorItem.put(itemId, disponible + cantidad);
+                    deltasPorItem.merge(itemId, cantidad, Integer::sum);
+                }
+            }
+            if (aplicado) {
+                resultados[i] = resultado(fila, Estado.APLICADO, null);
+                aplicados.add(fila.ajuste());
+                itemsModificados.add(itemId);
+            } else {
+                resultados[i] = resultado(fila, Estado.RECHAZADO, "Stock insuficiente para el ítem '" + filaItem[1] + "'.");
+            }
+        }
+
+        deltasPorItem.values().removeIf(delta -> delta == 0);
+        ajusteStockRepository.aplicarDeltas(deltasPorItem);
+        ajusteStockRepository.registrarAjustes(aplicados);
+        if (!itemsModificados.isEmpty()) {
+            alertaStockBajoService.registrarCambio(itemsModificados);
+        }
+        log.debug("Tramo de {} ajustes: {} aplicados sobre {} ítems.", tramo.size(), aplicados.size(), itemsModificados.size());
+    }
+
+    private AjusteStockResultadoDTO resultado(Fila fila, Estado estado, String mensaje) {
+        return new AjusteStockResultadoDTO(fila.numero(), fila.ajuste().getItemId(), fila.ajuste().getCantidad(), estado, mensaje);
+    }
+
+    private record Fila(int numero, AjusteStockDTO ajuste, String error) {
+    }
+}
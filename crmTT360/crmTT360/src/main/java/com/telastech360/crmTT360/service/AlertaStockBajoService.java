@@ -0,0 +1,170 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.AlertaStockDTO;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Servicio que mantiene el conjunto de ítems con stock bajo y avisa a los clientes suscritos
+ * (Server-Sent Events) cuando un ítem cruza su umbral de stock mínimo.
+ * Los servicios que modifican stock o stock mínimo llaman a {@link #registrarCambio(Collection)};
+ * los ítems afectados se reevalúan con una sola consulta al confirmarse la transacción.
+ */
+@Service
+public class AlertaStockBajoService {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertaStockBajoService.class);
+
+    public static final String EVENTO_STOCK_BAJO = "stock-bajo";
+    public static final String EVENTO_STOCK_REPUESTO = "stock-repuesto";
+
+    // Clave del conjunto de ítems modificados ligado a la transacción en curso
+    private final Object claveCambiosPendientes = new Object();
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate transaccionLectura;
+    private final long timeoutSuscripcionMs;
+
+    private final Set<Long> itemsConStockBajo = ConcurrentHashMap.newKeySet();
+    private final List<SseEmitter> suscriptores = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param itemRepository Repositorio para Items.
+     * @param transactionManager Gestor de transacciones, para reevaluar fuera de la transacción ya confirmada.
+     * @param timeoutSuscripcionMs Tiempo máximo de una suscripción SSE antes de que el cliente deba reconectar.
+     */
+    @Autowired
+    public AlertaStockBajoService(ItemRepository itemRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${crmtt360.inventario.stock-bajo.sse-timeout-ms:1800000}") long timeoutSuscripcionMs) {
+        this.itemRepository = itemRepository;
+        this.transaccionLectura = new TransactionTemplate(transactionManager);
+        this.transaccionLectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transaccionLectura.setReadOnly(true);
+        this.timeoutSuscripcionMs = timeoutSuscripcionMs;
+    }
+
+    /**
+     * Carga el conjunto inicial de ítems con stock bajo al arrancar la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        transaccionLectura.executeWithoutResult(estado ->
+                itemRepository.findItemsConStockBajo().forEach(item -> itemsConStockBajo.add(item.getItemId())));
+        log.info("Conjunto de stock bajo inicializado con {} ítems.", itemsConStockBajo.size());
+    }
+
+    /**
+     * Registra un nuevo cliente para recibir los eventos de cruce de umbral.
+     * @return El SseEmitter del cliente.
+     */
+    public SseEmitter suscribir() {
+        SseEmitter emitter = new SseEmitter(timeoutSuscripcionMs);
+        emitter.onCompletion(() -> suscriptores.remove(emitter));
+        emitter.onTimeout(() -> suscriptores.remove(emitter));
+        emitter.onError(e -> suscriptores.remove(emitter));
+        suscriptores.add(emitter);
+        log.debug("Nueva suscripción a alertas de stock bajo. Suscriptores: {}", suscriptores.size());
+        return emitter;
+    }
+
+    /**
+     * Indica que el stock o el stock mínimo de los ítems dados puede haber cambiado.
+     * Dentro de una transacción, los ítems se acumulan y se reevalúan al confirmarse; sin transacción,
+     * se reevalúan de inmediato.
+     * @param itemIds IDs de los ítems modificados.
+     */
+    public void registrarCambio(Collection<Long> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evaluar(itemIds);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Long> cambios = (Set<Long>) TransactionSynchronizationManager.getResource(claveCambiosPendientes);
+        if (cambios == null) {
+            Set<Long> nuevos = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(claveCambiosPendientes, nuevos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(claveCambiosPendientes);
+                    if (status == STATUS_COMMITTED) {
+                        evaluar(nuevos);
+                    }
+                }
+            });
+            cambios = nuevos;
+        }
+        cambios.addAll(itemIds);
+    }
+
+    /**
+     * Reevalúa los ítems dados y publica un evento por cada uno que haya cruzado su umbral.
+     * Los errores solo se registran: el cambio de stock ya está confirmado.
+     */
+    void evaluar(Collection<Long> itemIds) {
+        try {
+            List<Object[]> niveles = transaccionLectura.execute(estado -> itemRepository.findNivelesDeStock(itemIds));
+            Set<Long> sinEvaluar = new HashSet<>(itemIds);
+            for (Object[] nivel : niveles) {
+                Long itemId = (Long) nivel[0];
+                int stock = ((Number) nivel[2]).intValue();
+                int stockMinimo = ((Number) nivel[3]).intValue();
+                boolean bajo = stock < stockMinimo;
+                sinEvaluar.remove(itemId);
+                if (bajo ? itemsConStockBajo.add(itemId) : itemsConStockBajo.remove(itemId)) {
+                    publicar(new AlertaStockDTO(itemId, (String) nivel[1], stock, stockMinimo, bajo));
+                }
+            }
+            itemsConStockBajo.removeAll(sinEvaluar); // Ítems eliminados
+        } catch (RuntimeException e) {
+            log.warn("No se pudo reevaluar el stock bajo de los ítems {}: {}", itemIds, e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve una copia del conjunto actual de ítems con stock bajo.
+     * @return IDs de los ítems con stock bajo.
+     */
+    public Set<Long> obtenerItemsConStockBajo() {
+        return Set.copyOf(itemsConStockBajo);
+    }
+
+    private void publicar(AlertaStockDTO alerta) {
+        String evento = alerta.isStockBajo() ? EVENTO_STOCK_BAJO : EVENTO_STOCK_REPUESTO;
+        log.info("Ítem ID {} ('{}'): {} (stock {}, mínimo {}). Notificando a {} suscriptores.",
+                alerta.getItemId(), alerta.getNombre(), evento, alerta.getStockDisponible(), alerta.getStockMinimo(),
+                suscriptores.size());
+        for (SseEmitter emitter : suscriptores) {
+            try {
+                emitter.send(SseEmitter.event().name(evento).id(String.valueOf(alerta.getItemId())).data(alerta));
+            } catch (IOException | IllegalStateException e) {
+                suscriptores.remove(emitter); // Cliente desconectado
+            }
+        }
+    }
+}
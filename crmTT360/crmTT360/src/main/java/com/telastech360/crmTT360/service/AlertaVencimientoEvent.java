@@ -0,0 +1,22 @@
+package com.telastech360.crmTT360.service;
+
+import java.time.LocalDate;
+
+/**
+ * Evento de aplicación publicado por {@link ProgramadorVencimientos} cuando un ítem entra en su
+ * periodo de aviso previo al vencimiento o cuando vence.
+ * @param itemId ID del ítem.
+ * @param fechaVencimiento Fecha de vencimiento del ítem.
+ * @param tipo Tipo de aviso.
+ * @param diasAntelacion Días de antelación del aviso (0 para VENCIDO).
+ */
+public record AlertaVencimientoEvent(Long itemId, LocalDate fechaVencimiento, Tipo tipo, int diasAntelacion) {
+
+    /**
+     * Tipo de aviso de vencimiento.
+     */
+    public enum Tipo {
+        POR_VENCER,
+        VENCIDO
+    }
+}
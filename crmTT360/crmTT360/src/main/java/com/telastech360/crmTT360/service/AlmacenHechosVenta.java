@@ -0,0 +1,271 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.service.HechosVentaService.Agrupacion;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Almacén columnar en memoria de las líneas de pedido para las agregaciones del panel.
+ * <p>
+ * Cada línea ocupa una posición en cinco arrays primitivos: ítem, cliente, día (días desde la época),
+ * cantidad y precio unitario en punto fijo (4 decimales, como precio_unitario). Los IDs de ítem,
+ * cliente, categoría y bodega se codifican como posiciones densas de un diccionario, de modo que
+ * toda agrupación acumula en un array indexado por grupo, sin mapas ni objetos por fila. La
+ * categoría y la bodega son atributos del ítem y se guardan una vez por ítem (con su último valor).
+ * <p>
+ * Las agregaciones reparten el recorrido en tramos en un ForkJoinPool y suman los acumulados
+ * parciales. Las líneas solo se añaden; un cerrojo de lectura/escritura separa los recorridos de
+ * los añadidos.
+ */
+final class AlmacenHechosVenta {
+
+    static final int ESCALA_PRECIO = 4;
+    static final int SIN_FILTRO = -1;
+    static final int NO_ENCONTRADO = -2;
+    static final long SIN_CLIENTE = 0L;
+    private static final int TRAMO_MINIMO = 1 << 16;
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    private int[] item = new int[CAPACIDAD_INICIAL];
+    private int[] cliente = new int[CAPACIDAD_INICIAL];
+    private int[] dia = new int[CAPACIDAD_INICIAL];
+    private int[] cantidad = new int[CAPACIDAD_INICIAL];
+    private long[] precio = new long[CAPACIDAD_INICIAL];
+    private int tamano;
+    // Pedidos con alguna línea en el almacén; los IDs que no caben en un int van aparte
+    private final BitSet pedidos = new BitSet();
+    private final Set<Long> pedidosGrandes = new HashSet<>();
+
+    private final Diccionario items = new Diccionario();
+    private final Diccionario clientes = new Diccionario();
+    private final Diccionario categorias = new Diccionario();
+    private final Diccionario bodegas = new Diccionario();
+    private int[] categoriaDeItem = new int[16];
+    private int[] bodegaDeItem = new int[16];
+
+    /**
+     * Añade una línea de pedido.
+     * @param clienteId ID del cliente, o {@link #SIN_CLIENTE}.
+     * @param precioFijo Precio unitario multiplicado por 10^{@value #ESCALA_PRECIO}.
+     */
+    void anexar(long pedidoId, long itemId, long clienteId, int diaEpoca, int cantidadLinea, long precioFijo,
+                long categoriaId, long bodegaId) {
+        cerrojo.writeLock().lock();
+        try {
+            if (tamano == item.length) {
+                int capacidad = tamano * 2;
+                item = Arrays.copyOf(item, capacidad);
+                cliente = Arrays.copyOf(cliente, capacidad);
+                dia = Arrays.copyOf(dia, capacidad);
+                cantidad = Arrays.copyOf(cantidad, capacidad);
+                precio = Arrays.copyOf(precio, capacidad);
+            }
+            int posicionItem = items.posicion(itemId);
+            if (posicionItem == categoriaDeItem.length) {
+                categoriaDeItem = Arrays.copyOf(categoriaDeItem, posicionItem * 2);
+                bodegaDeItem = Arrays.copyOf(bodegaDeItem, posicionItem * 2);
+            }
+            categoriaDeItem[posicionItem] = categorias.posicion(categoriaId);
+            bodegaDeItem[posicionItem] = bodegas.posicion(bodegaId);
+            item[tamano] = posicionItem;
+            cliente[tamano] = clientes.posicion(clienteId);
+            dia[tamano] = diaEpoca;
+            cantidad[tamano] = cantidadLinea;
+            precio[tamano] = precioFijo;
+            tamano++;
+            if (pedidoId >= 0 && pedidoId <= Integer.MAX_VALUE) {
+                pedidos.set((int) pedidoId);
+            } else {
+                pedidosGrandes.add(pedidoId);
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    int tamano() {
+        cerrojo.readLock().lock();
+        try {
+            return tamano;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indica si el almacén ya tiene las líneas de un pedido.
+     */
+    boolean contienePedido(long pedidoId) {
+        cerrojo.readLock().lock();
+        try {
+            return pedidoId >= 0 && pedidoId <= Integer.MAX_VALUE
+                    ? pedidos.get((int) pedidoId) : pedidosGrandes.contains(pedidoId);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Agrega las líneas de un rango de días.
+     * @param agrupacion Criterio de agrupación.
+     * @param desdeDia Primer día (días desde la época, inclusive).
+     * @param hastaDia Último día (inclusive).
+     * @param clienteId Cliente para filtrar (null para todos).
+     * @param itemId Ítem para filtrar (null para todos).
+     * @param pool Pool en el que se reparten los tramos del recorrido.
+     * @return Grupos con alguna línea: ID del grupo (el día para DIA; 0 para TOTAL y SIN_CLIENTE) ->
+     * {líneas, cantidad, importe en punto fijo}.
+     */
+    Map<Long, long[]> agregar(Agrupacion agrupacion, int desdeDia, int hastaDia, Long clienteId, Long itemId,
+                              ForkJoinPool pool) {
+        cerrojo.readLock().lock();
+        try {
+            int filtroCliente = clienteId == null ? SIN_FILTRO : clientes.buscar(clienteId);
+            int filtroItem = itemId == null ? SIN_FILTRO : items.buscar(itemId);
+            Map<Long, long[]> resultado = new HashMap<>();
+            if (tamano == 0 || filtroCliente == NO_ENCONTRADO || filtroItem == NO_ENCONTRADO) {
+                return resultado;
+            }
+            int grupos = switch (agrupacion) {
+                case TOTAL -> 1;
+                case DIA -> hastaDia - desdeDia + 1;
+                case ITEM -> items.tamano();
+                case CLIENTE -> clientes.tamano();
+                case CATEGORIA -> categorias.tamano();
+                case BODEGA -> bodegas.tamano();
+            };
+            int tramo = Math.max(TRAMO_MINIMO, tamano / (pool.getParallelism() * 4) + 1);
+            long[] acumulado = pool.invoke(new Recorrido(agrupacion, grupos, desdeDia, hastaDia, filtroCliente,
+                    filtroItem, 0, tamano, tramo));
+            for (int g = 0; g < grupos; g++) {
+                if (acumulado[g * 3] > 0) {
+                    resultado.put(idDeGrupo(agrupacion, g, desdeDia),
+                            new long[]{acumulado[g * 3], acumulado[g * 3 + 1], acumulado[g * 3 + 2]});
+                }
+            }
+            return resultado;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private long idDeGrupo(Agrupacion agrupacion, int grupo, int desdeDia) {
+        return switch (agrupacion) {
+            case TOTAL -> 0L;
+            case DIA -> (long) desdeDia + grupo;
+            case ITEM -> items.id(grupo);
+            case CLIENTE -> clientes.id(grupo);
+            case CATEGORIA -> categorias.id(grupo);
+            case BODEGA -> bodegas.id(grupo);
+        };
+    }
+
+    // Recorre [inicio, fin) y acumula {líneas, cantidad, importe} por grupo; divide el rango mientras supere el tramo
+    private final class Recorrido extends RecursiveTask<long[]> {
+
+        private final Agrupacion agrupacion;
+        private final int grupos;
+        private final int desdeDia;
+        private final int hastaDia;
+        private final int filtroCliente;
+        private final int filtroItem;
+        private final int inicio;
+        private final int fin;
+        private final int tramo;
+
+        Recorrido(Agrupacion agrupacion, int grupos, int desdeDia, int hastaDia, int filtroCliente, int filtroItem,
+                  int inicio, int fin, int tramo) {
+            this.agrupacion = agrupacion;
+            this.grupos = grupos;
+            this.desdeDia = desdeDia;
+            this.hastaDia = hastaDia;
+            this.filtroCliente = filtroCliente;
+            this.filtroItem = filtroItem;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.tramo = tramo;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (fin - inicio > tramo) {
+                int medio = (inicio + fin) >>> 1;
+                Recorrido izquierda = new Recorrido(agrupacion, grupos, desdeDia, hastaDia, filtroCliente, filtroItem,
+                        inicio, medio, tramo);
+                izquierda.fork();
+                long[] derecha = new Recorrido(agrupacion, grupos, desdeDia, hastaDia, filtroCliente, filtroItem,
+                        medio, fin, tramo).compute();
+                long[] suma = izquierda.join();
+                for (int i = 0; i < suma.length; i++) {
+                    suma[i] += derecha[i];
+                }
+                return suma;
+            }
+            long[] acumulado = new long[grupos * 3];
+            for (int i = inicio; i < fin; i++) {
+                int d = dia[i];
+                if (d < desdeDia || d > hastaDia
+                        || (filtroCliente != SIN_FILTRO && cliente[i] != filtroCliente)
+                        || (filtroItem != SIN_FILTRO && item[i] != filtroItem)) {
+                    continue;
+                }
+                int grupo = switch (agrupacion) {
+                    case TOTAL -> 0;
+                    case DIA -> d - desdeDia;
+                    case ITEM -> item[i];
+                    case CLIENTE -> cliente[i];
+                    case CATEGORIA -> categoriaDeItem[item[i]];
+                    case BODEGA -> bodegaDeItem[item[i]];
+                };
+                int base = grupo * 3;
+                acumulado[base]++;
+                acumulado[base + 1] += cantidad[i];
+                acumulado[base + 2] += cantidad[i] * precio[i];
+            }
+            return acumulado;
+        }
+    }
+
+    // Asigna posiciones densas (0, 1, 2...) a los IDs en orden de aparición
+    private static final class Diccionario {
+
+        private final Map<Long, Integer> posiciones = new HashMap<>();
+        private long[] ids = new long[16];
+
+        int posicion(long id) {
+            Integer posicion = posiciones.get(id);
+            if (posicion == null) {
+                posicion = posiciones.size();
+                if (posicion == ids.length) {
+                    ids = Arrays.copyOf(ids, posicion * 2);
+                }
+                ids[posicion] = id;
+                posiciones.put(id, posicion);
+            }
+            return posicion;
+        }
+
+        int buscar(long id) {
+            Integer posicion = posiciones.get(id);
+            return posicion == null ? NO_ENCONTRADO : posicion;
+        }
+
+        long id(int posicion) {
+            return ids[posicion];
+        }
+
+        int tamano() {
+            return posiciones.size();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.AntiguedadSaldosDTO;
+import com.telastech360.crmTT360.dto.InformeAntiguedadSaldosDTO;
+import com.telastech360.crmTT360.entity.Factura;
+import com.telastech360.crmTT360.repository.FacturaAntiguedadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Informe de antigüedad de saldos pendientes de cobro (cuentas por cobrar y por pagar).
+ * <p>
+ * Agrupa las facturas pendientes de pago por cliente y tipo de movimiento y reparte su total en
+ * los tramos 0-30, 31-60, 61-90 y más de 90 días desde su creación. Se calcula en una sola pasada
+ * sobre las filas leídas en streaming, de modo que la memoria depende del número de grupos y no
+ * del de facturas. El informe se guarda unos segundos para que las recargas de los paneles no
+ * repitan el recorrido; si varias peticiones lo encuentran caducado, solo una lo recalcula.
+ */
+@Service
+public class AntiguedadSaldosService {
+
+    private static final Logger log = LoggerFactory.getLogger(AntiguedadSaldosService.class);
+
+    private static final Comparator<AntiguedadSaldosDTO> ORDEN_SALDOS =
+            Comparator.comparing(AntiguedadSaldosDTO::getTotal).reversed()
+                    .thenComparing(AntiguedadSaldosDTO::getClienteId, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparing(AntiguedadSaldosDTO::getTipoMovimiento);
+
+    private final FacturaAntiguedadRepository facturaAntiguedadRepository;
+    private final long ttlCacheMs;
+    private final Clock reloj;
+
+    private volatile InformeCacheado cache;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param facturaAntiguedadRepository Repositorio JDBC que recorre las facturas pendientes.
+     * @param ttlCacheMs Tiempo durante el que se sirve el último informe calculado.
+     */
+    @Autowired
+    public AntiguedadSaldosService(FacturaAntiguedadRepository facturaAntiguedadRepository,
+                                   @Value("${crmtt360.facturas.antiguedad.cache-ms:60000}") long ttlCacheMs) {
+        this(facturaAntiguedadRepository, ttlCacheMs, Clock.systemDefaultZone());
+    }
+
+    AntiguedadSaldosService(FacturaAntiguedadRepository facturaAntiguedadRepository, long ttlCacheMs, Clock reloj) {
+        this.facturaAntiguedadRepository = facturaAntiguedadRepository;
+        this.ttlCacheMs = ttlCacheMs;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Obtiene el informe de antigüedad de saldos, opcionalmente filtrado.
+     * @param clienteId ID del cliente para filtrar (null para todos).
+     * @param tipoMovimiento Tipo de movimiento para filtrar (null para ambos).
+     * @return Informe con una fila por cliente y tipo de movimiento, de mayor a menor saldo.
+     */
+    public InformeAntiguedadSaldosDTO obtenerInforme(Long clienteId, Factura.TipoMovimiento tipoMovimiento) {
+        InformeAntiguedadSaldosDTO informe = informeVigente();
+        if (clienteId == null && tipoMovimiento == null) {
+            return informe;
+        }
+        List<AntiguedadSaldosDTO> saldos = informe.getSaldos().stream()
+                .filter(s -> clienteId == null || clienteId.equals(s.getClienteId()))
+                .filter(s -> tipoMovimiento == null || tipoMovimiento == s.getTipoMovimiento())
+                .toList();
+        return new InformeAntiguedadSaldosDTO(informe.getFechaCorte(), informe.getCalculadoEn(), saldos);
+    }
+
+    // Devuelve el informe guardado mientras no caduque ni cambie el día de corte; si no, lo recalcula una vez
+    private InformeAntiguedadSaldosDTO informeVigente() {
+        InformeCacheado actual = cache;
+        if (vigente(actual)) {
+            return actual.informe();
+        }
+        synchronized (this) {
+            actual = cache;
+            if (vigente(actual)) {
+                return actual.informe();
+            }
+            InformeAntiguedadSaldosDTO informe = calcular();
+            cache = new InformeCacheado(informe, reloj.millis() + ttlCacheMs);
+            return informe;
+        }
+    }
+
+    private boolean vigente(InformeCacheado cacheado) {
+        return cacheado != null && reloj.millis() < cacheado.caducaEn()
+                && cacheado.informe().getFechaCorte().toLocalDate().equals(LocalDate.now(reloj));
+    }
+
+    private InformeAntiguedadSaldosDTO calcular() {
+        long inicio = reloj.millis();
+        LocalDate hoy = LocalDate.now(reloj);
+        Map<ClaveGrupo, AntiguedadSaldosDTO> grupos = new HashMap<>();
+        facturaAntiguedadRepository.recorrerPendientes((clienteId, clienteNombre, tipoMovimiento, fechaCreacion, total) -> {
+            AntiguedadSaldosDTO grupo = grupos.computeIfAbsent(new ClaveGrupo(clienteId, tipoMovimiento),
+                    clave -> new AntiguedadSaldosDTO(clienteId, clienteNombre, tipoMovimiento));
+            acumular(grupo, ChronoUnit.DAYS.between(fechaCreacion.toLocalDateTime().toLocalDate(), hoy), total);
+        });
+        List<AntiguedadSaldosDTO> saldos = new ArrayList<>(grupos.values());
+        saldos.sort(ORDEN_SALDOS);
+        log.info("Informe de antigüedad de saldos calculado: {} grupos en {} ms.", saldos.size(), reloj.millis() - inicio);
+        return new InformeAntiguedadSaldosDTO(Date.valueOf(hoy), new Timestamp(inicio), saldos);
+    }
+
+    // Las facturas con fecha futura (relojes desajustados) cuentan en el primer tramo
+    private static void acumular(AntiguedadSaldosDTO grupo, long dias, BigDecimal total) {
+        if (dias <= 30) {
+            grupo.setHasta30Dias(grupo.getHasta30Dias().add(total));
+        } else if (dias <= 60) {
+            grupo.setDe31a60Dias(grupo.getDe31a60Dias().add(total));
+        } else if (dias <= 90) {
+            grupo.setDe61a90Dias(grupo.getDe61a90Dias().add(total));
+        } else {
+            grupo.setMasDe90Dias(grupo.getMasDe90Dias().add(total));
+        }
+        grupo.setTotal(grupo.getTotal().add(total));
+        grupo.setNumeroFacturas(grupo.getNumeroFacturas() + 1);
+    }
+
+    private record ClaveGrupo(Long clienteId, Factura.TipoMovimiento tipoMovimiento) {
+    }
+
+    private record InformeCacheado(InformeAntiguedadSaldosDTO informe, long caducaEn) {
+    }
+}
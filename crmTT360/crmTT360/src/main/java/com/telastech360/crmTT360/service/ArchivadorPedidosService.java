@@ -0,0 +1,123 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoResumenDTO;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.PedidoArchivoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Archivador de pedidos cerrados.
+ * <p>
+ * Cada noche mueve los pedidos COMPLETADO y CANCELADO con más antigüedad que la configurada, junto con
+ * sus detalles y facturas, a las tablas de archivo, para que las tablas activas contengan solo los
+ * pedidos recientes o abiertos. Se archiva por lotes, cada uno en su propia transacción, para no
+ * mantener bloqueos largos. Los pedidos con facturas pendientes de pago no se archivan.
+ * <p>
+ * Las consultas habituales leen solo las tablas activas; el histórico completo (vista pedido_historico)
+ * se consulta únicamente cuando se pide de forma explícita.
+ */
+@Service
+public class ArchivadorPedidosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivadorPedidosService.class);
+
+    static final int LIMITE_HISTORICO_POR_DEFECTO = 100;
+    static final int LIMITE_HISTORICO_MAXIMO = 1000;
+    private static final Timestamp SIN_LIMITE_INFERIOR = new Timestamp(0);
+
+    private final PedidoArchivoRepository pedidoArchivoRepository;
+    private final TransactionTemplate transaccion;
+    private final Duration antiguedad;
+    private final int tamanoLote;
+    private final Clock reloj;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param pedidoArchivoRepository Repositorio JDBC del archivo de pedidos.
+     * @param transactionManager Gestor de transacciones, para confirmar cada lote por separado.
+     * @param antiguedadDias Días desde la fecha del pedido a partir de los cuales un pedido cerrado se archiva.
+     * @param tamanoLote Número máximo de pedidos archivados por transacción.
+     */
+    @Autowired
+    public ArchivadorPedidosService(PedidoArchivoRepository pedidoArchivoRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${crmtt360.pedidos.archivo.antiguedad-dias:365}") long antiguedadDias,
+                                    @Value("${crmtt360.pedidos.archivo.tamano-lote:500}") int tamanoLote) {
+        this(pedidoArchivoRepository, transactionManager, antiguedadDias, tamanoLote, Clock.systemDefaultZone());
+    }
+
+    ArchivadorPedidosService(PedidoArchivoRepository pedidoArchivoRepository, PlatformTransactionManager transactionManager,
+                             long antiguedadDias, int tamanoLote, Clock reloj) {
+        this.pedidoArchivoRepository = pedidoArchivoRepository;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.antiguedad = Duration.ofDays(antiguedadDias);
+        this.tamanoLote = tamanoLote;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Archiva por lotes los pedidos cerrados más antiguos que la antigüedad configurada, hasta que no
+     * quede ninguno.
+     * @return Número de pedidos archivados.
+     */
+    @Scheduled(cron = "${crmtt360.pedidos.archivo.cron:0 30 3 * * *}")
+    public int archivar() {
+        Timestamp fechaLimite = new Timestamp(reloj.millis() - antiguedad.toMillis());
+        log.info("Archivando pedidos cerrados anteriores a {} en lotes de {}...", fechaLimite, tamanoLote);
+        int archivados = 0;
+        int lote;
+        do {
+            List<Long> ids = transaccion.execute(estado -> pedidoArchivoRepository.archivarLote(fechaLimite, tamanoLote));
+            lote = ids.size();
+            archivados += lote;
+            if (lote > 0) {
+                log.debug("Lote de {} pedidos archivado (IDs {} a {}).", lote, ids.get(0), ids.get(lote - 1));
+            }
+        } while (lote == tamanoLote);
+        log.info("Archivado de pedidos completado: {} pedidos movidos a las tablas de archivo.", archivados);
+        return archivados;
+    }
+
+    /**
+     * Obtiene los pedidos de un cliente, incluidos los archivados, del más reciente al más antiguo.
+     * @param clienteId ID del cliente.
+     * @param desde Inicio del rango de fechas (inclusive, null para sin límite).
+     * @param hasta Fin del rango de fechas (exclusive, null para hasta ahora).
+     * @param limite Número máximo de pedidos (null para el valor por defecto).
+     * @return Resúmenes de los pedidos.
+     * @throws InvalidDataException Si el rango o el límite no son válidos.
+     */
+    public List<PedidoResumenDTO> buscarHistoricoCliente(Long clienteId, Timestamp desde, Timestamp hasta, Integer limite) {
+        int tamano = limite == null ? LIMITE_HISTORICO_POR_DEFECTO : limite;
+        if (tamano < 1 || tamano > LIMITE_HISTORICO_MAXIMO) {
+            throw new InvalidDataException("El límite debe estar entre 1 y " + LIMITE_HISTORICO_MAXIMO + ".");
+        }
+        Timestamp inicio = desde != null ? desde : SIN_LIMITE_INFERIOR;
+        Timestamp fin = hasta != null ? hasta : new Timestamp(reloj.millis() + 1);
+        if (!inicio.before(fin)) {
+            throw new InvalidDataException("La fecha de inicio debe ser anterior a la fecha de fin.");
+        }
+        log.info("Buscando histórico de pedidos del cliente ID {} entre {} y {}", clienteId, inicio, fin);
+        List<Object[]> filas = pedidoArchivoRepository.buscarHistoricoCliente(clienteId, inicio, fin, tamano);
+        List<PedidoResumenDTO> resumenes = new ArrayList<>(filas.size());
+        for (Object[] fila : filas) {
+            resumenes.add(new PedidoResumenDTO((Long) fila[0], (Long) fila[1], (Long) fila[2], (String) fila[3],
+                    (Timestamp) fila[4], (BigDecimal) fila[5]));
+        }
+        return resumenes;
+    }
+}
@@ -1,22 +1,37 @@
 package com.telastech360.crmTT360.service;
 
+import com.telastech360.crmTT360.dto.BodegaUtilizacionDTO;
 import com.telastech360.crmTT360.entity.Bodega;
 import com.telastech360.crmTT360.entity.Estado;
 import com.telastech360.crmTT360.entity.Usuario;
 import com.telastech360.crmTT360.exception.DuplicateResourceException;
 import com.telastech360.crmTT360.exception.ResourceNotFoundException;
 import com.telastech360.crmTT360.exception.IllegalOperationException;
+import com.telastech360.crmTT360.exception.PreconditionFailedException;
+import com.telastech360.crmTT360.repository.BodegaOcupacionRepository;
 import com.telastech360.crmTT360.repository.BodegaRepository;
 import com.telastech360.crmTT360.repository.EstadoRepository;
 import com.telastech360.crmTT360.repository.ItemRepository; // Para verificar items asociados
 import com.telastech360.crmTT360.repository.UsuarioRepository;
+import com.telastech360.crmTT360.repository.EspecificacionBusqueda;
+import com.telastech360.crmTT360.util.PaginacionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Servicio para gestionar la lógica de negocio relacionada con las Bodegas.
@@ -25,11 +40,16 @@ import java.util.List;
 public class BodegaService {
 
     private static final Logger log = LoggerFactory.getLogger(BodegaService.class);
+    static final Set<String> CAMPOS_ORDEN_BUSQUEDA = Set.of("nombre", "bodegaId");
+    static final Sort ORDEN_BUSQUEDA_POR_DEFECTO = Sort.by("nombre");
+    static final int LOTE_APLICACION_OCUPACION = 10_000;
 
     private final BodegaRepository bodegaRepository;
     private final EstadoRepository estadoRepository;
     private final UsuarioRepository usuarioRepository;
     private final ItemRepository itemRepository; // Para verificar items al eliminar
+    private final BodegaOcupacionRepository bodegaOcupacionRepository;
+    private final PoliticaReintentoOptimista politicaReintentoOptimista;
 
     /**
      * Constructor para inyección de dependencias.
@@ -37,16 +57,22 @@ public class BodegaService {
      * @param estadoRepository Repositorio para Estados.
      * @param usuarioRepository Repositorio para Usuarios (responsables).
      * @param itemRepository Repositorio para Items (verificar asociación).
+     * @param bodegaOcupacionRepository Repositorio de los contadores de ocupación por bodega.
+     * @param politicaReintentoOptimista Política de reintentos ante conflictos de concurrencia optimista.
      */
     @Autowired
     public BodegaService(BodegaRepository bodegaRepository,
                          EstadoRepository estadoRepository,
                          UsuarioRepository usuarioRepository,
-                         ItemRepository itemRepository) { // Inyectar ItemRepository
+                         ItemRepository itemRepository, // Inyectar ItemRepository
+                         BodegaOcupacionRepository bodegaOcupacionRepository,
+                         PoliticaReintentoOptimista politicaReintentoOptimista) {
         this.bodegaRepository = bodegaRepository;
         this.estadoRepository = estadoRepository;
         this.usuarioRepository = usuarioRepository;
         this.itemRepository = itemRepository; // Asignar ItemRepository
+        this.bodegaOcupacionRepository = bodegaOcupacionRepository;
+        this.politicaReintentoOptimista = politicaReintentoOptimista;
     }
 
     /**
@@ -134,57 +160,75 @@ public class BodegaService {
      * @throws ResourceNotFoundException Si la bodega, el nuevo estado o el nuevo responsable no existen.
      * @throws DuplicateResourceException Si el nuevo nombre ya está en uso por otra bodega.
      */
-    @Transactional
     public Bodega actualizarBodega(Long id, Bodega bodegaActualizada) {
-        log.info("Intentando actualizar bodega con ID: {}", id);
-        Bodega bodegaExistente = obtenerBodegaPorId(id); // Valida existencia
-
-        // Validar nombre único si cambia
-        if (!bodegaExistente.getNombre().equalsIgnoreCase(bodegaActualizada.getNombre())) {
-            log.debug("El nombre de la bodega ID {} ha cambiado a '{}'. Verificando disponibilidad...", id, bodegaActualizada.getNombre());
-            if (bodegaRepository.existsByNombre(bodegaActualizada.getNombre())) {
-                log.warn("Conflicto: El nombre '{}' ya está en uso por otra bodega.", bodegaActualizada.getNombre());
-                throw new DuplicateResourceException("Ya existe una bodega con el nombre: " + bodegaActualizada.getNombre());
-            }
-            log.debug("Nombre '{}' disponible.", bodegaActualizada.getNombre());
-            bodegaExistente.setNombre(bodegaActualizada.getNombre());
-        }
+        return actualizarBodega(id, bodegaActualizada, null);
+    }
+
+    /**
+     * Actualiza una bodega existente.
+     * Con versión esperada, la comprueba y no reintenta ante conflictos.
+     * @param id ID de la bodega a actualizar.
+     * @param bodegaActualizada Entidad Bodega con los nuevos datos.
+     * @param versionEsperada Versión indicada por el cliente en If-Match (null para no comprobarla).
+     * @return La entidad Bodega actualizada.
+     * @throws ResourceNotFoundException Si la bodega, el nuevo estado o el nuevo responsable no existen.
+     * @throws DuplicateResourceException Si el nuevo nombre ya está en uso por otra bodega.
+     * @throws PreconditionFailedException si la versión actual no coincide con la esperada.
+     */
+    public Bodega actualizarBodega(Long id, Bodega bodegaActualizada, Long versionEsperada) {
+        return politicaReintentoOptimista.ejecutar("Actualizar bodega " + id, versionEsperada == null, () -> {
+            log.info("Intentando actualizar bodega con ID: {}", id);
+            Bodega bodegaExistente = obtenerBodegaPorId(id); // Valida existencia
 
-        // Actualizar otros campos
-        bodegaExistente.setTipoBodega(bodegaActualizada.getTipoBodega());
-        bodegaExistente.setCapacidadMaxima(bodegaActualizada.getCapacidadMaxima());
-        bodegaExistente.setUbicacion(bodegaActualizada.getUbicacion());
-        log.debug("Campos básicos (tipo, capacidad, ubicación) actualizados para bodega ID {}.", id);
-
-        // Actualizar Estado (si se proporciona ID)
-        if (bodegaActualizada.getEstado() != null && bodegaActualizada.getEstado().getEstadoId() != null) {
-            if (bodegaExistente.getEstado() == null || !bodegaExistente.getEstado().getEstadoId().equals(bodegaActualizada.getEstado().getEstadoId())) {
-                log.debug("Actualizando estado para bodega ID {} al ID: {}", id, bodegaActualizada.getEstado().getEstadoId());
-                Estado estado = estadoRepository.findById(bodegaActualizada.getEstado().getEstadoId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + bodegaActualizada.getEstado().getEstadoId()));
-                bodegaExistente.setEstado(estado);
+            PoliticaReintentoOptimista.verificarVersion("Bodega " + id, bodegaExistente.getVersion(), versionEsperada);
+
+            // Validar nombre único si cambia
+            if (!bodegaExistente.getNombre().equalsIgnoreCase(bodegaActualizada.getNombre())) {
+                log.debug("El nombre de la bodega ID {} ha cambiado a '{}'. Verificando disponibilidad...", id, bodegaActualizada.getNombre());
+                if (bodegaRepository.existsByNombre(bodegaActualizada.getNombre())) {
+                    log.warn("Conflicto: El nombre '{}' ya está en uso por otra bodega.", bodegaActualizada.getNombre());
+                    throw new DuplicateResourceException("Ya existe una bodega con el nombre: " + bodegaActualizada.getNombre());
+                }
+                log.debug("Nombre '{}' disponible.", bodegaActualizada.getNombre());
+                bodegaExistente.setNombre(bodegaActualizada.getNombre());
             }
-        } // Si no se proporciona, no se cambia el estado existente
-
-        // Actualizar Responsable (si se proporciona ID o es explícitamente null)
-        Long idResponsableNuevo = (bodegaActualizada.getResponsable() != null) ? bodegaActualizada.getResponsable().getUsuarioId() : null;
-        Long idResponsableActual = (bodegaExistente.getResponsable() != null) ? bodegaExistente.getResponsable().getUsuarioId() : null;
-
-        if (idResponsableNuevo != idResponsableActual) { // Comparar IDs directamente
-            if (idResponsableNuevo != null) {
-                log.debug("Actualizando responsable para bodega ID {} al Usuario ID: {}", id, idResponsableNuevo);
-                Usuario responsable = usuarioRepository.findById(idResponsableNuevo)
-                        .orElseThrow(() -> new ResourceNotFoundException("Usuario responsable no encontrado con ID: " + idResponsableNuevo));
-                bodegaExistente.setResponsable(responsable);
-            } else {
-                log.debug("Quitando responsable de bodega ID {}.", id);
-                bodegaExistente.setResponsable(null);
+
+            // Actualizar otros campos
+            bodegaExistente.setTipoBodega(bodegaActualizada.getTipoBodega());
+            bodegaExistente.setCapacidadMaxima(bodegaActualizada.getCapacidadMaxima());
+            bodegaExistente.setUbicacion(bodegaActualizada.getUbicacion());
+            log.debug("Campos básicos (tipo, capacidad, ubicación) actualizados para bodega ID {}.", id);
+
+            // Actualizar Estado (si se proporciona ID)
+            if (bodegaActualizada.getEstado() != null && bodegaActualizada.getEstado().getEstadoId() != null) {
+                if (bodegaExistente.getEstado() == null || !bodegaExistente.getEstado().getEstadoId().equals(bodegaActualizada.getEstado().getEstadoId())) {
+                    log.debug("Actualizando estado para bodega ID {} al ID: {}", id, bodegaActualizada.getEstado().getEstadoId());
+                    Estado estado = estadoRepository.findById(bodegaActualizada.getEstado().getEstadoId())
+                            .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + bodegaActualizada.getEstado().getEstadoId()));
+                    bodegaExistente.setEstado(estado);
+                }
+            } // Si no se proporciona, no se cambia el estado existente
+
+            // Actualizar Responsable (si se proporciona ID o es explícitamente null)
+            Long idResponsableNuevo = (bodegaActualizada.getResponsable() != null) ? bodegaActualizada.getResponsable().getUsuarioId() : null;
+            Long idResponsableActual = (bodegaExistente.getResponsable() != null) ? bodegaExistente.getResponsable().getUsuarioId() : null;
+
+            if (idResponsableNuevo != idResponsableActual) { // Comparar IDs directamente
+                if (idResponsableNuevo != null) {
+                    log.debug("Actualizando responsable para bodega ID {} al Usuario ID: {}", id, idResponsableNuevo);
+                    Usuario responsable = usuarioRepository.findById(idResponsableNuevo)
+                            .orElseThrow(() -> new ResourceNotFoundException("Usuario responsable no encontrado con ID: " + idResponsableNuevo));
+                    bodegaExistente.setResponsable(responsable);
+                } else {
+                    log.debug("Quitando responsable de bodega ID {}.", id);
+                    bodegaExistente.setResponsable(null);
+                }
             }
-        }
 
-        Bodega bodegaGuardada = bodegaRepository.save(bodegaExistente);
-        log.info("Bodega ID {} actualizada exitosamente.", id);
-        return bodegaGuardada;
+            Bodega bodegaGuardada = bodegaRepository.save(bodegaExistente);
+            log.info("Bodega ID {} actualizada exitosamente.", id);
+            return bodegaGuardada;
+        });
     }
 
     /**
@@ -242,7 +286,7 @@ public class BodegaService {
     }
 
     /**
-     * Busca bodegas que aún tengan capacidad disponible (capacidad máxima > suma del stock de sus items).
+     * Busca bodegas que aún tengan capacidad disponible (capacidad máxima > ocupación según sus contadores).
      * @return Lista de entidades Bodega con capacidad disponible.
      */
     @Transactional(readOnly = true)
@@ -253,6 +297,78 @@ public class BodegaService {
         return bodegas;
     }
 
+    /**
+     * Obtiene la utilización de una bodega a partir de su contador de ocupación.
+     * @param id ID de la bodega.
+     * @return DTO con capacidad, ocupación, capacidad libre y porcentaje de uso.
+     * @throws ResourceNotFoundException si la bodega no existe.
+     */
+    @Transactional(readOnly = true)
+    public BodegaUtilizacionDTO obtenerUtilizacion(Long id) {
+        log.info("Obteniendo utilización de la bodega ID: {}", id);
+        Bodega bodega = obtenerBodegaPorId(id);
+        return toUtilizacionDTO(bodega, bodegaOcupacionRepository.obtenerOcupacion(id));
+    }
+
+    /**
+     * Obtiene la utilización de todas las bodegas, ordenadas por nombre.
+     * @return Lista de DTOs de utilización.
+     */
+    @Transactional(readOnly = true)
+    public List<BodegaUtilizacionDTO> listarUtilizacion() {
+        log.info("Obteniendo utilización de todas las bodegas...");
+        Map<Long, Long> ocupaciones = bodegaOcupacionRepository.obtenerOcupaciones();
+        List<BodegaUtilizacionDTO> utilizacion = bodegaRepository.findAllByOrderByNombreAsc().stream()
+                .map(bodega -> toUtilizacionDTO(bodega, ocupaciones.getOrDefault(bodega.getBodegaId(), 0L)))
+                .toList();
+        log.debug("Utilización calculada para {} bodegas.", utilizacion.size());
+        return utilizacion;
+    }
+
+    /**
+     * Job periódico que traslada a los contadores de ocupación los deltas que insertan los triggers de
+     * stock. Se hace aquí, y no en los triggers, para que las transacciones de stock no bloqueen filas
+     * de contador compartidas. Usa READ COMMITTED para no tomar bloqueos de hueco que frenen esas
+     * inserciones.
+     * @return Número de deltas trasladados.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.inventario.ocupacion.aplicacion-ms:1000}")
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int aplicarOcupacionPendiente() {
+        int aplicados = bodegaOcupacionRepository.aplicarPendientes(LOTE_APLICACION_OCUPACION);
+        if (aplicados > 0) {
+            log.debug("Trasladados {} deltas de ocupación a los contadores de bodega.", aplicados);
+        }
+        return aplicados;
+    }
+
+    /**
+     * Job periódico que concilia los contadores de ocupación con el stock real de los ítems y
+     * corrige cualquier deriva (por ejemplo, cambios hechos con los triggers deshabilitados).
+     * @return Número de bodegas corregidas.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.inventario.ocupacion.conciliacion-ms:3600000}",
+            initialDelayString = "${crmtt360.inventario.ocupacion.conciliacion-ms:3600000}")
+    @Transactional
+    public int conciliarOcupacion() {
+        Map<Long, Long> derivas = bodegaOcupacionRepository.calcularDerivas();
+        if (derivas.isEmpty()) {
+            log.debug("Conciliación de ocupación de bodegas: sin deriva.");
+            return 0;
+        }
+        log.warn("Conciliación de ocupación de bodegas: corrigiendo deriva en {} bodegas: {}", derivas.size(), derivas);
+        bodegaOcupacionRepository.corregir(derivas);
+        return derivas.size();
+    }
+
+    private BodegaUtilizacionDTO toUtilizacionDTO(Bodega bodega, long ocupacion) {
+        int capacidad = bodega.getCapacidadMaxima();
+        BigDecimal porcentaje = BigDecimal.valueOf(ocupacion * 100)
+                .divide(BigDecimal.valueOf(capacidad), 2, RoundingMode.HALF_UP);
+        return new BodegaUtilizacionDTO(bodega.getBodegaId(), bodega.getNombre(), capacidad, ocupacion,
+                capacidad - ocupacion, porcentaje);
+    }
+
     /**
      * Busca bodegas asignadas a un usuario responsable específico.
      * @param responsableId ID del usuario responsable.
@@ -283,4 +399,29 @@ public class BodegaService {
         log.debug("Verificando existencia de bodega con nombre: '{}'", nombre);
         return bodegaRepository.existsByNombre(nombre); // Asumiendo que existsByNombre es case-insensitive o ajusta
     }
-}
\ No newline at end of file
+
+    /**
+     * Busca bodegas con filtros opcionales, paginadas. El nombre se busca por prefijo.
+     * @param nombre Prefijo del nombre (opcional).
+     * @param tipo Tipo de bodega (opcional).
+     * @param estadoId ID del estado (opcional).
+     * @param pagina Número de página, desde 0 (opcional).
+     * @param tamano Tamaño de página (opcional).
+     * @param orden Orden "campo,asc|desc" sobre nombre o bodegaId (opcional; por defecto nombre).
+     * @return Página de entidades Bodega.
+     * @throws com.telastech360.crmTT360.exception.InvalidDataException si la paginación o el orden no son válidos.
+     */
+    @Transactional(readOnly = true)
+    public Page<Bodega> buscarBodegas(String nombre, Bodega.TipoBodega tipo, Long estadoId,
+                                      Integer pagina, Integer tamano, String orden) {
+        Pageable paginacion = PaginacionUtil.paginacion(pagina, tamano, orden, ORDEN_BUSQUEDA_POR_DEFECTO,
+                CAMPOS_ORDEN_BUSQUEDA, "bodegaId");
+        Specification<Bodega> filtros = EspecificacionBusqueda.de(Bodega.class)
+                .empiezaPor("nombre", nombre)
+                .igual("tipoBodega", tipo)
+                .igual("estado.estadoId", estadoId)
+                .construir();
+        log.info("Buscando bodegas (nombre '{}', tipo {}, estado {}) - {}", nombre, tipo, estadoId, paginacion);
+        return bodegaRepository.findAll(filtros, paginacion);
+    }
+}
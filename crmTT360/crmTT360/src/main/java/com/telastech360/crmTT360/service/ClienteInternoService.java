@@ -5,17 +5,25 @@ import com.telastech360.crmTT360.entity.Usuario;
 import com.telastech360.crmTT360.exception.DuplicateResourceException;
 import com.telastech360.crmTT360.exception.ResourceNotFoundException;
 import com.telastech360.crmTT360.exception.IllegalOperationException;
+import com.telastech360.crmTT360.exception.PreconditionFailedException;
 import com.telastech360.crmTT360.repository.ClienteInternoRepository;
 import com.telastech360.crmTT360.repository.PedidoRepository; // Para verificar pedidos asociados
 import com.telastech360.crmTT360.repository.UsuarioRepository;
+import com.telastech360.crmTT360.repository.EspecificacionBusqueda;
+import com.telastech360.crmTT360.util.PaginacionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Servicio para gestionar la lógica de negocio de los Clientes Internos.
@@ -24,24 +32,30 @@ import java.util.List;
 public class ClienteInternoService {
 
     private static final Logger log = LoggerFactory.getLogger(ClienteInternoService.class);
+    static final Set<String> CAMPOS_ORDEN_BUSQUEDA = Set.of("nombre", "codigoInterno", "clienteId");
+    static final Sort ORDEN_BUSQUEDA_POR_DEFECTO = Sort.by("nombre");
 
     private final ClienteInternoRepository clienteRepository;
     private final UsuarioRepository usuarioRepository;
     private final PedidoRepository pedidoRepository; // Para verificar pedidos al eliminar
+    private final PoliticaReintentoOptimista politicaReintentoOptimista;
 
     /**
      * Constructor para inyección de dependencias.
      * @param clienteRepository Repositorio para Clientes Internos.
      * @param usuarioRepository Repositorio para Usuarios (responsables).
      * @param pedidoRepository Repositorio para Pedidos (verificar asociación).
+     * @param politicaReintentoOptimista Política de reintentos ante conflictos de concurrencia optimista.
      */
     @Autowired
     public ClienteInternoService(ClienteInternoRepository clienteRepository,
                                  UsuarioRepository usuarioRepository,
-                                 PedidoRepository pedidoRepository) { // Inyectar PedidoRepository
+                                 PedidoRepository pedidoRepository, // Inyectar PedidoRepository
+                                 PoliticaReintentoOptimista politicaReintentoOptimista) {
         this.clienteRepository = clienteRepository;
         this.usuarioRepository = usuarioRepository;
         this.pedidoRepository = pedidoRepository; // Asignar PedidoRepository
+        this.politicaReintentoOptimista = politicaReintentoOptimista;
     }
 
     /**
@@ -120,48 +134,66 @@ public class ClienteInternoService {
      * @throws ResourceNotFoundException Si el cliente o el nuevo responsable no existen.
      * @throws DuplicateResourceException Si el nuevo código interno ya está en uso por otro cliente.
      */
-    @Transactional
     public ClienteInterno actualizarCliente(Long id, ClienteInterno clienteActualizado) {
-        log.info("Intentando actualizar cliente interno con ID: {}", id);
-        ClienteInterno clienteExistente = obtenerClientePorId(id); // Valida existencia
+        return actualizarCliente(id, clienteActualizado, null);
+    }
+
+    /**
+     * Actualiza un cliente interno existente.
+     * Con versión esperada, la comprueba y no reintenta ante conflictos.
+     * @param id ID del cliente a actualizar.
+     * @param clienteActualizado Entidad ClienteInterno con los nuevos datos.
+     * @param versionEsperada Versión indicada por el cliente en If-Match (null para no comprobarla).
+     * @return La entidad ClienteInterno actualizada.
+     * @throws ResourceNotFoundException Si el cliente o el nuevo responsable no existen.
+     * @throws DuplicateResourceException Si el nuevo código interno ya está en uso por otro cliente.
+     * @throws PreconditionFailedException si la versión actual no coincide con la esperada.
+     */
+    public ClienteInterno actualizarCliente(Long id, ClienteInterno clienteActualizado, Long versionEsperada) {
+        return politicaReintentoOptimista.ejecutar("Actualizar cliente interno " + id, versionEsperada == null, () -> {
+            log.info("Intentando actualizar cliente interno con ID: {}", id);
+            ClienteInterno clienteExistente = obtenerClientePorId(id); // Valida existencia
+
+            PoliticaReintentoOptimista.verificarVersion("Cliente interno " + id, clienteExistente.getVersion(), versionEsperada);
 
-        // Validar código interno único si cambia
-        if (!clienteExistente.getCodigoInterno().equalsIgnoreCase(clienteActualizado.getCodigoInterno())) {
-            log.debug("El código interno del cliente ID {} ha cambiado a '{}'. Verificando disponibilidad...", id, clienteActualizado.getCodigoInterno());
-            if (clienteRepository.existsByCodigoInterno(clienteActualizado.getCodigoInterno())) {
-                log.warn("Conflicto: El código interno '{}' ya está en uso por otro cliente.", clienteActualizado.getCodigoInterno());
-                throw new DuplicateResourceException("El código interno ya está registrado: " + clienteActualizado.getCodigoInterno());
+            // Validar código interno único si cambia
+            if (!clienteExistente.getCodigoInterno().equalsIgnoreCase(clienteActualizado.getCodigoInterno())) {
+                log.debug("El código interno del cliente ID {} ha cambiado a '{}'. Verificando disponibilidad...", id, clienteActualizado.getCodigoInterno());
+                if (clienteRepository.existsByCodigoInterno(clienteActualizado.getCodigoInterno())) {
+                    log.warn("Conflicto: El código interno '{}' ya está en uso por otro cliente.", clienteActualizado.getCodigoInterno());
+                    throw new DuplicateResourceException("El código interno ya está registrado: " + clienteActualizado.getCodigoInterno());
+                }
+                log.debug("Código interno '{}' disponible.", clienteActualizado.getCodigoInterno());
+                clienteExistente.setCodigoInterno(clienteActualizado.getCodigoInterno());
             }
-            log.debug("Código interno '{}' disponible.", clienteActualizado.getCodigoInterno());
-            clienteExistente.setCodigoInterno(clienteActualizado.getCodigoInterno());
-        }
 
-        // Actualizar otros campos
-        clienteExistente.setNombre(clienteActualizado.getNombre());
-        clienteExistente.setTipo(clienteActualizado.getTipo());
-        clienteExistente.setUbicacion(clienteActualizado.getUbicacion());
-        clienteExistente.setPresupuestoAnual(clienteActualizado.getPresupuestoAnual());
-        log.debug("Campos básicos actualizados para cliente ID {}.", id);
+            // Actualizar otros campos
+            clienteExistente.setNombre(clienteActualizado.getNombre());
+            clienteExistente.setTipo(clienteActualizado.getTipo());
+            clienteExistente.setUbicacion(clienteActualizado.getUbicacion());
+            clienteExistente.setPresupuestoAnual(clienteActualizado.getPresupuestoAnual());
+            log.debug("Campos básicos actualizados para cliente ID {}.", id);
 
-        // Actualizar responsable si se especifica
-        Long idResponsableNuevo = (clienteActualizado.getResponsable() != null) ? clienteActualizado.getResponsable().getUsuarioId() : null;
-        Long idResponsableActual = (clienteExistente.getResponsable() != null) ? clienteExistente.getResponsable().getUsuarioId() : null;
+            // Actualizar responsable si se especifica
+            Long idResponsableNuevo = (clienteActualizado.getResponsable() != null) ? clienteActualizado.getResponsable().getUsuarioId() : null;
+            Long idResponsableActual = (clienteExistente.getResponsable() != null) ? clienteExistente.getResponsable().getUsuarioId() : null;
 
-        if (idResponsableNuevo != idResponsableActual) { // Comparar IDs
-            if (idResponsableNuevo != null) {
-                log.debug("Actualizando responsable para cliente ID {} al Usuario ID: {}", id, idResponsableNuevo);
-                Usuario responsable = usuarioRepository.findById(idResponsableNuevo)
-                        .orElseThrow(() -> new ResourceNotFoundException("Usuario responsable no encontrado con ID: " + idResponsableNuevo));
-                clienteExistente.setResponsable(responsable);
-            } else {
-                log.debug("Quitando responsable del cliente ID {}.", id);
-                clienteExistente.setResponsable(null);
+            if (idResponsableNuevo != idResponsableActual) { // Comparar IDs
+                if (idResponsableNuevo != null) {
+                    log.debug("Actualizando responsable para cliente ID {} al Usuario ID: {}", id, idResponsableNuevo);
+                    Usuario responsable = usuarioRepository.findById(idResponsableNuevo)
+                            .orElseThrow(() -> new ResourceNotFoundException("Usuario responsable no encontrado con ID: " + idResponsableNuevo));
+                    clienteExistente.setResponsable(responsable);
+                } else {
+                    log.debug("Quitando responsable del cliente ID {}.", id);
+                    clienteExistente.setResponsable(null);
+                }
             }
-        }
 
-        ClienteInterno clienteGuardado = clienteRepository.save(clienteExistente);
-        log.info("Cliente interno ID {} actualizado exitosamente.", id);
-        return clienteGuardado;
+            ClienteInterno clienteGuardado = clienteRepository.save(clienteExistente);
+            log.info("Cliente interno ID {} actualizado exitosamente.", id);
+            return clienteGuardado;
+        });
     }
 
     /**
@@ -273,4 +305,32 @@ public class ClienteInternoService {
         log.debug("Resumen de clientes por tipo obtenido con {} entradas.", resumen.size());
         return resumen;
     }
-}
\ No newline at end of file
+
+    /**
+     * Busca clientes internos con filtros opcionales, paginados. Código y nombre se buscan por prefijo.
+     * @param codigo Prefijo del código interno (opcional).
+     * @param nombre Prefijo del nombre (opcional).
+     * @param tipo Tipo de cliente (opcional).
+     * @param responsableId ID del usuario responsable (opcional).
+     * @param pagina Número de página, desde 0 (opcional).
+     * @param tamano Tamaño de página (opcional).
+     * @param orden Orden "campo,asc|desc" sobre nombre, codigoInterno o clienteId (opcional; por defecto nombre).
+     * @return Página de entidades ClienteInterno.
+     * @throws com.telastech360.crmTT360.exception.InvalidDataException si la paginación o el orden no son válidos.
+     */
+    @Transactional(readOnly = true)
+    public Page<ClienteInterno> buscarClientes(String codigo, String nombre, ClienteInterno.TipoCliente tipo,
+                                               Long responsableId, Integer pagina, Integer tamano, String orden) {
+        Pageable paginacion = PaginacionUtil.paginacion(pagina, tamano, orden, ORDEN_BUSQUEDA_POR_DEFECTO,
+                CAMPOS_ORDEN_BUSQUEDA, "clienteId");
+        Specification<ClienteInterno> filtros = EspecificacionBusqueda.de(ClienteInterno.class)
+                .empiezaPor("codigoInterno", codigo)
+                .empiezaPor("nombre", nombre)
+                .igual("tipo", tipo)
+                .igual("responsable.usuarioId", responsableId)
+                .construir();
+        log.info("Buscando clientes internos (código '{}', nombre '{}', tipo {}, responsable {}) - {}",
+                codigo, nombre, tipo, responsableId, paginacion);
+        return clienteRepository.findAll(filtros, paginacion);
+    }
+}
@@ -0,0 +1,289 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoSlaDTO;
+import com.telastech360.crmTT360.dto.PedidosSlaResumenDTO;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cola de prioridad en memoria de los pedidos PENDIENTE, ordenada por la fecha límite de su SLA
+ * (fecha del pedido + plazo configurado).
+ * <p>
+ * Al arrancar se carga con una consulta por el índice (estado_id, fecha_pedido) y después se mantiene
+ * con los eventos de creación, cambio de estado y eliminación de pedidos. Cada tick pasa a vencidos
+ * los pedidos cuya fecha límite ya llegó y lo notifica a los clientes suscritos (Server-Sent Events).
+ * Los recuentos de urgentes y vencidos se responden sin consultar la base de datos.
+ */
+@Service
+public class ColaSlaPedidosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ColaSlaPedidosService.class);
+
+    public static final String EVENTO_SLA_VENCIDO = "sla-vencido";
+    static final String ESTADO_PENDIENTE = "PENDIENTE";
+
+    private static final Comparator<Entrada> POR_FECHA_LIMITE =
+            Comparator.comparingLong(Entrada::fechaLimite).thenComparing(Entrada::pedidoId);
+
+    private final PedidoRepository pedidoRepository;
+    private final EstadoRepository estadoRepository;
+    private final TransactionTemplate transaccionLectura;
+    private final long plazoMs;
+    private final long ventanaUrgenciaMs;
+    private final long timeoutSuscripcionMs;
+    private final Clock reloj;
+
+    private final NavigableSet<Entrada> enPlazo = new TreeSet<>(POR_FECHA_LIMITE);
+    private final NavigableSet<Entrada> vencidos = new TreeSet<>(POR_FECHA_LIMITE);
+    private final Map<Long, Entrada> entradaPorPedido = new HashMap<>();
+    private final Set<Long> estadosPendiente = new HashSet<>();
+    private final List<SseEmitter> suscriptores = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param pedidoRepository Repositorio para Pedidos.
+     * @param estadoRepository Repositorio para Estados.
+     * @param transactionManager Gestor de transacciones, para las lecturas fuera de la transacción ya confirmada.
+     * @param plazoHoras Plazo de atención de un pedido pendiente, en horas desde su creación.
+     * @param ventanaUrgenciaMinutos Minutos antes de la fecha límite a partir de los cuales un pedido es urgente.
+     * @param timeoutSuscripcionMs Tiempo máximo de una suscripción SSE antes de que el cliente deba reconectar.
+     */
+    @Autowired
+    public ColaSlaPedidosService(PedidoRepository pedidoRepository,
+                                 EstadoRepository estadoRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${crmtt360.pedidos.sla.plazo-horas:24}") long plazoHoras,
+                                 @Value("${crmtt360.pedidos.sla.ventana-urgencia-minutos:240}") long ventanaUrgenciaMinutos,
+                                 @Value("${crmtt360.pedidos.sla.sse-timeout-ms:1800000}") long timeoutSuscripcionMs) {
+        this(pedidoRepository, estadoRepository, transactionManager, plazoHoras, ventanaUrgenciaMinutos,
+                timeoutSuscripcionMs, Clock.systemDefaultZone());
+    }
+
+    ColaSlaPedidosService(PedidoRepository pedidoRepository, EstadoRepository estadoRepository,
+                          PlatformTransactionManager transactionManager, long plazoHoras, long ventanaUrgenciaMinutos,
+                          long timeoutSuscripcionMs, Clock reloj) {
+        this.pedidoRepository = pedidoRepository;
+        this.estadoRepository = estadoRepository;
+        this.transaccionLectura = new TransactionTemplate(transactionManager);
+        this.transaccionLectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transaccionLectura.setReadOnly(true);
+        this.plazoMs = plazoHoras * 3_600_000L;
+        this.ventanaUrgenciaMs = ventanaUrgenciaMinutos * 60_000L;
+        this.timeoutSuscripcionMs = timeoutSuscripcionMs;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Carga los pedidos pendientes al arrancar la aplicación. Los que ya superaron su fecha límite
+     * entran directamente como vencidos, sin notificarse de nuevo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        List<Object[]> filas = transaccionLectura.execute(estado -> {
+            List<Long> pendientes = estadoRepository.findEstadosPedido().stream()
+                    .filter(e -> ESTADO_PENDIENTE.equals(normalizar(e.getValor())))
+                    .map(Estado::getEstadoId).toList();
+            synchronized (this) {
+                estadosPendiente.addAll(pendientes);
+            }
+            return pendientes.isEmpty() ? List.<Object[]>of() : pedidoRepository.findFechasPorEstados(pendientes);
+        });
+        synchronized (this) {
+            for (Object[] fila : filas) {
+                agregar((Long) fila[0], (Timestamp) fila[1]);
+            }
+        }
+        log.info("Cola de SLA de pedidos cargada: {} pendientes, {} ya vencidos.", entradaPorPedido.size(), vencidos.size());
+    }
+
+    /**
+     * Añade a la cola un pedido creado en estado PENDIENTE.
+     * @param evento Evento de creación del pedido.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCrearPedido(PedidoCreadoEvent evento) {
+        if (estadosPendiente.contains(evento.estadoId())) {
+            agregar(evento.pedidoId(), evento.fechaPedido());
+        }
+    }
+
+    /**
+     * Retira de la cola los pedidos que salen de PENDIENTE y añade los que vuelven a él.
+     * @param evento Evento de cambio de estado.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarEstado(PedidoEstadoCambiadoEvent evento) {
+        boolean aPendiente;
+        List<Long> nuevos = new ArrayList<>();
+        synchronized (this) {
+            aPendiente = estadosPendiente.contains(evento.estadoId());
+            for (Long pedidoId : evento.pedidoIds()) {
+                if (!aPendiente) {
+                    retirar(pedidoId);
+                } else if (!entradaPorPedido.containsKey(pedidoId)) {
+                    nuevos.add(pedidoId);
+                }
+            }
+        }
+        if (!nuevos.isEmpty()) {
+            List<Object[]> filas = transaccionLectura.execute(estado -> pedidoRepository.findFechasByIds(nuevos));
+            synchronized (this) {
+                for (Object[] fila : filas) {
+                    agregar((Long) fila[0], (Timestamp) fila[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retira de la cola un pedido eliminado.
+     * @param evento Evento de eliminación del pedido.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alEliminarPedido(PedidoEliminadoEvent evento) {
+        retirar(evento.pedidoId());
+    }
+
+    /**
+     * Pasa a vencidos los pedidos cuya fecha límite ya llegó y notifica cada uno a los suscriptores.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.pedidos.sla.tick-ms:1000}")
+    public void revisarVencimientos() {
+        long ahora = reloj.millis();
+        List<Entrada> recienVencidos = new ArrayList<>();
+        synchronized (this) {
+            while (!enPlazo.isEmpty() && enPlazo.first().fechaLimite() <= ahora) {
+                Entrada entrada = enPlazo.pollFirst();
+                vencidos.add(entrada);
+                recienVencidos.add(entrada);
+            }
+        }
+        for (Entrada entrada : recienVencidos) {
+            publicar(aDTO(entrada, true));
+        }
+    }
+
+    /**
+     * Devuelve los recuentos de la cola y los primeros pedidos por fecha límite.
+     * @param limite Número máximo de pedidos a listar (los vencidos primero).
+     * @return Resumen de la cola de SLA.
+     */
+    public synchronized PedidosSlaResumenDTO obtenerResumen(int limite) {
+        long ahora = reloj.millis();
+        List<PedidoSlaDTO> primeros = new ArrayList<>();
+        for (Entrada entrada : vencidos) {
+            if (primeros.size() >= limite) break;
+            primeros.add(aDTO(entrada, true));
+        }
+        for (Entrada entrada : enPlazo) {
+            if (primeros.size() >= limite) break;
+            primeros.add(aDTO(entrada, entrada.fechaLimite() <= ahora));
+        }
+        return new PedidosSlaResumenDTO(entradaPorPedido.size(), contarUrgentes(ahora), vencidos.size(), primeros);
+    }
+
+    /**
+     * Devuelve los IDs de los pedidos vencidos y urgentes, por fecha límite.
+     * @return IDs de los pedidos.
+     */
+    public synchronized List<Long> obtenerIdsUrgentes() {
+        List<Long> ids = new ArrayList<>();
+        vencidos.forEach(entrada -> ids.add(entrada.pedidoId()));
+        enPlazo.headSet(limiteUrgencia(reloj.millis()), true).forEach(entrada -> ids.add(entrada.pedidoId()));
+        return ids;
+    }
+
+    /**
+     * Registra un nuevo cliente para recibir los avisos de SLA vencido.
+     * @return El SseEmitter del cliente.
+     */
+    public SseEmitter suscribir() {
+        SseEmitter emitter = new SseEmitter(timeoutSuscripcionMs);
+        emitter.onCompletion(() -> suscriptores.remove(emitter));
+        emitter.onTimeout(() -> suscriptores.remove(emitter));
+        emitter.onError(e -> suscriptores.remove(emitter));
+        suscriptores.add(emitter);
+        log.debug("Nueva suscripción a avisos de SLA. Suscriptores: {}", suscriptores.size());
+        return emitter;
+    }
+
+    private void agregar(Long pedidoId, Timestamp fechaPedido) {
+        retirar(pedidoId);
+        Entrada entrada = new Entrada(pedidoId, fechaPedido.getTime(), fechaPedido.getTime() + plazoMs);
+        entradaPorPedido.put(pedidoId, entrada);
+        if (entrada.fechaLimite() <= reloj.millis()) {
+            vencidos.add(entrada);
+        } else {
+            enPlazo.add(entrada);
+        }
+    }
+
+    private void retirar(Long pedidoId) {
+        Entrada entrada = entradaPorPedido.remove(pedidoId);
+        if (entrada != null && !enPlazo.remove(entrada)) {
+            vencidos.remove(entrada);
+        }
+    }
+
+    private int contarUrgentes(long ahora) {
+        return enPlazo.headSet(limiteUrgencia(ahora), true).size();
+    }
+
+    // Centinela con el mayor ID posible: headSet incluye todas las entradas con fecha límite <= ahora + ventana
+    private Entrada limiteUrgencia(long ahora) {
+        return new Entrada(Long.MAX_VALUE, 0L, ahora + ventanaUrgenciaMs);
+    }
+
+    private static PedidoSlaDTO aDTO(Entrada entrada, boolean vencido) {
+        return new PedidoSlaDTO(entrada.pedidoId(), new Timestamp(entrada.fechaPedido()),
+                new Timestamp(entrada.fechaLimite()), vencido);
+    }
+
+    private void publicar(PedidoSlaDTO aviso) {
+        log.warn("Pedido ID {} ha superado su fecha límite de SLA ({}). Notificando a {} suscriptores.",
+                aviso.getPedidoId(), aviso.getFechaLimite(), suscriptores.size());
+        for (SseEmitter emitter : suscriptores) {
+            try {
+                emitter.send(SseEmitter.event().name(EVENTO_SLA_VENCIDO).id(String.valueOf(aviso.getPedidoId())).data(aviso));
+            } catch (IOException | IllegalStateException e) {
+                suscriptores.remove(emitter); // Cliente desconectado
+            }
+        }
+    }
+
+    private static String normalizar(String valor) {
+        return valor == null ? null : valor.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private record Entrada(Long pedidoId, long fechaPedido, long fechaLimite) {
+    }
+}
@@ -1,22 +1,42 @@
 package com.telastech360.crmTT360.service;
 
 import com.telastech360.crmTT360.dto.FacturaDTO;
+import com.telastech360.crmTT360.dto.TotalFacturadoDiaDTO;
 import com.telastech360.crmTT360.entity.Factura;
 import com.telastech360.crmTT360.entity.Pedido; // Necesario si se valida/asigna Pedido
+import com.telastech360.crmTT360.exception.DuplicateResourceException;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.exception.PreconditionFailedException;
 import com.telastech360.crmTT360.exception.ResourceNotFoundException;
 import com.telastech360.crmTT360.mapper.FacturaMapper;
 import com.telastech360.crmTT360.repository.FacturaRepository;
+import com.telastech360.crmTT360.repository.FacturaResumenDiarioRepository;
+import com.telastech360.crmTT360.repository.PedidoDetalleRepository;
 import com.telastech360.crmTT360.repository.PedidoRepository; // Necesario si se valida/asigna Pedido
+import com.telastech360.crmTT360.repository.EspecificacionBusqueda;
+import com.telastech360.crmTT360.util.PaginacionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
 import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.Set;
 
 /**
  * Servicio para gestionar la lógica de negocio relacionada con las Facturas.
@@ -26,39 +46,67 @@ import java.util.stream.Collectors;
 public class FacturaService {
 
     private static final Logger log = LoggerFactory.getLogger(FacturaService.class);
+    static final Set<String> CAMPOS_ORDEN_BUSQUEDA = Set.of("fechaCreacion", "total", "facturaId");
+    static final Sort ORDEN_BUSQUEDA_POR_DEFECTO = Sort.by(Sort.Direction.DESC, "fechaCreacion");
 
     private final FacturaRepository facturaRepository;
     private final FacturaMapper facturaMapper; // Inyectar Mapper
     private final PedidoRepository pedidoRepository; // Inyectar si se necesita validar/asignar Pedido
+    private final PoliticaReintentoOptimista politicaReintentoOptimista;
+    private final PedidoDetalleRepository pedidoDetalleRepository;
+    private final FacturaResumenDiarioRepository facturaResumenDiarioRepository;
+    private final int diasConciliacion;
+    private final Clock reloj;
 
     /**
      * Constructor para inyección de dependencias.
      * @param facturaRepository Repositorio para Facturas.
      * @param facturaMapper Mapper para convertir entre Factura y FacturaDTO.
      * @param pedidoRepository Repositorio para Pedidos (opcional, para validación/asignación).
+     * @param politicaReintentoOptimista Política de reintentos ante conflictos de concurrencia optimista.
+     * @param pedidoDetalleRepository Repositorio de detalles, para calcular el total de la factura.
+     * @param facturaResumenDiarioRepository Repositorio del rollup de facturación diaria.
+     * @param diasConciliacion Días hacia atrás que el job de conciliación compara con un recálculo.
      */
     @Autowired
     public FacturaService(FacturaRepository facturaRepository,
                           FacturaMapper facturaMapper,
-                          PedidoRepository pedidoRepository) { // Inyectar PedidoRepository
+                          PedidoRepository pedidoRepository, // Inyectar PedidoRepository
+                          PoliticaReintentoOptimista politicaReintentoOptimista,
+                          PedidoDetalleRepository pedidoDetalleRepository,
+                          FacturaResumenDiarioRepository facturaResumenDiarioRepository,
+                          @Value("${crmtt360.facturas.resumen.conciliacion-dias:31}") int diasConciliacion) {
+        this(facturaRepository, facturaMapper, pedidoRepository, politicaReintentoOptimista, pedidoDetalleRepository,
+                facturaResumenDiarioRepository, diasConciliacion, Clock.systemDefaultZone());
+    }
+
+    FacturaService(FacturaRepository facturaRepository, FacturaMapper facturaMapper, PedidoRepository pedidoRepository,
+                   PoliticaReintentoOptimista politicaReintentoOptimista, PedidoDetalleRepository pedidoDetalleRepository,
+                   FacturaResumenDiarioRepository facturaResumenDiarioRepository, int diasConciliacion, Clock reloj) {
         this.facturaRepository = facturaRepository;
         this.facturaMapper = facturaMapper; // Asignar Mapper
         this.pedidoRepository = pedidoRepository; // Asignar PedidoRepository
+        this.politicaReintentoOptimista = politicaReintentoOptimista;
+        this.pedidoDetalleRepository = pedidoDetalleRepository;
+        this.facturaResumenDiarioRepository = facturaResumenDiarioRepository;
+        this.diasConciliacion = diasConciliacion;
+        this.reloj = reloj;
     }
 
     /**
-     * Crea una nueva factura a partir de un DTO.
-     * Se necesita refactorizar para asignar el Pedido correctamente.
-     * @param facturaDTO DTO con los datos de la factura a crear. Necesita incluir pedidoId.
+     * Crea una nueva factura para un pedido a partir de un DTO.
+     * El total se calcula a partir de los detalles del pedido; el enviado en el DTO se ignora.
+     * Un pedido solo puede tener una factura (restricción única sobre factura.pedido_id).
+     * @param facturaDTO DTO con los datos de la factura a crear, incluido el pedidoId.
      * @return El DTO de la factura creada.
      * @throws ResourceNotFoundException Si el Pedido asociado no existe.
+     * @throws DuplicateResourceException Si el pedido ya tiene factura.
+     * @throws InvalidDataException Si el pedido no tiene importe que facturar.
      */
     @Transactional
     public FacturaDTO crearFactura(FacturaDTO facturaDTO) {
         log.info("Intentando crear nueva factura...");
-        // ** IMPORTANTE: El DTO necesita incluir pedidoId para poder asociarlo **
-        // Long pedidoId = facturaDTO.getPedidoId(); // Asumiendo que existe este getter en FacturaDTO
-        Long pedidoId = 1L; // Placeholder - ¡¡REEMPLAZAR CON ID REAL DEL DTO!!
+        Long pedidoId = facturaDTO.getPedidoId();
         if (pedidoId == null) {
             log.error("Fallo al crear factura: pedidoId es nulo en el DTO.");
             throw new IllegalArgumentException("El ID del pedido es obligatorio para crear una factura.");
@@ -71,17 +119,33 @@ public class FacturaService {
                     return new ResourceNotFoundException("Pedido no encontrado con ID: " + pedidoId);
                 });
         log.debug("Pedido ID {} encontrado.", pedidoId);
+        if (facturaRepository.existsByPedidoId(pedidoId)) {
+            log.warn("El pedido ID {} ya tiene factura; no se crea otra.", pedidoId);
+            throw new DuplicateResourceException("El pedido " + pedidoId + " ya tiene una factura.");
+        }
 
-        Factura factura = facturaMapper.toEntity(facturaDTO);
-        factura.setPedido(pedido); // Asignar la entidad Pedido encontrada
-        // Establecer estado de pago inicial si no viene en el DTO
-        if (!factura.isEstadoPago()) { // Asumiendo getter isEstadoPago
-            factura.setEstadoPago(false);
-            log.debug("Estableciendo estadoPago a false por defecto.");
+        BigDecimal total = pedidoDetalleRepository.sumarImportesPorPedido(List.of(pedidoId)).stream()
+                .map(fila -> ((BigDecimal) fila[1]).setScale(2, RoundingMode.HALF_UP))
+                .findFirst()
+                .filter(importe -> importe.signum() > 0)
+                .orElseThrow(() -> new InvalidDataException("El pedido " + pedidoId + " no tiene importe que facturar."));
+        if (facturaDTO.getTotal() != null && facturaDTO.getTotal().compareTo(total) != 0) {
+            log.warn("Total enviado {} distinto del calculado {} para el pedido ID {}; se usa el calculado.",
+                    facturaDTO.getTotal(), total, pedidoId);
         }
 
+        Factura factura = facturaMapper.toEntity(facturaDTO);
+        factura.setPedido(pedido); // Asignar la entidad Pedido encontrada
+        factura.setTotal(total);
 
-        Factura nuevaFactura = facturaRepository.save(factura);
+        Factura nuevaFactura;
+        try {
+            // Con flush, la restricción única detecta aquí una factura creada en paralelo para el mismo pedido
+            nuevaFactura = facturaRepository.saveAndFlush(factura);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Factura concurrente para el pedido ID {}: {}", pedidoId, e.getMostSpecificCause().getMessage());
+            throw new DuplicateResourceException("El pedido " + pedidoId + " ya tiene una factura.");
+        }
         log.info("Factura creada exitosamente con ID: {} para Pedido ID: {}", nuevaFactura.getFacturaId(), pedidoId);
         return facturaMapper.toDTO(nuevaFactura);
     }
@@ -120,29 +184,48 @@ public class FacturaService {
 
     /**
      * Actualiza una factura existente.
-     * Permite modificar tipo, total, fecha y estado de pago. No permite cambiar el pedido asociado.
+     * Permite modificar tipo, fecha y estado de pago. No permite cambiar el pedido asociado ni el total,
+     * que se calcula al crear la factura a partir de los detalles del pedido.
      * @param id ID de la factura a actualizar.
      * @param facturaDTO DTO con los datos actualizados.
      * @return El FacturaDTO actualizado.
      * @throws ResourceNotFoundException si la factura no existe.
      */
-    @Transactional
     public FacturaDTO actualizarFactura(Long id, FacturaDTO facturaDTO) {
-        log.info("Intentando actualizar factura con ID: {}", id);
-        Factura facturaExistente = facturaRepository.findById(id)
-                .orElseThrow(() -> {
-                    log.warn("Factura ID {} no encontrada para actualizar.", id);
-                    return new ResourceNotFoundException("Factura no encontrada con ID: " + id);
-                });
-        log.debug("Factura ID {} encontrada para actualizar.", id);
+        return actualizarFactura(id, facturaDTO, null);
+    }
+
+    /**
+     * Actualiza una factura existente.
+     * Con versión esperada, la comprueba y no reintenta ante conflictos.
+     * Permite modificar tipo, fecha y estado de pago. No permite cambiar el pedido asociado ni el total,
+     * que se calcula al crear la factura a partir de los detalles del pedido.
+     * @param id ID de la factura a actualizar.
+     * @param facturaDTO DTO con los datos actualizados.
+     * @param versionEsperada Versión indicada por el cliente en If-Match (null para no comprobarla).
+     * @return El FacturaDTO actualizado.
+     * @throws ResourceNotFoundException si la factura no existe.
+     * @throws PreconditionFailedException si la versión actual no coincide con la esperada.
+     */
+    public FacturaDTO actualizarFactura(Long id, FacturaDTO facturaDTO, Long versionEsperada) {
+        return politicaReintentoOptimista.ejecutar("Actualizar factura " + id, versionEsperada == null, () -> {
+            log.info("Intentando actualizar factura con ID: {}", id);
+            Factura facturaExistente = facturaRepository.findById(id)
+                    .orElseThrow(() -> {
+                        log.warn("Factura ID {} no encontrada para actualizar.", id);
+                        return new ResourceNotFoundException("Factura no encontrada con ID: " + id);
+                    });
+            PoliticaReintentoOptimista.verificarVersion("Factura " + id, facturaExistente.getVersion(), versionEsperada);
+            log.debug("Factura ID {} encontrada para actualizar.", id);
 
-        // Usar mapper para actualizar campos permitidos (sin cambiar pedido)
-        facturaMapper.updateEntityFromDTO(facturaDTO, facturaExistente);
-        log.debug("Campos de factura ID {} actualizados desde DTO.", id);
+            // Usar mapper para actualizar campos permitidos (sin cambiar pedido)
+            facturaMapper.updateEntityFromDTO(facturaDTO, facturaExistente);
+            log.debug("Campos de factura ID {} actualizados desde DTO.", id);
 
-        Factura facturaActualizada = facturaRepository.save(facturaExistente);
-        log.info("Factura ID {} actualizada exitosamente.", id);
-        return facturaMapper.toDTO(facturaActualizada);
+            Factura facturaActualizada = facturaRepository.save(facturaExistente);
+            log.info("Factura ID {} actualizada exitosamente.", id);
+            return facturaMapper.toDTO(facturaActualizada);
+        });
     }
 
     /**
@@ -205,17 +288,49 @@ public class FacturaService {
     }
 
     /**
-     * Calcula el total facturado agrupado por día dentro de un rango de fechas.
+     * Calcula el total facturado por día y tipo de movimiento dentro de un rango de fechas.
+     * Se lee de la tabla rollup factura_resumen_diario, una fila por día y tipo, sin recorrer las facturas.
+     * El rango se aplica por días completos: del día de inicio al día de fin, ambos incluidos.
      * @param inicio Timestamp de inicio del rango.
      * @param fin Timestamp de fin del rango.
-     * @return Lista de Object[], donde cada array contiene [Date (o String), BigDecimal (total)].
+     * @param tipoMovimiento Tipo de movimiento para filtrar (null para ambos).
+     * @return Totales por día y tipo, en orden de día.
+     * @throws InvalidDataException si el inicio es posterior al fin.
      */
     @Transactional(readOnly = true)
-    public List<Object[]> calcularTotalFacturadoPorDia(Timestamp inicio, Timestamp fin) {
-        log.info("Calculando total facturado por día entre {} y {}", inicio, fin);
-        List<Object[]> resultado = facturaRepository.getTotalFacturadoPorDia(inicio, fin); // Asume método en repo
+    public List<TotalFacturadoDiaDTO> calcularTotalFacturadoPorDia(Timestamp inicio, Timestamp fin,
+                                                                   Factura.TipoMovimiento tipoMovimiento) {
+        if (inicio.after(fin)) {
+            throw new InvalidDataException("La fecha de inicio debe ser anterior o igual a la fecha de fin.");
+        }
+        log.info("Calculando total facturado por día entre {} y {} (tipo: {})", inicio, fin, tipoMovimiento);
+        List<TotalFacturadoDiaDTO> resultado = facturaResumenDiarioRepository.obtenerTotalesPorDia(
+                new Date(inicio.getTime()), new Date(fin.getTime()), tipoMovimiento);
         log.debug("Cálculo de total por día completado, {} resultados.", resultado.size());
-        return resultado; // Devuelve Object[], el controlador lo expone
+        return resultado;
+    }
+
+    /**
+     * Job periódico que verifica los últimos días del rollup de facturación diaria contra un recálculo
+     * y corrige las claves con deriva.
+     * @return Número de claves (día, tipo) corregidas.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.facturas.resumen.conciliacion-ms:3600000}",
+            initialDelayString = "${crmtt360.facturas.resumen.conciliacion-ms:3600000}")
+    @Transactional
+    public int conciliarResumenDiario() {
+        Date desde = Date.valueOf(LocalDate.now(reloj).minusDays(diasConciliacion));
+        List<Object[]> diferencias = facturaResumenDiarioRepository.calcularDiferencias(desde);
+        if (diferencias.isEmpty()) {
+            log.debug("Conciliación de la facturación diaria desde {}: sin deriva.", desde);
+            return 0;
+        }
+        for (Object[] d : diferencias) {
+            log.warn("Deriva en facturación diaria [día={}, tipo={}]: facturas {}, total {}, total pagado {}",
+                    d[0], d[1], d[2], d[3], d[4]);
+        }
+        facturaResumenDiarioRepository.corregir(diferencias);
+        return diferencias.size();
     }
 
     /**
@@ -230,4 +345,34 @@ public class FacturaService {
         log.debug("Se encontraron {} facturas con total mayor a {}", facturas.size(), montoMinimo);
         return facturas; // Devuelve entidades
     }
-}
\ No newline at end of file
+
+    /**
+     * Busca facturas con filtros opcionales, paginadas. Solo los filtros informados llegan a la consulta.
+     * @param pedidoId ID del pedido (opcional).
+     * @param tipoMovimiento Tipo de movimiento (opcional).
+     * @param minTotal Total mínimo, inclusive (opcional).
+     * @param maxTotal Total máximo, inclusive (opcional).
+     * @param estadoPago Estado de pago (opcional).
+     * @param pagina Número de página, desde 0 (opcional).
+     * @param tamano Tamaño de página (opcional).
+     * @param orden Orden "campo,asc|desc" sobre fechaCreacion, total o facturaId (opcional; por defecto fechaCreacion descendente).
+     * @return Página de entidades Factura.
+     * @throws com.telastech360.crmTT360.exception.InvalidDataException si la paginación o el orden no son válidos.
+     */
+    @Transactional(readOnly = true)
+    public Page<Factura> buscarFacturas(Long pedidoId, Factura.TipoMovimiento tipoMovimiento, BigDecimal minTotal,
+                                        BigDecimal maxTotal, Boolean estadoPago, Integer pagina, Integer tamano, String orden) {
+        Pageable paginacion = PaginacionUtil.paginacion(pagina, tamano, orden, ORDEN_BUSQUEDA_POR_DEFECTO,
+                CAMPOS_ORDEN_BUSQUEDA, "facturaId");
+        Specification<Factura> filtros = EspecificacionBusqueda.de(Factura.class)
+                .igual("pedido.pedidoId", pedidoId)
+                .igual("tipoMovimiento", tipoMovimiento)
+                .desde("total", minTotal)
+                .hasta("total", maxTotal)
+                .igual("estadoPago", estadoPago)
+                .construir();
+        log.info("Buscando facturas (pedido {}, tipo {}, total {}-{}, pagada {}) - {}",
+                pedidoId, tipoMovimiento, minTotal, maxTotal, estadoPago, paginacion);
+        return facturaRepository.findAll(filtros, paginacion);
+    }
+}
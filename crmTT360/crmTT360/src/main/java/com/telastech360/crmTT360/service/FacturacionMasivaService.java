@@ -0,0 +1,246 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.FacturacionMasivaDTO;
+import com.telastech360.crmTT360.exception.ResourceInUseException;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.repository.FacturacionMasivaRepository;
+import com.telastech360.crmTT360.repository.PedidoDetalleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Facturación masiva de pedidos completados.
+ * <p>
+ * Recorre por tramos, en orden de ID, los pedidos COMPLETADO que aún no tienen factura y crea para
+ * cada uno una factura de VENTA pendiente de pago. Por tramo: bloquea los pedidos, calcula sus
+ * importes con una única consulta agregada sobre pedido_detalle, inserta las facturas con un batch
+ * JDBC y registra el avance de la ejecución, todo en la misma transacción.
+ * <p>
+ * Es reanudable: si la aplicación cae a mitad, la ejecución queda EN_CURSO y la siguiente invocación
+ * (o el arranque) continúa tras el último tramo confirmado. Nunca se factura dos veces un pedido: la
+ * selección excluye los pedidos con factura y, tras bloquearlos, se vuelve a comprobar por si otra
+ * ejecución los facturó mientras tanto.
+ */
+@Service
+public class FacturacionMasivaService {
+
+    private static final Logger log = LoggerFactory.getLogger(FacturacionMasivaService.class);
+
+    static final String EN_CURSO = "EN_CURSO";
+    static final String COMPLETADA = "COMPLETADA";
+    static final String FALLIDA = "FALLIDA";
+    private static final int LONGITUD_MAXIMA_MENSAJE = 500;
+
+    private final FacturacionMasivaRepository facturacionMasivaRepository;
+    private final PedidoDetalleRepository pedidoDetalleRepository;
+    private final TransactionTemplate transaccion;
+    private final Executor ejecutor;
+    private final int tamanoLote;
+    private final Clock reloj;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean();
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param facturacionMasivaRepository Repositorio JDBC de la facturación masiva.
+     * @param pedidoDetalleRepository Repositorio de detalles, para calcular los importes.
+     * @param transactionManager Gestor de transacciones, para confirmar cada tramo por separado.
+     * @param tamanoLote Número máximo de pedidos facturados por transacción.
+     */
+    @Autowired
+    public FacturacionMasivaService(FacturacionMasivaRepository facturacionMasivaRepository,
+                                    PedidoDetalleRepository pedidoDetalleRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${crmtt360.facturas.masiva.tamano-lote:500}") int tamanoLote) {
+        this(facturacionMasivaRepository, pedidoDetalleRepository, transactionManager, ejecutorVirtual(), tamanoLote,
+                Clock.systemDefaultZone());
+    }
+
+    FacturacionMasivaService(FacturacionMasivaRepository facturacionMasivaRepository,
+                             PedidoDetalleRepository pedidoDetalleRepository,
+                             PlatformTransactionManager transactionManager, Executor ejecutor, int tamanoLote,
+                             Clock reloj) {
+        this.facturacionMasivaRepository = facturacionMasivaRepository;
+        this.pedidoDetalleRepository = pedidoDetalleRepository;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        // Cada lectura ve lo confirmado hasta ese momento: la comprobación posterior al bloqueo detecta
+        // las facturas que otra ejecución haya creado mientras se esperaba
+        this.transaccion.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.ejecutor = ejecutor;
+        this.tamanoLote = tamanoLote;
+        this.reloj = reloj;
+    }
+
+    private static Executor ejecutorVirtual() {
+        SimpleAsyncTaskExecutor ejecutor = new SimpleAsyncTaskExecutor("facturacion-masiva-");
+        ejecutor.setVirtualThreads(true);
+        return ejecutor;
+    }
+
+    /**
+     * Inicia en segundo plano la facturación masiva, o reanuda la que quedó interrumpida.
+     * @return Estado inicial de la ejecución, para consultar su progreso.
+     * @throws ResourceInUseException si ya hay una facturación masiva en curso en esta instancia.
+     */
+    public FacturacionMasivaDTO iniciar() {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            throw new ResourceInUseException("Ya hay una facturación masiva en curso.");
+        }
+        try {
+            FacturacionMasivaDTO ejecucion = prepararEjecucion();
+            ejecutor.execute(() -> {
+                try {
+                    ejecutar(ejecucion);
+                } finally {
+                    enEjecucion.set(false);
+                }
+            });
+            return ejecucion;
+        } catch (RuntimeException e) {
+            enEjecucion.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Factura a fin de mes los pedidos completados pendientes.
+     */
+    @Scheduled(cron = "${crmtt360.facturas.masiva.cron:0 0 2 1 * *}")
+    public void facturarProgramado() {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            log.warn("Facturación masiva programada omitida: ya hay una en curso.");
+            return;
+        }
+        try {
+            ejecutar(prepararEjecucion());
+        } finally {
+            enEjecucion.set(false);
+        }
+    }
+
+    /**
+     * Al arrancar, reanuda la ejecución que una caída dejó EN_CURSO.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reanudarInterrumpida() {
+        if (facturacionMasivaRepository.buscarEjecucionEnCurso().isPresent()) {
+            iniciar();
+        }
+    }
+
+    /**
+     * Obtiene el progreso de una ejecución.
+     * @param ejecucionId ID de la ejecución.
+     * @return Progreso de la ejecución.
+     * @throws ResourceNotFoundException si la ejecución no existe.
+     */
+    public FacturacionMasivaDTO consultar(Long ejecucionId) {
+        return facturacionMasivaRepository.buscarEjecucion(ejecucionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Facturación masiva no encontrada con ID: " + ejecucionId));
+    }
+
+    // Reanuda la ejecución interrumpida o registra una nueva desde el principio
+    private FacturacionMasivaDTO prepararEjecucion() {
+        return facturacionMasivaRepository.buscarEjecucionEnCurso()
+                .map(interrumpida -> {
+                    log.info("Reanudando facturación masiva {} tras el pedido ID {}.",
+                            interrumpida.getEjecucionId(), interrumpida.getUltimoPedidoId());
+                    return interrumpida;
+                })
+                .orElseGet(() -> {
+                    Timestamp ahora = new Timestamp(reloj.millis());
+                    Long ejecucionId = facturacionMasivaRepository.crearEjecucion(ahora);
+                    return new FacturacionMasivaDTO(ejecucionId, EN_CURSO, 0L, 0, 0, BigDecimal.ZERO, ahora, ahora, null, null);
+                });
+    }
+
+    /**
+     * Factura tramo a tramo hasta que no queden pedidos completados sin factura.
+     * @param ejecucion Ejecución a continuar.
+     * @return Número de facturas creadas en esta invocación.
+     */
+    int ejecutar(FacturacionMasivaDTO ejecucion) {
+        Long ejecucionId = ejecucion.getEjecucionId();
+        long inicio = reloj.millis();
+        long ultimoPedidoId = ejecucion.getUltimoPedidoId();
+        int facturadas = 0;
+        log.info("Facturación masiva {} iniciada en tramos de {} pedidos.", ejecucionId, tamanoLote);
+        try {
+            Lote lote;
+            do {
+                long despuesDe = ultimoPedidoId;
+                lote = transaccion.execute(estado -> procesarLote(ejecucionId, despuesDe));
+                if (lote.pedidos() == 0) {
+                    break;
+                }
+                ultimoPedidoId = lote.ultimoPedidoId();
+                facturadas += lote.facturadas();
+                long transcurridoMs = Math.max(1, reloj.millis() - inicio);
+                log.info("Facturación masiva {}: {} facturas ({} en total, {} facturas/s), último pedido ID {}.",
+                        ejecucionId, lote.facturadas(), facturadas, facturadas * 1000L / transcurridoMs, ultimoPedidoId);
+            } while (lote.pedidos() == tamanoLote);
+            facturacionMasivaRepository.finalizar(ejecucionId, COMPLETADA, null, new Timestamp(reloj.millis()));
+            log.info("Facturación masiva {} completada: {} facturas creadas en {} ms.", ejecucionId, facturadas,
+                    reloj.millis() - inicio);
+        } catch (RuntimeException e) {
+            log.error("Facturación masiva {} fallida tras el pedido ID {}: {}", ejecucionId, ultimoPedidoId, e.getMessage(), e);
+            String mensaje = String.valueOf(e.getMessage());
+            facturacionMasivaRepository.finalizar(ejecucionId, FALLIDA,
+                    mensaje.substring(0, Math.min(mensaje.length(), LONGITUD_MAXIMA_MENSAJE)), new Timestamp(reloj.millis()));
+        }
+        return facturadas;
+    }
+
+    private Lote procesarLote(Long ejecucionId, long despuesDePedidoId) {
+        List<Long> pedidoIds = facturacionMasivaRepository.bloquearPedidosSinFactura(despuesDePedidoId, tamanoLote);
+        if (pedidoIds.isEmpty()) {
+            return new Lote(0, despuesDePedidoId, 0, BigDecimal.ZERO);
+        }
+        Set<Long> yaFacturados = facturacionMasivaRepository.buscarPedidosFacturados(pedidoIds);
+        List<Long> pendientes = pedidoIds.stream().filter(id -> !yaFacturados.contains(id)).toList();
+
+        Map<Long, BigDecimal> totales = new LinkedHashMap<>();
+        if (!pendientes.isEmpty()) {
+            for (Object[] fila : pedidoDetalleRepository.sumarImportesPorPedido(pendientes)) {
+                BigDecimal total = ((BigDecimal) fila[1]).setScale(2, RoundingMode.HALF_UP);
+                if (total.signum() > 0) {
+                    totales.put((Long) fila[0], total);
+                }
+            }
+        }
+        Timestamp ahora = new Timestamp(reloj.millis());
+        if (!totales.isEmpty()) {
+            facturacionMasivaRepository.insertarFacturas(totales, ahora);
+        }
+        // Los pedidos sin detalles (o con importe 0) no se facturan
+        int omitidos = pendientes.size() - totales.size();
+        BigDecimal importe = totales.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        long ultimoPedidoId = pedidoIds.get(pedidoIds.size() - 1);
+        facturacionMasivaRepository.registrarAvance(ejecucionId, ultimoPedidoId, totales.size(), omitidos, importe, ahora);
+        return new Lote(pedidoIds.size(), ultimoPedidoId, totales.size(), importe);
+    }
+
+    private record Lote(int pedidos, long ultimoPedidoId, int facturadas, BigDecimal importe) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.AgregadoVentasDTO;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.exception.ResourceInUseException;
+import com.telastech360.crmTT360.repository.HechosVentaRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Agregaciones de ventas del panel (sumas y recuentos por día, ítem, cliente, categoría o bodega)
+ * sobre un almacén columnar en memoria de las líneas de pedidos no cancelados.
+ * <p>
+ * El almacén se carga al arrancar con un único recorrido en streaming y se reconstruye cada noche,
+ * lo que recoge las cancelaciones, eliminaciones y cambios de categoría o bodega del día. Entre
+ * reconstrucciones, los pedidos creados se anotan al confirmarse y sus líneas se añaden cada
+ * segundo con una consulta por lote de pedidos. Las consultas no acceden a la base de datos.
+ */
+@Service
+public class HechosVentaService {
+
+    private static final Logger log = LoggerFactory.getLogger(HechosVentaService.class);
+
+    /** Criterio de agrupación de las ventas. */
+    public enum Agrupacion { TOTAL, DIA, ITEM, CLIENTE, CATEGORIA, BODEGA }
+
+    static final int DIAS_POR_DEFECTO = 30;
+    static final int DIAS_MAXIMOS = 3660;
+    private static final int PEDIDOS_POR_CONSULTA = 500;
+
+    private static final Comparator<AgregadoVentasDTO> POR_IMPORTE =
+            Comparator.comparing(AgregadoVentasDTO::getImporte).reversed()
+                    .thenComparing(AgregadoVentasDTO::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final HechosVentaRepository hechosVentaRepository;
+    private final ForkJoinPool pool;
+    private final Clock reloj;
+
+    private final Queue<Long> pendientes = new ConcurrentLinkedQueue<>();
+    // Null hasta la carga inicial
+    private volatile AlmacenHechosVenta almacen;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param hechosVentaRepository Repositorio JDBC de las líneas de pedido.
+     * @param paralelismo Hilos que recorren el almacén en paralelo (0 para uno por procesador).
+     */
+    @Autowired
+    public HechosVentaService(HechosVentaRepository hechosVentaRepository,
+                              @Value("${crmtt360.panel.ventas.paralelismo:0}") int paralelismo) {
+        this(hechosVentaRepository,
+                new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors()),
+                Clock.systemDefaultZone());
+    }
+
+    HechosVentaService(HechosVentaRepository hechosVentaRepository, ForkJoinPool pool, Clock reloj) {
+        this.hechosVentaRepository = hechosVentaRepository;
+        this.pool = pool;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Carga el almacén al arrancar la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        recargar();
+    }
+
+    /**
+     * Reconstruye el almacén desde la base de datos y lo sustituye; mientras tanto las consultas
+     * usan el anterior.
+     */
+    @Scheduled(cron = "${crmtt360.panel.ventas.recarga-cron:0 30 3 * * *}")
+    public synchronized void recargar() {
+        long inicio = reloj.millis();
+        AlmacenHechosVenta nuevo = new AlmacenHechosVenta();
+        hechosVentaRepository.recorrerLineas((pedidoId, itemId, clienteId, fechaPedido, cantidad, precioUnitario,
+                                              categoriaId, bodegaId) ->
+                anexar(nuevo, pedidoId, itemId, clienteId, fechaPedido, cantidad, precioUnitario, categoriaId, bodegaId));
+        almacen = nuevo;
+        log.info("Almacén de ventas cargado: {} líneas en {} ms.", nuevo.tamano(), reloj.millis() - inicio);
+        anexarPendientes();
+    }
+
+    /**
+     * Anota un pedido creado para añadir sus líneas en el siguiente lote.
+     * @param evento Evento de creación del pedido.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearPedido(PedidoCreadoEvent evento) {
+        pendientes.add(evento.pedidoId());
+    }
+
+    /**
+     * Añade al almacén las líneas de los pedidos creados desde el último lote.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.panel.ventas.anexar-ms:1000}")
+    public synchronized void anexarPendientes() {
+        AlmacenHechosVenta actual = almacen;
+        if (actual == null) {
+            return;
+        }
+        List<Long> lote = new ArrayList<>(PEDIDOS_POR_CONSULTA);
+        Long pedidoId;
+        while ((pedidoId = pendientes.poll()) != null) {
+            // Los IDs autoincrementales no se confirman en orden: se omiten solo los pedidos leídos en la carga
+            if (!actual.contienePedido(pedidoId)) {
+                lote.add(pedidoId);
+            }
+            if (lote.size() == PEDIDOS_POR_CONSULTA || (pendientes.isEmpty() && !lote.isEmpty())) {
+                try {
+                    hechosVentaRepository.recorrerLineas(lote, (id, itemId, clienteId, fechaPedido, cantidad,
+                                                                precioUnitario, categoriaId, bodegaId) ->
+                            anexar(actual, id, itemId, clienteId, fechaPedido, cantidad, precioUnitario, categoriaId, bodegaId));
+                } catch (RuntimeException e) {
+                    // Se reintentan en el siguiente lote
+                    log.warn("No se pudieron añadir {} pedidos al almacén de ventas: {}", lote.size(), e.getMessage());
+                    pendientes.addAll(lote);
+                    return;
+                }
+                lote.clear();
+            }
+        }
+    }
+
+    /**
+     * Agrega las ventas de un rango de días.
+     * @param agrupacion Criterio de agrupación (null para el total).
+     * @param desde Primer día (por defecto, 30 días antes de hasta).
+     * @param hasta Último día (por defecto, hoy).
+     * @param clienteId Cliente para filtrar (null para todos).
+     * @param itemId Ítem para filtrar (null para todos).
+     * @return Grupos con ventas: por día en orden de día; el resto de mayor a menor importe.
+     * @throws InvalidDataException si el rango no es válido o supera {@value #DIAS_MAXIMOS} días.
+     * @throws ResourceInUseException si el almacén aún no se ha cargado.
+     */
+    public List<AgregadoVentasDTO> agregar(Agrupacion agrupacion, LocalDate desde, LocalDate hasta,
+                                           Long clienteId, Long itemId) {
+        Agrupacion criterio = agrupacion != null ? agrupacion : Agrupacion.TOTAL;
+        LocalDate fin = hasta != null ? hasta : LocalDate.now(reloj);
+        LocalDate inicio = desde != null ? desde : fin.minusDays(DIAS_POR_DEFECTO - 1);
+        if (inicio.isAfter(fin)) {
+            throw new InvalidDataException("La fecha desde debe ser anterior o igual a la fecha hasta.");
+        }
+        if (fin.toEpochDay() - inicio.toEpochDay() >= DIAS_MAXIMOS) {
+            throw new InvalidDataException("El rango no puede superar " + DIAS_MAXIMOS + " días.");
+        }
+        AlmacenHechosVenta actual = almacen;
+        if (actual == null) {
+            throw new ResourceInUseException("El almacén de ventas aún se está cargando; inténtelo de nuevo en unos segundos.");
+        }
+        long inicioNs = System.nanoTime();
+        Map<Long, long[]> grupos = actual.agregar(criterio, (int) inicio.toEpochDay(), (int) fin.toEpochDay(),
+                clienteId, itemId, pool);
+        List<AgregadoVentasDTO> resultado = new ArrayList<>(grupos.size());
+        grupos.forEach((id, valores) -> resultado.add(new AgregadoVentasDTO(
+                criterio == Agrupacion.TOTAL || criterio == Agrupacion.DIA || id == AlmacenHechosVenta.SIN_CLIENTE ? null : id,
+                criterio == Agrupacion.DIA ? Date.valueOf(LocalDate.ofEpochDay(id)) : null,
+                valores[0], valores[1], BigDecimal.valueOf(valores[2], AlmacenHechosVenta.ESCALA_PRECIO))));
+        resultado.sort(criterio == Agrupacion.DIA ? Comparator.comparing(AgregadoVentasDTO::getDia) : POR_IMPORTE);
+        log.debug("Agregación de ventas por {} entre {} y {}: {} grupos en {} µs.", criterio, inicio, fin,
+                resultado.size(), (System.nanoTime() - inicioNs) / 1000);
+        return resultado;
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdown();
+    }
+
+    private static void anexar(AlmacenHechosVenta destino, long pedidoId, long itemId, Long clienteId,
+                               Timestamp fechaPedido, int cantidad, BigDecimal precioUnitario,
+                               long categoriaId, long bodegaId) {
+        destino.anexar(pedidoId, itemId, clienteId != null ? clienteId : AlmacenHechosVenta.SIN_CLIENTE,
+                (int) fechaPedido.toLocalDateTime().toLocalDate().toEpochDay(), cantidad,
+                precioUnitario.setScale(AlmacenHechosVenta.ESCALA_PRECIO, RoundingMode.HALF_UP).unscaledValue().longValueExact(),
+                categoriaId, bodegaId);
+    }
+}
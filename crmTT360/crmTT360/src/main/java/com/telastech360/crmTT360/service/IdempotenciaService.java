@@ -0,0 +1,315 @@
+package com.telastech360.crmTT360.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telastech360.crmTT360.exception.DuplicateResourceException;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.ClaveIdempotenciaRepository;
+import com.telastech360.crmTT360.repository.ClaveIdempotenciaRepository.Registro;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Servicio de idempotencia para las operaciones de creación (cabecera Idempotency-Key).
+ * <p>
+ * La primera solicitud con una clave reserva la clave en la tabla clave_idempotencia, ejecuta la
+ * operación y guarda su respuesta en la misma transacción que el recurso creado. Los reintentos con
+ * la misma clave reciben la respuesta guardada sin volver a ejecutar la operación (ni validar ni
+ * descontar stock). Una caché en memoria delante de la tabla sirve los reintentos sin consultar la
+ * base de datos y hace que los duplicados concurrentes en esta instancia esperen el resultado de
+ * la primera solicitud; entre instancias, la espera se hace sondeando la tabla.
+ * <p>
+ * La caché tiene un tamaño máximo y descarta la clave usada hace más tiempo. Una clave descartada
+ * sigue en la tabla: su reintento la encuentra allí, como si llegara a otra instancia.
+ */
+@Service
+public class IdempotenciaService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+
+    private static final int LONGITUD_MAXIMA_CLAVE = 100;
+    private static final long INTERVALO_SONDEO_MS = 50;
+    private static final int TAMANO_LOTE_PURGA = 1000;
+
+    private final ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlMs;
+    private final long esperaMaximaMs;
+    private final long plazoEnCursoMs;
+    // Orden de acceso: al superar el máximo se descarta la entrada usada hace más tiempo
+    private final Map<String, Entrada> cache;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param claveIdempotenciaRepository Repositorio JDBC de claves de idempotencia.
+     * @param objectMapper Mapper JSON para la huella de la solicitud y la respuesta guardada.
+     * @param transactionManager Gestor de transacciones, para confirmar la respuesta con el recurso creado.
+     * @param ttlMs Tiempo durante el que se conserva una clave.
+     * @param esperaMaximaMs Tiempo máximo que un duplicado espera a que termine la primera solicitud.
+     * @param plazoEnCursoMs Tiempo tras el que una clave en curso se considera abandonada (p. ej. por
+     *                       una caída de la instancia) y puede reclamarse.
+     * @param maximoCache Número máximo de claves en la caché en memoria.
+     */
+    @Autowired
+    public IdempotenciaService(ClaveIdempotenciaRepository claveIdempotenciaRepository,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${crmtt360.idempotencia.ttl-ms:86400000}") long ttlMs,
+                               @Value("${crmtt360.idempotencia.espera-maxima-ms:30000}") long esperaMaximaMs,
+                               @Value("${crmtt360.idempotencia.plazo-en-curso-ms:300000}") long plazoEnCursoMs,
+                               @Value("${crmtt360.idempotencia.cache-maxima:10000}") int maximoCache) {
+        this.claveIdempotenciaRepository = claveIdempotenciaRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlMs = ttlMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.plazoEnCursoMs = plazoEnCursoMs;
+        int maximo = Math.max(1, maximoCache);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> masAntigua) {
+                return size() > maximo;
+            }
+        });
+    }
+
+    /**
+     * Ejecuta una operación de creación una sola vez por clave de idempotencia.
+     * @param operacion Nombre de la operación (las claves son independientes por operación).
+     * @param clave Valor de la cabecera Idempotency-Key; si es null la operación se ejecuta sin más.
+     * @param solicitud Cuerpo de la solicitud; un reintento con la misma clave debe enviar el mismo.
+     * @param tipoRespuesta Clase de la respuesta, para leer la respuesta guardada.
+     * @param accion Operación a ejecutar; se ejecuta dentro de una transacción.
+     * @return La respuesta y si se trata de una respuesta repetida.
+     * @param <T> Tipo de la respuesta.
+     * @throws InvalidDataException si la clave no es válida o ya se usó con una solicitud distinta.
+     * @throws DuplicateResourceException si otra solicitud con la misma clave sigue en curso tras la espera máxima.
+     */
+    public <T> Resultado<T> ejecutar(String operacion, String clave, Object solicitud, Class<T> tipoRespuesta,
+                                     Supplier<T> accion) {
+        if (clave == null) {
+            return new Resultado<>(accion.get(), false);
+        }
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new InvalidDataException("La cabecera Idempotency-Key debe tener entre 1 y "
+                    + LONGITUD_MAXIMA_CLAVE + " caracteres.");
+        }
+        String huella = huella(solicitud);
+        String llave = operacion + ':' + clave;
+        while (true) {
+            long ahora = System.currentTimeMillis();
+            Entrada existente = cache.get(llave);
+            if (existente != null && existente.caducada(ahora)) {
+                cache.remove(llave, existente);
+                continue;
+            }
+            if (existente != null) {
+                verificarHuella(existente.huella(), huella, clave);
+                log.info("Idempotency-Key '{}' ({}) ya conocida en esta instancia; se devuelve su respuesta.", clave, operacion);
+                return new Resultado<>(leer(esperar(existente, clave), tipoRespuesta), true);
+            }
+            Entrada nueva = new Entrada(huella, ahora + ttlMs, new CompletableFuture<>());
+            if (cache.putIfAbsent(llave, nueva) == null) {
+                return ejecutarPrimera(operacion, clave, llave, nueva, tipoRespuesta, accion);
+            }
+        }
+    }
+
+    private <T> Resultado<T> ejecutarPrimera(String operacion, String clave, String llave, Entrada entrada,
+                                             Class<T> tipoRespuesta, Supplier<T> accion) {
+        Timestamp reserva = null;
+        try {
+            Reserva resultadoReserva = reservarOEsperar(operacion, clave, entrada.huella());
+            if (resultadoReserva.respuestaGuardada() != null) {
+                entrada.respuesta().complete(resultadoReserva.respuestaGuardada());
+                log.info("Idempotency-Key '{}' ({}) ya completada; se devuelve la respuesta guardada.", clave, operacion);
+                return new Resultado<>(leer(resultadoReserva.respuestaGuardada(), tipoRespuesta), true);
+            }
+            reserva = resultadoReserva.creacion();
+            Timestamp creacion = reserva;
+            Object[] respuesta = new Object[1];
+            String json = transactionTemplate.execute(estado -> {
+                respuesta[0] = accion.get();
+                String serializada = escribir(respuesta[0]);
+                if (!claveIdempotenciaRepository.completar(operacion, clave, creacion, serializada)) {
+                    // La reserva fue reclamada por otra solicitud al superar el plazo: se deshace esta
+                    throw new DuplicateResourceException("La solicitud con Idempotency-Key '" + clave
+                            + "' superó el plazo de ejecución y fue reclamada por otra solicitud.");
+                }
+                return serializada;
+            });
+            entrada.respuesta().complete(json);
+            return new Resultado<>(tipoRespuesta.cast(respuesta[0]), false);
+        } catch (RuntimeException e) {
+            cache.remove(llave, entrada);
+            entrada.respuesta().completeExceptionally(e);
+            if (reserva != null) {
+                claveIdempotenciaRepository.liberar(operacion, clave, reserva);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reserva la clave en la base de datos. Si otra solicitud ya la reservó, espera a que la
+     * complete (sondeando la tabla) o la reclama si caducó o quedó abandonada.
+     * @return La reserva obtenida, o la respuesta guardada por otra solicitud.
+     */
+    private Reserva reservarOEsperar(String operacion, String clave, String huella) {
+        long limite = System.currentTimeMillis() + esperaMaximaMs;
+        while (true) {
+            long ahora = System.currentTimeMillis();
+            Timestamp creacion = new Timestamp(ahora / 1000 * 1000); // Precisión de la columna TIMESTAMP
+            Timestamp expiracion = new Timestamp(ahora + ttlMs);
+            if (claveIdempotenciaRepository.reservar(operacion, clave, huella, creacion, expiracion)) {
+                return new Reserva(creacion, null);
+            }
+            Optional<Registro> encontrado = claveIdempotenciaRepository.buscar(operacion, clave);
+            if (encontrado.isEmpty()) {
+                continue; // Liberada o purgada entre el INSERT y la lectura
+            }
+            Registro registro = encontrado.get();
+            boolean caducada = registro.fechaExpiracion().getTime() <= ahora;
+            boolean abandonada = !registro.completada() && registro.fechaCreacion().getTime() <= ahora - plazoEnCursoMs;
+            if (caducada || abandonada) {
+                if (claveIdempotenciaRepository.reclamar(operacion, clave, huella, registro.fechaCreacion(), creacion, expiracion)) {
+                    log.warn("Idempotency-Key '{}' ({}) reclamada: estaba {}.", clave, operacion, caducada ? "caducada" : "abandonada en curso");
+                    return new Reserva(creacion, null);
+                }
+                continue;
+            }
+            verificarHuella(registro.huella(), huella, clave);
+            if (registro.completada()) {
+                return new Reserva(null, registro.respuesta());
+            }
+            if (ahora >= limite) {
+                throw enCurso(clave);
+            }
+            dormir(clave);
+        }
+    }
+
+    private String esperar(Entrada entrada, String clave) {
+        try {
+            return entrada.respuesta().get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw enCurso(clave);
+        } catch (ExecutionException e) {
+            // La primera solicitud falló: el duplicado recibe el mismo error
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw enCurso(clave);
+        }
+    }
+
+    private void dormir(String clave) {
+        try {
+            Thread.sleep(INTERVALO_SONDEO_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw enCurso(clave);
+        }
+    }
+
+    private static DuplicateResourceException enCurso(String clave) {
+        return new DuplicateResourceException("Hay una solicitud en curso con la Idempotency-Key '" + clave
+                + "'. Reintente más tarde.");
+    }
+
+    private static void verificarHuella(String esperada, String recibida, String clave) {
+        if (!esperada.equals(recibida)) {
+            throw new InvalidDataException("La Idempotency-Key '" + clave + "' ya se usó con una solicitud distinta.");
+        }
+    }
+
+    private String huella(Object solicitud) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(solicitud));
+            return HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular la huella de la solicitud.", e);
+        }
+    }
+
+    private String escribir(Object respuesta) {
+        try {
+            return objectMapper.writeValueAsString(respuesta);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta.", e);
+        }
+    }
+
+    private <T> T leer(String json, Class<T> tipoRespuesta) {
+        try {
+            return objectMapper.readValue(json, tipoRespuesta);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo leer la respuesta guardada.", e);
+        }
+    }
+
+    /**
+     * Purga periódicamente las claves caducadas de la caché y de la tabla, en lotes para no
+     * mantener bloqueos largos.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.idempotencia.purga-ms:600000}",
+            initialDelayString = "${crmtt360.idempotencia.purga-ms:600000}")
+    public void purgarCaducadas() {
+        long ahora = System.currentTimeMillis();
+        synchronized (cache) {
+            cache.values().removeIf(entrada -> entrada.caducada(ahora));
+        }
+        Timestamp limite = new Timestamp(ahora);
+        int eliminadas = 0;
+        int lote;
+        do {
+            lote = claveIdempotenciaRepository.eliminarCaducadas(limite, TAMANO_LOTE_PURGA);
+            eliminadas += lote;
+        } while (lote == TAMANO_LOTE_PURGA);
+        if (eliminadas > 0) {
+            log.info("Purgadas {} claves de idempotencia caducadas.", eliminadas);
+        }
+    }
+
+    /**
+     * Resultado de una operación idempotente.
+     * @param respuesta Respuesta de la operación.
+     * @param repetida true si es la respuesta guardada de una solicitud anterior con la misma clave.
+     * @param <T> Tipo de la respuesta.
+     */
+    public record Resultado<T>(T respuesta, boolean repetida) {
+    }
+
+    private record Reserva(Timestamp creacion, String respuestaGuardada) {
+    }
+
+    private record Entrada(String huella, long expiracion, CompletableFuture<String> respuesta) {
+        boolean caducada(long ahora) {
+            return expiracion <= ahora;
+        }
+    }
+}
@@ -10,10 +10,17 @@ import com.telastech360.crmTT360.mapper.ItemMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.sql.Date; // Usar java.sql.Date si el repositorio lo espera
 import java.math.BigDecimal; // Usar BigDecimal
@@ -27,6 +34,7 @@ import java.math.BigDecimal; // Usar BigDecimal
 public class ItemService {
 
     private static final Logger log = LoggerFactory.getLogger(ItemService.class);
+    static final int LOTE_APLICACION_RESUMEN = 10_000;
 
     private final ItemRepository itemRepository;
     private final BodegaRepository bodegaRepository;
@@ -35,6 +43,12 @@ public class ItemService {
     private final ProveedorRepository proveedorRepository;
     private final UsuarioRepository usuarioRepository;
     private final ItemMapper itemMapper;
+    private final ItemStockShardService itemStockShardService;
+    private final StockEngine stockEngine;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final ProgramadorVencimientos programadorVencimientos;
+    private final InventarioResumenRepository inventarioResumenRepository;
+    private final PoliticaReintentoOptimista politicaReintentoOptimista;
 
     /**
      * Constructor para inyección de dependencias de repositorios y mappers necesarios.
@@ -45,6 +59,12 @@ public class ItemService {
      * @param proveedorRepository Repositorio para Proveedores.
      * @param usuarioRepository Repositorio para Usuarios.
      * @param itemMapper Mapper para convertir entre Item e ItemDTO.
+     * @param itemStockShardService Servicio para el stock fragmentado de ítems muy demandados.
+     * @param stockEngine Motor de stock en memoria (opcional, desactivado por defecto).
+     * @param alertaStockBajoService Servicio de alertas de stock bajo.
+     * @param programadorVencimientos Programador de avisos de vencimiento.
+     * @param inventarioResumenRepository Repositorio del rollup del resumen de inventario.
+     * @param politicaReintentoOptimista Política de reintentos ante conflictos de concurrencia optimista.
      */
     @Autowired
     public ItemService(ItemRepository itemRepository,
@@ -53,7 +73,13 @@ public class ItemService {
                        EstadoRepository estadoRepository,
                        ProveedorRepository proveedorRepository,
                        UsuarioRepository usuarioRepository,
-                       ItemMapper itemMapper) {
+                       ItemMapper itemMapper,
+                       ItemStockShardService itemStockShardService,
+                       StockEngine stockEngine,
+                       AlertaStockBajoService alertaStockBajoService,
+                       ProgramadorVencimientos programadorVencimientos,
+                       InventarioResumenRepository inventarioResumenRepository,
+                       PoliticaReintentoOptimista politicaReintentoOptimista) {
         this.itemRepository = itemRepository;
         this.bodegaRepository = bodegaRepository;
         this.categoriaRepository = categoriaRepository;
@@ -61,6 +87,12 @@ public class ItemService {
         this.proveedorRepository = proveedorRepository;
         this.usuarioRepository = usuarioRepository;
         this.itemMapper = itemMapper;
+        this.itemStockShardService = itemStockShardService;
+        this.stockEngine = stockEngine;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.programadorVencimientos = programadorVencimientos;
+        this.inventarioResumenRepository = inventarioResumenRepository;
+        this.politicaReintentoOptimista = politicaReintentoOptimista;
     }
 
     /**
@@ -98,6 +130,8 @@ public class ItemService {
         log.debug("Ítem DTO mapeado a entidad: {}", item.getCodigo());
 
         Item nuevoItem = itemRepository.save(item);
+        alertaStockBajoService.registrarCambio(List.of(nuevoItem.getItemId()));
+        programadorVencimientos.registrar(nuevoItem.getItemId(), nuevoItem.getFechaVencimiento());
         log.info("Ítem creado exitosamente con ID: {} y código: {}", nuevoItem.getItemId(), nuevoItem.getCodigo());
         return itemMapper.toDTO(nuevoItem);
     }
@@ -154,42 +188,73 @@ public class ItemService {
      * @throws DuplicateResourceException Si el nuevo código ya está en uso por otro ítem.
      * @throws InvalidDataException Si el tipo de ítem en el DTO no es válido.
      */
-    @Transactional
     public ItemDTO actualizarItem(Long id, ItemDTO itemDTO) {
-        log.info("Intentando actualizar ítem con ID: {}", id);
-        Item itemExistente = findItemEntityById(id); // Obtener entidad existente
-
-        // Validar código único si cambia
-        if (!itemExistente.getCodigo().equalsIgnoreCase(itemDTO.getCodigo())) {
-            log.debug("Código cambiado para ítem ID {}. Verificando disponibilidad de '{}'...", id, itemDTO.getCodigo());
-            if (itemRepository.existsByCodigo(itemDTO.getCodigo())) {
-                log.warn("Conflicto: Código '{}' ya en uso al actualizar ítem ID {}", itemDTO.getCodigo(), id);
-                throw new DuplicateResourceException("El código ya está registrado: " + itemDTO.getCodigo());
+        return actualizarItem(id, itemDTO, null);
+    }
+
+    /**
+     * Actualiza un ítem existente.
+     * Con versión esperada, la comprueba y no reintenta ante conflictos.
+     * @param id ID del ítem a actualizar.
+     * @param itemDTO DTO con los datos actualizados.
+     * @param versionEsperada Versión indicada por el cliente en If-Match (null para no comprobarla).
+     * @return El ItemDTO actualizado.
+     * @throws ResourceNotFoundException Si el ítem o alguna relación no existen.
+     * @throws DuplicateResourceException Si el nuevo código ya está en uso por otro ítem.
+     * @throws InvalidDataException Si el tipo de ítem en el DTO no es válido.
+     * @throws PreconditionFailedException si la versión actual no coincide con la esperada.
+     */
+    public ItemDTO actualizarItem(Long id, ItemDTO itemDTO, Long versionEsperada) {
+        return politicaReintentoOptimista.ejecutar("Actualizar ítem " + id, versionEsperada == null, () -> {
+            log.info("Intentando actualizar ítem con ID: {}", id);
+            Item itemExistente = findItemEntityById(id); // Obtener entidad existente
+
+            PoliticaReintentoOptimista.verificarVersion("Ítem " + id, itemExistente.getVersion(), versionEsperada);
+
+            // Validar código único si cambia
+            if (!itemExistente.getCodigo().equalsIgnoreCase(itemDTO.getCodigo())) {
+                log.debug("Código cambiado para ítem ID {}. Verificando disponibilidad de '{}'...", id, itemDTO.getCodigo());
+                if (itemRepository.existsByCodigo(itemDTO.getCodigo())) {
+                    log.warn("Conflicto: Código '{}' ya en uso al actualizar ítem ID {}", itemDTO.getCodigo(), id);
+                    throw new DuplicateResourceException("El código ya está registrado: " + itemDTO.getCodigo());
+                }
+                log.debug("Código '{}' disponible.", itemDTO.getCodigo());
             }
-            log.debug("Código '{}' disponible.", itemDTO.getCodigo());
-        }
 
-        // Buscar entidades relacionadas para la actualización
-        log.debug("Buscando entidades relacionadas para actualizar ítem ID: {}", id);
-        Bodega bodega = bodegaRepository.findById(itemDTO.getBodegaId())
-                .orElseThrow(() -> new ResourceNotFoundException("Bodega no encontrada con ID: " + itemDTO.getBodegaId()));
-        Categoria categoria = categoriaRepository.findById(itemDTO.getCategoriaId())
-                .orElseThrow(() -> new ResourceNotFoundException("Categoría no encontrada con ID: " + itemDTO.getCategoriaId()));
-        Estado estado = estadoRepository.findById(itemDTO.getEstadoId())
-                .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + itemDTO.getEstadoId()));
-        Proveedor proveedor = proveedorRepository.findById(itemDTO.getProveedorId())
-                .orElseThrow(() -> new ResourceNotFoundException("Proveedor no encontrado con ID: " + itemDTO.getProveedorId()));
-        Usuario usuario = usuarioRepository.findById(itemDTO.getUsuarioId())
-                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + itemDTO.getUsuarioId()));
-        log.debug("Entidades relacionadas encontradas para actualizar ítem ID: {}", id);
+            // Buscar entidades relacionadas para la actualización
+            log.debug("Buscando entidades relacionadas para actualizar ítem ID: {}", id);
+            Bodega bodega = bodegaRepository.findById(itemDTO.getBodegaId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Bodega no encontrada con ID: " + itemDTO.getBodegaId()));
+            Categoria categoria = categoriaRepository.findById(itemDTO.getCategoriaId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Categoría no encontrada con ID: " + itemDTO.getCategoriaId()));
+            Estado estado = estadoRepository.findById(itemDTO.getEstadoId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + itemDTO.getEstadoId()));
+            Proveedor proveedor = proveedorRepository.findById(itemDTO.getProveedorId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Proveedor no encontrado con ID: " + itemDTO.getProveedorId()));
+            Usuario usuario = usuarioRepository.findById(itemDTO.getUsuarioId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + itemDTO.getUsuarioId()));
+            log.debug("Entidades relacionadas encontradas para actualizar ítem ID: {}", id);
+
+            // Actualizar entidad desde DTO usando el mapper (valida tipo de ítem)
+            itemMapper.updateEntityFromDTO(itemDTO, itemExistente, bodega, categoria, estado, proveedor, usuario);
+            log.debug("Entidad Ítem ID {} actualizada desde DTO.", id);
+
+            if (stockEngine.activo()) {
+                stockEngine.invalidar(id); // El stock se fija de forma absoluta en la base de datos
+            }
 
-        // Actualizar entidad desde DTO usando el mapper (valida tipo de ítem)
-        itemMapper.updateEntityFromDTO(itemDTO, itemExistente, bodega, categoria, estado, proveedor, usuario);
-        log.debug("Entidad Ítem ID {} actualizada desde DTO.", id);
+            // Si el stock está fragmentado, el valor del DTO es el total: se reparte entre los shards
+            if (itemExistente.getStockShards() != null && itemExistente.getStockShards() > 0) {
+                itemStockShardService.fijarStockTotal(id, itemDTO.getStockDisponible());
+                itemExistente.setStockDisponible(0);
+            }
 
-        Item itemActualizado = itemRepository.save(itemExistente);
-        log.info("Ítem ID {} actualizado exitosamente.", id);
-        return itemMapper.toDTO(itemActualizado);
+            Item itemActualizado = itemRepository.save(itemExistente);
+            alertaStockBajoService.registrarCambio(List.of(id));
+            programadorVencimientos.registrar(id, itemActualizado.getFechaVencimiento());
+            log.info("Ítem ID {} actualizado exitosamente.", id);
+            return itemMapper.toDTO(itemActualizado);
+        });
     }
 
     /**
@@ -211,12 +276,17 @@ public class ItemService {
         }
         log.debug("Verificación de pedidos activos superada para ítem ID: {}", id);
 
+        if (stockEngine.activo()) {
+            stockEngine.invalidar(id);
+        }
         itemRepository.delete(item);
+        programadorVencimientos.retirar(id);
         log.info("Ítem ID {} ('{}') eliminado exitosamente.", id, item.getNombre());
     }
 
     /**
      * Ajusta el stock disponible de un ítem específico.
+     * Delega en {@link #intentarAjustarStock(Long, Integer)}, que aplica el ajuste con un UPDATE condicional.
      * @param itemId ID del ítem a ajustar.
      * @param cantidad Cantidad a sumar (positivo) o restar (negativo).
      * @throws ResourceNotFoundException si el ítem no existe.
@@ -225,26 +295,153 @@ public class ItemService {
     @Transactional
     public void ajustarStock(Long itemId, Integer cantidad) {
         log.info("Ajustando stock para ítem ID {} en {} unidades.", itemId, cantidad);
-        Item item = findItemEntityById(itemId); // Valida existencia
-        int stockActual = item.getStockDisponible();
-        int stockNuevo = stockActual + cantidad;
-
-        // --- Validación de Stock Negativo ---
-        if (stockNuevo < 0) {
+        if (!intentarAjustarStock(itemId, cantidad)) {
+            Item item = findItemEntityById(itemId); // Solo en el camino de fallo, para el mensaje
+            int stockTotal = itemStockShardService.stockTotal(item);
             log.error("Stock insuficiente para ítem ID {}. Actual: {}, Ajuste: {}, Resultante: {}",
-                    itemId, stockActual, cantidad, stockNuevo);
+                    itemId, stockTotal, cantidad, stockTotal + cantidad);
             throw new IllegalOperationException("Ajuste inválido. Stock insuficiente para el ítem '"
-                    + item.getNombre() + "'. Stock disponible: " + stockActual
+                    + item.getNombre() + "'. Stock disponible: " + stockTotal
                     + ", se intentó ajustar en: " + cantidad);
         }
-        // -------------------------------------
+        log.info("Stock para ítem ID {} ajustado exitosamente en {} unidades.", itemId, cantidad);
+    }
 
-        log.debug("Stock anterior: {}, Ajuste: {}, Stock nuevo: {} para ítem ID {}",
-                stockActual, cantidad, stockNuevo, itemId);
+    /**
+     * Intenta ajustar el stock disponible de un ítem de forma atómica, sin cargar la entidad.
+     * El ajuste solo se aplica si el stock resultante es mayor o igual a cero; el resultado
+     * se deduce del número de filas afectadas por el UPDATE condicional. Con el {@link StockEngine}
+     * activo, el ajuste se valida y aplica en memoria.
+     * @param itemId ID del ítem a ajustar.
+     * @param cantidad Cantidad a sumar (positivo) o restar (negativo).
+     * @return true si el ajuste se aplicó, false si el stock es insuficiente.
+     * @throws ResourceNotFoundException si el ítem no existe.
+     */
+    @Transactional
+    public boolean intentarAjustarStock(Long itemId, Integer cantidad) {
+        boolean ajustado = aplicarAjusteStock(itemId, cantidad);
+        if (ajustado) {
+            alertaStockBajoService.registrarCambio(List.of(itemId));
+        }
+        return ajustado;
+    }
 
-        item.setStockDisponible(stockNuevo);
-        itemRepository.save(item); // Guardar la entidad modificada
-        log.info("Stock para ítem ID {} ajustado exitosamente a {}.", itemId, stockNuevo);
+    private boolean aplicarAjusteStock(Long itemId, Integer cantidad) {
+        if (stockEngine.activo()) {
+            Boolean ajustado = stockEngine.intentarAjustar(itemId, cantidad);
+            if (ajustado != null) {
+                return ajustado;
+            }
+        }
+        int filasAfectadas = itemRepository.actualizarStock(itemId, cantidad);
+        if (filasAfectadas > 0) {
+            log.debug("Ajuste de {} unidades aplicado al ítem ID {}.", cantidad, itemId);
+            return true;
+        }
+        Integer numShards = itemRepository.findStockShardsById(itemId)
+                .orElseThrow(() -> {
+                    log.warn("Ítem no encontrado con ID: {}", itemId);
+                    return new ResourceNotFoundException("Ítem no encontrado con ID: " + itemId);
+                });
+        if (numShards > 0) {
+            return itemStockShardService.intentarAjustarStock(itemId, numShards, cantidad);
+        }
+        log.debug("Ajuste de {} unidades rechazado para ítem ID {}: stock insuficiente.", cantidad, itemId);
+        return false;
+    }
+
+
+    /**
+     * Reserva (descuenta) stock para varios ítems a la vez, como ocurre al crear un pedido.
+     * Bloquea todas las filas implicadas con un único SELECT ... FOR UPDATE en orden ascendente
+     * de itemId (evitando interbloqueos entre pedidos que comparten ítems), valida el stock de
+     * todas las líneas y aplica los descuentos en un único lote JDBC. Los ítems con stock
+     * fragmentado no se bloquean; se descuentan sobre sus shards (ver {@link ItemStockShardService}).
+     * Con el {@link StockEngine} activo, los ítems que gestiona se reservan en memoria y solo el resto
+     * sigue este camino.
+     * @param cantidadesPorItem Mapa itemId -> cantidad solicitada (positiva). Las líneas repetidas
+     *                          de un mismo ítem deben venir ya sumadas.
+     * @throws ResourceNotFoundException si alguno de los ítems no existe.
+     * @throws IllegalOperationException si algún ítem no tiene stock suficiente.
+     */
+    @Transactional
+    public void reservarStock(Map<Long, Integer> cantidadesPorItem) {
+        if (cantidadesPorItem == null || cantidadesPorItem.isEmpty()) {
+            return;
+        }
+        log.debug("Reservando stock para {} ítems.", cantidadesPorItem.size());
+        if (stockEngine.activo()) {
+            Map<Long, Integer> restantes = stockEngine.reservar(cantidadesPorItem);
+            alertaStockBajoService.registrarCambio(cantidadesPorItem.keySet());
+            if (restantes.isEmpty()) {
+                return;
+            }
+            cantidadesPorItem = restantes;
+        }
+        // Los ítems con stock fragmentado no se bloquean: se descuentan sobre sus shards
+        Set<Long> idsABloquear = new TreeSet<>(cantidadesPorItem.keySet());
+        Map<Long, Integer> descuentosEnLote = new TreeMap<>(cantidadesPorItem);
+        for (Long itemIdFragmentado : itemRepository.findItemIdsFragmentados(idsABloquear)) {
+            idsABloquear.remove(itemIdFragmentado);
+            descuentosEnLote.remove(itemIdFragmentado);
+            ajustarStock(itemIdFragmentado, -cantidadesPorItem.get(itemIdFragmentado));
+        }
+        if (idsABloquear.isEmpty()) {
+            return;
+        }
+        List<Object[]> filasBloqueadas = itemRepository.bloquearStockParaActualizar(idsABloquear);
+
+        Map<Long, Object[]> filasPorItem = new HashMap<>();
+        for (Object[] fila : filasBloqueadas) {
+            filasPorItem.put(((Number) fila[0]).longValue(), fila);
+        }
+
+        for (Long itemId : idsABloquear) {
+            int solicitado = cantidadesPorItem.get(itemId);
+            Object[] fila = filasPorItem.get(itemId);
+            if (fila == null) {
+                log.warn("Ítem no encontrado con ID: {}", itemId);
+                throw new ResourceNotFoundException("Ítem no encontrado con ID: " + itemId);
+            }
+            if (((Number) fila[3]).intValue() > 0) {
+                // Fragmentado entre la consulta previa y el bloqueo: descontar sobre sus shards
+                descuentosEnLote.remove(itemId);
+                ajustarStock(itemId, -solicitado);
+                continue;
+            }
+            String nombre = (String) fila[1];
+            int disponible = ((Number) fila[2]).intValue();
+            if (disponible < solicitado) {
+                log.error("Stock insuficiente para reservar. Item ID: {}, Nombre: {}, Disponible: {}, Solicitado: {}",
+                        itemId, nombre, disponible, solicitado);
+                throw new IllegalOperationException("Stock insuficiente para el ítem '" + nombre +
+                        "'. Disponible: " + disponible +
+                        ", Solicitado: " + solicitado);
+            }
+        }
+
+        int filasActualizadas = itemRepository.descontarStockEnLote(descuentosEnLote);
+        alertaStockBajoService.registrarCambio(descuentosEnLote.keySet());
+        log.debug("Stock reservado para {} ítems ({} filas actualizadas).", cantidadesPorItem.size(), filasActualizadas);
+    }
+
+
+    /**
+     * Activa, cambia o desactiva el modo de stock fragmentado de un ítem.
+     * @param itemId ID del ítem.
+     * @param numShards Número de sub-contadores (0 para desactivar).
+     * @return El ItemDTO con el stock total resultante.
+     * @throws ResourceNotFoundException si el ítem no existe.
+     * @throws InvalidDataException si el número de shards no es válido.
+     */
+    @Transactional
+    public ItemDTO configurarStockFragmentado(Long itemId, int numShards) {
+        log.info("Configurando stock fragmentado para ítem ID {}: {} shards", itemId, numShards);
+        if (stockEngine.activo()) {
+            stockEngine.invalidar(itemId);
+        }
+        itemStockShardService.configurarShards(itemId, numShards);
+        return obtenerItemPorId(itemId);
     }
 
 
@@ -300,8 +497,10 @@ public class ItemService {
     @Transactional(readOnly = true)
     public List<Item> buscarItemsPorVencer(Date fechaLimite) {
         log.info("Buscando ítems por vencer antes de: {}", fechaLimite);
-        Date hoy = new Date(System.currentTimeMillis());
-        List<Item> items = itemRepository.findItemsPorVencer(hoy, fechaLimite);
+        List<Long> ids = programadorVencimientos.buscarIdsPorVencer(fechaLimite);
+        List<Item> items = ids != null
+                ? itemRepository.findAllById(ids)
+                : itemRepository.findItemsPorVencer(new Date(System.currentTimeMillis()), fechaLimite);
         log.debug("Se encontraron {} ítems por vencer hasta {}", items.size(), fechaLimite);
         return items;
     }
@@ -313,9 +512,60 @@ public class ItemService {
      */
     @Transactional(readOnly = true)
     public List<Object[]> obtenerResumenInventario() {
-        log.info("Obteniendo resumen de inventario por tipo de ítem...");
-        List<Object[]> resumen = itemRepository.getResumenInventario();
+        return obtenerResumenInventario(null, null);
+    }
+
+    /**
+     * Obtiene un resumen del inventario agrupado por tipo de ítem, opcionalmente filtrado por categoría
+     * y/o bodega. Se lee de la tabla rollup inventario_resumen, cuyo tamaño depende del número de
+     * combinaciones tipo/categoría/bodega y no del número de ítems.
+     * @param categoriaId ID de categoría para filtrar (null para todas).
+     * @param bodegaId ID de bodega para filtrar (null para todas).
+     * @return Lista de Object[], donde cada array contiene [TipoItem (enum), Long (conteo), Long (stock total), BigDecimal (valor total)].
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> obtenerResumenInventario(Long categoriaId, Long bodegaId) {
+        log.info("Obteniendo resumen de inventario por tipo de ítem (categoría: {}, bodega: {})...", categoriaId, bodegaId);
+        List<Object[]> resumen = inventarioResumenRepository.obtenerResumen(categoriaId, bodegaId);
         log.debug("Resumen de inventario obtenido con {} tipos.", resumen.size());
         return resumen;
     }
+
+    /**
+     * Job periódico que traslada al rollup del resumen de inventario los deltas que insertan los
+     * triggers de stock, fuera de las transacciones de stock para que estas no bloqueen filas compartidas
+     * del rollup. Usa READ COMMITTED para no tomar bloqueos de hueco que frenen esas inserciones.
+     * @return Número de deltas trasladados.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.inventario.resumen.aplicacion-ms:1000}")
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int aplicarResumenInventarioPendiente() {
+        int aplicados = inventarioResumenRepository.aplicarPendientes(LOTE_APLICACION_RESUMEN);
+        if (aplicados > 0) {
+            log.debug("Trasladados {} deltas al resumen de inventario.", aplicados);
+        }
+        return aplicados;
+    }
+
+    /**
+     * Job periódico que verifica el rollup del resumen de inventario contra un recálculo completo
+     * y corrige las claves con deriva.
+     * @return Número de claves (tipo, categoría, bodega) corregidas.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.inventario.resumen.conciliacion-ms:3600000}",
+            initialDelayString = "${crmtt360.inventario.resumen.conciliacion-ms:3600000}")
+    @Transactional
+    public int conciliarResumenInventario() {
+        List<Object[]> diferencias = inventarioResumenRepository.calcularDiferencias();
+        if (diferencias.isEmpty()) {
+            log.debug("Conciliación del resumen de inventario: sin deriva.");
+            return 0;
+        }
+        for (Object[] d : diferencias) {
+            log.warn("Deriva en resumen de inventario [tipo={}, categoría={}, bodega={}]: ítems {}, unidades {}, valor {}",
+                    d[0], d[1], d[2], d[3], d[4], d[5]);
+        }
+        inventarioResumenRepository.corregir(diferencias);
+        return diferencias.size();
+    }
 }
\ No newline at end of file
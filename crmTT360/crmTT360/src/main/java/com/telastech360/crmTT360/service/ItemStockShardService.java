@@ -0,0 +1,208 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.entity.Item;
+import com.telastech360.crmTT360.entity.ItemStockShard;
+import com.telastech360.crmTT360.exception.IllegalOperationException;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.repository.ItemStockShardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Servicio que gestiona el stock fragmentado (sharded) de ítems muy demandados.
+ * Cuando un ítem tiene stock_shards = N > 0, su stock disponible se reparte entre N filas de
+ * item_stock_shard y los ajustes se aplican sobre un shard aleatorio, de modo que los pedidos
+ * concurrentes no se serializan sobre el bloqueo de una única fila de item.
+ */
+@Service
+public class ItemStockShardService {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemStockShardService.class);
+
+    private final ItemRepository itemRepository;
+    private final ItemStockShardRepository itemStockShardRepository;
+    private final int maxShards;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param itemRepository Repositorio para Items.
+     * @param itemStockShardRepository Repositorio para los shards de stock.
+     * @param maxShards Número máximo de shards permitidos por ítem.
+     */
+    @Autowired
+    public ItemStockShardService(ItemRepository itemRepository,
+                                 ItemStockShardRepository itemStockShardRepository,
+                                 @Value("${crmtt360.inventario.stock-shards.max:64}") int maxShards) {
+        this.itemRepository = itemRepository;
+        this.itemStockShardRepository = itemStockShardRepository;
+        this.maxShards = maxShards;
+    }
+
+    /**
+     * Activa, cambia o desactiva la fragmentación del stock de un ítem.
+     * Con numShards = 0 todo el stock vuelve a la fila item; con numShards > 0 el stock total
+     * se reparte equitativamente entre los shards y la fila item queda con stock 0.
+     * @param itemId ID del ítem.
+     * @param numShards Número de shards deseado (0 para desactivar).
+     * @throws ResourceNotFoundException si el ítem no existe.
+     * @throws InvalidDataException si numShards está fuera de rango.
+     */
+    @Transactional
+    public void configurarShards(Long itemId, int numShards) {
+        if (numShards < 0 || numShards > maxShards) {
+            throw new InvalidDataException("El número de shards debe estar entre 0 y " + maxShards + ".");
+        }
+        log.info("Configurando {} shards de stock para ítem ID {}", numShards, itemId);
+        List<Object[]> fila = itemRepository.bloquearStockParaActualizar(List.of(itemId));
+        if (fila.isEmpty()) {
+            throw new ResourceNotFoundException("Ítem no encontrado con ID: " + itemId);
+        }
+        int stockFila = ((Number) fila.get(0)[2]).intValue();
+
+        List<ItemStockShard> actuales = itemStockShardRepository.findByItemIdParaActualizar(itemId);
+        int total = stockFila + actuales.stream().mapToInt(ItemStockShard::getStock).sum();
+
+        if (numShards == 0) {
+            itemStockShardRepository.deleteAll(actuales);
+            itemRepository.actualizarFragmentacion(itemId, 0, total);
+        } else {
+            repartir(itemId, actuales, numShards, total);
+            itemRepository.actualizarFragmentacion(itemId, numShards, 0);
+        }
+        log.info("Ítem ID {} configurado con {} shards. Stock total: {}", itemId, numShards, total);
+    }
+
+    /**
+     * Intenta ajustar el stock de un ítem fragmentado.
+     * Los incrementos van a un shard aleatorio (o, si ya no existe, al primero en orden de shard_no).
+     * Los decrementos prueban un único shard aleatorio con un UPDATE condicional, y solo si una lectura
+     * sin bloqueo indica que tiene stock suficiente: en REPEATABLE READ un UPDATE que no casa conserva
+     * el bloqueo de la fila, y probar varios shards en órdenes distintos provocaría interbloqueos. Si ese
+     * shard no cubre el descuento, se bloquean todos los shards del ítem en orden ascendente de shard_no
+     * y se descuenta repartiendo entre ellos.
+     * @param itemId ID del ítem.
+     * @param numShards Número de shards del ítem.
+     * @param cantidad Cantidad a sumar (positivo) o restar (negativo).
+     * @return true si el ajuste se aplicó, false si el stock total es insuficiente.
+     */
+    @Transactional
+    public boolean intentarAjustarStock(Long itemId, int numShards, int cantidad) {
+        int shardNo = ThreadLocalRandom.current().nextInt(numShards);
+        if (cantidad >= 0) {
+            if (itemStockShardRepository.ajustarStockShard(itemId, shardNo, cantidad) > 0) {
+                return true;
+            }
+            for (int i = 0; i < numShards; i++) {
+                if (i != shardNo && itemStockShardRepository.ajustarStockShard(itemId, i, cantidad) > 0) {
+                    return true;
+                }
+            }
+            return false; // Los shards desaparecieron (desactivación concurrente)
+        }
+
+        int disponible = itemStockShardRepository.leerStockShard(itemId, shardNo).orElse(0);
+        if (disponible + cantidad >= 0 && itemStockShardRepository.ajustarStockShard(itemId, shardNo, cantidad) > 0) {
+            log.trace("Ajuste de {} aplicado al shard {} del ítem ID {}", cantidad, shardNo, itemId);
+            return true;
+        }
+
+        // El shard elegido no cubre el descuento: descontar entre varios bajo bloqueo, en orden de shard_no.
+        List<ItemStockShard> shards = itemStockShardRepository.findByItemIdParaActualizar(itemId);
+        int pendiente = -cantidad;
+        if (shards.stream().mapToInt(ItemStockShard::getStock).sum() < pendiente) {
+            return false;
+        }
+        for (ItemStockShard shard : shards) {
+            int tomado = Math.min(shard.getStock(), pendiente);
+            shard.setStock(shard.getStock() - tomado);
+            pendiente -= tomado;
+            if (pendiente == 0) break;
+        }
+        itemStockShardRepository.saveAll(shards);
+        log.debug("Ajuste de {} repartido entre varios shards del ítem ID {}", cantidad, itemId);
+        return true;
+    }
+
+    /**
+     * Reparte equitativamente el stock total de un ítem fragmentado entre sus shards.
+     * @param itemId ID del ítem.
+     */
+    @Transactional
+    public void rebalancear(Long itemId) {
+        List<ItemStockShard> shards = itemStockShardRepository.findByItemIdParaActualizar(itemId);
+        if (shards.isEmpty()) {
+            return;
+        }
+        int total = shards.stream().mapToInt(ItemStockShard::getStock).sum();
+        repartir(itemId, shards, shards.size(), total);
+        log.debug("Shards del ítem ID {} rebalanceados. Stock total: {}", itemId, total);
+    }
+
+    /**
+     * Fija el stock total de un ítem fragmentado (p. ej. al editar el ítem), repartiéndolo entre sus shards.
+     * @param itemId ID del ítem.
+     * @param stockTotal Nuevo stock total.
+     */
+    @Transactional
+    public void fijarStockTotal(Long itemId, int stockTotal) {
+        if (stockTotal < 0) {
+            throw new IllegalOperationException("El stock disponible no puede ser negativo.");
+        }
+        List<ItemStockShard> shards = itemStockShardRepository.findByItemIdParaActualizar(itemId);
+        repartir(itemId, shards, shards.size(), stockTotal);
+    }
+
+    /**
+     * Stock total de un ítem: el de la fila item más, si está fragmentado, la suma de sus shards.
+     * Solo consulta item_stock_shard para los ítems fragmentados, de modo que las cargas de ítems
+     * que no muestran el stock no pagan esa suma.
+     * @param item El ítem.
+     * @return El stock disponible total.
+     */
+    @Transactional(readOnly = true)
+    public int stockTotal(Item item) {
+        int base = item.getStockDisponible() != null ? item.getStockDisponible() : 0;
+        if (item.getStockShards() == null || item.getStockShards() == 0) {
+            return base;
+        }
+        return base + (int) itemStockShardRepository.sumarStockPorItem(item.getItemId());
+    }
+
+    /**
+     * Lista los IDs de los ítems que tienen stock fragmentado.
+     * @return Lista de IDs de ítems.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> listarItemsFragmentados() {
+        return itemStockShardRepository.findItemIdsFragmentados();
+    }
+
+    /**
+     * Reescribe los shards de un ítem para que sean numShards con el total repartido equitativamente.
+     * Reutiliza las filas existentes (en vez de borrar e insertar) para no chocar con la clave primaria.
+     */
+    private void repartir(Long itemId, List<ItemStockShard> actuales, int numShards, int total) {
+        List<ItemStockShard> aGuardar = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            int stock = total / numShards + (i < total % numShards ? 1 : 0);
+            // Los shards existentes vienen ordenados por shard_no y numerados 0..n-1
+            ItemStockShard shard = i < actuales.size() ? actuales.get(i) : new ItemStockShard(itemId, i, 0);
+            shard.setStock(stock);
+            aGuardar.add(shard);
+        }
+        if (actuales.size() > numShards) {
+            itemStockShardRepository.deleteAll(actuales.subList(numShards, actuales.size()));
+        }
+        itemStockShardRepository.saveAll(aGuardar);
+    }
+}
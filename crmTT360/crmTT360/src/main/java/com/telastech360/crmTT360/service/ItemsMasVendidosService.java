@@ -0,0 +1,278 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.ItemMasVendidoDTO;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.VentasItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Seguimiento en memoria de los ítems más vendidos, para el panel de ventas.
+ * <p>
+ * Las ventas se acumulan en un resumen Space-Saving por hora, en un anillo con las últimas N horas.
+ * Al arrancar se carga con una consulta agrupada por ítem y hora, y después se mantiene con los
+ * eventos de creación de pedidos y de cambio de estado: al cancelarse un pedido se restan sus
+ * líneas de la hora en que se creó, y se vuelven a sumar si sale del estado de cancelación. El
+ * ranking de las últimas horas se obtiene sumando los resúmenes del periodo, sin consultar la base
+ * de datos; los periodos que empiezan antes de la hora más antigua conservada se calculan de forma
+ * exacta con una consulta.
+ * <p>
+ * Los pedidos eliminados no se restan: sus ventas siguen contando hasta que su hora sale del anillo.
+ */
+@Service
+public class ItemsMasVendidosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemsMasVendidosService.class);
+
+    static final String ESTADO_CANCELADO = "CANCELADO";
+    static final int LIMITE_MAXIMO = 100;
+    private static final long MS_POR_HORA = 3_600_000L;
+
+    private final VentasItemRepository ventasItemRepository;
+    private final EstadoRepository estadoRepository;
+    private final int capacidadPorHora;
+    private final Clock reloj;
+
+    private final Hora[] anillo;
+    private final Set<Long> estadosCancelado = new HashSet<>();
+    // Primera hora cuyas ventas están completas en el anillo (Long.MAX_VALUE hasta la carga inicial)
+    private long cubiertoDesdeHora = Long.MAX_VALUE;
+    // Eventos recibidos durante la carga inicial, en orden de llegada (null una vez cargado)
+    private List<Object> eventosAplazados = new ArrayList<>();
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param ventasItemRepository Repositorio JDBC de cantidades vendidas por ítem.
+     * @param estadoRepository Repositorio para Estados, para reconocer las cancelaciones.
+     * @param horasRetenidas Número de horas que se conservan en memoria.
+     * @param capacidadPorHora Número de ítems que sigue el resumen de cada hora.
+     */
+    @Autowired
+    public ItemsMasVendidosService(VentasItemRepository ventasItemRepository,
+                                   EstadoRepository estadoRepository,
+                                   @Value("${crmtt360.items.mas-vendidos.horas-retenidas:168}") int horasRetenidas,
+                                   @Value("${crmtt360.items.mas-vendidos.capacidad-por-hora:256}") int capacidadPorHora) {
+        this(ventasItemRepository, estadoRepository, horasRetenidas, capacidadPorHora, Clock.systemDefaultZone());
+    }
+
+    ItemsMasVendidosService(VentasItemRepository ventasItemRepository, EstadoRepository estadoRepository,
+                            int horasRetenidas, int capacidadPorHora, Clock reloj) {
+        this.ventasItemRepository = ventasItemRepository;
+        this.estadoRepository = estadoRepository;
+        this.capacidadPorHora = capacidadPorHora;
+        this.reloj = reloj;
+        this.anillo = new Hora[Math.max(1, horasRetenidas)];
+    }
+
+    /**
+     * Carga las ventas de las horas retenidas al arrancar la aplicación. Los eventos de pedidos que
+     * llegan durante la carga se guardan y se aplican al terminar, salvo los que ya estaban
+     * confirmados en la instantánea leída: la consulta agrupada y la de estados se hacen en la misma
+     * transacción de solo lectura, así que ven la misma instantánea.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void inicializar() {
+        List<Long> cancelados = estadoRepository.findEstadosPedido().stream()
+                .filter(e -> e.getValor() != null && ESTADO_CANCELADO.equals(e.getValor().trim().toUpperCase(Locale.ROOT)))
+                .map(Estado::getEstadoId).toList();
+        long desdeHora = horaActual() - anillo.length + 1;
+        List<Object[]> filas = ventasItemRepository.sumarCantidadesPorHora(new Timestamp(desdeHora * MS_POR_HORA));
+        int aplazados;
+        synchronized (this) {
+            estadosCancelado.addAll(cancelados);
+            for (Object[] fila : filas) {
+                Hora actual = hora((Long) fila[1]); // Hora UTC desde la época, como horaActual()
+                if (actual != null) {
+                    actual.resumen().sumar((Long) fila[0], (Long) fila[2]);
+                }
+            }
+            cubiertoDesdeHora = desdeHora;
+            aplazados = aplicarEventosAplazados();
+        }
+        log.info("Ítems más vendidos cargados: {} filas de las últimas {} horas y {} eventos recibidos durante la carga.",
+                filas.size(), anillo.length, aplazados);
+    }
+
+    // Aplica los eventos recibidos durante la carga que la instantánea no reflejaba: se descartan las
+    // creaciones de pedidos ya existentes en ella y los cambios a un estado que el pedido ya tenía.
+    private int aplicarEventosAplazados() {
+        List<Object> eventos = eventosAplazados;
+        eventosAplazados = null;
+        if (eventos.isEmpty()) {
+            return 0;
+        }
+        Set<Long> pedidoIds = new HashSet<>();
+        for (Object evento : eventos) {
+            if (evento instanceof PedidoCreadoEvent creado) {
+                pedidoIds.add(creado.pedidoId());
+            } else {
+                pedidoIds.addAll(((PedidoEstadoCambiadoEvent) evento).pedidoIds());
+            }
+        }
+        Map<Long, Long> estadoEnCarga = ventasItemRepository.buscarEstados(pedidoIds);
+        for (Object evento : eventos) {
+            if (evento instanceof PedidoCreadoEvent creado) {
+                if (!estadoEnCarga.containsKey(creado.pedidoId())) {
+                    sumarPedido(creado);
+                }
+            } else {
+                PedidoEstadoCambiadoEvent cambio = (PedidoEstadoCambiadoEvent) evento;
+                Map<Long, Long> pendientes = new HashMap<>(cambio.estadoAnteriorPorPedido());
+                pendientes.keySet().removeIf(pedidoId -> cambio.estadoId().equals(estadoEnCarga.get(pedidoId)));
+                aplicarCambioEstado(new PedidoEstadoCambiadoEvent(pendientes, cambio.estadoId()));
+            }
+        }
+        return eventos.size();
+    }
+
+    /**
+     * Suma las líneas de un pedido creado a la hora de su creación.
+     * @param evento Evento de creación del pedido.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCrearPedido(PedidoCreadoEvent evento) {
+        if (eventosAplazados != null) {
+            eventosAplazados.add(evento);
+            return;
+        }
+        sumarPedido(evento);
+    }
+
+    /**
+     * Resta las líneas de los pedidos que pasan a un estado de cancelación y vuelve a sumar las de
+     * los que salen de él, en la hora en que se crearon.
+     * @param evento Evento de cambio de estado.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarEstado(PedidoEstadoCambiadoEvent evento) {
+        synchronized (this) {
+            if (eventosAplazados != null) {
+                eventosAplazados.add(evento);
+                return;
+            }
+        }
+        aplicarCambioEstado(evento);
+    }
+
+    private void aplicarCambioEstado(PedidoEstadoCambiadoEvent evento) {
+        List<Long> afectados = new ArrayList<>();
+        boolean cancela;
+        synchronized (this) {
+            cancela = estadosCancelado.contains(evento.estadoId());
+            // Solo cuentan las entradas y salidas de un estado de cancelación
+            evento.estadoAnteriorPorPedido().forEach((pedidoId, estadoAnterior) -> {
+                if (estadosCancelado.contains(estadoAnterior) != cancela) {
+                    afectados.add(pedidoId);
+                }
+            });
+        }
+        if (afectados.isEmpty()) {
+            return;
+        }
+        List<Object[]> lineas = ventasItemRepository.buscarLineas(afectados);
+        synchronized (this) {
+            for (Object[] linea : lineas) {
+                Hora hora = hora(Math.floorDiv(((Timestamp) linea[0]).getTime(), MS_POR_HORA));
+                if (hora == null) {
+                    continue;
+                }
+                if (cancela) {
+                    hora.resumen().restar((Long) linea[1], (Integer) linea[2]);
+                } else {
+                    hora.resumen().sumar((Long) linea[1], (Integer) linea[2]);
+                }
+            }
+        }
+    }
+
+    private void sumarPedido(PedidoCreadoEvent evento) {
+        Hora hora = hora(Math.floorDiv(evento.fechaPedido().getTime(), MS_POR_HORA));
+        if (hora != null && !estadosCancelado.contains(evento.estadoId())) {
+            evento.cantidadesPorItem().forEach((itemId, cantidad) -> hora.resumen().sumar(itemId, cantidad));
+        }
+    }
+
+    /**
+     * Obtiene los ítems más vendidos en las últimas horas (incluida la hora en curso). Si el
+     * periodo está en memoria las cantidades pueden ser estimadas (ver errorMaximo); si no, se
+     * calculan de forma exacta en la base de datos.
+     * @param horas Número de horas del periodo.
+     * @param limite Número máximo de ítems.
+     * @return Ítems de mayor a menor cantidad vendida.
+     * @throws InvalidDataException si las horas o el límite no son válidos.
+     */
+    public List<ItemMasVendidoDTO> obtenerMasVendidos(int horas, int limite) {
+        if (horas < 1) {
+            throw new InvalidDataException("El número de horas debe ser al menos 1.");
+        }
+        if (limite < 1 || limite > LIMITE_MAXIMO) {
+            throw new InvalidDataException("El límite debe estar entre 1 y " + LIMITE_MAXIMO + ".");
+        }
+        long horaActual = horaActual();
+        long desdeHora = horaActual - horas + 1;
+        Map<Long, long[]> acumulado = null;
+        synchronized (this) {
+            if (desdeHora >= cubiertoDesdeHora && desdeHora > horaActual - anillo.length) {
+                List<ResumenSpaceSaving> resumenes = new ArrayList<>();
+                for (Hora hora : anillo) {
+                    if (hora != null && hora.hora() >= desdeHora && hora.hora() <= horaActual) {
+                        resumenes.add(hora.resumen());
+                    }
+                }
+                acumulado = ResumenSpaceSaving.combinar(resumenes);
+            }
+        }
+        if (acumulado == null) {
+            log.debug("Más vendidos de las últimas {} horas fuera de memoria; se calcula en la base de datos.", horas);
+            return ventasItemRepository.buscarMasVendidos(new Timestamp(desdeHora * MS_POR_HORA), limite);
+        }
+        List<ItemMasVendidoDTO> ranking = new ArrayList<>(acumulado.size());
+        acumulado.forEach((itemId, total) -> ranking.add(new ItemMasVendidoDTO(itemId, total[0], total[1])));
+        ranking.sort((a, b) -> a.getCantidad() != b.getCantidad()
+                ? Long.compare(b.getCantidad(), a.getCantidad()) : a.getItemId().compareTo(b.getItemId()));
+        return ranking.size() > limite ? new ArrayList<>(ranking.subList(0, limite)) : ranking;
+    }
+
+    private long horaActual() {
+        return Math.floorDiv(reloj.millis(), MS_POR_HORA);
+    }
+
+    // Resumen de una hora dentro del anillo; reutiliza la posición de la hora que sale. Null si la hora ya salió.
+    private Hora hora(long hora) {
+        if (hora <= horaActual() - anillo.length) {
+            return null;
+        }
+        int posicion = (int) Math.floorMod(hora, (long) anillo.length);
+        Hora actual = anillo[posicion];
+        if (actual == null || actual.hora() < hora) {
+            actual = new Hora(hora, new ResumenSpaceSaving(capacidadPorHora));
+            anillo[posicion] = actual;
+        } else if (actual.hora() > hora) {
+            return null;
+        }
+        return actual;
+    }
+
+    private record Hora(long hora, ResumenSpaceSaving resumen) {
+    }
+}
@@ -33,6 +33,10 @@ public class MateriaPrimaService {
     private final EstadoRepository estadoRepository;
     private final UsuarioRepository usuarioRepository;
     private final MateriaPrimaMapper materiaPrimaMapper; // Inyectar Mapper
+    private final ItemStockShardService itemStockShardService;
+    private final StockEngine stockEngine;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final ProgramadorVencimientos programadorVencimientos;
 
     @Autowired
     public MateriaPrimaService(MateriaPrimaRepository materiaPrimaRepository,
@@ -42,7 +46,11 @@ public class MateriaPrimaService {
                                CategoriaRepository categoriaRepository,
                                EstadoRepository estadoRepository,
                                UsuarioRepository usuarioRepository,
-                               MateriaPrimaMapper materiaPrimaMapper) { // Inyectar Mapper
+                               MateriaPrimaMapper materiaPrimaMapper, // Inyectar Mapper
+                               ItemStockShardService itemStockShardService,
+                               StockEngine stockEngine,
+                               AlertaStockBajoService alertaStockBajoService,
+                               ProgramadorVencimientos programadorVencimientos) {
         this.materiaPrimaRepository = materiaPrimaRepository;
         this.itemRepository = itemRepository;
         this.proveedorRepository = proveedorRepository;
@@ -51,6 +59,10 @@ public class MateriaPrimaService {
         this.estadoRepository = estadoRepository;
         this.usuarioRepository = usuarioRepository;
         this.materiaPrimaMapper = materiaPrimaMapper; // Asignar Mapper
+        this.itemStockShardService = itemStockShardService;
+        this.stockEngine = stockEngine;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.programadorVencimientos = programadorVencimientos;
     }
 
     /**
@@ -99,6 +111,8 @@ public class MateriaPrimaService {
         // El tipo de Item se setea en el mapper/constructor
 
         MateriaPrima materiaPrimaGuardada = materiaPrimaRepository.save(materiaPrima);
+        alertaStockBajoService.registrarCambio(List.of(materiaPrimaGuardada.getItemId()));
+        programadorVencimientos.registrar(materiaPrimaGuardada.getItemId(), materiaPrimaGuardada.getFechaVencimiento());
         log.info("Materia prima '{}' (Código: {}) creada exitosamente con ID: {}",
                 materiaPrimaGuardada.getNombre(), materiaPrimaGuardada.getCodigo(), materiaPrimaGuardada.getItemId());
         return materiaPrimaGuardada;
@@ -176,7 +190,19 @@ public class MateriaPrimaService {
         );
         log.debug("Entidad MateriaPrima ID {} actualizada desde DTO.", id);
 
+        if (stockEngine.activo()) {
+            stockEngine.invalidar(id); // El stock se fija de forma absoluta en la base de datos
+        }
+
+        // Si el stock está fragmentado, el valor del DTO es el total: se reparte entre los shards
+        if (materiaPrimaExistente.getStockShards() != null && materiaPrimaExistente.getStockShards() > 0) {
+            itemStockShardService.fijarStockTotal(id, materiaPrimaDto.getStockDisponible());
+            materiaPrimaExistente.setStockDisponible(0);
+        }
+
         MateriaPrima materiaPrimaGuardada = materiaPrimaRepository.save(materiaPrimaExistente);
+        alertaStockBajoService.registrarCambio(List.of(id));
+        programadorVencimientos.registrar(id, materiaPrimaGuardada.getFechaVencimiento());
         log.info("Materia prima ID {} actualizada exitosamente.", id);
         return materiaPrimaGuardada;
     }
@@ -192,7 +218,11 @@ public class MateriaPrimaService {
         }
         log.debug("MP ID {} no está en pedidos activos.", id);
 
+        if (stockEngine.activo()) {
+            stockEngine.invalidar(id);
+        }
         materiaPrimaRepository.delete(materiaPrima);
+        programadorVencimientos.retirar(id);
         log.info("Materia prima ID {} ('{}') eliminada exitosamente.", id, materiaPrima.getNombre());
     }
 
@@ -225,7 +255,10 @@ public class MateriaPrimaService {
     @Transactional(readOnly = true)
     public List<MateriaPrima> buscarMateriasPrimasPorVencer(Date fechaLimite) { // Usar java.sql.Date si el repo lo necesita
         log.info("Buscando materias primas por vencer antes de: {}", fechaLimite);
-        List<Item> itemsPorVencer = itemRepository.findItemsPorVencer(new Date(System.currentTimeMillis()), fechaLimite);
+        List<Long> ids = programadorVencimientos.buscarIdsPorVencer(fechaLimite);
+        List<Item> itemsPorVencer = ids != null
+                ? itemRepository.findAllById(ids)
+                : itemRepository.findItemsPorVencer(new Date(System.currentTimeMillis()), fechaLimite);
         List<MateriaPrima> resultado = itemsPorVencer.stream()
                 .filter(item -> item instanceof MateriaPrima)
                 .map(item -> (MateriaPrima) item)
@@ -242,7 +275,7 @@ public class MateriaPrimaService {
                 .filter(item -> item instanceof MateriaPrima)
                 .map(item -> (MateriaPrima) item)
                 .collect(Collectors.groupingBy(MateriaPrima::getTipoMaterial,
-                        Collectors.summingLong(item -> (long)item.getStockDisponible()))) // Asegurar que stock sea Long si summingLong espera Long
+                        Collectors.summingLong(item -> (long) itemStockShardService.stockTotal(item)))) // Asegurar que stock sea Long si summingLong espera Long
                 .entrySet().stream()
                 .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
                 .collect(Collectors.toList());
@@ -0,0 +1,19 @@
+package com.telastech360.crmTT360.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Map;
+
+/**
+ * Evento de aplicación publicado al crear un pedido (individualmente o en una importación por
+ * lotes). Los oyentes lo reciben al confirmarse la transacción que creó el pedido.
+ * @param pedidoId ID del pedido.
+ * @param clienteId ID del cliente (puede ser null).
+ * @param estadoId ID del estado inicial.
+ * @param fechaPedido Fecha de creación del pedido.
+ * @param total Total del pedido.
+ * @param cantidadesPorItem Cantidad pedida de cada ítem (ID del ítem a cantidad).
+ */
+public record PedidoCreadoEvent(Long pedidoId, Long clienteId, Long estadoId, Timestamp fechaPedido, BigDecimal total,
+                                Map<Long, Integer> cantidadesPorItem) {
+}
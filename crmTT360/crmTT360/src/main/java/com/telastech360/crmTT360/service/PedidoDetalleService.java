@@ -84,11 +84,13 @@ public class PedidoDetalleService {
 
         // << --- Validación de Stock (Tarea 4) --- >>
         log.debug("Verificando stock disponible para Item ID {}", itemId);
-        if (item.getStockDisponible() < detalle.getCantidad()) {
+        // Stock total (fila item más shards) con una consulta, sin sumar los shards en cada carga de Item
+        int disponible = ((Number) itemRepository.findNivelesDeStock(List.of(itemId)).get(0)[2]).intValue();
+        if (disponible < detalle.getCantidad()) {
             log.error("Stock insuficiente al agregar detalle. Item ID: {}, Nombre: {}, Disponible: {}, Solicitado: {}",
-                    item.getItemId(), item.getNombre(), item.getStockDisponible(), detalle.getCantidad());
+                    item.getItemId(), item.getNombre(), disponible, detalle.getCantidad());
             throw new IllegalOperationException("Stock insuficiente para el ítem '" + item.getNombre() +
-                    "'. Disponible: " + item.getStockDisponible() +
+                    "'. Disponible: " + disponible +
                     ", Solicitado: " + detalle.getCantidad());
         }
         log.debug("Stock suficiente verificado para Item ID {}.", itemId);
@@ -106,6 +108,7 @@ public class PedidoDetalleService {
         nuevoDetalle.setPrecioUnitario(detalle.getPrecioUnitario());
 
         PedidoDetalle detalleGuardado = pedidoDetalleRepository.save(nuevoDetalle);
+        pedidoRepository.ajustarTotal(pedidoId, detalleGuardado.getSubtotal());
         log.info("Detalle agregado exitosamente al pedido ID {}. Item ID: {}, Cantidad: {}",
                 pedidoId, itemId, detalleGuardado.getCantidad());
 
@@ -116,6 +119,7 @@ public class PedidoDetalleService {
     public PedidoDetalle actualizarDetalle(Long pedidoId, Long itemId, PedidoDetalle detalleActualizado) {
         log.info("Actualizando detalle para Pedido ID {} e Item ID {}", pedidoId, itemId);
         PedidoDetalle detalleExistente = obtenerDetallePorId(pedidoId, itemId);
+        BigDecimal subtotalAnterior = detalleExistente.getSubtotal();
 
         Integer cantidadAnterior = detalleExistente.getCantidad();
         Integer cantidadNueva = detalleActualizado.getCantidad();
@@ -155,6 +159,10 @@ public class PedidoDetalleService {
 
         if (cantidadCambiada || precioCambiado) {
             PedidoDetalle detalleGuardado = pedidoDetalleRepository.save(detalleExistente);
+            BigDecimal diferenciaTotal = detalleGuardado.getSubtotal().subtract(subtotalAnterior);
+            if (diferenciaTotal.signum() != 0) {
+                pedidoRepository.ajustarTotal(pedidoId, diferenciaTotal);
+            }
             log.info("Detalle (P:{}, I:{}) actualizado exitosamente.", pedidoId, itemId);
             return detalleGuardado;
         } else {
@@ -171,7 +179,10 @@ public class PedidoDetalleService {
         Integer cantidadEliminada = detalle.getCantidad();
         Long idItemARestaurar = detalle.getProducto().getItemId();
 
+        BigDecimal subtotalEliminado = detalle.getSubtotal();
+
         pedidoDetalleRepository.delete(detalle);
+        pedidoRepository.ajustarTotal(pedidoId, subtotalEliminado.negate());
         log.debug("Detalle (P:{}, I:{}) eliminado de la base de datos.", pedidoId, itemId);
 
         log.debug("Restaurando stock para Item ID {} en {} unidades.", idItemARestaurar, cantidadEliminada);
@@ -202,13 +213,18 @@ public class PedidoDetalleService {
         return subtotal;
     }
 
+    /**
+     * Obtiene el total de un pedido desde la columna total, que mantienen los métodos de alta,
+     * modificación y baja de detalles, sin cargar los detalles.
+     * @param pedidoId ID del pedido.
+     * @return Total del pedido.
+     * @throws ResourceNotFoundException si el pedido no existe.
+     */
     @Transactional(readOnly = true)
     public BigDecimal calcularTotalPedido(Long pedidoId) {
         log.info("Calculando total para el pedido ID: {}", pedidoId);
-        List<PedidoDetalle> detalles = listarDetallesPorPedido(pedidoId);
-        BigDecimal total = detalles.stream()
-                .map(PedidoDetalle::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal total = pedidoRepository.findTotalById(pedidoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado con ID: " + pedidoId));
         log.debug("Total calculado para pedido ID {}: {}", pedidoId, total);
         return total;
     }
@@ -0,0 +1,8 @@
+package com.telastech360.crmTT360.service;
+
+/**
+ * Evento de aplicación publicado al eliminar un pedido.
+ * @param pedidoId ID del pedido eliminado.
+ */
+public record PedidoEliminadoEvent(Long pedidoId) {
+}
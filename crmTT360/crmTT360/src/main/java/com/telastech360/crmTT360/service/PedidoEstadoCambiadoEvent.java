@@ -0,0 +1,20 @@
+package com.telastech360.crmTT360.service;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evento de aplicación publicado cuando uno o varios pedidos pasan a otro estado
+ * (actualización individual o cambio de estado por lotes).
+ * @param estadoAnteriorPorPedido Mapa pedidoId -> ID del estado que tenía el pedido antes del cambio.
+ * @param estadoId ID del nuevo estado.
+ */
+public record PedidoEstadoCambiadoEvent(Map<Long, Long> estadoAnteriorPorPedido, Long estadoId) {
+
+    /**
+     * @return IDs de los pedidos que cambiaron de estado.
+     */
+    public Set<Long> pedidoIds() {
+        return estadoAnteriorPorPedido.keySet();
+    }
+}
@@ -0,0 +1,191 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoEstadoLoteDTO;
+import com.telastech360.crmTT360.dto.PedidoEstadoLoteResultadoDTO;
+import com.telastech360.crmTT360.dto.PedidoEstadoLoteResultadoDTO.Rechazo;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.repository.PedidoDetalleRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import com.telastech360.crmTT360.repository.TransicionEstadoPedidoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio para cambiar el estado de muchos pedidos a la vez (cancelar, completar...).
+ * <p>
+ * Las transiciones permitidas se leen de la tabla transicion_estado_pedido, por el valor del
+ * estado. Los pedidos se bloquean con un único SELECT ... FOR UPDATE, se cambian con un único
+ * UPDATE y, en las transiciones que restauran stock, las cantidades de todos sus detalles se
+ * devuelven al inventario agregadas por ítem en lugar de línea a línea.
+ */
+@Service
+public class PedidoEstadoLoteService {
+
+    private static final Logger log = LoggerFactory.getLogger(PedidoEstadoLoteService.class);
+
+    private final PedidoRepository pedidoRepository;
+    private final PedidoDetalleRepository pedidoDetalleRepository;
+    private final EstadoRepository estadoRepository;
+    private final ItemRepository itemRepository;
+    private final TransicionEstadoPedidoRepository transicionEstadoPedidoRepository;
+    private final ItemStockShardService itemStockShardService;
+    private final StockEngine stockEngine;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param pedidoRepository Repositorio para Pedidos.
+     * @param pedidoDetalleRepository Repositorio para los detalles de pedido.
+     * @param estadoRepository Repositorio para Estados.
+     * @param itemRepository Repositorio para Items.
+     * @param transicionEstadoPedidoRepository Repositorio JDBC de la máquina de estados de pedidos.
+     * @param itemStockShardService Servicio para el stock fragmentado de ítems muy demandados.
+     * @param stockEngine Motor de stock en memoria (opcional, desactivado por defecto).
+     * @param alertaStockBajoService Servicio de alertas de stock bajo.
+     * @param eventPublisher Publicador de eventos de cambio de estado de pedidos.
+     */
+    @Autowired
+    public PedidoEstadoLoteService(PedidoRepository pedidoRepository,
+                                   PedidoDetalleRepository pedidoDetalleRepository,
+                                   EstadoRepository estadoRepository,
+                                   ItemRepository itemRepository,
+                                   TransicionEstadoPedidoRepository transicionEstadoPedidoRepository,
+                                   ItemStockShardService itemStockShardService,
+                                   StockEngine stockEngine,
+                                   AlertaStockBajoService alertaStockBajoService,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.pedidoRepository = pedidoRepository;
+        this.pedidoDetalleRepository = pedidoDetalleRepository;
+        this.estadoRepository = estadoRepository;
+        this.itemRepository = itemRepository;
+        this.transicionEstadoPedidoRepository = transicionEstadoPedidoRepository;
+        this.itemStockShardService = itemStockShardService;
+        this.stockEngine = stockEngine;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Cambia el estado de varios pedidos. Los pedidos inexistentes o cuya transición no está
+     * permitida se rechazan sin impedir el cambio de los demás.
+     * @param solicitud IDs de los pedidos y estado destino.
+     * @return Resultado con los pedidos actualizados, sin cambios y rechazados.
+     * @throws ResourceNotFoundException si el estado destino no existe.
+     */
+    @Transactional
+    public PedidoEstadoLoteResultadoDTO cambiarEstado(PedidoEstadoLoteDTO solicitud) {
+        Long estadoId = solicitud.getEstadoId();
+        Estado destino = estadoRepository.findById(estadoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + estadoId));
+        String valorDestino = normalizar(destino.getValor());
+        Set<Long> pedidoIds = new TreeSet<>(solicitud.getPedidoIds());
+        log.info("Cambiando {} pedidos al estado '{}' (ID {}).", pedidoIds.size(), valorDestino, estadoId);
+
+        Map<Long, Long> estadoActualPorPedido = new HashMap<>();
+        for (Object[] fila : pedidoRepository.bloquearEstados(pedidoIds)) {
+            estadoActualPorPedido.put(((Number) fila[0]).longValue(), ((Number) fila[1]).longValue());
+        }
+        Map<Long, String> valorPorEstado = estadoRepository.findAllById(new TreeSet<>(estadoActualPorPedido.values()))
+                .stream().collect(Collectors.toMap(Estado::getEstadoId, estado -> normalizar(estado.getValor())));
+        Map<String, Boolean> origenesPermitidos = transicionEstadoPedidoRepository.buscarOrigenesPermitidos(valorDestino);
+
+        PedidoEstadoLoteResultadoDTO resultado = new PedidoEstadoLoteResultadoDTO(estadoId, destino.getValor());
+        List<Long> aRestaurar = new ArrayList<>();
+        for (Long pedidoId : pedidoIds) {
+            Long estadoActual = estadoActualPorPedido.get(pedidoId);
+            if (estadoActual == null) {
+                resultado.getRechazados().add(new Rechazo(pedidoId, "Pedido no encontrado con ID: " + pedidoId));
+                continue;
+            }
+            if (estadoActual.equals(estadoId)) {
+                resultado.getSinCambios().add(pedidoId);
+                continue;
+            }
+            String valorActual = valorPorEstado.get(estadoActual);
+            Boolean restauraStock = origenesPermitidos.get(valorActual);
+            if (restauraStock == null) {
+                resultado.getRechazados().add(new Rechazo(pedidoId,
+                        "Transición no permitida: " + valorActual + " -> " + valorDestino));
+                continue;
+            }
+            resultado.getActualizados().add(pedidoId);
+            if (restauraStock) {
+                aRestaurar.add(pedidoId);
+            }
+        }
+
+        if (!resultado.getActualizados().isEmpty()) {
+            pedidoRepository.actualizarEstadoPedidos(resultado.getActualizados(), destino);
+            Map<Long, Long> estadoAnteriorPorPedido = new LinkedHashMap<>();
+            resultado.getActualizados().forEach(pedidoId -> estadoAnteriorPorPedido.put(pedidoId, estadoActualPorPedido.get(pedidoId)));
+            eventPublisher.publishEvent(new PedidoEstadoCambiadoEvent(estadoAnteriorPorPedido, estadoId));
+        }
+        if (!aRestaurar.isEmpty()) {
+            resultado.setItemsConStockRestaurado(restaurarStock(aRestaurar));
+        }
+        log.info("Cambio de estado por lotes a '{}': {} actualizados ({} con stock restaurado), {} sin cambios, {} rechazados.",
+                valorDestino, resultado.getActualizados().size(), aRestaurar.size(),
+                resultado.getSinCambios().size(), resultado.getRechazados().size());
+        return resultado;
+    }
+
+    /**
+     * Devuelve al inventario las cantidades de los detalles de los pedidos, agregadas por ítem.
+     * Los ítems que gestiona el {@link StockEngine} y los fragmentados siguen su propio camino
+     * (un ajuste por ítem, no por línea); el resto se bloquea en orden ascendente de ID y se
+     * restaura con un único UPDATE ... JOIN.
+     * @return Número de ítems cuyo stock se restauró.
+     */
+    private int restaurarStock(List<Long> pedidoIds) {
+        List<Object[]> cantidadesPorItem = pedidoDetalleRepository.sumarCantidadesPorItem(pedidoIds);
+        Set<Long> itemsPlanos = new TreeSet<>();
+        Set<Long> itemsModificados = new TreeSet<>();
+        for (Object[] fila : cantidadesPorItem) {
+            Long itemId = ((Number) fila[0]).longValue();
+            int cantidad = ((Number) fila[1]).intValue();
+            int numShards = ((Number) fila[2]).intValue();
+            itemsModificados.add(itemId);
+            Boolean restauradoEnMotor = stockEngine.activo() ? stockEngine.intentarAjustar(itemId, cantidad) : null;
+            if (restauradoEnMotor != null) {
+                continue; // Se aplica en memoria al confirmarse la transacción
+            }
+            if (numShards > 0) {
+                itemStockShardService.intentarAjustarStock(itemId, numShards, cantidad);
+            } else {
+                itemsPlanos.add(itemId);
+            }
+        }
+        if (!itemsPlanos.isEmpty()) {
+            // Bloqueo previo en orden ascendente de ID, como ItemService.reservarStock
+            itemRepository.bloquearStockParaActualizar(itemsPlanos);
+            int actualizados = itemRepository.restaurarStockDePedidos(pedidoIds, itemsPlanos);
+            log.debug("Stock restaurado con un UPDATE agregado para {} ítems de {} pedidos.", actualizados, pedidoIds.size());
+        }
+        if (!itemsModificados.isEmpty()) {
+            alertaStockBajoService.registrarCambio(itemsModificados);
+        }
+        return itemsModificados.size();
+    }
+
+    private static String normalizar(String valor) {
+        return valor == null ? null : valor.trim().toUpperCase(Locale.ROOT);
+    }
+}
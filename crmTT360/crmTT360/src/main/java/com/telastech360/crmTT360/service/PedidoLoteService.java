@@ -0,0 +1,373 @@
+package com.telastech360.crmTT360.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telastech360.crmTT360.dto.PedidoDTO;
+import com.telastech360.crmTT360.dto.PedidoDetalleDTO;
+import com.telastech360.crmTT360.dto.PedidoLoteResultadoDTO;
+import com.telastech360.crmTT360.dto.PedidoLoteResultadoDTO.Estado;
+import com.telastech360.crmTT360.entity.ClienteInterno;
+import com.telastech360.crmTT360.exception.IllegalOperationException;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.ClienteInternoRepository;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.repository.PedidoLoteRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio de importación de pedidos por lotes (p. ej. los pedidos que el ERP envía cada noche).
+ * <p>
+ * Lee el cuerpo (NDJSON o array JSON) de forma incremental y lo procesa en tramos de tamaño
+ * configurable, cada uno en su propia transacción. Por tramo, clientes y estados se validan con una
+ * consulta por conjunto, los ítems se bloquean con un único SELECT ... FOR UPDATE en orden de ID y el
+ * stock se valida en memoria pedido a pedido; los pedidos, sus detalles y los descuentos de stock se
+ * escriben con lotes JDBC. El resultado de cada pedido se entrega al terminar su tramo, para que el
+ * llamador lo envíe sin esperar al final del lote.
+ */
+@Service
+public class PedidoLoteService {
+
+    private static final Logger log = LoggerFactory.getLogger(PedidoLoteService.class);
+
+    private final ClienteInternoRepository clienteRepository;
+    private final EstadoRepository estadoRepository;
+    private final ItemRepository itemRepository;
+    private final PedidoLoteRepository pedidoLoteRepository;
+    private final ItemStockShardService itemStockShardService;
+    private final StockEngine stockEngine;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int tamanoTramo;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param clienteRepository Repositorio para Clientes Internos.
+     * @param estadoRepository Repositorio para Estados.
+     * @param itemRepository Repositorio para Items.
+     * @param pedidoLoteRepository Repositorio JDBC de inserción de pedidos por lotes.
+     * @param itemStockShardService Servicio para el stock fragmentado de ítems muy demandados.
+     * @param stockEngine Motor de stock en memoria (opcional, desactivado por defecto).
+     * @param alertaStockBajoService Servicio de alertas de stock bajo.
+     * @param eventPublisher Publicador de eventos de creación de pedidos.
+     * @param transactionManager Gestor de transacciones, para una transacción por tramo.
+     * @param objectMapper Mapper JSON para leer el lote de forma incremental.
+     * @param validator Validador de Bean Validation (mismas reglas que POST /api/pedidos).
+     * @param tamanoTramo Número de pedidos por tramo (transacción y lote JDBC).
+     */
+    @Autowired
+    public PedidoLoteService(ClienteInternoRepository clienteRepository,
+                             EstadoRepository estadoRepository,
+                             ItemRepository itemRepository,
+                             PedidoLoteRepository pedidoLoteRepository,
+                             ItemStockShardService itemStockShardService,
+                             StockEngine stockEngine,
+                             AlertaStockBajoService alertaStockBajoService,
+                             ApplicationEventPublisher eventPublisher,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             @Value("${crmtt360.pedidos.lote.tamano-tramo:500}") int tamanoTramo) {
+        this.clienteRepository = clienteRepository;
+        this.estadoRepository = estadoRepository;
+        this.itemRepository = itemRepository;
+        this.pedidoLoteRepository = pedidoLoteRepository;
+        this.itemStockShardService = itemStockShardService;
+        this.stockEngine = stockEngine;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.tamanoTramo = Math.max(1, tamanoTramo);
+    }
+
+    /**
+     * Importa los pedidos de un flujo NDJSON (un pedido por línea) o de un array JSON de pedidos.
+     * Si el JSON está mal formado, se informa una fila INVALIDO en esa posición y se detiene la
+     * importación; los tramos anteriores ya quedan confirmados.
+     * @param entrada Flujo con los pedidos.
+     * @param alProcesarTramo Recibe los resultados de cada tramo, en el orden de entrada.
+     * @throws IOException si falla la lectura del flujo.
+     */
+    public void importar(InputStream entrada, Consumer<List<PedidoLoteResultadoDTO>> alProcesarTramo) throws IOException {
+        long inicio = System.nanoTime();
+        int[] totales = new int[2]; // [procesados, creados]
+        Consumer<List<PedidoLoteResultadoDTO>> contador = resultados -> {
+            totales[0] += resultados.size();
+            totales[1] += (int) resultados.stream().filter(r -> r.getEstado() == Estado.CREADO).count();
+            alProcesarTramo.accept(resultados);
+        };
+        List<Fila> tramo = new ArrayList<>(tamanoTramo);
+        int numFila = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(entrada)) {
+            JsonToken token = parser.nextToken();
+            boolean esArray = token == JsonToken.START_ARRAY;
+            if (esArray) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new InvalidDataException("Se esperaba un objeto JSON por pedido.");
+                }
+                JsonNode nodo = parser.readValueAsTree(); // Se lee antes de numerar: si falla, la fila informada es esta
+                tramo.add(leerFila(numFila++, nodo));
+                if (tramo.size() == tamanoTramo) {
+                    contador.accept(procesarTramo(tramo));
+                    tramo.clear();
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException | InvalidDataException e) {
+            if (!tramo.isEmpty()) {
+                contador.accept(procesarTramo(tramo));
+            }
+            String mensaje = e instanceof JsonProcessingException jpe ? jpe.getOriginalMessage() : e.getMessage();
+            contador.accept(List.of(new PedidoLoteResultadoDTO(numFila, null, Estado.INVALIDO, "JSON inválido: " + mensaje)));
+            log.warn("Importación de pedidos detenida en la fila {} por JSON inválido: {}", numFila, mensaje);
+            return;
+        }
+        if (!tramo.isEmpty()) {
+            contador.accept(procesarTramo(tramo));
+        }
+        log.info("Importación de pedidos terminada: {} pedidos, {} creados en {} ms.",
+                totales[0], totales[1], (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private Fila leerFila(int numFila, JsonNode nodo) {
+        PedidoDTO pedido;
+        try {
+            pedido = objectMapper.treeToValue(nodo, PedidoDTO.class);
+        } catch (JsonProcessingException e) {
+            return new Fila(numFila, null, null, "Pedido inválido: " + e.getOriginalMessage());
+        }
+        Set<ConstraintViolation<PedidoDTO>> violaciones = validator.validate(pedido);
+        if (!violaciones.isEmpty()) {
+            return new Fila(numFila, pedido, null, violaciones.stream()
+                    .map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; ")));
+        }
+        try {
+            return new Fila(numFila, pedido, PedidoService.validarDetalles(pedido), null);
+        } catch (InvalidDataException e) {
+            return new Fila(numFila, pedido, null, e.getMessage());
+        }
+    }
+
+    private List<PedidoLoteResultadoDTO> procesarTramo(List<Fila> tramo) {
+        PedidoLoteResultadoDTO[] resultados = new PedidoLoteResultadoDTO[tramo.size()];
+        try {
+            transactionTemplate.executeWithoutResult(estado -> aplicarTramo(tramo, resultados));
+        } catch (DataAccessException e) {
+            log.error("Error de base de datos en un tramo de {} pedidos (filas {}-{}); tramo deshecho: {}",
+                    tramo.size(), tramo.get(0).numero(), tramo.get(tramo.size() - 1).numero(), e.getMessage());
+            for (int i = 0; i < tramo.size(); i++) {
+                if (resultados[i] == null || resultados[i].getEstado() == Estado.CREADO) {
+                    resultados[i] = new PedidoLoteResultadoDTO(tramo.get(i).numero(), null, Estado.ERROR,
+                            "Error de base de datos; el pedido no se creó.");
+                }
+            }
+        }
+        return Arrays.asList(resultados);
+    }
+
+    /**
+     * Crea los pedidos válidos de un tramo dentro de su transacción. Los pedidos se validan en el
+     * orden recibido, de modo que el stock que reserva uno ya no está disponible para los siguientes.
+     */
+    private void aplicarTramo(List<Fila> tramo, PedidoLoteResultadoDTO[] resultados) {
+        Set<Long> clienteIds = new HashSet<>();
+        Set<Long> estadoIds = new HashSet<>();
+        Set<Long> itemIds = new TreeSet<>();
+        for (int i = 0; i < tramo.size(); i++) {
+            Fila fila = tramo.get(i);
+            if (fila.error() != null) {
+                resultados[i] = new PedidoLoteResultadoDTO(fila.numero(), null, Estado.INVALIDO, fila.error());
+                continue;
+            }
+            clienteIds.add(fila.pedido().getClienteId());
+            estadoIds.add(fila.pedido().getEstadoId());
+            itemIds.addAll(fila.cantidadesPorItem().keySet());
+        }
+        if (itemIds.isEmpty()) {
+            return;
+        }
+
+        Set<Long> clientesExistentes = clienteRepository.findAllById(clienteIds).stream()
+                .map(ClienteInterno::getClienteId).collect(Collectors.toSet());
+        Set<Long> estadosExistentes = estadoRepository.findAllById(estadoIds).stream()
+                .map(estado -> estado.getEstadoId()).collect(Collectors.toSet());
+        Map<Long, Object[]> filasPorItem = new HashMap<>();
+        for (Object[] filaItem : itemRepository.bloquearStockParaActualizar(itemIds)) {
+            filasPorItem.put(((Number) filaItem[0]).longValue(), filaItem);
+        }
+
+        Map<Long, Integer> stockPorItem = new HashMap<>();
+        Map<Long, Integer> descuentosEnLote = new TreeMap<>();
+        Set<Long> itemsModificados = new HashSet<>();
+        Map<Integer, Fila> creados = new LinkedHashMap<>();
+        for (int i = 0; i < tramo.size(); i++) {
+            if (resultados[i] != null) {
+                continue;
+            }
+            Fila fila = tramo.get(i);
+            String noEncontrado = buscarNoEncontrado(fila, clientesExistentes, estadosExistentes, filasPorItem);
+            if (noEncontrado != null) {
+                resultados[i] = new PedidoLoteResultadoDTO(fila.numero(), null, Estado.NO_ENCONTRADO, noEncontrado);
+                continue;
+            }
+            String rechazo = reservar(fila.cantidadesPorItem(), filasPorItem, stockPorItem, descuentosEnLote);
+            if (rechazo != null) {
+                resultados[i] = new PedidoLoteResultadoDTO(fila.numero(), null, Estado.RECHAZADO, rechazo);
+                continue;
+            }
+            itemsModificados.addAll(fila.cantidadesPorItem().keySet());
+            creados.put(i, fila);
+        }
+        if (creados.isEmpty()) {
+            return;
+        }
+
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        List<Object[]> pedidos = new ArrayList<>(creados.size());
+        creados.values().forEach(f -> pedidos.add(new Object[]{ahora, f.pedido().getClienteId(), f.pedido().getEstadoId(),
+                PedidoService.calcularTotal(f.pedido())}));
+        List<Long> pedidoIds = pedidoLoteRepository.insertarPedidos(pedidos);
+
+        List<Object[]> detalles = new ArrayList<>();
+        int k = 0;
+        for (Map.Entry<Integer, Fila> creado : creados.entrySet()) {
+            Long pedidoId = pedidoIds.get(k++);
+            for (PedidoDetalleDTO detalle : creado.getValue().pedido().getDetalles()) {
+                detalles.add(new Object[]{pedidoId, detalle.getItemId(), detalle.getCantidad(), detalle.getPrecioUnitario()});
+            }
+            resultados[creado.getKey()] = new PedidoLoteResultadoDTO(creado.getValue().numero(), pedidoId, Estado.CREADO, null);
+        }
+        pedidoLoteRepository.insertarDetalles(detalles);
+        int j = 0;
+        for (Fila creado : creados.values()) {
+            Object[] pedido = pedidos.get(j);
+            eventPublisher.publishEvent(new PedidoCreadoEvent(pedidoIds.get(j++), (Long) pedido[1], (Long) pedido[2],
+                    ahora, (BigDecimal) pedido[3], creado.cantidadesPorItem()));
+        }
+        itemRepository.descontarStockEnLote(descuentosEnLote);
+        alertaStockBajoService.registrarCambio(itemsModificados);
+        log.debug("Tramo de {} pedidos: {} creados con {} detalles.", tramo.size(), creados.size(), detalles.size());
+    }
+
+    private String buscarNoEncontrado(Fila fila, Set<Long> clientesExistentes, Set<Long> estadosExistentes,
+                                      Map<Long, Object[]> filasPorItem) {
+        if (!clientesExistentes.contains(fila.pedido().getClienteId())) {
+            return "Cliente no encontrado con ID: " + fila.pedido().getClienteId();
+        }
+        if (!estadosExistentes.contains(fila.pedido().getEstadoId())) {
+            return "Estado no encontrado con ID: " + fila.pedido().getEstadoId();
+        }
+        for (Long itemId : fila.cantidadesPorItem().keySet()) {
+            if (!filasPorItem.containsKey(itemId)) {
+                return "Ítem no encontrado con ID: " + itemId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reserva el stock de un pedido: todas sus líneas o ninguna. Los ítems que gestiona el
+     * {@link StockEngine} se reservan en memoria, los fragmentados sobre sus shards y el resto se
+     * valida contra el stock bloqueado y se acumula para el descuento en lote.
+     * @return null si se reservó, o el motivo del rechazo.
+     */
+    private String reservar(Map<Long, Integer> cantidadesPorItem, Map<Long, Object[]> filasPorItem,
+                            Map<Long, Integer> stockPorItem, Map<Long, Integer> descuentosEnLote) {
+        Map<Long, Integer> planos = new TreeMap<>();
+        Map<Long, Integer> fragmentados = new TreeMap<>();
+        for (Map.Entry<Long, Integer> linea : cantidadesPorItem.entrySet()) {
+            boolean fragmentado = ((Number) filasPorItem.get(linea.getKey())[3]).intValue() > 0;
+            (fragmentado ? fragmentados : planos).put(linea.getKey(), linea.getValue());
+        }
+
+        Map<Long, Integer> reservadosEnMotor = new TreeMap<>();
+        if (stockEngine.activo() && !planos.isEmpty()) {
+            Map<Long, Integer> restantes;
+            try {
+                restantes = stockEngine.reservar(planos);
+            } catch (IllegalOperationException e) {
+                return e.getMessage();
+            }
+            reservadosEnMotor.putAll(planos);
+            reservadosEnMotor.keySet().removeAll(restantes.keySet());
+            planos.keySet().retainAll(restantes.keySet());
+        }
+
+        for (Map.Entry<Long, Integer> linea : planos.entrySet()) {
+            Object[] filaItem = filasPorItem.get(linea.getKey());
+            int disponible = stockPorItem.computeIfAbsent(linea.getKey(), id -> ((Number) filaItem[2]).intValue());
+            if (disponible < linea.getValue()) {
+                devolver(reservadosEnMotor, Map.of(), filasPorItem);
+                return "Stock insuficiente para el ítem '" + filaItem[1] + "'. Disponible: " + disponible
+                        + ", Solicitado: " + linea.getValue();
+            }
+        }
+
+        Map<Long, Integer> descontadosEnShards = new TreeMap<>();
+        for (Map.Entry<Long, Integer> linea : fragmentados.entrySet()) {
+            Object[] filaItem = filasPorItem.get(linea.getKey());
+            if (!itemStockShardService.intentarAjustarStock(linea.getKey(), ((Number) filaItem[3]).intValue(), -linea.getValue())) {
+                devolver(reservadosEnMotor, descontadosEnShards, filasPorItem);
+                return "Stock insuficiente para el ítem '" + filaItem[1] + "'. Solicitado: " + linea.getValue();
+            }
+            descontadosEnShards.put(linea.getKey(), linea.getValue());
+        }
+
+        planos.forEach((itemId, cantidad) -> {
+            stockPorItem.merge(itemId, -cantidad, Integer::sum);
+            descuentosEnLote.merge(itemId, cantidad, Integer::sum);
+        });
+        return null;
+    }
+
+    /**
+     * Deshace las reservas parciales de un pedido rechazado.
+     */
+    private void devolver(Map<Long, Integer> reservadosEnMotor, Map<Long, Integer> descontadosEnShards,
+                          Map<Long, Object[]> filasPorItem) {
+        reservadosEnMotor.forEach((itemId, cantidad) -> stockEngine.intentarAjustar(itemId, cantidad));
+        descontadosEnShards.forEach((itemId, cantidad) -> itemStockShardService.intentarAjustarStock(
+                itemId, ((Number) filasPorItem.get(itemId)[3]).intValue(), cantidad));
+    }
+
+    private record Fila(int numero, PedidoDTO pedido, Map<Long, Integer> cantidadesPorItem, String error) {
+    }
+}
@@ -3,20 +3,38 @@ package com.telastech360.crmTT360.service;
 
 import com.telastech360.crmTT360.dto.PedidoDTO;
 import com.telastech360.crmTT360.dto.PedidoDetalleDTO;
+import com.telastech360.crmTT360.dto.PaginaDTO;
+import com.telastech360.crmTT360.dto.PedidoPaginaDTO;
 import com.telastech360.crmTT360.entity.*;
 import com.telastech360.crmTT360.exception.*;
+import com.telastech360.crmTT360.mapper.PedidoMapper;
 import com.telastech360.crmTT360.repository.*;
+import com.telastech360.crmTT360.util.PaginacionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Servicio para gestionar la lógica de negocio relacionada con los Pedidos.
@@ -25,6 +43,11 @@ import java.util.List;
 public class PedidoService {
 
     private static final Logger log = LoggerFactory.getLogger(PedidoService.class);
+    static final int MAX_TOTALES_POR_CONSULTA = 1000;
+    static final int LIMITE_PAGINA_POR_DEFECTO = 50;
+    static final int LIMITE_PAGINA_MAXIMO = 200;
+    static final Set<String> CAMPOS_ORDEN_BUSQUEDA = Set.of("fechaPedido", "pedidoId");
+    static final Sort ORDEN_BUSQUEDA_POR_DEFECTO = Sort.by(Sort.Direction.DESC, "fechaPedido");
 
     private final PedidoRepository pedidoRepository;
     private final PedidoDetalleRepository pedidoDetalleRepository;
@@ -33,6 +56,10 @@ public class PedidoService {
     private final ItemRepository itemRepository;
     private final FacturaRepository facturaRepository;
     private final ItemService itemService;
+    private final PoliticaReintentoOptimista politicaReintentoOptimista;
+    private final PedidoMapper pedidoMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ColaSlaPedidosService colaSlaPedidosService;
 
     @Autowired
     public PedidoService(PedidoRepository pedidoRepository,
@@ -41,7 +68,11 @@ public class PedidoService {
                          EstadoRepository estadoRepository,
                          ItemRepository itemRepository,
                          FacturaRepository facturaRepository,
-                         @Lazy ItemService itemService) {
+                         @Lazy ItemService itemService,
+                         PoliticaReintentoOptimista politicaReintentoOptimista,
+                         PedidoMapper pedidoMapper,
+                         ApplicationEventPublisher eventPublisher,
+                         ColaSlaPedidosService colaSlaPedidosService) {
         this.pedidoRepository = pedidoRepository;
         this.pedidoDetalleRepository = pedidoDetalleRepository;
         this.clienteRepository = clienteRepository;
@@ -49,11 +80,16 @@ public class PedidoService {
         this.itemRepository = itemRepository;
         this.facturaRepository = facturaRepository;
         this.itemService = itemService;
+        this.politicaReintentoOptimista = politicaReintentoOptimista;
+        this.pedidoMapper = pedidoMapper;
+        this.eventPublisher = eventPublisher;
+        this.colaSlaPedidosService = colaSlaPedidosService;
     }
 
     /**
      * Crea un nuevo pedido junto con sus detalles.
-     * Valida stock ANTES de crear y disminuye el stock DESPUÉS de guardar.
+     * Valida los detalles y reserva el stock de todas las líneas en un solo paso
+     * (ver {@link ItemService#reservarStock(Map)}) ANTES de guardar el pedido.
      * @param pedidoDto DTO con la información del pedido y detalles.
      * @return La entidad Pedido creada y guardada.
      * @throws InvalidDataException Si no hay detalles o algún dato es inválido.
@@ -73,29 +109,13 @@ public class PedidoService {
         Estado estado = estadoRepository.findById(pedidoDto.getEstadoId())
                 .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + pedidoDto.getEstadoId()));
 
-        // --- Validación de Detalles y Stock (ANTES de crear) ---
-        if (pedidoDto.getDetalles() == null || pedidoDto.getDetalles().isEmpty()) {
-            throw new InvalidDataException("El pedido debe contener al menos un detalle.");
-        }
-        log.debug("Verificando stock para {} detalles...", pedidoDto.getDetalles().size());
-        for (PedidoDetalleDTO detalleDto : pedidoDto.getDetalles()) {
-            if (detalleDto.getItemId() == null || detalleDto.getCantidad() == null || detalleDto.getCantidad() <= 0 || detalleDto.getPrecioUnitario() == null || detalleDto.getPrecioUnitario().compareTo(BigDecimal.ZERO) <= 0) {
-                throw new InvalidDataException("Detalle inválido: " + detalleDto); // Mejorar mensaje si es posible
-            }
-            Item item = itemRepository.findById(detalleDto.getItemId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Ítem no encontrado con ID: " + detalleDto.getItemId()));
-
-            // << --- Validación de Stock (Tarea 4) --- >>
-            if (item.getStockDisponible() < detalleDto.getCantidad()) {
-                log.error("Stock insuficiente para crear pedido. Item ID: {}, Nombre: {}, Disponible: {}, Solicitado: {}",
-                        item.getItemId(), item.getNombre(), item.getStockDisponible(), detalleDto.getCantidad());
-                throw new IllegalOperationException("Stock insuficiente para el ítem '" + item.getNombre() +
-                        "'. Disponible: " + item.getStockDisponible() +
-                        ", Solicitado: " + detalleDto.getCantidad());
-            }
-            log.trace("Stock verificado OK para Item ID {}", item.getItemId());
-        }
-        log.debug("Verificación de stock completada.");
+        // --- Validación de Detalles ---
+        Map<Long, Integer> cantidadesPorItem = validarDetalles(pedidoDto);
+
+        // --- Reserva de Stock (bloqueo ordenado + validación + descuento en lote) ---
+        log.debug("Reservando stock para {} detalles...", cantidadesPorItem.size());
+        itemService.reservarStock(cantidadesPorItem);
+        log.debug("Reserva de stock completada.");
 
         // --- Crear Pedido y Detalles ---
         Pedido pedido = new Pedido();
@@ -103,9 +123,10 @@ public class PedidoService {
         pedido.setEstado(estado);
         pedido.setFechaPedido(new Timestamp(System.currentTimeMillis()));
         pedido.setDetalles(new ArrayList<>());
+        pedido.setTotal(calcularTotal(pedidoDto));
 
         for (PedidoDetalleDTO detalleDto : pedidoDto.getDetalles()) {
-            Item item = itemRepository.findById(detalleDto.getItemId()).get(); // Sabemos que existe
+            Item item = itemRepository.getReferenceById(detalleDto.getItemId()); // Validado en la reserva, sin SELECT
             PedidoDetalle detalle = new PedidoDetalle();
             detalle.setPedido(pedido);
             detalle.setProducto(item);
@@ -117,26 +138,63 @@ public class PedidoService {
         // Guardar Pedido CON sus detalles (CASCADE)
         Pedido pedidoGuardado = pedidoRepository.save(pedido);
         log.debug("Pedido ID {} y sus detalles guardados en BD.", pedidoGuardado.getPedidoId());
-
-        // --- Ajuste de Stock (DESPUÉS de guardar) ---
-        log.debug("Ajustando stock para los ítems del pedido ID {}...", pedidoGuardado.getPedidoId());
-        for (PedidoDetalle detalleGuardado : pedidoGuardado.getDetalles()) {
-            try {
-                itemService.ajustarStock(detalleGuardado.getProducto().getItemId(), -detalleGuardado.getCantidad());
-            } catch (Exception e) {
-                log.error("Error INESPERADO al ajustar stock para Item ID {} después de guardar pedido {}: {} - ¡ROLLBACK!",
-                        detalleGuardado.getProducto().getItemId(), pedidoGuardado.getPedidoId(), e.getMessage());
-                // La transacción hará rollback automáticamente al lanzar la excepción no capturada
-                throw e;
-            }
-        }
-        log.debug("Ajuste de stock completado para pedido ID {}.", pedidoGuardado.getPedidoId());
+        eventPublisher.publishEvent(new PedidoCreadoEvent(pedidoGuardado.getPedidoId(), pedidoDto.getClienteId(),
+                estado.getEstadoId(), pedidoGuardado.getFechaPedido(), pedidoGuardado.getTotal(), cantidadesPorItem));
 
         log.info("Pedido creado exitosamente con ID: {} para cliente ID: {}", pedidoGuardado.getPedidoId(), pedidoDto.getClienteId());
         return pedidoGuardado;
     }
 
 
+    /**
+     * Valida los detalles de un pedido nuevo: al menos uno y cantidades y precios positivos.
+     * Las líneas que repiten un ítem se combinan en una sola con las cantidades sumadas, ya que el
+     * pedido guarda un detalle por ítem; por eso deben tener el mismo precio unitario.
+     * @param pedidoDto DTO del pedido. Si repite ítems, sus detalles se sustituyen por los combinados.
+     * @return Mapa itemId -> cantidad solicitada (sumada entre líneas), ordenado por itemId.
+     * @throws InvalidDataException si algún detalle es inválido o un ítem se repite con precios distintos.
+     */
+    static Map<Long, Integer> validarDetalles(PedidoDTO pedidoDto) {
+        if (pedidoDto.getDetalles() == null || pedidoDto.getDetalles().isEmpty()) {
+            throw new InvalidDataException("El pedido debe contener al menos un detalle.");
+        }
+        Map<Long, Integer> cantidadesPorItem = new TreeMap<>();
+        Map<Long, PedidoDetalleDTO> detallesPorItem = new LinkedHashMap<>();
+        for (PedidoDetalleDTO detalleDto : pedidoDto.getDetalles()) {
+            if (detalleDto.getItemId() == null || detalleDto.getCantidad() == null || detalleDto.getCantidad() <= 0 || detalleDto.getPrecioUnitario() == null || detalleDto.getPrecioUnitario().compareTo(BigDecimal.ZERO) <= 0) {
+                throw new InvalidDataException("Detalle inválido: " + detalleDto); // Mejorar mensaje si es posible
+            }
+            int cantidad = cantidadesPorItem.merge(detalleDto.getItemId(), detalleDto.getCantidad(), Integer::sum);
+            PedidoDetalleDTO anterior = detallesPorItem.get(detalleDto.getItemId());
+            if (anterior == null) {
+                detallesPorItem.put(detalleDto.getItemId(), detalleDto);
+            } else if (anterior.getPrecioUnitario().compareTo(detalleDto.getPrecioUnitario()) != 0) {
+                throw new InvalidDataException("El ítem ID " + detalleDto.getItemId() +
+                        " aparece en varios detalles con precios unitarios distintos.");
+            } else {
+                detallesPorItem.put(detalleDto.getItemId(),
+                        new PedidoDetalleDTO(detalleDto.getItemId(), cantidad, anterior.getPrecioUnitario()));
+            }
+        }
+        if (detallesPorItem.size() < pedidoDto.getDetalles().size()) {
+            pedidoDto.setDetalles(new ArrayList<>(detallesPorItem.values()));
+        }
+        return cantidadesPorItem;
+    }
+
+    /**
+     * Calcula el total de un pedido nuevo a partir de sus detalles (cantidad * precio unitario).
+     * @param pedidoDto DTO del pedido, con los detalles ya validados.
+     * @return Total del pedido.
+     */
+    static BigDecimal calcularTotal(PedidoDTO pedidoDto) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (PedidoDetalleDTO detalleDto : pedidoDto.getDetalles()) {
+            total = total.add(detalleDto.getPrecioUnitario().multiply(BigDecimal.valueOf(detalleDto.getCantidad())));
+        }
+        return total;
+    }
+
     /**
      * Elimina un pedido por su ID.
      * Restaura el stock de los ítems asociados al pedido.
@@ -176,6 +234,7 @@ public class PedidoService {
 
         // Eliminar el pedido (CASCADE debería eliminar los detalles)
         pedidoRepository.delete(pedido);
+        eventPublisher.publishEvent(new PedidoEliminadoEvent(id));
         log.info("Pedido ID {} y sus detalles eliminados exitosamente.", id);
     }
 
@@ -194,49 +253,180 @@ public class PedidoService {
         return pedido;
     }
 
+    /**
+     * Lista los pedidos del más reciente al más antiguo, paginados por un cursor sobre
+     * (fecha_pedido, pedido_id). Cada página cuesta dos consultas, sea cual sea su tamaño:
+     * una para los pedidos y otra (IN) para los detalles de todos ellos.
+     * @param cursor Cursor devuelto por la página anterior (null o vacío para la primera).
+     * @param limite Tamaño de página (null para {@value #LIMITE_PAGINA_POR_DEFECTO}, máximo {@value #LIMITE_PAGINA_MAXIMO}).
+     * @return Página con los pedidos y el cursor de la siguiente (null si es la última).
+     * @throws InvalidDataException si el cursor o el límite no son válidos.
+     */
     @Transactional(readOnly = true)
-    public List<Pedido> listarTodosLosPedidos() {
-        log.info("Listando todos los pedidos...");
-        List<Pedido> pedidos = pedidoRepository.findAll();
-        log.debug("Se encontraron {} pedidos.", pedidos.size());
-        return pedidos;
-    }
+    public PedidoPaginaDTO listarPedidosPaginados(String cursor, Integer limite) {
+        int tamanoPagina = limite != null ? limite : LIMITE_PAGINA_POR_DEFECTO;
+        if (tamanoPagina < 1 || tamanoPagina > LIMITE_PAGINA_MAXIMO) {
+            throw new InvalidDataException("El límite debe estar entre 1 y " + LIMITE_PAGINA_MAXIMO + ".");
+        }
+        log.info("Listando página de {} pedidos (cursor: {})", tamanoPagina, cursor);
 
-    @Transactional
-    public Pedido actualizarPedido(Long id, PedidoDTO pedidoDto) {
-        log.info("Intentando actualizar información principal del pedido ID: {}", id);
-        Pedido pedidoExistente = obtenerPedidoPorId(id);
+        // Se pide un pedido de más para saber si hay página siguiente sin un COUNT
+        Limit limiteConsulta = Limit.of(tamanoPagina + 1);
+        List<Pedido> pedidos;
+        if (cursor == null || cursor.isBlank()) {
+            pedidos = pedidoRepository.findPrimeraPagina(limiteConsulta);
+        } else {
+            CursorPedido posicion = CursorPedido.decodificar(cursor);
+            pedidos = pedidoRepository.findPaginaDespuesDe(posicion.fechaPedido(), posicion.pedidoId(), limiteConsulta);
+        }
+        boolean haySiguiente = pedidos.size() > tamanoPagina;
+        if (haySiguiente) {
+            pedidos = pedidos.subList(0, tamanoPagina);
+        }
 
-        Long clienteIdDto = pedidoDto.getClienteId();
-        Long clienteIdActual = (pedidoExistente.getCliente() != null) ? pedidoExistente.getCliente().getClienteId() : null;
+        List<PedidoDTO> dtos = aDTOsConDetalles(pedidos);
 
-        if (clienteIdDto != null) {
-            if (!clienteIdDto.equals(clienteIdActual)) {
-                ClienteInterno clienteNuevo = clienteRepository.findById(clienteIdDto)
-                        .orElseThrow(() -> new ResourceNotFoundException("Cliente no encontrado con ID: " + clienteIdDto));
-                pedidoExistente.setCliente(clienteNuevo);
-            }
-        } else {
-            if (clienteIdActual != null) {
-                pedidoExistente.setCliente(null);
+        String siguienteCursor = null;
+        if (haySiguiente) {
+            Pedido ultimo = pedidos.get(pedidos.size() - 1);
+            siguienteCursor = new CursorPedido(ultimo.getFechaPedido(), ultimo.getPedidoId()).codificar();
+        }
+        log.debug("Página con {} pedidos; hay siguiente: {}", dtos.size(), haySiguiente);
+        return new PedidoPaginaDTO(dtos, siguienteCursor);
+    }
+
+    /**
+     * Busca pedidos con filtros opcionales, paginados. Solo los filtros informados llegan a la consulta
+     * (ver {@link EspecificacionBusqueda}), y los detalles de la página se cargan en una única consulta.
+     * @param clienteId ID del cliente (opcional).
+     * @param estadoId ID del estado (opcional).
+     * @param fechaInicio Fecha de pedido mínima, inclusive (opcional).
+     * @param fechaFin Fecha de fin máxima, inclusive (opcional).
+     * @param responsableId ID del usuario responsable del cliente (opcional).
+     * @param pagina Número de página, desde 0 (opcional).
+     * @param tamano Tamaño de página (opcional).
+     * @param orden Orden "campo,asc|desc" sobre fechaPedido o pedidoId (opcional; por defecto fechaPedido descendente).
+     * @return Página de pedidos con sus detalles.
+     * @throws InvalidDataException si la paginación o el orden no son válidos.
+     */
+    @Transactional(readOnly = true)
+    public PaginaDTO<PedidoDTO> buscarPedidos(Long clienteId, Long estadoId, Timestamp fechaInicio, Timestamp fechaFin,
+                                              Long responsableId, Integer pagina, Integer tamano, String orden) {
+        Pageable paginacion = PaginacionUtil.paginacion(pagina, tamano, orden, ORDEN_BUSQUEDA_POR_DEFECTO,
+                CAMPOS_ORDEN_BUSQUEDA, "pedidoId");
+        Specification<Pedido> filtros = EspecificacionBusqueda.de(Pedido.class)
+                .igual("cliente.clienteId", clienteId)
+                .igual("estado.estadoId", estadoId)
+                .desde("fechaPedido", fechaInicio)
+                .hasta("fechaFin", fechaFin)
+                .igual("cliente.responsable.usuarioId", responsableId)
+                .construir();
+        log.info("Buscando pedidos (cliente {}, estado {}, desde {}, hasta {}, responsable {}) - {}",
+                clienteId, estadoId, fechaInicio, fechaFin, responsableId, paginacion);
+        Page<Pedido> resultado = pedidoRepository.findAll(filtros, paginacion);
+        List<PedidoDTO> dtos = aDTOsConDetalles(resultado.getContent());
+        return new PaginaDTO<>(dtos, resultado.getNumber(), resultado.getSize(), resultado.getTotalElements(),
+                resultado.getTotalPages());
+    }
+
+    // Convierte los pedidos a DTO cargando los detalles de todos ellos en una sola consulta
+    private List<PedidoDTO> aDTOsConDetalles(List<Pedido> pedidos) {
+        Map<Long, List<PedidoDetalle>> detallesPorPedido = new HashMap<>();
+        if (!pedidos.isEmpty()) {
+            List<Long> pedidoIds = pedidos.stream().map(Pedido::getPedidoId).toList();
+            for (PedidoDetalle detalle : pedidoDetalleRepository.findByPedidoIds(pedidoIds)) {
+                detallesPorPedido.computeIfAbsent(detalle.getId().getPedidoId(), k -> new ArrayList<>()).add(detalle);
             }
         }
+        List<PedidoDTO> dtos = new ArrayList<>(pedidos.size());
+        for (Pedido pedido : pedidos) {
+            dtos.add(pedidoMapper.toDTO(pedido, detallesPorPedido.getOrDefault(pedido.getPedidoId(), List.of())));
+        }
+        return dtos;
+    }
+
+    /**
+     * Posición de un pedido en el listado paginado. Se codifica como texto opaco en Base64 URL
+     * ("milisegundos:pedidoId") para que los clientes no dependan de su formato.
+     */
+    record CursorPedido(Timestamp fechaPedido, Long pedidoId) {
 
-        Long estadoIdDto = pedidoDto.getEstadoId();
-        if (estadoIdDto == null) {
-            throw new IllegalArgumentException("El ID del estado es obligatorio para actualizar un pedido.");
+        String codificar() {
+            String valor = fechaPedido.getTime() + ":" + pedidoId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
         }
-        Long estadoIdActual = pedidoExistente.getEstado().getEstadoId();
 
-        if (!estadoIdDto.equals(estadoIdActual)) {
-            Estado estadoNuevo = estadoRepository.findById(estadoIdDto)
-                    .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + estadoIdDto));
-            pedidoExistente.setEstado(estadoNuevo);
+        static CursorPedido decodificar(String cursor) {
+            try {
+                String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separador = valor.indexOf(':');
+                return new CursorPedido(new Timestamp(Long.parseLong(valor.substring(0, separador))),
+                        Long.valueOf(valor.substring(separador + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new InvalidDataException("Cursor de paginación inválido: " + cursor);
+            }
         }
+    }
 
-        Pedido pedidoGuardado = pedidoRepository.save(pedidoExistente);
-        log.info("Información principal del pedido ID {} actualizada exitosamente.", id);
-        return pedidoGuardado;
+    /**
+     * Actualiza la información principal de un pedido (cliente y estado). No modifica los detalles.
+     * @param id ID del pedido a actualizar.
+     * @param pedidoDto DTO con el cliente y el estado nuevos.
+     * @return El pedido actualizado.
+     * @throws ResourceNotFoundException si el pedido, el cliente o el estado no existen.
+     */
+    public Pedido actualizarPedido(Long id, PedidoDTO pedidoDto) {
+        return actualizarPedido(id, pedidoDto, null);
+    }
+
+    /**
+     * Actualiza la información principal de un pedido (cliente y estado). No modifica los detalles.
+     * Con versión esperada, la comprueba y no reintenta ante conflictos.
+     * @param id ID del pedido a actualizar.
+     * @param pedidoDto DTO con el cliente y el estado nuevos.
+     * @param versionEsperada Versión indicada por el cliente en If-Match (null para no comprobarla).
+     * @return El pedido actualizado.
+     * @throws ResourceNotFoundException si el pedido, el cliente o el estado no existen.
+     * @throws PreconditionFailedException si la versión actual no coincide con la esperada.
+     */
+    public Pedido actualizarPedido(Long id, PedidoDTO pedidoDto, Long versionEsperada) {
+        return politicaReintentoOptimista.ejecutar("Actualizar pedido " + id, versionEsperada == null, () -> {
+            log.info("Intentando actualizar información principal del pedido ID: {}", id);
+            Pedido pedidoExistente = obtenerPedidoPorId(id);
+            PoliticaReintentoOptimista.verificarVersion("Pedido " + id, pedidoExistente.getVersion(), versionEsperada);
+
+            Long clienteIdDto = pedidoDto.getClienteId();
+            Long clienteIdActual = (pedidoExistente.getCliente() != null) ? pedidoExistente.getCliente().getClienteId() : null;
+
+            if (clienteIdDto != null) {
+                if (!clienteIdDto.equals(clienteIdActual)) {
+                    ClienteInterno clienteNuevo = clienteRepository.findById(clienteIdDto)
+                            .orElseThrow(() -> new ResourceNotFoundException("Cliente no encontrado con ID: " + clienteIdDto));
+                    pedidoExistente.setCliente(clienteNuevo);
+                }
+            } else {
+                if (clienteIdActual != null) {
+                    pedidoExistente.setCliente(null);
+                }
+            }
+
+            Long estadoIdDto = pedidoDto.getEstadoId();
+            if (estadoIdDto == null) {
+                throw new IllegalArgumentException("El ID del estado es obligatorio para actualizar un pedido.");
+            }
+            Long estadoIdActual = pedidoExistente.getEstado().getEstadoId();
+
+            if (!estadoIdDto.equals(estadoIdActual)) {
+                Estado estadoNuevo = estadoRepository.findById(estadoIdDto)
+                        .orElseThrow(() -> new ResourceNotFoundException("Estado no encontrado con ID: " + estadoIdDto));
+                pedidoExistente.setEstado(estadoNuevo);
+                eventPublisher.publishEvent(new PedidoEstadoCambiadoEvent(Map.of(id, estadoIdActual), estadoIdDto));
+            }
+
+            Pedido pedidoGuardado = pedidoRepository.save(pedidoExistente);
+            log.info("Información principal del pedido ID {} actualizada exitosamente.", id);
+            return pedidoGuardado;
+        });
     }
 
 
@@ -258,26 +448,62 @@ public class PedidoService {
         return pedidos;
     }
 
+    /**
+     * Obtiene los pedidos pendientes vencidos o próximos a vencer su SLA, tomando los IDs de la
+     * cola en memoria ({@link ColaSlaPedidosService}) y cargándolos por clave primaria.
+     * @return Pedidos urgentes, sin un orden garantizado.
+     */
     @Transactional(readOnly = true)
     public List<Pedido> buscarPedidosUrgentes() {
         log.info("Buscando pedidos urgentes...");
-        List<Pedido> pedidos = pedidoRepository.findPedidosUrgentes();
+        List<Long> ids = colaSlaPedidosService.obtenerIdsUrgentes();
+        List<Pedido> pedidos = ids.isEmpty() ? List.of() : pedidoRepository.findAllById(ids);
         log.debug("Se encontraron {} pedidos urgentes.", pedidos.size());
         return pedidos;
     }
 
+    /**
+     * Obtiene el total de un pedido desde la columna total, sin cargar sus detalles.
+     * @param pedidoId ID del pedido.
+     * @return Total del pedido.
+     * @throws ResourceNotFoundException si el pedido no existe.
+     */
     @Transactional(readOnly = true)
     public BigDecimal calcularTotalPedido(Long pedidoId) {
         log.info("Calculando total para pedido ID: {}", pedidoId);
-        Pedido pedido = obtenerPedidoPorId(pedidoId);
+        BigDecimal total = pedidoRepository.findTotalById(pedidoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Pedido no encontrado con ID: " + pedidoId));
+        log.debug("Total calculado para pedido ID {}: {}", pedidoId, total);
+        return total;
+    }
 
-        BigDecimal total = BigDecimal.ZERO;
-        if (pedido.getDetalles() != null) {
-            for (PedidoDetalle detalle : pedido.getDetalles()) {
-                total = total.add(detalle.getSubtotal());
+    /**
+     * Obtiene los totales de varios pedidos con una sola consulta por clave primaria.
+     * @param pedidoIds IDs de los pedidos.
+     * @return Mapa pedidoId -> total, en el orden de los IDs solicitados; los pedidos inexistentes no aparecen.
+     * @throws InvalidDataException si la lista está vacía o supera {@value #MAX_TOTALES_POR_CONSULTA} IDs.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> obtenerTotales(List<Long> pedidoIds) {
+        if (pedidoIds == null || pedidoIds.isEmpty()) {
+            throw new InvalidDataException("Debe indicar al menos un ID de pedido.");
+        }
+        if (pedidoIds.size() > MAX_TOTALES_POR_CONSULTA) {
+            throw new InvalidDataException("No se pueden consultar más de " + MAX_TOTALES_POR_CONSULTA + " totales por solicitud.");
+        }
+        log.info("Obteniendo totales de {} pedidos", pedidoIds.size());
+        Map<Long, BigDecimal> encontrados = new HashMap<>();
+        for (Object[] fila : pedidoRepository.findTotalesByIds(new LinkedHashSet<>(pedidoIds))) {
+            encontrados.put((Long) fila[0], (BigDecimal) fila[1]);
+        }
+        Map<Long, BigDecimal> totales = new LinkedHashMap<>();
+        for (Long pedidoId : pedidoIds) {
+            BigDecimal total = encontrados.get(pedidoId);
+            if (total != null) {
+                totales.put(pedidoId, total);
             }
         }
-        log.debug("Total calculado para pedido ID {}: {}", pedidoId, total);
-        return total;
+        log.debug("Se encontraron totales para {} de {} pedidos.", totales.size(), pedidoIds.size());
+        return totales;
     }
 }
\ No newline at end of file
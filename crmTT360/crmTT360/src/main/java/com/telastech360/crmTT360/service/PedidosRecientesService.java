@@ -0,0 +1,208 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoResumenDTO;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servicio que mantiene en memoria el resumen de los últimos N pedidos en un buffer circular, para
+ * el feed de pedidos recientes del panel principal.
+ * <p>
+ * El buffer se llena al arrancar con una consulta limitada a N filas y después se actualiza con los
+ * eventos de creación, cambio de estado y eliminación de pedidos, al confirmarse su transacción.
+ * Las lecturas no consultan la base de datos: copian como mucho N referencias bajo un cerrojo.
+ */
+@Service
+public class PedidosRecientesService {
+
+    private static final Logger log = LoggerFactory.getLogger(PedidosRecientesService.class);
+
+    private final PedidoRepository pedidoRepository;
+    private final EstadoRepository estadoRepository;
+    private final TransactionTemplate transaccionLectura;
+
+    // Buffer circular: 'siguiente' es la posición que se escribirá a continuación (la del más antiguo si está lleno)
+    private final PedidoResumenDTO[] anillo;
+    private int siguiente;
+    private int tamano;
+
+    private final Map<Long, String> valorPorEstado = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param pedidoRepository Repositorio para Pedidos.
+     * @param estadoRepository Repositorio para Estados.
+     * @param transactionManager Gestor de transacciones, para las lecturas fuera de la transacción ya confirmada.
+     * @param capacidad Número de pedidos recientes que se conservan.
+     */
+    @Autowired
+    public PedidosRecientesService(PedidoRepository pedidoRepository,
+                                   EstadoRepository estadoRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${crmtt360.pedidos.recientes.capacidad:100}") int capacidad) {
+        this.pedidoRepository = pedidoRepository;
+        this.estadoRepository = estadoRepository;
+        this.transaccionLectura = new TransactionTemplate(transactionManager);
+        this.transaccionLectura.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transaccionLectura.setReadOnly(true);
+        this.anillo = new PedidoResumenDTO[Math.max(1, capacidad)];
+    }
+
+    /**
+     * Carga los N pedidos más recientes al arrancar la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        List<Object[]> filas = transaccionLectura.execute(estado -> {
+            estadoRepository.findAll().forEach(e -> valorPorEstado.put(e.getEstadoId(), e.getValor()));
+            return pedidoRepository.findResumenesRecientes(Limit.of(anillo.length));
+        });
+        List<PedidoResumenDTO> resumenes = new ArrayList<>(filas.size());
+        for (Object[] fila : filas) {
+            resumenes.add(new PedidoResumenDTO((Long) fila[0], (Long) fila[1], (Long) fila[2], (String) fila[3],
+                    (Timestamp) fila[4], (BigDecimal) fila[5]));
+        }
+        cargar(resumenes);
+        log.info("Buffer de pedidos recientes inicializado con {} pedidos (capacidad {}).", resumenes.size(), anillo.length);
+    }
+
+    /**
+     * Devuelve los pedidos más recientes, del más nuevo al más antiguo.
+     * @param limite Número máximo de pedidos (se acota a la capacidad del buffer).
+     * @return Resúmenes de los pedidos.
+     */
+    public synchronized List<PedidoResumenDTO> obtenerRecientes(int limite) {
+        int n = Math.min(Math.max(limite, 0), tamano);
+        List<PedidoResumenDTO> recientes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            recientes.add(anillo[posicion(i)]);
+        }
+        return recientes;
+    }
+
+    /**
+     * Añade un pedido recién creado al buffer, desplazando al más antiguo si está lleno.
+     * @param evento Evento de creación del pedido.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCrearPedido(PedidoCreadoEvent evento) {
+        PedidoResumenDTO resumen = new PedidoResumenDTO(evento.pedidoId(), evento.clienteId(), evento.estadoId(),
+                valorDeEstado(evento.estadoId()), evento.fechaPedido(), evento.total());
+        synchronized (this) {
+            anillo[siguiente] = resumen;
+            siguiente = (siguiente + 1) % anillo.length;
+            tamano = Math.min(tamano + 1, anillo.length);
+        }
+    }
+
+    /**
+     * Actualiza el estado de los pedidos del buffer que hayan cambiado de estado; el resto se ignora.
+     * @param evento Evento de cambio de estado.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarEstado(PedidoEstadoCambiadoEvent evento) {
+        Set<Long> pedidoIds = new HashSet<>(evento.pedidoIds());
+        String valor = valorDeEstado(evento.estadoId());
+        synchronized (this) {
+            for (int i = 0; i < tamano; i++) {
+                int p = posicion(i);
+                PedidoResumenDTO actual = anillo[p];
+                if (pedidoIds.contains(actual.getPedidoId())) {
+                    // Se reemplaza la entrada: las ya devueltas a los lectores no se modifican
+                    anillo[p] = new PedidoResumenDTO(actual.getPedidoId(), actual.getClienteId(), evento.estadoId(),
+                            valor, actual.getFechaPedido(), actual.getTotal());
+                }
+            }
+        }
+    }
+
+    /**
+     * Quita del buffer un pedido eliminado.
+     * @param evento Evento de eliminación del pedido.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alEliminarPedido(PedidoEliminadoEvent evento) {
+        List<PedidoResumenDTO> restantes = new ArrayList<>(tamano);
+        for (int i = tamano - 1; i >= 0; i--) {
+            PedidoResumenDTO resumen = anillo[posicion(i)];
+            if (!resumen.getPedidoId().equals(evento.pedidoId())) {
+                restantes.add(resumen);
+            }
+        }
+        if (restantes.size() != tamano) {
+            reconstruir(restantes);
+        }
+    }
+
+    /**
+     * Rellena el buffer con pedidos leídos de la base de datos, por detrás de los que ya hayan
+     * llegado por eventos durante la carga.
+     * @param resumenes Pedidos del más reciente al más antiguo.
+     */
+    synchronized void cargar(List<PedidoResumenDTO> resumenes) {
+        Set<Long> presentes = new HashSet<>();
+        for (int i = 0; i < tamano; i++) {
+            presentes.add(anillo[posicion(i)].getPedidoId());
+        }
+        List<PedidoResumenDTO> delMasAntiguo = new ArrayList<>(resumenes.size() + tamano);
+        for (int i = resumenes.size() - 1; i >= 0; i--) {
+            if (!presentes.contains(resumenes.get(i).getPedidoId())) {
+                delMasAntiguo.add(resumenes.get(i));
+            }
+        }
+        for (int i = tamano - 1; i >= 0; i--) {
+            delMasAntiguo.add(anillo[posicion(i)]);
+        }
+        reconstruir(delMasAntiguo);
+    }
+
+    // Posición en el anillo del i-ésimo pedido más reciente
+    private int posicion(int i) {
+        return Math.floorMod(siguiente - 1 - i, anillo.length);
+    }
+
+    // Vuelve a escribir el anillo desde el principio con los pedidos dados, del más antiguo al más reciente
+    private void reconstruir(List<PedidoResumenDTO> delMasAntiguo) {
+        Arrays.fill(anillo, null);
+        int n = Math.min(delMasAntiguo.size(), anillo.length);
+        for (int i = 0; i < n; i++) {
+            anillo[i] = delMasAntiguo.get(delMasAntiguo.size() - n + i);
+        }
+        tamano = n;
+        siguiente = n % anillo.length;
+    }
+
+    private String valorDeEstado(Long estadoId) {
+        String valor = valorPorEstado.get(estadoId);
+        if (valor == null) {
+            valor = transaccionLectura.execute(estado -> estadoRepository.findById(estadoId).map(Estado::getValor).orElse(null));
+            if (valor != null) {
+                valorPorEstado.put(estadoId, valor);
+            }
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,103 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.exception.PreconditionFailedException;
+import jakarta.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Política de reintentos para actualizaciones que fallan por concurrencia optimista (@Version).
+ * <p>
+ * Cada intento se ejecuta en su propia transacción, de modo que el reintento vuelve a leer la entidad
+ * con su versión actual y reaplica los cambios. Solo se reintentan las actualizaciones internas o
+ * sin versión esperada (cabecera If-Match): cuando el cliente indicó una versión, el conflicto se
+ * devuelve tal cual para que vuelva a leer el recurso.
+ */
+@Component
+public class PoliticaReintentoOptimista {
+
+    private static final Logger log = LoggerFactory.getLogger(PoliticaReintentoOptimista.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxIntentos;
+    private final long esperaMs;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param transactionManager Gestor de transacciones.
+     * @param maxIntentos Número máximo de intentos (incluido el primero).
+     * @param esperaMs Espera base entre intentos; crece linealmente con cada intento y lleva jitter.
+     */
+    @Autowired
+    public PoliticaReintentoOptimista(PlatformTransactionManager transactionManager,
+                                      @Value("${crmtt360.concurrencia.reintentos.max-intentos:3}") int maxIntentos,
+                                      @Value("${crmtt360.concurrencia.reintentos.espera-ms:25}") long esperaMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaMs = esperaMs;
+    }
+
+    /**
+     * Ejecuta una actualización en una transacción, reintentándola ante conflictos optimistas.
+     * Si ya hay una transacción activa, la actualización se une a ella y no se reintenta aquí: el
+     * conflicto se propaga hasta quien abrió la transacción.
+     * @param operacion Descripción de la operación para los logs.
+     * @param reintentar false para ejecutar un único intento (p. ej. si el cliente indicó If-Match).
+     * @param actualizacion Actualización a ejecutar; debe volver a leer las entidades que modifica.
+     * @return El resultado de la actualización.
+     * @param <T> Tipo del resultado.
+     */
+    public <T> T ejecutar(String operacion, boolean reintentar, Supplier<T> actualizacion) {
+        int intentos = reintentar && !TransactionSynchronizationManager.isActualTransactionActive() ? maxIntentos : 1;
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> actualizacion.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (intento >= intentos) {
+                    if (intentos > 1) {
+                        log.warn("{}: conflicto de concurrencia optimista tras {} intentos.", operacion, intento);
+                    }
+                    throw e;
+                }
+                log.info("{}: conflicto de concurrencia optimista (intento {}/{}), reintentando.", operacion, intento, intentos);
+                esperar(intento);
+            }
+        }
+    }
+
+    /**
+     * Comprueba la versión esperada por el cliente contra la versión actual de la entidad.
+     * @param recurso Descripción del recurso para el mensaje de error (p. ej. "Ítem 5").
+     * @param versionActual Versión actual de la entidad.
+     * @param versionEsperada Versión indicada por el cliente (null si no se indicó).
+     * @throws PreconditionFailedException si las versiones no coinciden.
+     */
+    public static void verificarVersion(String recurso, Long versionActual, Long versionEsperada) {
+        if (versionEsperada != null && !versionEsperada.equals(versionActual)) {
+            throw new PreconditionFailedException(recurso + " fue modificado (versión actual " + versionActual
+                    + ", esperada " + versionEsperada + ").");
+        }
+    }
+
+    private void esperar(int intento) {
+        if (esperaMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(esperaMs * intento + ThreadLocalRandom.current().nextLong(esperaMs));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras esperaba para reintentar", e);
+        }
+    }
+}
@@ -5,15 +5,22 @@ import com.telastech360.crmTT360.entity.*;
 import com.telastech360.crmTT360.exception.*;
 import com.telastech360.crmTT360.mapper.ProductoMapper; // Importar Mapper
 import com.telastech360.crmTT360.repository.*;
+import com.telastech360.crmTT360.repository.EspecificacionBusqueda;
+import com.telastech360.crmTT360.util.PaginacionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Servicio para gestionar la lógica de negocio relacionada con los Productos Terminados.
@@ -23,6 +30,8 @@ import java.util.List;
 public class ProductoService {
 
     private static final Logger log = LoggerFactory.getLogger(ProductoService.class);
+    static final Set<String> CAMPOS_ORDEN_BUSQUEDA = Set.of("nombre", "itemId");
+    static final Sort ORDEN_BUSQUEDA_POR_DEFECTO = Sort.by("nombre");
 
     private final ProductoRepository productoRepository;
     private final ItemRepository itemRepository;
@@ -32,6 +41,10 @@ public class ProductoService {
     private final ProveedorRepository proveedorRepository;
     private final UsuarioRepository usuarioRepository;
     private final ProductoMapper productoMapper; // Inyectar Mapper
+    private final ItemStockShardService itemStockShardService;
+    private final StockEngine stockEngine;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final ProgramadorVencimientos programadorVencimientos;
 
     /**
      * Constructor para inyección de dependencias.
@@ -44,7 +57,11 @@ public class ProductoService {
                            EstadoRepository estadoRepository,
                            ProveedorRepository proveedorRepository,
                            UsuarioRepository usuarioRepository,
-                           ProductoMapper productoMapper) { // Inyectar Mapper
+                           ProductoMapper productoMapper, // Inyectar Mapper
+                           ItemStockShardService itemStockShardService,
+                           StockEngine stockEngine,
+                           AlertaStockBajoService alertaStockBajoService,
+                           ProgramadorVencimientos programadorVencimientos) {
         this.productoRepository = productoRepository;
         this.itemRepository = itemRepository;
         this.bodegaRepository = bodegaRepository;
@@ -53,6 +70,10 @@ public class ProductoService {
         this.proveedorRepository = proveedorRepository;
         this.usuarioRepository = usuarioRepository;
         this.productoMapper = productoMapper; // Asignar Mapper
+        this.itemStockShardService = itemStockShardService;
+        this.stockEngine = stockEngine;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.programadorVencimientos = programadorVencimientos;
     }
 
     /**
@@ -92,6 +113,8 @@ public class ProductoService {
         // El tipo de Item se setea dentro del mapper o constructor de Producto
 
         Producto productoGuardado = productoRepository.save(producto);
+        alertaStockBajoService.registrarCambio(List.of(productoGuardado.getItemId()));
+        programadorVencimientos.registrar(productoGuardado.getItemId(), productoGuardado.getFechaVencimiento());
         log.info("Producto '{}' (Código: {}) creado exitosamente con ID: {}",
                 productoGuardado.getNombre(), productoGuardado.getCodigo(), productoGuardado.getItemId());
         return productoGuardado;
@@ -160,8 +183,20 @@ public class ProductoService {
         productoMapper.updateEntityFromDTO(productoDto, productoExistente, bodega, categoria, estado, proveedor, usuario);
         log.debug("Entidad Producto ID {} actualizada desde DTO.", id);
 
+        if (stockEngine.activo()) {
+            stockEngine.invalidar(id); // El stock se fija de forma absoluta en la base de datos
+        }
+
+        // Si el stock está fragmentado, el valor del DTO es el total: se reparte entre los shards
+        if (productoExistente.getStockShards() != null && productoExistente.getStockShards() > 0) {
+            itemStockShardService.fijarStockTotal(id, productoDto.getStockDisponible());
+            productoExistente.setStockDisponible(0);
+        }
+
 
         Producto productoGuardado = productoRepository.save(productoExistente);
+        alertaStockBajoService.registrarCambio(List.of(id));
+        programadorVencimientos.registrar(id, productoGuardado.getFechaVencimiento());
         log.info("Producto ID {} actualizado exitosamente.", id);
         return productoGuardado;
     }
@@ -177,7 +212,11 @@ public class ProductoService {
         }
         log.debug("El producto ID {} ('{}') no está en pedidos activos.", id, producto.getNombre());
 
+        if (stockEngine.activo()) {
+            stockEngine.invalidar(id);
+        }
         productoRepository.delete(producto);
+        programadorVencimientos.retirar(id);
         log.info("Producto ID {} ('{}') eliminado exitosamente.", id, producto.getNombre());
     }
 
@@ -218,7 +257,10 @@ public class ProductoService {
     @Transactional(readOnly = true)
     public List<Producto> buscarProductosPorVencer(Date fechaLimite) {
         log.info("Buscando productos por vencer antes de: {}", fechaLimite);
-        List<Producto> productos = productoRepository.findProductosPorVencer(new java.sql.Date(fechaLimite.getTime())); // Ajuste a sql.Date si repo lo espera
+        List<Long> ids = programadorVencimientos.buscarIdsPorVencer(fechaLimite);
+        List<Producto> productos = ids != null
+                ? productoRepository.findAllById(ids) // Solo devuelve los IDs que son productos
+                : productoRepository.findProductosPorVencer(new java.sql.Date(fechaLimite.getTime())); // Ajuste a sql.Date si repo lo espera
         log.debug("Se encontraron {} productos por vencer.", productos.size());
         return productos;
     }
@@ -249,4 +291,37 @@ public class ProductoService {
 
     // Método auxiliar removido ya que la lógica ahora está en los métodos principales
     // private void validarYAsignarRelacionesBase(Item item) { ... }
-}
\ No newline at end of file
+
+    /**
+     * Busca productos con filtros opcionales, paginados. El color se busca por prefijo.
+     * @param tipoPrenda Tipo de prenda (opcional).
+     * @param talla Talla (opcional).
+     * @param color Prefijo del color (opcional).
+     * @param temporada Temporada (opcional).
+     * @param minPrecio Precio mínimo, inclusive (opcional).
+     * @param maxPrecio Precio máximo, inclusive (opcional).
+     * @param pagina Número de página, desde 0 (opcional).
+     * @param tamano Tamaño de página (opcional).
+     * @param orden Orden "campo,asc|desc" sobre nombre o itemId (opcional; por defecto nombre).
+     * @return Página de entidades Producto.
+     * @throws InvalidDataException si la paginación o el orden no son válidos.
+     */
+    @Transactional(readOnly = true)
+    public Page<Producto> buscarProductos(Producto.TipoPrenda tipoPrenda, Producto.Talla talla, String color,
+                                          String temporada, BigDecimal minPrecio, BigDecimal maxPrecio,
+                                          Integer pagina, Integer tamano, String orden) {
+        Pageable paginacion = PaginacionUtil.paginacion(pagina, tamano, orden, ORDEN_BUSQUEDA_POR_DEFECTO,
+                CAMPOS_ORDEN_BUSQUEDA, "itemId");
+        Specification<Producto> filtros = EspecificacionBusqueda.de(Producto.class)
+                .igual("tipoPrenda", tipoPrenda)
+                .igual("talla", talla)
+                .empiezaPor("color", color)
+                .igual("temporada", temporada)
+                .desde("precio", minPrecio)
+                .hasta("precio", maxPrecio)
+                .construir();
+        log.info("Buscando productos (tipo {}, talla {}, color '{}', temporada '{}', precio {}-{}) - {}",
+                tipoPrenda, talla, color, temporada, minPrecio, maxPrecio, paginacion);
+        return productoRepository.findAll(filtros, paginacion);
+    }
+}
@@ -0,0 +1,236 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.util.RuedaTemporizacion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Programador de avisos de vencimiento de ítems.
+ * <p>
+ * Al arrancar carga una sola vez las fechas de vencimiento futuras en un índice en memoria (fecha ->
+ * ítems) y programa en una {@link RuedaTemporizacion} un aviso POR_VENCER por cada antelación
+ * configurada y un aviso VENCIDO al terminar el día de vencimiento. Los servicios de ítems lo mantienen
+ * al día al crear, actualizar o eliminar ítems, y las búsquedas de ítems por vencer se resuelven
+ * con el índice en memoria sin consultar la base de datos.
+ */
+@Service
+public class ProgramadorVencimientos {
+
+    private static final Logger log = LoggerFactory.getLogger(ProgramadorVencimientos.class);
+
+    private static final int NIVELES_RUEDA = 4;
+
+    private final ItemRepository itemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int[] diasAviso;
+    private final long tickMs;
+    private final Clock reloj;
+
+    private final NavigableMap<LocalDate, Set<Long>> itemsPorFecha = new TreeMap<>();
+    private final Map<Long, LocalDate> fechaPorItem = new HashMap<>();
+    private RuedaTemporizacion<Aviso> rueda;
+    private boolean cargado;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param itemRepository Repositorio para Items.
+     * @param eventPublisher Publicador de eventos de aplicación.
+     * @param diasAviso Días de antelación de los avisos POR_VENCER.
+     * @param tickMs Resolución de la rueda de temporización en milisegundos.
+     */
+    @Autowired
+    public ProgramadorVencimientos(ItemRepository itemRepository,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${crmtt360.inventario.vencimiento.avisos-dias:7,1}") int[] diasAviso,
+                                   @Value("${crmtt360.inventario.vencimiento.tick-ms:60000}") long tickMs) {
+        this(itemRepository, eventPublisher, diasAviso, tickMs, Clock.systemDefaultZone());
+    }
+
+    ProgramadorVencimientos(ItemRepository itemRepository, ApplicationEventPublisher eventPublisher,
+                            int[] diasAviso, long tickMs, Clock reloj) {
+        this.itemRepository = itemRepository;
+        this.eventPublisher = eventPublisher;
+        this.diasAviso = Arrays.stream(diasAviso).filter(d -> d > 0).distinct().toArray();
+        this.tickMs = tickMs;
+        this.reloj = reloj;
+    }
+
+    /**
+     * Carga las fechas de vencimiento desde hoy y programa sus avisos. Los avisos POR_VENCER cuyo
+     * momento ya pasó no se emiten de nuevo al reiniciar.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void cargar() {
+        LocalDate hoy = LocalDate.now(reloj);
+        rueda = new RuedaTemporizacion<>(tickMs, NIVELES_RUEDA, reloj.millis());
+        itemsPorFecha.clear();
+        fechaPorItem.clear();
+        for (Object[] fila : itemRepository.findVencimientosDesde(Date.valueOf(hoy))) {
+            indexar((Long) fila[0], aFecha((java.util.Date) fila[1]), false);
+        }
+        cargado = true;
+        log.info("Programador de vencimientos cargado: {} ítems con vencimiento desde {}, {} avisos programados.",
+                fechaPorItem.size(), hoy, rueda.tamano());
+    }
+
+    /**
+     * Registra (o actualiza) la fecha de vencimiento de un ítem. Con una transacción activa, el cambio
+     * se aplica al confirmarse.
+     * @param itemId ID del ítem.
+     * @param fechaVencimiento Nueva fecha de vencimiento (null si no vence).
+     */
+    public void registrar(Long itemId, java.util.Date fechaVencimiento) {
+        LocalDate fecha = fechaVencimiento == null ? null : aFecha(fechaVencimiento);
+        alConfirmar(() -> actualizar(itemId, fecha));
+    }
+
+    /**
+     * Retira un ítem eliminado del índice y cancela sus avisos.
+     * @param itemId ID del ítem.
+     */
+    public void retirar(Long itemId) {
+        alConfirmar(() -> actualizar(itemId, null));
+    }
+
+    /**
+     * Devuelve los IDs de los ítems que vencen entre dos fechas (inclusive), desde el índice en memoria.
+     * @param desde Fecha inicial.
+     * @param hasta Fecha final.
+     * @return Lista de IDs, o null si el índice aún no está cargado y debe consultarse la base de datos.
+     */
+    public synchronized List<Long> buscarIdsPorVencer(LocalDate desde, LocalDate hasta) {
+        if (!cargado) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>();
+        if (!hasta.isBefore(desde)) {
+            itemsPorFecha.subMap(desde, true, hasta, true).values().forEach(ids::addAll);
+        }
+        return ids;
+    }
+
+    /**
+     * Devuelve los IDs de los ítems que vencen desde hoy hasta la fecha límite (inclusive).
+     * @param fechaLimite Fecha límite.
+     * @return Lista de IDs, o null si el índice aún no está cargado y debe consultarse la base de datos.
+     */
+    public List<Long> buscarIdsPorVencer(java.util.Date fechaLimite) {
+        return buscarIdsPorVencer(LocalDate.now(reloj), aFecha(fechaLimite));
+    }
+
+    /**
+     * Avanza la rueda de temporización y publica los avisos vencidos.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.inventario.vencimiento.tick-ms:60000}")
+    public void avanzar() {
+        List<AlertaVencimientoEvent> eventos = new ArrayList<>();
+        synchronized (this) {
+            if (!cargado) {
+                return;
+            }
+            for (Aviso aviso : rueda.avanzar(reloj.millis())) {
+                LocalDate fecha = fechaPorItem.get(aviso.itemId());
+                if (aviso.tipo() == AlertaVencimientoEvent.Tipo.VENCIDO) {
+                    desindexar(aviso.itemId()); // Ya no aparece en las búsquedas de ítems por vencer
+                }
+                eventos.add(new AlertaVencimientoEvent(aviso.itemId(), fecha, aviso.tipo(), aviso.diasAntelacion()));
+            }
+        }
+        for (AlertaVencimientoEvent evento : eventos) {
+            log.warn("Aviso de vencimiento {} para ítem ID {} (vence el {}, antelación {} días).",
+                    evento.tipo(), evento.itemId(), evento.fechaVencimiento(), evento.diasAntelacion());
+            eventPublisher.publishEvent(evento);
+        }
+    }
+
+    private synchronized void actualizar(Long itemId, LocalDate fecha) {
+        if (!cargado) {
+            return; // La carga inicial leerá el estado confirmado
+        }
+        desindexar(itemId);
+        if (fecha != null && !fecha.isBefore(LocalDate.now(reloj))) {
+            indexar(itemId, fecha, true);
+        }
+    }
+
+    /**
+     * Añade el ítem al índice y programa sus avisos.
+     * @param avisarAtrasados Si es true, los avisos POR_VENCER cuyo momento ya pasó se emiten en el siguiente tick.
+     */
+    private void indexar(Long itemId, LocalDate fecha, boolean avisarAtrasados) {
+        itemsPorFecha.computeIfAbsent(fecha, f -> new HashSet<>()).add(itemId);
+        fechaPorItem.put(itemId, fecha);
+        long ahora = reloj.millis();
+        for (int dias : diasAviso) {
+            long instante = inicioDelDia(fecha.minusDays(dias));
+            if (instante > ahora || avisarAtrasados) {
+                rueda.programar(new Aviso(itemId, AlertaVencimientoEvent.Tipo.POR_VENCER, dias), instante);
+            }
+        }
+        rueda.programar(new Aviso(itemId, AlertaVencimientoEvent.Tipo.VENCIDO, 0), inicioDelDia(fecha.plusDays(1)));
+    }
+
+    private void desindexar(Long itemId) {
+        LocalDate fecha = fechaPorItem.remove(itemId);
+        if (fecha == null) {
+            return;
+        }
+        Set<Long> ids = itemsPorFecha.get(fecha);
+        ids.remove(itemId);
+        if (ids.isEmpty()) {
+            itemsPorFecha.remove(fecha);
+        }
+        for (int dias : diasAviso) {
+            rueda.cancelar(new Aviso(itemId, AlertaVencimientoEvent.Tipo.POR_VENCER, dias));
+        }
+        rueda.cancelar(new Aviso(itemId, AlertaVencimientoEvent.Tipo.VENCIDO, 0));
+    }
+
+    private LocalDate aFecha(java.util.Date fecha) {
+        return fecha instanceof Date fechaSql ? fechaSql.toLocalDate()
+                : LocalDate.ofInstant(fecha.toInstant(), reloj.getZone());
+    }
+
+    private long inicioDelDia(LocalDate fecha) {
+        return fecha.atStartOfDay(reloj.getZone()).toInstant().toEpochMilli();
+    }
+
+    private void alConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    private record Aviso(Long itemId, AlertaVencimientoEvent.Tipo tipo, int diasAntelacion) {
+    }
+}
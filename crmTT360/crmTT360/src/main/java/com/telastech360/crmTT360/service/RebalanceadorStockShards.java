@@ -0,0 +1,43 @@
+package com.telastech360.crmTT360.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Tarea periódica que redistribuye el stock entre los shards de cada ítem fragmentado,
+ * para que los descuentos aleatorios sigan encontrando shards con stock suficiente.
+ * Cada ítem se rebalancea en su propia transacción.
+ */
+@Component
+public class RebalanceadorStockShards {
+
+    private static final Logger log = LoggerFactory.getLogger(RebalanceadorStockShards.class);
+
+    private final ItemStockShardService itemStockShardService;
+
+    @Autowired
+    public RebalanceadorStockShards(ItemStockShardService itemStockShardService) {
+        this.itemStockShardService = itemStockShardService;
+    }
+
+    @Scheduled(fixedDelayString = "${crmtt360.inventario.stock-shards.rebalanceo-ms:60000}")
+    public void rebalancearTodos() {
+        List<Long> itemIds = itemStockShardService.listarItemsFragmentados();
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        log.debug("Rebalanceando shards de stock para {} ítems...", itemIds.size());
+        for (Long itemId : itemIds) {
+            try {
+                itemStockShardService.rebalancear(itemId);
+            } catch (Exception e) {
+                log.warn("No se pudo rebalancear los shards del ítem ID {}: {}", itemId, e.getMessage());
+            }
+        }
+    }
+}
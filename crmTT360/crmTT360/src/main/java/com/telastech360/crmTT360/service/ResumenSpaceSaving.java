@@ -0,0 +1,105 @@
+package com.telastech360.crmTT360.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen Space-Saving de cantidades por ítem con un número fijo de contadores.
+ * <p>
+ * Mientras haya contadores libres las cantidades son exactas. Con todos ocupados, un ítem nuevo
+ * reemplaza al de menor cantidad y hereda esa cantidad como error: la cantidad de un ítem seguido
+ * nunca es menor que la real y la excede como mucho en su error. Los ítems más vendidos no se
+ * pierden mientras su cantidad supere la de los contadores que se van reemplazando.
+ * <p>
+ * Un ítem que no se sigue pudo venderse, como mucho, tanto como el mayor contador reemplazado hasta
+ * ahora (su cota de ausentes, 0 si nunca se reemplazó ninguno). Al combinar varios resúmenes, a cada
+ * ítem se le suma esa cota en los resúmenes donde no aparece, como cantidad y como error, para que la
+ * estimación combinada siga sin ser menor que la real.
+ * <p>
+ * No es seguro para uso concurrente; lo sincroniza quien lo contiene.
+ */
+final class ResumenSpaceSaving {
+
+    private final int capacidad;
+    // ID del ítem -> {cantidad, error}
+    private final Map<Long, long[]> contadores;
+    // Mayor cantidad de un contador reemplazado: cota de lo vendido por un ítem que no se sigue
+    private long cotaAusentes;
+
+    ResumenSpaceSaving(int capacidad) {
+        this.capacidad = Math.max(1, capacidad);
+        this.contadores = new HashMap<>(this.capacidad * 2);
+    }
+
+    /**
+     * Suma una cantidad vendida de un ítem.
+     */
+    void sumar(Long itemId, long cantidad) {
+        long[] contador = contadores.get(itemId);
+        if (contador != null) {
+            contador[0] += cantidad;
+            return;
+        }
+        if (contadores.size() < capacidad) {
+            contadores.put(itemId, new long[]{cantidad, 0L});
+            return;
+        }
+        Long minimo = null;
+        long[] contadorMinimo = null;
+        for (Map.Entry<Long, long[]> entrada : contadores.entrySet()) {
+            if (contadorMinimo == null || entrada.getValue()[0] < contadorMinimo[0]) {
+                minimo = entrada.getKey();
+                contadorMinimo = entrada.getValue();
+            }
+        }
+        contadores.remove(minimo);
+        cotaAusentes = Math.max(cotaAusentes, contadorMinimo[0]);
+        contadores.put(itemId, new long[]{contadorMinimo[0] + cantidad, contadorMinimo[0]});
+    }
+
+    /**
+     * Resta una cantidad de un ítem (p. ej. por la cancelación de un pedido). Si el ítem ya no se
+     * sigue, su cantidad no está en el resumen y no hay nada que restar.
+     */
+    void restar(Long itemId, long cantidad) {
+        long[] contador = contadores.get(itemId);
+        if (contador == null) {
+            return;
+        }
+        contador[0] -= cantidad;
+        if (contador[0] <= 0) {
+            contadores.remove(itemId);
+        }
+    }
+
+    /**
+     * Combina varios resúmenes (p. ej. los de las horas de un periodo) sumando cantidades y errores.
+     * A un ítem ausente de alguno de ellos se le suma la cota de ausentes de ese resumen, tanto en la
+     * cantidad como en el error.
+     * @param resumenes Resúmenes a combinar.
+     * @return ID del ítem -> {cantidad, error}.
+     */
+    static Map<Long, long[]> combinar(List<ResumenSpaceSaving> resumenes) {
+        // ID del ítem -> {cantidad, error, suma de las cotas de los resúmenes donde aparece}
+        Map<Long, long[]> acumulado = new HashMap<>();
+        long cotaTotal = 0;
+        for (ResumenSpaceSaving resumen : resumenes) {
+            long cota = resumen.cotaAusentes;
+            cotaTotal += cota;
+            resumen.contadores.forEach((itemId, contador) -> {
+                long[] total = acumulado.computeIfAbsent(itemId, id -> new long[3]);
+                total[0] += contador[0];
+                total[1] += contador[1];
+                total[2] += cota;
+            });
+        }
+        Map<Long, long[]> combinado = new HashMap<>(acumulado.size() * 2);
+        for (Map.Entry<Long, long[]> entrada : acumulado.entrySet()) {
+            long[] total = entrada.getValue();
+            long ausente = cotaTotal - total[2];
+            combinado.put(entrada.getKey(), new long[]{total[0] + ausente, total[1] + ausente});
+        }
+        return combinado;
+    }
+}
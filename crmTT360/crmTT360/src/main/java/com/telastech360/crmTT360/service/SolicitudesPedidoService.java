@@ -0,0 +1,270 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoDTO;
+import com.telastech360.crmTT360.dto.SolicitudPedidoDTO;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.exception.TooManyRequestsException;
+import com.telastech360.crmTT360.mapper.PedidoMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recepción asíncrona de pedidos.
+ * <p>
+ * Las solicitudes se validan sin acceder a la base de datos, se encolan en una cola acotada en memoria
+ * y se responden de inmediato con un identificador de seguimiento. Un número fijo de trabajadores en
+ * hilos virtuales, nunca mayor que el tamaño del pool de conexiones, las procesan con
+ * {@link PedidoService#crearPedidoConDetalles(PedidoDTO)}. Si la cola está llena la solicitud se
+ * rechaza con {@link TooManyRequestsException} para que el cliente reintente más tarde.
+ * <p>
+ * La cola y el estado de las solicitudes no son persistentes: una solicitud aún en cola cuando se
+ * detiene la aplicación más allá del tiempo de espera de cierre se pierde, y las terminadas se
+ * olvidan pasado el tiempo de retención.
+ */
+@Service
+public class SolicitudesPedidoService {
+
+    private static final Logger log = LoggerFactory.getLogger(SolicitudesPedidoService.class);
+
+    static final String OPERACION_IDEMPOTENCIA = "CREAR_PEDIDO";
+    private static final long ESPERA_COLA_MS = 1000;
+
+    /**
+     * Estados de una solicitud asíncrona.
+     */
+    public enum EstadoSolicitud { EN_COLA, PROCESANDO, COMPLETADA, FALLIDA }
+
+    private final PedidoService pedidoService;
+    private final PedidoMapper pedidoMapper;
+    private final IdempotenciaService idempotenciaService;
+    private final Executor ejecutor;
+    private final BlockingQueue<Solicitud> cola;
+    private final int trabajadores;
+    private final long retencionMs;
+    private final long segundosReintento;
+    private final long esperaCierreMs;
+    private final Clock reloj;
+
+    private final Map<String, Solicitud> solicitudes = new ConcurrentHashMap<>();
+    private final CountDownLatch trabajadoresTerminados;
+    private volatile boolean activo = true;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param pedidoService Servicio que crea los pedidos.
+     * @param pedidoMapper Mapper para el resultado idempotente.
+     * @param idempotenciaService Servicio de claves de idempotencia, compartido con la creación síncrona.
+     * @param capacidadCola Número máximo de solicitudes en espera.
+     * @param trabajadores Trabajadores que procesan la cola (0 = la mitad del pool de conexiones).
+     * @param conexionesBd Tamaño máximo del pool de conexiones, que limita el número de trabajadores.
+     * @param retencionMs Tiempo durante el que se puede consultar una solicitud ya terminada.
+     * @param segundosReintento Segundos que se indican en Retry-After cuando la cola está llena.
+     * @param esperaCierreMs Tiempo máximo de espera al detener la aplicación para vaciar la cola.
+     */
+    @Autowired
+    public SolicitudesPedidoService(PedidoService pedidoService,
+                                    PedidoMapper pedidoMapper,
+                                    IdempotenciaService idempotenciaService,
+                                    @Value("${crmtt360.pedidos.asincrono.capacidad-cola:500}") int capacidadCola,
+                                    @Value("${crmtt360.pedidos.asincrono.trabajadores:0}") int trabajadores,
+                                    @Value("${spring.datasource.hikari.maximum-pool-size:10}") int conexionesBd,
+                                    @Value("${crmtt360.pedidos.asincrono.retencion-ms:900000}") long retencionMs,
+                                    @Value("${crmtt360.pedidos.asincrono.reintento-segundos:2}") long segundosReintento,
+                                    @Value("${crmtt360.pedidos.asincrono.espera-cierre-ms:10000}") long esperaCierreMs) {
+        this(pedidoService, pedidoMapper, idempotenciaService, ejecutorVirtual(), capacidadCola,
+                calcularTrabajadores(trabajadores, conexionesBd), retencionMs, segundosReintento, esperaCierreMs,
+                Clock.systemDefaultZone());
+    }
+
+    SolicitudesPedidoService(PedidoService pedidoService, PedidoMapper pedidoMapper,
+                             IdempotenciaService idempotenciaService, Executor ejecutor, int capacidadCola,
+                             int trabajadores, long retencionMs, long segundosReintento, long esperaCierreMs,
+                             Clock reloj) {
+        this.pedidoService = pedidoService;
+        this.pedidoMapper = pedidoMapper;
+        this.idempotenciaService = idempotenciaService;
+        this.ejecutor = ejecutor;
+        this.cola = new ArrayBlockingQueue<>(Math.max(1, capacidadCola));
+        this.trabajadores = trabajadores;
+        this.retencionMs = retencionMs;
+        this.segundosReintento = segundosReintento;
+        this.esperaCierreMs = esperaCierreMs;
+        this.reloj = reloj;
+        this.trabajadoresTerminados = new CountDownLatch(trabajadores);
+    }
+
+    // Un hilo virtual por trabajador: esperan en la cola sin ocupar hilos de plataforma
+    private static Executor ejecutorVirtual() {
+        SimpleAsyncTaskExecutor ejecutor = new SimpleAsyncTaskExecutor("pedido-async-");
+        ejecutor.setVirtualThreads(true);
+        return ejecutor;
+    }
+
+    // Cada trabajador retiene una conexión mientras crea un pedido: nunca más trabajadores que conexiones
+    static int calcularTrabajadores(int configurados, int conexionesBd) {
+        int maximo = Math.max(1, conexionesBd);
+        int deseados = configurados > 0 ? configurados : maximo / 2;
+        return Math.max(1, Math.min(deseados, maximo));
+    }
+
+    /**
+     * Arranca los trabajadores cuando la aplicación está lista.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        for (int i = 0; i < trabajadores; i++) {
+            ejecutor.execute(this::trabajar);
+        }
+        log.info("Recepción asíncrona de pedidos iniciada: {} trabajadores, capacidad de cola {}.",
+                trabajadores, cola.remainingCapacity());
+    }
+
+    /**
+     * Deja de aceptar solicitudes y espera, como mucho el tiempo de cierre configurado, a que los
+     * trabajadores vacíen la cola.
+     */
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        if (!trabajadoresTerminados.await(esperaCierreMs, TimeUnit.MILLISECONDS)) {
+            log.warn("Recepción asíncrona detenida con {} solicitudes de pedido sin procesar.", cola.size());
+        }
+    }
+
+    /**
+     * Valida la solicitud sin acceder a la base de datos y la encola.
+     * @param pedidoDto DTO del pedido a crear.
+     * @param claveIdempotencia Clave de idempotencia del cliente (puede ser null).
+     * @return Estado inicial de la solicitud, con su identificador de seguimiento.
+     * @throws com.telastech360.crmTT360.exception.InvalidDataException Si los detalles no son válidos.
+     * @throws TooManyRequestsException Si la cola está llena o la aplicación se está deteniendo.
+     */
+    public SolicitudPedidoDTO encolar(PedidoDTO pedidoDto, String claveIdempotencia) {
+        PedidoService.validarDetalles(pedidoDto);
+        if (!activo) {
+            throw new TooManyRequestsException("La recepción de pedidos se está deteniendo. Reintente más tarde.", segundosReintento);
+        }
+        Solicitud solicitud = new Solicitud(UUID.randomUUID().toString(), pedidoDto, claveIdempotencia, reloj.millis());
+        solicitudes.put(solicitud.id, solicitud);
+        if (!cola.offer(solicitud)) {
+            solicitudes.remove(solicitud.id);
+            log.warn("Cola de pedidos asíncronos llena ({} en espera). Solicitud rechazada.", cola.size());
+            throw new TooManyRequestsException("La cola de pedidos está llena. Reintente más tarde.", segundosReintento);
+        }
+        log.debug("Solicitud de pedido {} encolada. En espera: {}", solicitud.id, cola.size());
+        return solicitud.aDTO();
+    }
+
+    /**
+     * Consulta el estado de una solicitud.
+     * @param solicitudId Identificador de seguimiento.
+     * @return Estado de la solicitud.
+     * @throws ResourceNotFoundException Si no existe o ya se olvidó por retención.
+     */
+    public SolicitudPedidoDTO consultar(String solicitudId) {
+        Solicitud solicitud = solicitudes.get(solicitudId);
+        if (solicitud == null) {
+            throw new ResourceNotFoundException("Solicitud de pedido no encontrada: " + solicitudId);
+        }
+        return solicitud.aDTO();
+    }
+
+    /**
+     * Olvida las solicitudes terminadas hace más del tiempo de retención.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.pedidos.asincrono.purga-ms:60000}")
+    public void purgarTerminadas() {
+        long limite = reloj.millis() - retencionMs;
+        solicitudes.values().removeIf(s -> s.terminadaAntesDe(limite));
+    }
+
+    private void trabajar() {
+        try {
+            while (activo || !cola.isEmpty()) {
+                procesarSiguiente(ESPERA_COLA_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            trabajadoresTerminados.countDown();
+        }
+    }
+
+    /**
+     * Procesa la siguiente solicitud de la cola, si llega alguna en el tiempo de espera.
+     * @param esperaMs Tiempo máximo de espera.
+     * @return true si se procesó una solicitud.
+     */
+    boolean procesarSiguiente(long esperaMs) throws InterruptedException {
+        Solicitud solicitud = cola.poll(esperaMs, TimeUnit.MILLISECONDS);
+        if (solicitud == null) {
+            return false;
+        }
+        solicitud.actualizar(EstadoSolicitud.PROCESANDO, null, null, reloj.millis());
+        try {
+            PedidoDTO creado = idempotenciaService.ejecutar(OPERACION_IDEMPOTENCIA, solicitud.claveIdempotencia,
+                    solicitud.pedido, PedidoDTO.class,
+                    () -> pedidoMapper.toDTO(pedidoService.crearPedidoConDetalles(solicitud.pedido))).respuesta();
+            solicitud.actualizar(EstadoSolicitud.COMPLETADA, creado.getPedidoId(), null, reloj.millis());
+            log.info("Solicitud de pedido {} completada. Pedido ID: {}", solicitud.id, creado.getPedidoId());
+        } catch (RuntimeException e) {
+            solicitud.actualizar(EstadoSolicitud.FALLIDA, null, e.getMessage(), reloj.millis());
+            log.warn("Solicitud de pedido {} fallida: {}", solicitud.id, e.getMessage());
+        }
+        return true;
+    }
+
+    private static final class Solicitud {
+        private final String id;
+        private final PedidoDTO pedido;
+        private final String claveIdempotencia;
+        private final long fechaRecepcion;
+        private EstadoSolicitud estado = EstadoSolicitud.EN_COLA;
+        private Long pedidoId;
+        private String mensaje;
+        private long fechaActualizacion;
+
+        private Solicitud(String id, PedidoDTO pedido, String claveIdempotencia, long fechaRecepcion) {
+            this.id = id;
+            this.pedido = pedido;
+            this.claveIdempotencia = claveIdempotencia;
+            this.fechaRecepcion = fechaRecepcion;
+            this.fechaActualizacion = fechaRecepcion;
+        }
+
+        private synchronized void actualizar(EstadoSolicitud estado, Long pedidoId, String mensaje, long fecha) {
+            this.estado = estado;
+            this.pedidoId = pedidoId;
+            this.mensaje = mensaje;
+            this.fechaActualizacion = fecha;
+        }
+
+        private synchronized boolean terminadaAntesDe(long fecha) {
+            return (estado == EstadoSolicitud.COMPLETADA || estado == EstadoSolicitud.FALLIDA) && fechaActualizacion < fecha;
+        }
+
+        private synchronized SolicitudPedidoDTO aDTO() {
+            return new SolicitudPedidoDTO(id, estado.name(), pedidoId, mensaje,
+                    new Timestamp(fechaRecepcion), new Timestamp(fechaActualizacion));
+        }
+    }
+}
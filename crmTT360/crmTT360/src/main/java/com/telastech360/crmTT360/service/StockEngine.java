@@ -0,0 +1,579 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.exception.IllegalOperationException;
+import com.telastech360.crmTT360.repository.StockEngineRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Motor de stock en memoria con journal de escritura diferida (write-behind).
+ * <p>
+ * Cuando está activo ({@code crmtt360.inventario.stock-engine.enabled=true}), el stock disponible de
+ * cada ítem usado se mantiene en memoria y las reservas se validan y aplican con compare-and-set,
+ * sin tocar la base de datos. Cada cambio se anexa a un {@link StockJournal} con el ID de su
+ * transacción, y una tarea periódica vuelca a la tabla item, en un único lote, los deltas netos de las
+ * transacciones ya confirmadas junto con el punto de control del journal.
+ * <p>
+ * Dentro de una transacción de Spring, los descuentos se aplican en memoria al momento (para validar
+ * las reservas siguientes) y los incrementos al confirmar; en ambos casos los deltas solo pasan a
+ * pendientes de volcado cuando la transacción se confirma. Antes de confirmar, el journal se sincroniza
+ * a disco y el ID de la transacción se inserta en stock_engine_transaccion dentro de la propia
+ * transacción; tras completarla se escribe su marca COMMIT o ABORT. Al arrancar solo se reaplican las
+ * transacciones con marca COMMIT posterior al último punto de control, o sin marca pero registradas en
+ * esa tabla; las de un pedido que nunca llegó a confirmarse se descartan. Fuera de una transacción,
+ * cada cambio se confirma con su propia marca en la misma escritura.
+ * <p>
+ * Solo es válido con una única instancia de la aplicación escribiendo stock. Los ítems con stock
+ * fragmentado no se gestionan aquí. Las modificaciones absolutas del stock (edición de un ítem,
+ * cambio de fragmentación, borrado) deben llamar a {@link #invalidar(Long)}. Las lecturas de
+ * stock desde la base de datos pueden ir por detrás de la memoria hasta el siguiente volcado.
+ */
+@Component
+@DependsOn("entityManagerFactory") // Garantiza que Flyway ya migró el esquema
+public class StockEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(StockEngine.class);
+
+    private final StockEngineRepository stockEngineRepository;
+    private final AlertaStockBajoService alertaStockBajoService;
+    private final boolean activo;
+    private final Path directorioJournal;
+    private final long maxBytesJournal;
+
+    private final ConcurrentHashMap<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> pendientes = new ConcurrentHashMap<>();
+    // Transacciones confirmadas cuyos deltas están en pendientes: el volcado borra su registro en la BD
+    private final Queue<Long> confirmadasSinVolcar = new ConcurrentLinkedQueue<>();
+    // Época del primer registro de cada transacción en curso: sus archivos no se pueden eliminar
+    private final ConcurrentHashMap<Long, Long> epocaInicioEnCurso = new ConcurrentHashMap<>();
+    private final AtomicLong siguienteTransaccion = new AtomicLong();
+    // Lectura: aplicar cambios; escritura: vaciar pendientes, cargar o retirar entradas
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    // Excluye las cargas desde la base de datos mientras hay un volcado en curso
+    private final Object monitorVolcado = new Object();
+
+    private StockJournal journal;
+
+    /**
+     * Constructor para inyección de dependencias.
+     * @param stockEngineRepository Repositorio JDBC del motor de stock.
+     * @param alertaStockBajoService Servicio de alertas de stock bajo, avisado tras cada volcado.
+     * @param activo Si el motor está activo.
+     * @param directorioJournal Directorio de los archivos de journal.
+     * @param maxBytesJournal Tamaño a partir del cual el journal rota a una nueva época tras un volcado.
+     */
+    @Autowired
+    public StockEngine(StockEngineRepository stockEngineRepository,
+                       AlertaStockBajoService alertaStockBajoService,
+                       @Value("${crmtt360.inventario.stock-engine.enabled:false}") boolean activo,
+                       @Value("${crmtt360.inventario.stock-engine.journal-dir:data/stock-journal}") String directorioJournal,
+                       @Value("${crmtt360.inventario.stock-engine.journal-max-bytes:67108864}") long maxBytesJournal) {
+        this.stockEngineRepository = stockEngineRepository;
+        this.alertaStockBajoService = alertaStockBajoService;
+        this.activo = activo;
+        this.directorioJournal = Path.of(directorioJournal);
+        this.maxBytesJournal = maxBytesJournal;
+    }
+
+    /**
+     * Reaplica a la tabla item las transacciones confirmadas del journal no volcadas y abre una nueva época.
+     * Una transacción se reaplica si su marca COMMIT está en o después del punto de control, o si no
+     * tiene marca y su ID sigue registrado en stock_engine_transaccion (se confirmó en la BD pero la
+     * aplicación cayó antes de escribir la marca). El resto ya está volcado o nunca se confirmó.
+     */
+    @PostConstruct
+    public void iniciar() throws IOException {
+        if (!activo) {
+            return;
+        }
+        journal = new StockJournal(directorioJournal);
+        long[] checkpoint = stockEngineRepository.leerCheckpoint();
+        Map<Long, Map<Long, Integer>> deltasPorTransaccion = new HashMap<>();
+        Map<Long, Boolean> marcas = new HashMap<>(); // true: COMMIT posterior al punto de control
+        long ultimaEpoca = checkpoint[0];
+        for (Long epoca : journal.epocasExistentes()) {
+            journal.leer(epoca, (posicion, transaccion, itemId, delta) -> {
+                if (itemId == StockJournal.MARCA) {
+                    boolean posterior = epoca > checkpoint[0] || (epoca == checkpoint[0] && posicion >= checkpoint[1]);
+                    marcas.put(transaccion, delta == StockJournal.CONFIRMADA && posterior);
+                } else {
+                    deltasPorTransaccion.computeIfAbsent(transaccion, t -> new HashMap<>())
+                            .merge(itemId, delta, Integer::sum);
+                }
+            });
+            ultimaEpoca = Math.max(ultimaEpoca, epoca);
+        }
+
+        // Solo se consulta la BD por las transacciones que aún pueden estar sin volcar
+        Set<Long> candidatas = new HashSet<>(deltasPorTransaccion.keySet());
+        candidatas.removeIf(transaccion -> Boolean.FALSE.equals(marcas.get(transaccion)));
+        Set<Long> registradas = stockEngineRepository.transaccionesRegistradas(candidatas);
+        Map<Long, Integer> deltas = new TreeMap<>();
+        int recuperadas = 0;
+        for (Map.Entry<Long, Map<Long, Integer>> transaccion : deltasPorTransaccion.entrySet()) {
+            if (marcas.getOrDefault(transaccion.getKey(), false) || registradas.contains(transaccion.getKey())) {
+                transaccion.getValue().forEach((itemId, delta) -> deltas.merge(itemId, delta, Integer::sum));
+                recuperadas++;
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+
+        long nuevaEpoca = ultimaEpoca + 1;
+        stockEngineRepository.aplicarDeltas(deltas, nuevaEpoca, 0, registradas);
+        journal.abrir(nuevaEpoca);
+        journal.eliminarAnteriores(nuevaEpoca);
+        siguienteTransaccion.set(nuevaEpoca << 32); // IDs únicos entre reinicios
+        log.info("Motor de stock iniciado. {} transacciones recuperadas del journal ({} descartadas), {} ítems; época actual {}.",
+                recuperadas, deltasPorTransaccion.size() - recuperadas, deltas.size(), nuevaEpoca);
+    }
+
+    /**
+     * Vuelca los pendientes y cierra el journal al detener la aplicación.
+     */
+    @PreDestroy
+    public void detener() throws IOException {
+        if (!activo || journal == null) {
+            return;
+        }
+        volcar();
+        journal.close();
+        log.info("Motor de stock detenido.");
+    }
+
+    /**
+     * Indica si el motor está activo.
+     * @return true si las operaciones de stock deben pasar por el motor.
+     */
+    public boolean activo() {
+        return activo;
+    }
+
+    /**
+     * Intenta ajustar el stock de un ítem en memoria.
+     * Dentro de una transacción, los descuentos se aplican de inmediato y se revierten si se deshace;
+     * los incrementos se aplican al confirmarse.
+     * @param itemId ID del ítem.
+     * @param cantidad Cantidad a sumar (positivo) o restar (negativo).
+     * @return true si se aplicó, false si el stock es insuficiente, o null si el motor no gestiona
+     *         el ítem (no existe o tiene stock fragmentado) y debe usarse la base de datos.
+     */
+    public Boolean intentarAjustar(Long itemId, int cantidad) {
+        Set<Long> noGestionados = new HashSet<>();
+        Rechazo rechazo = aplicar(Map.of(itemId, cantidad), noGestionados);
+        if (!noGestionados.isEmpty()) {
+            return null;
+        }
+        return rechazo == null;
+    }
+
+    /**
+     * Reserva (descuenta) stock para varios ítems a la vez: o se reservan todos los gestionados o ninguno.
+     * @param cantidadesPorItem Mapa itemId -> cantidad solicitada (positiva).
+     * @return Las cantidades de los ítems que el motor no gestiona, para reservarlas en la base de datos.
+     * @throws IllegalOperationException si algún ítem gestionado no tiene stock suficiente.
+     */
+    public Map<Long, Integer> reservar(Map<Long, Integer> cantidadesPorItem) {
+        Map<Long, Integer> deltas = new TreeMap<>();
+        cantidadesPorItem.forEach((itemId, cantidad) -> deltas.put(itemId, -cantidad));
+        Set<Long> noGestionados = new HashSet<>();
+        Rechazo rechazo = aplicar(deltas, noGestionados);
+        if (rechazo != null) {
+            log.error("Stock insuficiente para reservar. Item ID: {}, Nombre: {}, Disponible: {}, Solicitado: {}",
+                    rechazo.itemId(), rechazo.nombre(), rechazo.disponible(), cantidadesPorItem.get(rechazo.itemId()));
+            throw new IllegalOperationException("Stock insuficiente para el ítem '" + rechazo.nombre() +
+                    "'. Disponible: " + rechazo.disponible() +
+                    ", Solicitado: " + cantidadesPorItem.get(rechazo.itemId()));
+        }
+        Map<Long, Integer> restantes = new TreeMap<>();
+        for (Long itemId : noGestionados) {
+            restantes.put(itemId, cantidadesPorItem.get(itemId));
+        }
+        return restantes;
+    }
+
+    /**
+     * Vuelca los pendientes y retira el ítem de memoria, para que la próxima operación lo recargue
+     * de la base de datos. Si hay una transacción activa, se retira de nuevo tras confirmarla.
+     * Debe llamarse ANTES de fijar el stock de un ítem directamente en la base de datos.
+     * @param itemId ID del ítem.
+     */
+    public void invalidar(Long itemId) {
+        if (!activo) {
+            return;
+        }
+        volcar();
+        retirar(itemId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    retirar(itemId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Aplica a la tabla item los deltas netos de las transacciones confirmadas desde el último volcado,
+     * avanza el punto de control del journal y borra el registro de esas transacciones. Los deltas de
+     * transacciones en curso no se vuelcan. Si falla, los deltas vuelven a pendientes para el siguiente intento.
+     */
+    @Scheduled(fixedDelayString = "${crmtt360.inventario.stock-engine.volcado-ms:200}")
+    public void volcar() {
+        if (!activo) {
+            return;
+        }
+        synchronized (monitorVolcado) {
+            Map<Long, Integer> lote;
+            List<Long> transacciones = new ArrayList<>();
+            long epoca;
+            long posicion;
+            long epocaRetenida;
+            boolean rotado = false;
+            bloqueo.writeLock().lock();
+            try {
+                lote = new TreeMap<>(pendientes); // En orden de ID, como se bloquean los ítems al reservar stock
+                pendientes.clear();
+                for (Long transaccion; (transaccion = confirmadasSinVolcar.poll()) != null; ) {
+                    transacciones.add(transaccion);
+                }
+                if (journal.posicion() >= maxBytesJournal) {
+                    journal.abrir(journal.epoca() + 1);
+                    rotado = true;
+                }
+                epoca = journal.epoca();
+                posicion = journal.posicion();
+                epocaRetenida = Math.min(epoca, epocaInicioEnCurso.values().stream().min(Long::compare).orElse(epoca));
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo rotar el journal de stock", e);
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+            lote.values().removeIf(delta -> delta == 0);
+            if (lote.isEmpty() && transacciones.isEmpty() && !rotado) {
+                return;
+            }
+            try {
+                stockEngineRepository.aplicarDeltas(lote, epoca, posicion, transacciones);
+            } catch (RuntimeException e) {
+                lote.forEach((itemId, delta) -> pendientes.merge(itemId, delta, Integer::sum));
+                confirmadasSinVolcar.addAll(transacciones);
+                log.error("Error al volcar el stock de {} ítems; se reintentará: {}", lote.size(), e.getMessage());
+                throw e;
+            }
+            log.debug("Volcados deltas de stock de {} ítems. Journal en época {}, posición {}.", lote.size(), epoca, posicion);
+            alertaStockBajoService.registrarCambio(lote.keySet()); // La BD ya refleja los cambios
+            if (rotado) {
+                try {
+                    journal.eliminarAnteriores(epocaRetenida);
+                } catch (IOException e) {
+                    log.warn("No se pudieron eliminar journals antiguos: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Aplica los deltas de todos los ítems gestionados, o de ninguno si alguno quedaría en negativo.
+     * Fuera de una transacción, los deltas quedan confirmados en el journal (sincronizado a disco) y en
+     * pendientes. Dentro de una, quedan en el journal con el ID de la transacción y se confirman o
+     * revierten al completarla.
+     * @param deltasPorItem Mapa itemId -> delta.
+     * @param noGestionados Se rellena con los ítems que el motor no gestiona (no se les aplica nada).
+     * @return El rechazo del primer ítem sin stock suficiente, o null si se aplicó.
+     */
+    private Rechazo aplicar(Map<Long, Integer> deltasPorItem, Set<Long> noGestionados) {
+        while (true) {
+            noGestionados.clear();
+            Map<Long, Entrada> usadas = new TreeMap<>();
+            for (Long itemId : deltasPorItem.keySet()) {
+                Entrada entrada = entrada(itemId);
+                if (entrada == null) {
+                    noGestionados.add(itemId);
+                } else {
+                    usadas.put(itemId, entrada);
+                }
+            }
+            if (usadas.isEmpty()) {
+                return null;
+            }
+            Transaccion transaccion = transaccionActual();
+
+            long secuencia;
+            bloqueo.readLock().lock();
+            try {
+                if (!vigentes(usadas)) {
+                    continue; // Alguna entrada se invalidó mientras tanto: recargar
+                }
+                List<Long> aplicados = new ArrayList<>(usadas.size());
+                for (Map.Entry<Long, Entrada> usada : usadas.entrySet()) {
+                    int delta = deltasPorItem.get(usada.getKey());
+                    if (transaccion != null && delta > 0) {
+                        continue; // Los incrementos de una transacción se aplican en memoria al confirmarla
+                    }
+                    if (!usada.getValue().ajustar(delta)) {
+                        aplicados.forEach(itemId -> usadas.get(itemId).stock.addAndGet(-deltasPorItem.get(itemId)));
+                        Entrada entrada = usada.getValue();
+                        return new Rechazo(usada.getKey(), entrada.nombre, entrada.stock.get());
+                    }
+                    aplicados.add(usada.getKey());
+                }
+                Map<Long, Integer> deltasUsados = new TreeMap<>();
+                usadas.keySet().forEach(itemId -> deltasUsados.put(itemId, deltasPorItem.get(itemId)));
+                long id = transaccion != null ? transaccion.id : siguienteTransaccion.incrementAndGet();
+                try {
+                    secuencia = journal.anexar(id, deltasUsados, transaccion == null);
+                } catch (IOException e) {
+                    aplicados.forEach(itemId -> usadas.get(itemId).stock.addAndGet(-deltasPorItem.get(itemId)));
+                    throw new UncheckedIOException("No se pudo escribir en el journal de stock", e);
+                }
+                if (transaccion == null) {
+                    deltasUsados.forEach((itemId, delta) -> pendientes.merge(itemId, delta, Integer::sum));
+                } else {
+                    transaccion.registrar(deltasUsados, usadas, secuencia);
+                }
+            } finally {
+                bloqueo.readLock().unlock();
+            }
+
+            if (transaccion == null) {
+                sincronizar(secuencia); // Dentro de una transacción se sincroniza antes de confirmarla
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Devuelve el contexto del motor para la transacción de Spring en curso, creándolo y registrándolo
+     * como sincronización la primera vez. Las sincronizaciones se suspenden con su transacción, así que
+     * una transacción anidada REQUIRES_NEW tiene su propio contexto.
+     * @return El contexto, o null si no hay una transacción activa con sincronización.
+     */
+    private Transaccion transaccionActual() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+            if (sincronizacion instanceof Transaccion transaccion && transaccion.motor() == this) {
+                return transaccion;
+            }
+        }
+        Transaccion transaccion = new Transaccion(siguienteTransaccion.incrementAndGet());
+        TransactionSynchronizationManager.registerSynchronization(transaccion);
+        return transaccion;
+    }
+
+    /**
+     * Cierra una transacción del motor: escribe su marca en el journal y, si se confirmó, pasa sus
+     * deltas a pendientes y aplica en memoria lo que faltase; si se deshizo, revierte sus descuentos.
+     * El estado desconocido se resuelve con el registro de la transacción en la base de datos.
+     */
+    private void completar(Transaccion transaccion, int estado) {
+        if (transaccion.deltas.isEmpty()) {
+            return;
+        }
+        boolean confirmada = estado == TransactionSynchronization.STATUS_COMMITTED
+                || (estado == TransactionSynchronization.STATUS_UNKNOWN
+                    && !stockEngineRepository.transaccionesRegistradas(List.of(transaccion.id)).isEmpty());
+        bloqueo.readLock().lock();
+        try {
+            try {
+                journal.anexarMarca(transaccion.id, confirmada);
+            } catch (IOException e) {
+                // Sin marca, al arrancar decide el registro de la transacción en la base de datos
+                log.warn("No se pudo escribir la marca de la transacción de stock {}: {}", transaccion.id, e.getMessage());
+            }
+            transaccion.deltas.forEach((itemId, delta) -> {
+                Entrada actual = entradas.get(itemId);
+                // Lo ya descontado en memoria solo cuenta si la entrada no se recargó entretanto
+                int enMemoria = actual != null && actual == transaccion.entradasDescontadas.get(itemId)
+                        ? transaccion.descontado.get(itemId) : 0;
+                if (confirmada) {
+                    if (actual != null) {
+                        actual.stock.addAndGet(delta - enMemoria);
+                    }
+                    pendientes.merge(itemId, delta, Integer::sum);
+                } else if (enMemoria != 0) {
+                    actual.stock.addAndGet(-enMemoria);
+                }
+            });
+            if (confirmada) {
+                confirmadasSinVolcar.add(transaccion.id);
+            } else {
+                log.debug("Transacción deshecha: revertida la reserva de stock {}", transaccion.deltas);
+            }
+            epocaInicioEnCurso.remove(transaccion.id);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private void sincronizar(long secuencia) {
+        try {
+            journal.sincronizar(secuencia);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo sincronizar el journal de stock", e);
+        }
+    }
+
+    /**
+     * Devuelve la entrada en memoria de un ítem, cargándola de la base de datos si hace falta.
+     * La carga suma los pendientes aún no volcados y excluye volcados en curso; se publica bajo el
+     * bloqueo de escritura para no cruzarse con una transacción que pasa sus deltas a pendientes.
+     * @return La entrada, o null si el ítem no existe o tiene stock fragmentado.
+     */
+    private Entrada entrada(Long itemId) {
+        Entrada entrada = entradas.get(itemId);
+        if (entrada != null) {
+            return entrada;
+        }
+        if (!activo) {
+            return null;
+        }
+        synchronized (monitorVolcado) {
+            entrada = entradas.get(itemId);
+            if (entrada != null) {
+                return entrada;
+            }
+            Object[] fila = stockEngineRepository.cargarStock(itemId);
+            if (fila == null || ((Number) fila[2]).intValue() > 0) {
+                return null;
+            }
+            bloqueo.writeLock().lock();
+            try {
+                int disponible = ((Number) fila[1]).intValue() + pendientes.getOrDefault(itemId, 0);
+                entrada = new Entrada((String) fila[0], new AtomicInteger(disponible));
+                entradas.put(itemId, entrada);
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+            return entrada;
+        }
+    }
+
+    private boolean vigentes(Map<Long, Entrada> usadas) {
+        for (Map.Entry<Long, Entrada> usada : usadas.entrySet()) {
+            if (entradas.get(usada.getKey()) != usada.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void retirar(Long itemId) {
+        bloqueo.writeLock().lock();
+        try {
+            entradas.remove(itemId);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cambios del motor dentro de una transacción de Spring. La usa un único hilo, el de la transacción.
+     */
+    private final class Transaccion implements TransactionSynchronization {
+        private final long id;
+        private final Map<Long, Integer> deltas = new TreeMap<>();
+        // Entrada sobre la que se descontó cada ítem en memoria y cantidad descontada en ella
+        private final Map<Long, Entrada> entradasDescontadas = new HashMap<>();
+        private final Map<Long, Integer> descontado = new HashMap<>();
+        private long ultimaSecuencia;
+
+        private Transaccion(long id) {
+            this.id = id;
+        }
+
+        private StockEngine motor() {
+            return StockEngine.this;
+        }
+
+        /** Anota los deltas escritos en el journal; se llama bajo el bloqueo de lectura. */
+        private void registrar(Map<Long, Integer> deltasUsados, Map<Long, Entrada> usadas, long secuencia) {
+            epocaInicioEnCurso.putIfAbsent(id, journal.epoca());
+            deltasUsados.forEach((itemId, delta) -> {
+                deltas.merge(itemId, delta, Integer::sum);
+                if (delta < 0) {
+                    Entrada entrada = usadas.get(itemId);
+                    if (entradasDescontadas.put(itemId, entrada) == entrada) {
+                        descontado.merge(itemId, delta, Integer::sum);
+                    } else {
+                        descontado.put(itemId, delta); // La entrada anterior se retiró
+                    }
+                }
+            });
+            ultimaSecuencia = secuencia;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (deltas.isEmpty()) {
+                return;
+            }
+            sincronizar(ultimaSecuencia);
+            stockEngineRepository.registrarTransaccion(id);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            completar(this, status);
+        }
+    }
+
+    /**
+     * Stock en memoria de un ítem.
+     */
+    private static final class Entrada {
+        private final String nombre;
+        private final AtomicInteger stock;
+
+        private Entrada(String nombre, AtomicInteger stock) {
+            this.nombre = nombre;
+            this.stock = stock;
+        }
+
+        /** Aplica el delta con compare-and-set si el resultado no es negativo. */
+        private boolean ajustar(int delta) {
+            while (true) {
+                int actual = stock.get();
+                int nuevo = actual + delta;
+                if (nuevo < 0) {
+                    return false;
+                }
+                if (stock.compareAndSet(actual, nuevo)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private record Rechazo(Long itemId, String nombre, int disponible) {
+    }
+}
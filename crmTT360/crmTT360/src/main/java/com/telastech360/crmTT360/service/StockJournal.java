@@ -0,0 +1,234 @@
+package com.telastech360.crmTT360.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal de solo-anexado usado por {@link StockEngine} para hacer duraderos los cambios de stock
+ * antes de volcarlos a la tabla item.
+ * Cada registro ocupa 24 bytes: transacción (long), itemId (long), delta (int) y un CRC32 de los tres
+ * (int), que permite descartar un registro incompleto al final del archivo tras una caída. Los registros
+ * con itemId {@link #MARCA} no son cambios de stock sino la marca de confirmación (delta
+ * {@link #CONFIRMADA}) o de descarte ({@link #DESHECHA}) de su transacción. Los archivos se nombran
+ * {@code stock-tx-<epoca>.journal}; al rotar se abre una época nueva.
+ * El fsync se agrupa: el hilo que sincroniza cubre también los registros escritos por otros hilos
+ * hasta ese momento, de modo que bajo concurrencia muchas escrituras comparten un mismo fsync.
+ */
+class StockJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(StockJournal.class);
+
+    static final int TAMANO_REGISTRO = 24;
+    static final long MARCA = 0L; // Los IDs de ítem empiezan en 1
+    static final int CONFIRMADA = 1;
+    static final int DESHECHA = -1;
+    private static final Pattern NOMBRE_ARCHIVO = Pattern.compile("stock-tx-(\\d+)\\.journal");
+
+    private final Path directorio;
+    private final Object monitorSincronizacion = new Object();
+
+    private FileChannel canal;
+    private long epoca;
+    private long posicion;
+    private long secuenciaEscrita;
+    private volatile long secuenciaSincronizada;
+
+    StockJournal(Path directorio) throws IOException {
+        this.directorio = directorio;
+        Files.createDirectories(directorio);
+    }
+
+    /**
+     * Lista las épocas de los archivos de journal presentes en el directorio, en orden ascendente.
+     */
+    List<Long> epocasExistentes() throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            return archivos.map(p -> NOMBRE_ARCHIVO.matcher(p.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(m -> Long.parseLong(m.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Recorre los registros válidos de una época desde el principio.
+     * La lectura se detiene en el primer registro incompleto o con CRC inválido.
+     */
+    void leer(long epocaArchivo, Consumidor consumidor) throws IOException {
+        Path archivo = archivo(epocaArchivo);
+        if (!Files.exists(archivo)) {
+            return;
+        }
+        try (FileChannel lectura = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(TAMANO_REGISTRO * 4096);
+            long pos = 0;
+            while (true) {
+                buffer.clear();
+                if (lectura.read(buffer, pos) <= 0) {
+                    return;
+                }
+                buffer.flip();
+                if (buffer.remaining() < TAMANO_REGISTRO) {
+                    log.warn("Registro incompleto al final del journal {} en la posición {}; se descarta.", archivo, pos);
+                    return;
+                }
+                while (buffer.remaining() >= TAMANO_REGISTRO) {
+                    long transaccion = buffer.getLong();
+                    long itemId = buffer.getLong();
+                    int delta = buffer.getInt();
+                    if (buffer.getInt() != crc(transaccion, itemId, delta)) {
+                        log.warn("Registro corrupto en el journal {} en la posición {}; se descarta el resto.", archivo, pos);
+                        return;
+                    }
+                    consumidor.registro(pos, transaccion, itemId, delta);
+                    pos += TAMANO_REGISTRO;
+                }
+            }
+        }
+    }
+
+    /**
+     * Abre (o crea) el archivo de una época y lo convierte en el destino de las escrituras.
+     * El archivo anterior, si lo hay, se sincroniza y se cierra.
+     */
+    void abrir(long nuevaEpoca) throws IOException {
+        synchronized (monitorSincronizacion) {
+            synchronized (this) {
+                if (canal != null) {
+                    canal.force(false);
+                    canal.close();
+                    secuenciaSincronizada = secuenciaEscrita;
+                }
+                canal = FileChannel.open(archivo(nuevaEpoca), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                posicion = canal.size();
+                canal.position(posicion);
+                epoca = nuevaEpoca;
+            }
+        }
+    }
+
+    /**
+     * Escribe un registro por cada delta de una transacción y, si se pide, su marca de confirmación
+     * en la misma escritura (sin sincronizar a disco).
+     * @return Secuencia de la escritura, para esperar su durabilidad con {@link #sincronizar(long)}.
+     */
+    synchronized long anexar(long transaccion, Map<Long, Integer> deltasPorItem, boolean confirmar) throws IOException {
+        int registros = deltasPorItem.size() + (confirmar ? 1 : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(registros * TAMANO_REGISTRO);
+        deltasPorItem.forEach((itemId, delta) -> poner(buffer, transaccion, itemId, delta));
+        if (confirmar) {
+            poner(buffer, transaccion, MARCA, CONFIRMADA);
+        }
+        return escribir(buffer, registros);
+    }
+
+    /**
+     * Escribe la marca de confirmación o de descarte de una transacción (sin sincronizar a disco).
+     * @return Secuencia de la escritura.
+     */
+    synchronized long anexarMarca(long transaccion, boolean confirmada) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANO_REGISTRO);
+        poner(buffer, transaccion, MARCA, confirmada ? CONFIRMADA : DESHECHA);
+        return escribir(buffer, 1);
+    }
+
+    private long escribir(ByteBuffer buffer, int registros) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        posicion += registros * (long) TAMANO_REGISTRO;
+        return ++secuenciaEscrita;
+    }
+
+    /**
+     * Espera a que la escritura con la secuencia dada esté en disco, forzando el canal si hace falta.
+     */
+    void sincronizar(long secuencia) throws IOException {
+        if (secuenciaSincronizada >= secuencia) {
+            return;
+        }
+        synchronized (monitorSincronizacion) {
+            if (secuenciaSincronizada >= secuencia) {
+                return; // Otro hilo ya sincronizó este registro en su mismo fsync
+            }
+            long objetivo;
+            FileChannel canalActual;
+            synchronized (this) {
+                objetivo = secuenciaEscrita;
+                canalActual = canal;
+            }
+            canalActual.force(false);
+            secuenciaSincronizada = objetivo;
+        }
+    }
+
+    synchronized long epoca() {
+        return epoca;
+    }
+
+    synchronized long posicion() {
+        return posicion;
+    }
+
+    /**
+     * Elimina los archivos de épocas anteriores a la indicada (ya aplicados a la base de datos).
+     */
+    void eliminarAnteriores(long epocaVigente) throws IOException {
+        for (Long epocaArchivo : epocasExistentes()) {
+            if (epocaArchivo < epocaVigente) {
+                Files.deleteIfExists(archivo(epocaArchivo));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (monitorSincronizacion) {
+            synchronized (this) {
+                if (canal != null) {
+                    canal.force(false);
+                    canal.close();
+                    canal = null;
+                }
+            }
+        }
+    }
+
+    private Path archivo(long epocaArchivo) {
+        return directorio.resolve("stock-tx-" + epocaArchivo + ".journal");
+    }
+
+    private static void poner(ByteBuffer buffer, long transaccion, long itemId, int delta) {
+        buffer.putLong(transaccion).putLong(itemId).putInt(delta).putInt(crc(transaccion, itemId, delta));
+    }
+
+    private static int crc(long transaccion, long itemId, int delta) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(20).putLong(transaccion).putLong(itemId).putInt(delta).flip());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Recibe los registros leídos de un archivo de journal.
+     */
+    @FunctionalInterface
+    interface Consumidor {
+        void registro(long posicion, long transaccion, long itemId, int delta);
+    }
+}
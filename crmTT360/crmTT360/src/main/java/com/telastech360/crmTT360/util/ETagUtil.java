@@ -0,0 +1,44 @@
+package com.telastech360.crmTT360.util;
+
+import com.telastech360.crmTT360.exception.InvalidDataException;
+
+/**
+ * Utilidades para exponer la versión (@Version) de una entidad como ETag y leer la versión esperada
+ * de la cabecera If-Match.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * Construye el ETag (fuerte) de una versión.
+     * @param version Versión de la entidad.
+     * @return ETag entre comillas, p. ej. "3".
+     */
+    public static String etag(Long version) {
+        return "\"" + (version != null ? version : 0L) + "\"";
+    }
+
+    /**
+     * Extrae la versión esperada de la cabecera If-Match.
+     * @param ifMatch Valor de la cabecera (puede ser null).
+     * @return La versión, o null si no se indicó cabecera o es "*".
+     * @throws InvalidDataException si el valor no es un ETag de versión válido.
+     */
+    public static Long versionEsperada(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String valor = ifMatch.trim();
+        if (valor.startsWith("W/")) {
+            valor = valor.substring(2);
+        }
+        valor = valor.replace("\"", "");
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new InvalidDataException("Cabecera If-Match inválida: " + ifMatch);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.telastech360.crmTT360.util;
+
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.Set;
+
+/**
+ * Utilidades para construir la paginación y el orden de las búsquedas a partir de los parámetros
+ * de la petición (pagina, tamano y orden "campo,asc|desc").
+ */
+public final class PaginacionUtil {
+
+    public static final int TAMANO_POR_DEFECTO = 20;
+    public static final int TAMANO_MAXIMO = 200;
+
+    private PaginacionUtil() {
+    }
+
+    /**
+     * Construye el Pageable de una búsqueda. Solo se permite ordenar por los campos indicados, que
+     * deben estar respaldados por un índice; el ID se añade siempre como desempate para que el orden
+     * sea estable entre páginas.
+     * @param pagina Número de página, desde 0 (null para la primera).
+     * @param tamano Tamaño de página (null para el valor por defecto).
+     * @param orden Orden pedido como "campo" o "campo,asc|desc" (null para el orden por defecto).
+     * @param ordenPorDefecto Orden cuando no se indica ninguno.
+     * @param camposOrdenables Campos por los que se puede ordenar.
+     * @param campoId Atributo ID de la entidad, para desempatar.
+     * @return Pageable validado.
+     * @throws InvalidDataException si algún parámetro no es válido.
+     */
+    public static Pageable paginacion(Integer pagina, Integer tamano, String orden, Sort ordenPorDefecto,
+                                      Set<String> camposOrdenables, String campoId) {
+        int numero = pagina == null ? 0 : pagina;
+        int filas = tamano == null ? TAMANO_POR_DEFECTO : tamano;
+        if (numero < 0) {
+            throw new InvalidDataException("La página debe ser mayor o igual que 0.");
+        }
+        if (filas < 1 || filas > TAMANO_MAXIMO) {
+            throw new InvalidDataException("El tamaño de página debe estar entre 1 y " + TAMANO_MAXIMO + ".");
+        }
+        Sort sort = ordenPorDefecto;
+        if (orden != null && !orden.isBlank()) {
+            String[] partes = orden.split(",");
+            String campo = partes[0].trim();
+            if (!camposOrdenables.contains(campo) || partes.length > 2) {
+                throw new InvalidDataException("Orden no permitido: '" + orden + "'. Campos ordenables: " + camposOrdenables);
+            }
+            Sort.Direction direccion = partes.length == 2
+                    ? Sort.Direction.fromOptionalString(partes[1].trim()).orElseThrow(
+                            () -> new InvalidDataException("Dirección de orden no válida: '" + partes[1].trim() + "'."))
+                    : Sort.Direction.ASC;
+            sort = Sort.by(direccion, campo);
+        }
+        Sort.Order primero = sort.iterator().next();
+        if (!primero.getProperty().equals(campoId)) {
+            sort = sort.and(Sort.by(primero.getDirection(), campoId));
+        }
+        return PageRequest.of(numero, filas, sort);
+    }
+}
@@ -0,0 +1,141 @@
+package com.telastech360.crmTT360.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rueda de temporización jerárquica (hierarchical timing wheel).
+ * <p>
+ * Cada nivel tiene 64 ranuras; una ranura del nivel L abarca 64^L ticks. Una clave se coloca en el
+ * nivel más bajo cuyo horizonte cubre su vencimiento y, al llegar su ranura, baja de nivel hasta
+ * vencer en el nivel 0. Programar y cancelar son O(1) y avanzar un tick solo toca las ranuras que
+ * vencen o bajan de nivel en ese tick, sin recorrer todas las claves.
+ * <p>
+ * No es segura para uso concurrente: el llamador debe sincronizar el acceso.
+ * @param <K> Tipo de la clave programada.
+ */
+public class RuedaTemporizacion<K> {
+
+    private static final int BITS_POR_NIVEL = 6;
+    private static final int RANURAS = 1 << BITS_POR_NIVEL;
+    private static final int MASCARA = RANURAS - 1;
+
+    private final long tickMs;
+    private final int niveles;
+    private final List<List<Map<K, Long>>> ranuras;
+    private final Map<K, Map<K, Long>> ranuraPorClave = new HashMap<>();
+    private long tickActual;
+
+    /**
+     * Crea una rueda vacía.
+     * @param tickMs Duración de un tick en milisegundos (resolución de la rueda).
+     * @param niveles Número de niveles; el horizonte sin recolocaciones es 64^niveles ticks.
+     * @param ahoraMs Instante inicial en milisegundos.
+     */
+    public RuedaTemporizacion(long tickMs, int niveles, long ahoraMs) {
+        if (tickMs <= 0 || niveles <= 0) {
+            throw new IllegalArgumentException("tickMs y niveles deben ser positivos");
+        }
+        this.tickMs = tickMs;
+        this.niveles = niveles;
+        this.tickActual = ahoraMs / tickMs;
+        this.ranuras = new ArrayList<>(niveles);
+        for (int nivel = 0; nivel < niveles; nivel++) {
+            List<Map<K, Long>> ranurasNivel = new ArrayList<>(RANURAS);
+            for (int i = 0; i < RANURAS; i++) {
+                ranurasNivel.add(new HashMap<>());
+            }
+            ranuras.add(ranurasNivel);
+        }
+    }
+
+    /**
+     * Programa (o reprograma) una clave para que venza en el instante dado. Si el instante ya pasó,
+     * vence en el siguiente tick.
+     * @param clave Clave a programar.
+     * @param instanteMs Instante de vencimiento en milisegundos.
+     */
+    public void programar(K clave, long instanteMs) {
+        cancelar(clave);
+        colocar(clave, Math.max(instanteMs / tickMs, tickActual + 1));
+    }
+
+    /**
+     * Cancela una clave programada.
+     * @param clave Clave a cancelar.
+     * @return true si la clave estaba programada.
+     */
+    public boolean cancelar(K clave) {
+        Map<K, Long> ranura = ranuraPorClave.remove(clave);
+        if (ranura == null) {
+            return false;
+        }
+        ranura.remove(clave);
+        return true;
+    }
+
+    /**
+     * Avanza la rueda hasta el instante dado.
+     * @param ahoraMs Instante actual en milisegundos.
+     * @return Las claves vencidas, en orden de vencimiento.
+     */
+    public List<K> avanzar(long ahoraMs) {
+        long objetivo = ahoraMs / tickMs;
+        List<K> vencidas = new ArrayList<>();
+        if (ranuraPorClave.isEmpty()) {
+            tickActual = Math.max(tickActual, objetivo);
+            return vencidas;
+        }
+        while (tickActual < objetivo) {
+            tickActual++;
+            // Bajar de nivel las ranuras que empiezan en este tick, del nivel más alto al más bajo
+            for (int nivel = niveles - 1; nivel > 0; nivel--) {
+                int desplazamiento = BITS_POR_NIVEL * nivel;
+                if ((tickActual & ((1L << desplazamiento) - 1)) == 0) {
+                    recolocar(ranuras.get(nivel).get((int) ((tickActual >>> desplazamiento) & MASCARA)), vencidas);
+                }
+            }
+            recolocar(ranuras.get(0).get((int) (tickActual & MASCARA)), vencidas);
+        }
+        return vencidas;
+    }
+
+    /**
+     * @return Número de claves programadas.
+     */
+    public int tamano() {
+        return ranuraPorClave.size();
+    }
+
+    private void recolocar(Map<K, Long> ranura, List<K> vencidas) {
+        if (ranura.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<K, Long>> entradas = new ArrayList<>(ranura.entrySet());
+        ranura.clear();
+        entradas.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<K, Long> entrada : entradas) {
+            ranuraPorClave.remove(entrada.getKey());
+            if (entrada.getValue() <= tickActual) {
+                vencidas.add(entrada.getKey());
+            } else {
+                colocar(entrada.getKey(), entrada.getValue());
+            }
+        }
+    }
+
+    private void colocar(K clave, long tickVencimiento) {
+        long distancia = tickVencimiento - tickActual;
+        int nivel = 0;
+        while (nivel < niveles - 1 && distancia >= (1L << (BITS_POR_NIVEL * (nivel + 1)))) {
+            nivel++;
+        }
+        // Más allá del horizonte queda en el nivel superior y se recoloca en cada vuelta
+        int indice = (int) ((tickVencimiento >>> (BITS_POR_NIVEL * nivel)) & MASCARA);
+        Map<K, Long> ranura = ranuras.get(nivel).get(indice);
+        ranura.put(clave, tickVencimiento);
+        ranuraPorClave.put(clave, ranura);
+    }
+}
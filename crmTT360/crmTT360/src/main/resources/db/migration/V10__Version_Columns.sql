@@ -0,0 +1,10 @@
+-- Flyway Migration Script: V10__Version_Columns.sql
+-- Description: Columnas de versión para el control de concurrencia optimista (@Version) de item,
+-- pedido, factura, bodega y cliente_interno. La versión se expone a los clientes como ETag y se
+-- valida con If-Match en los PUT.
+
+ALTER TABLE item ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE pedido ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE factura ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE bodega ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE cliente_interno ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,13 @@
+-- Flyway Migration Script: V11__Ajuste_Stock.sql
+-- Description: Registro de los ajustes de stock aplicados por lotes (recepciones, conteos cíclicos).
+-- Cada fila guarda un ajuste aplicado con su motivo; el stock del ítem ya refleja la suma.
+
+CREATE TABLE ajuste_stock (
+    ajuste_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    item_id BIGINT NOT NULL,
+    cantidad INT NOT NULL,
+    motivo VARCHAR(255),
+    fecha_ajuste TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_ajuste_stock_item_fecha (item_id, fecha_ajuste),
+    FOREIGN KEY (item_id) REFERENCES item(item_id) ON DELETE CASCADE
+);
@@ -0,0 +1,16 @@
+-- Flyway Migration Script: V12__Clave_Idempotencia.sql
+-- Description: Claves de idempotencia (cabecera Idempotency-Key) de las operaciones de creación.
+-- Cada fila guarda la huella de la solicitud original y, una vez completada, su respuesta, para
+-- devolverla a los reintentos del cliente. Las filas caducan y se purgan periódicamente.
+
+CREATE TABLE clave_idempotencia (
+    operacion VARCHAR(50) NOT NULL,
+    clave VARCHAR(100) NOT NULL,
+    huella CHAR(64) NOT NULL,
+    estado VARCHAR(20) NOT NULL,
+    respuesta LONGTEXT,
+    fecha_creacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    fecha_expiracion TIMESTAMP NOT NULL,
+    PRIMARY KEY (operacion, clave),
+    INDEX idx_clave_idempotencia_expiracion (fecha_expiracion)
+);
@@ -0,0 +1,20 @@
+-- Flyway Migration Script: V13__Transicion_Estado_Pedido.sql
+-- Description: Máquina de estados de los pedidos para los cambios de estado por lotes.
+-- Cada fila es una transición permitida entre valores de estado (columna estado.valor, en
+-- mayúsculas); restaura_stock indica que la transición devuelve al inventario las cantidades
+-- de los detalles del pedido (p. ej. una cancelación).
+
+CREATE TABLE transicion_estado_pedido (
+    estado_origen VARCHAR(50) NOT NULL,
+    estado_destino VARCHAR(50) NOT NULL,
+    restaura_stock BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (estado_origen, estado_destino),
+    INDEX idx_transicion_estado_destino (estado_destino)
+);
+
+INSERT INTO transicion_estado_pedido (estado_origen, estado_destino, restaura_stock) VALUES
+    ('PENDIENTE', 'EN_PROCESO', FALSE),
+    ('PENDIENTE', 'COMPLETADO', FALSE),
+    ('PENDIENTE', 'CANCELADO', TRUE),
+    ('EN_PROCESO', 'COMPLETADO', FALSE),
+    ('EN_PROCESO', 'CANCELADO', TRUE);
@@ -0,0 +1,12 @@
+-- Flyway Migration Script: V14__Pedido_Total.sql
+-- Description: Total persistido de cada pedido (suma de cantidad * precio_unitario de sus detalles).
+-- Se fija al crear el pedido y se ajusta con UPDATE atómicos al añadir, modificar o eliminar
+-- detalles, de modo que consultar el total no requiere cargar ni sumar los detalles.
+
+ALTER TABLE pedido ADD COLUMN total DECIMAL(14,4) NOT NULL DEFAULT 0;
+
+UPDATE pedido p
+JOIN (SELECT pedido_id, SUM(cantidad * precio_unitario) AS total
+      FROM pedido_detalle
+      GROUP BY pedido_id) d ON d.pedido_id = p.pedido_id
+SET p.total = d.total;
@@ -0,0 +1,5 @@
+-- Flyway Migration Script: V15__Pedido_Fecha_Index.sql
+-- Description: Índice sobre (fecha_pedido, pedido_id) para el listado de pedidos paginado por
+-- cursor: cada página es un recorrido del índice desde la posición del cursor, sin ordenar la tabla.
+
+CREATE INDEX idx_pedido_fecha_pedido_id ON pedido (fecha_pedido, pedido_id);
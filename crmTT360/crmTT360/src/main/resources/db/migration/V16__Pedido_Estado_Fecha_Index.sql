@@ -0,0 +1,5 @@
+-- Flyway Migration Script: V16__Pedido_Estado_Fecha_Index.sql
+-- Description: Índice compuesto (estado_id, fecha_pedido) para la carga inicial de la cola de SLA
+-- de pedidos pendientes: la consulta por estado y fecha se resuelve con un rango del índice.
+
+CREATE INDEX idx_pedido_estado_fecha ON pedido (estado_id, fecha_pedido);
@@ -0,0 +1,56 @@
+-- Flyway Migration Script: V17__Archivo_Pedidos.sql
+-- Description: Tablas de archivo para los pedidos COMPLETADO y CANCELADO antiguos, con sus detalles y
+-- facturas, y la vista pedido_historico (tablas activas + archivo) para las consultas que piden
+-- expresamente el histórico. El archivador mueve los pedidos por lotes; las tablas activas conservan
+-- solo los pedidos recientes o abiertos.
+--
+-- Particionado RANGE sobre fecha_pedido: se descarta en la tabla pedido. MySQL no admite claves
+-- foráneas en tablas particionadas (ni que las referencien), y pedido es referenciada por
+-- pedido_detalle y factura; además la clave primaria tendría que incluir fecha_pedido. Se particiona
+-- en cambio pedido_archivo, que no tiene claves foráneas: las consultas del histórico por rango de
+-- fechas descartan particiones y los años que dejen de conservarse se eliminan con DROP PARTITION.
+-- Con TIMESTAMP la única función de particionado admitida es UNIX_TIMESTAMP. Los años nuevos se
+-- añaden dividiendo p_futuro con REORGANIZE PARTITION en una migración posterior.
+
+CREATE TABLE pedido_archivo (
+    pedido_id BIGINT NOT NULL,
+    fecha_pedido TIMESTAMP NOT NULL,
+    fecha_fin TIMESTAMP NULL,
+    cliente_id BIGINT,
+    estado_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    total DECIMAL(14, 4) NOT NULL,
+    fecha_archivo TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (pedido_id, fecha_pedido),
+    INDEX idx_pedido_archivo_cliente_fecha (cliente_id, fecha_pedido)
+)
+PARTITION BY RANGE (UNIX_TIMESTAMP(fecha_pedido)) (
+    PARTITION p_hasta_2024 VALUES LESS THAN (UNIX_TIMESTAMP('2025-01-01 00:00:00')),
+    PARTITION p_2025 VALUES LESS THAN (UNIX_TIMESTAMP('2026-01-01 00:00:00')),
+    PARTITION p_2026 VALUES LESS THAN (UNIX_TIMESTAMP('2027-01-01 00:00:00')),
+    PARTITION p_futuro VALUES LESS THAN MAXVALUE
+);
+
+CREATE TABLE pedido_detalle_archivo (
+    pedido_id BIGINT NOT NULL,
+    item_id BIGINT NOT NULL,
+    cantidad INT NOT NULL,
+    precio_unitario DECIMAL(12, 4) NOT NULL,
+    PRIMARY KEY (pedido_id, item_id)
+);
+
+CREATE TABLE factura_archivo (
+    factura_id BIGINT NOT NULL PRIMARY KEY,
+    pedido_id BIGINT NOT NULL,
+    tipo_movimiento ENUM('VENTA', 'COMPRA') NOT NULL,
+    total DECIMAL(12, 2) NOT NULL,
+    estado_pago BOOLEAN NOT NULL,
+    fecha_creacion TIMESTAMP NOT NULL,
+    version BIGINT NOT NULL,
+    INDEX idx_factura_archivo_pedido (pedido_id)
+);
+
+CREATE VIEW pedido_historico AS
+    SELECT pedido_id, fecha_pedido, fecha_fin, cliente_id, estado_id, total, FALSE AS archivado FROM pedido
+    UNION ALL
+    SELECT pedido_id, fecha_pedido, fecha_fin, cliente_id, estado_id, total, TRUE AS archivado FROM pedido_archivo;
@@ -0,0 +1,13 @@
+-- Flyway Migration Script: V18__Busqueda_Avanzada_Indices.sql
+-- Description: Índices para las búsquedas avanzadas (/buscar) de facturas, productos, clientes y bodegas.
+-- Las búsquedas solo emiten los filtros informados y comparan texto por prefijo (LIKE 'x%'), de modo
+-- que cada filtro habitual puede resolverse con un rango de uno de estos índices. El orden por
+-- defecto de cada búsqueda (fecha de creación o nombre) coincide también con un índice.
+-- Ya existían: bodega.nombre y cliente_interno.codigo_interno (UNIQUE), item.nombre y las claves foráneas.
+
+CREATE INDEX idx_cliente_interno_nombre ON cliente_interno (nombre);
+CREATE INDEX idx_producto_tipo_talla ON producto (tipo_prenda, talla);
+CREATE INDEX idx_producto_color ON producto (color);
+CREATE INDEX idx_factura_tipo_total ON factura (tipo_movimiento, total);
+CREATE INDEX idx_factura_fecha_creacion ON factura (fecha_creacion);
+CREATE INDEX idx_bodega_tipo ON bodega (tipo_bodega);
@@ -0,0 +1,20 @@
+-- Flyway Migration Script: V19__Facturacion_Masiva.sql
+-- Description: Registro de las ejecuciones de la facturación masiva de pedidos completados.
+-- Cada lote confirma sus facturas y el avance (último pedido procesado y contadores) en la misma
+-- transacción, de modo que tras una caída la ejecución se reanuda desde el último lote confirmado.
+-- La búsqueda de pedidos sin factura recorre pedido por (estado_id, pedido_id) con el índice de la
+-- clave foránea de estado y comprueba la ausencia de factura con el índice de factura.pedido_id.
+
+CREATE TABLE facturacion_masiva (
+    ejecucion_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    estado VARCHAR(20) NOT NULL,
+    ultimo_pedido_id BIGINT NOT NULL DEFAULT 0,
+    pedidos_facturados INT NOT NULL DEFAULT 0,
+    pedidos_omitidos INT NOT NULL DEFAULT 0,
+    total_facturado DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    fecha_inicio TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    fecha_actualizacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    fecha_fin TIMESTAMP NULL,
+    mensaje VARCHAR(500),
+    INDEX idx_facturacion_masiva_estado (estado)
+);
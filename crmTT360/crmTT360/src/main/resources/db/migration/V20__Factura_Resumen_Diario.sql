@@ -0,0 +1,87 @@
+-- Flyway Migration Script: V20__Factura_Resumen_Diario.sql
+-- Description: Tabla rollup de la facturación diaria por tipo de movimiento.
+-- Guarda el número de facturas, el total y el total pagado de cada día (DATE(fecha_creacion)), para
+-- que el informe de total facturado por día lea una fila por día y tipo en lugar de agrupar todas las
+-- facturas del rango. Todas las facturas del día comparten clave (día, tipo), así que cada clave se
+-- reparte en 16 ranuras (factura_id % 16): dos facturas con IDs consecutivos escriben en filas distintas
+-- y las altas concurrentes del mismo día no esperan todas por el bloqueo de una única fila. Los triggers
+-- mantienen el rollup en la misma transacción que el cambio, cualquiera que sea su origen (JPA, UPDATE de
+-- estado de pago o lotes JDBC), y el informe lee la suma de las ranuras de cada clave.
+-- Las facturas archivadas siguen contando: al archivar, el alta en factura_archivo suma lo que el
+-- borrado de factura resta. El job de conciliación compara los últimos días con un recálculo.
+
+CREATE TABLE factura_resumen_diario (
+    dia DATE NOT NULL,
+    tipo_movimiento ENUM('VENTA', 'COMPRA') NOT NULL,
+    ranura INT NOT NULL,
+    num_facturas BIGINT NOT NULL DEFAULT 0,
+    total DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    total_pagado DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, tipo_movimiento, ranura)
+);
+
+-- Para el recálculo acotado por fecha de la conciliación
+CREATE INDEX idx_factura_archivo_fecha_creacion ON factura_archivo (fecha_creacion);
+
+INSERT INTO factura_resumen_diario (dia, tipo_movimiento, ranura, num_facturas, total, total_pagado)
+SELECT DATE(f.fecha_creacion), f.tipo_movimiento, 0, COUNT(*), SUM(f.total),
+       SUM(CASE WHEN f.estado_pago THEN f.total ELSE 0 END)
+FROM (SELECT fecha_creacion, tipo_movimiento, total, estado_pago FROM factura
+      UNION ALL
+      SELECT fecha_creacion, tipo_movimiento, total, estado_pago FROM factura_archivo) f
+GROUP BY DATE(f.fecha_creacion), f.tipo_movimiento;
+
+DELIMITER $$
+
+CREATE TRIGGER trg_factura_resumen_ai AFTER INSERT ON factura FOR EACH ROW
+BEGIN
+    INSERT INTO factura_resumen_diario (dia, tipo_movimiento, ranura, num_facturas, total, total_pagado)
+    VALUES (DATE(NEW.fecha_creacion), NEW.tipo_movimiento, NEW.factura_id % 16, 1, NEW.total,
+            IF(NEW.estado_pago, NEW.total, 0))
+    ON DUPLICATE KEY UPDATE num_facturas = num_facturas + 1,
+                            total = total + NEW.total,
+                            total_pagado = total_pagado + IF(NEW.estado_pago, NEW.total, 0);
+END$$
+
+CREATE TRIGGER trg_factura_resumen_au AFTER UPDATE ON factura FOR EACH ROW
+BEGIN
+    IF DATE(NEW.fecha_creacion) <> DATE(OLD.fecha_creacion) OR NEW.tipo_movimiento <> OLD.tipo_movimiento
+            OR NEW.total <> OLD.total OR NEW.estado_pago <> OLD.estado_pago THEN
+        -- Se retira la aportación anterior y se suma la nueva (pueden caer en días o tipos distintos)
+        INSERT INTO factura_resumen_diario (dia, tipo_movimiento, ranura, num_facturas, total, total_pagado)
+        VALUES (DATE(OLD.fecha_creacion), OLD.tipo_movimiento, OLD.factura_id % 16, -1, -OLD.total,
+                -IF(OLD.estado_pago, OLD.total, 0))
+        ON DUPLICATE KEY UPDATE num_facturas = num_facturas - 1,
+                                total = total - OLD.total,
+                                total_pagado = total_pagado - IF(OLD.estado_pago, OLD.total, 0);
+        INSERT INTO factura_resumen_diario (dia, tipo_movimiento, ranura, num_facturas, total, total_pagado)
+        VALUES (DATE(NEW.fecha_creacion), NEW.tipo_movimiento, NEW.factura_id % 16, 1, NEW.total,
+                IF(NEW.estado_pago, NEW.total, 0))
+        ON DUPLICATE KEY UPDATE num_facturas = num_facturas + 1,
+                                total = total + NEW.total,
+                                total_pagado = total_pagado + IF(NEW.estado_pago, NEW.total, 0);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_factura_resumen_ad AFTER DELETE ON factura FOR EACH ROW
+BEGIN
+    INSERT INTO factura_resumen_diario (dia, tipo_movimiento, ranura, num_facturas, total, total_pagado)
+    VALUES (DATE(OLD.fecha_creacion), OLD.tipo_movimiento, OLD.factura_id % 16, -1, -OLD.total,
+            -IF(OLD.estado_pago, OLD.total, 0))
+    ON DUPLICATE KEY UPDATE num_facturas = num_facturas - 1,
+                            total = total - OLD.total,
+                            total_pagado = total_pagado - IF(OLD.estado_pago, OLD.total, 0);
+END$$
+
+-- Compensa el borrado de factura al archivar: la factura archivada sigue contando en su día
+CREATE TRIGGER trg_factura_archivo_resumen_ai AFTER INSERT ON factura_archivo FOR EACH ROW
+BEGIN
+    INSERT INTO factura_resumen_diario (dia, tipo_movimiento, ranura, num_facturas, total, total_pagado)
+    VALUES (DATE(NEW.fecha_creacion), NEW.tipo_movimiento, NEW.factura_id % 16, 1, NEW.total,
+            IF(NEW.estado_pago, NEW.total, 0))
+    ON DUPLICATE KEY UPDATE num_facturas = num_facturas + 1,
+                            total = total + NEW.total,
+                            total_pagado = total_pagado + IF(NEW.estado_pago, NEW.total, 0);
+END$$
+
+DELIMITER ;
@@ -0,0 +1,8 @@
+-- Flyway Migration Script: V21__Factura_Antiguedad_Saldos.sql
+-- Description: Índice para el informe de antigüedad de saldos pendientes de cobro.
+-- El informe lee solo las facturas con estado_pago = FALSE; con estado_pago como primera columna
+-- el recorrido se limita a las pendientes en lugar de leer toda la tabla, y fecha_creacion (la
+-- que determina el tramo de antigüedad) queda en el propio índice. También lo aprovecha la
+-- consulta de facturas pendientes de pago.
+
+CREATE INDEX idx_factura_estado_pago_fecha ON factura (estado_pago, fecha_creacion);
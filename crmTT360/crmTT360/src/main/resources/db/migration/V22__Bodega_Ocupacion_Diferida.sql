@@ -0,0 +1,86 @@
+-- Flyway Migration Script: V22__Bodega_Ocupacion_Diferida.sql
+-- Description: Los triggers de ocupación dejan de actualizar bodega_ocupacion dentro de la transacción
+-- del cambio de stock. Con las ranuras item_id % 16, dos transacciones sobre ítems distintos de una misma
+-- bodega podían bloquear las filas de ranura en orden opuesto al de los ítems y provocar deadlocks.
+-- Ahora cada trigger solo inserta su delta en bodega_ocupacion_delta (inserciones sin conflicto entre
+-- sí) y el job de aplicación de BodegaService lo traslada a bodega_ocupacion fuera de esas transacciones.
+-- La ocupación de una bodega es SUM(ocupacion) de sus ranuras más SUM(ocupacion) de sus deltas pendientes.
+
+CREATE TABLE bodega_ocupacion_delta (
+    delta_id BIGINT NOT NULL AUTO_INCREMENT,
+    bodega_id BIGINT NOT NULL,
+    ocupacion BIGINT NOT NULL,
+    PRIMARY KEY (delta_id),
+    INDEX idx_bodega_ocupacion_delta_bodega (bodega_id)
+);
+
+DROP TRIGGER trg_item_ocupacion_ai;
+DROP TRIGGER trg_item_ocupacion_au;
+DROP TRIGGER trg_item_ocupacion_bd;
+DROP TRIGGER trg_shard_ocupacion_ai;
+DROP TRIGGER trg_shard_ocupacion_au;
+DROP TRIGGER trg_shard_ocupacion_ad;
+
+DELIMITER $$
+
+CREATE TRIGGER trg_item_ocupacion_ai AFTER INSERT ON item FOR EACH ROW
+BEGIN
+    IF NEW.stock_disponible <> 0 THEN
+        INSERT INTO bodega_ocupacion_delta (bodega_id, ocupacion) VALUES (NEW.bodega_id, NEW.stock_disponible);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_item_ocupacion_au AFTER UPDATE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    IF NEW.bodega_id <> OLD.bodega_id THEN
+        -- Cambio de bodega: el stock de los shards también se traslada
+        SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = NEW.item_id;
+        INSERT INTO bodega_ocupacion_delta (bodega_id, ocupacion)
+        VALUES (OLD.bodega_id, -(OLD.stock_disponible + stock_shards_item)),
+               (NEW.bodega_id, NEW.stock_disponible + stock_shards_item);
+    ELSEIF NEW.stock_disponible <> OLD.stock_disponible THEN
+        INSERT INTO bodega_ocupacion_delta (bodega_id, ocupacion)
+        VALUES (NEW.bodega_id, NEW.stock_disponible - OLD.stock_disponible);
+    END IF;
+END$$
+
+-- BEFORE DELETE: los shards se borran en cascada sin disparar sus triggers, así que se descuentan aquí
+CREATE TRIGGER trg_item_ocupacion_bd BEFORE DELETE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = OLD.item_id;
+    IF OLD.stock_disponible + stock_shards_item <> 0 THEN
+        INSERT INTO bodega_ocupacion_delta (bodega_id, ocupacion)
+        VALUES (OLD.bodega_id, -(OLD.stock_disponible + stock_shards_item));
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_ocupacion_ai AFTER INSERT ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE bodega BIGINT;
+    IF NEW.stock <> 0 THEN
+        SELECT bodega_id INTO bodega FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO bodega_ocupacion_delta (bodega_id, ocupacion) VALUES (bodega, NEW.stock);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_ocupacion_au AFTER UPDATE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE bodega BIGINT;
+    IF NEW.stock <> OLD.stock THEN
+        SELECT bodega_id INTO bodega FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO bodega_ocupacion_delta (bodega_id, ocupacion) VALUES (bodega, NEW.stock - OLD.stock);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_ocupacion_ad AFTER DELETE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE bodega BIGINT;
+    IF OLD.stock <> 0 THEN
+        SELECT bodega_id INTO bodega FROM item WHERE item_id = OLD.item_id;
+        INSERT INTO bodega_ocupacion_delta (bodega_id, ocupacion) VALUES (bodega, -OLD.stock);
+    END IF;
+END$$
+
+DELIMITER ;
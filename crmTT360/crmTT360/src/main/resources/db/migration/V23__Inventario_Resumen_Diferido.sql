@@ -0,0 +1,107 @@
+-- Flyway Migration Script: V23__Inventario_Resumen_Diferido.sql
+-- Description: Como la ocupación de bodegas (V22), el rollup inventario_resumen deja de actualizarse dentro
+-- de la transacción del cambio de stock: sus ranuras item_id % 16 no siguen el orden en que se bloquean
+-- los ítems y dos actualizaciones de varios ítems podían bloquearse mutuamente. Los triggers solo insertan
+-- su delta en inventario_resumen_delta y el job de aplicación de ItemService lo traslada al rollup.
+-- El resumen de una clave es la suma de sus ranuras más la de sus deltas pendientes.
+
+CREATE TABLE inventario_resumen_delta (
+    delta_id BIGINT NOT NULL AUTO_INCREMENT,
+    tipo_item VARCHAR(20) NOT NULL,
+    categoria_id BIGINT NOT NULL,
+    bodega_id BIGINT NOT NULL,
+    num_items BIGINT NOT NULL,
+    unidades BIGINT NOT NULL,
+    valor DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (delta_id),
+    INDEX idx_inventario_resumen_delta_categoria (categoria_id),
+    INDEX idx_inventario_resumen_delta_bodega (bodega_id)
+);
+
+DROP TRIGGER trg_item_resumen_ai;
+DROP TRIGGER trg_item_resumen_au;
+DROP TRIGGER trg_item_resumen_bd;
+DROP TRIGGER trg_shard_resumen_ai;
+DROP TRIGGER trg_shard_resumen_au;
+DROP TRIGGER trg_shard_resumen_ad;
+
+DELIMITER $$
+
+CREATE TRIGGER trg_item_resumen_ai AFTER INSERT ON item FOR EACH ROW
+BEGIN
+    INSERT INTO inventario_resumen_delta (tipo_item, categoria_id, bodega_id, num_items, unidades, valor)
+    VALUES (NEW.tipo_item, NEW.categoria_id, NEW.bodega_id, 1, NEW.stock_disponible, NEW.precio * NEW.stock_disponible);
+END$$
+
+CREATE TRIGGER trg_item_resumen_au AFTER UPDATE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    IF NEW.tipo_item <> OLD.tipo_item OR NEW.categoria_id <> OLD.categoria_id
+            OR NEW.bodega_id <> OLD.bodega_id OR NEW.precio <> OLD.precio THEN
+        -- Cambio de clave o de precio: se retira la aportación anterior completa y se suma la nueva
+        SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = NEW.item_id;
+        INSERT INTO inventario_resumen_delta (tipo_item, categoria_id, bodega_id, num_items, unidades, valor)
+        VALUES (OLD.tipo_item, OLD.categoria_id, OLD.bodega_id, -1,
+                -(OLD.stock_disponible + stock_shards_item), -(OLD.precio * (OLD.stock_disponible + stock_shards_item))),
+               (NEW.tipo_item, NEW.categoria_id, NEW.bodega_id, 1,
+                NEW.stock_disponible + stock_shards_item, NEW.precio * (NEW.stock_disponible + stock_shards_item));
+    ELSEIF NEW.stock_disponible <> OLD.stock_disponible THEN
+        INSERT INTO inventario_resumen_delta (tipo_item, categoria_id, bodega_id, num_items, unidades, valor)
+        VALUES (NEW.tipo_item, NEW.categoria_id, NEW.bodega_id, 0,
+                NEW.stock_disponible - OLD.stock_disponible, NEW.precio * (NEW.stock_disponible - OLD.stock_disponible));
+    END IF;
+END$$
+
+-- BEFORE DELETE: los shards se borran en cascada sin disparar sus triggers, así que se descuentan aquí
+CREATE TRIGGER trg_item_resumen_bd BEFORE DELETE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = OLD.item_id;
+    INSERT INTO inventario_resumen_delta (tipo_item, categoria_id, bodega_id, num_items, unidades, valor)
+    VALUES (OLD.tipo_item, OLD.categoria_id, OLD.bodega_id, -1,
+            -(OLD.stock_disponible + stock_shards_item), -(OLD.precio * (OLD.stock_disponible + stock_shards_item)));
+END$$
+
+CREATE TRIGGER trg_shard_resumen_ai AFTER INSERT ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE tipo VARCHAR(20);
+    DECLARE categoria BIGINT;
+    DECLARE bodega BIGINT;
+    DECLARE precio_item DECIMAL(10, 2);
+    IF NEW.stock <> 0 THEN
+        SELECT tipo_item, categoria_id, bodega_id, precio INTO tipo, categoria, bodega, precio_item
+        FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO inventario_resumen_delta (tipo_item, categoria_id, bodega_id, num_items, unidades, valor)
+        VALUES (tipo, categoria, bodega, 0, NEW.stock, precio_item * NEW.stock);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_resumen_au AFTER UPDATE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE tipo VARCHAR(20);
+    DECLARE categoria BIGINT;
+    DECLARE bodega BIGINT;
+    DECLARE precio_item DECIMAL(10, 2);
+    IF NEW.stock <> OLD.stock THEN
+        SELECT tipo_item, categoria_id, bodega_id, precio INTO tipo, categoria, bodega, precio_item
+        FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO inventario_resumen_delta (tipo_item, categoria_id, bodega_id, num_items, unidades, valor)
+        VALUES (tipo, categoria, bodega, 0, NEW.stock - OLD.stock, precio_item * (NEW.stock - OLD.stock));
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_resumen_ad AFTER DELETE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE tipo VARCHAR(20);
+    DECLARE categoria BIGINT;
+    DECLARE bodega BIGINT;
+    DECLARE precio_item DECIMAL(10, 2);
+    IF OLD.stock <> 0 THEN
+        SELECT tipo_item, categoria_id, bodega_id, precio INTO tipo, categoria, bodega, precio_item
+        FROM item WHERE item_id = OLD.item_id;
+        INSERT INTO inventario_resumen_delta (tipo_item, categoria_id, bodega_id, num_items, unidades, valor)
+        VALUES (tipo, categoria, bodega, 0, -OLD.stock, precio_item * (-OLD.stock));
+    END IF;
+END$$
+
+DELIMITER ;
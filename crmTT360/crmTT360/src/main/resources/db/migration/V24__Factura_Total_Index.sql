@@ -0,0 +1,8 @@
+-- Flyway Migration Script: V24__Factura_Total_Index.sql
+-- Description: La búsqueda de facturas admite ordenar por total sin filtrar por tipo de movimiento, y
+-- idx_factura_tipo_total (tipo_movimiento, total) solo sirve ese orden cuando el tipo está fijado.
+-- Con este índice ORDER BY total, factura_id LIMIT n lee las primeras entradas en lugar de ordenar la
+-- tabla completa (InnoDB añade la clave primaria al índice secundario), y los rangos de total sin
+-- tipo de movimiento también tienen índice.
+
+CREATE INDEX idx_factura_total ON factura (total);
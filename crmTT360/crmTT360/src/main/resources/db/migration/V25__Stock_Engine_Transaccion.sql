@@ -0,0 +1,10 @@
+-- Flyway Migration Script: V25__Stock_Engine_Transaccion.sql
+-- Description: Transacciones confirmadas del motor de stock en memoria (StockEngine) aún no volcadas.
+-- Cada transacción que reserva stock en el motor inserta aquí su ID dentro de la propia transacción
+-- del pedido, y el volcado que aplica sus deltas a la tabla item borra la fila en la suya.
+-- Si la aplicación cae después de confirmar el pedido pero antes de escribir la marca COMMIT en el
+-- journal, la fila decide al arrancar que sus entradas se reaplican; si no existe, se descartan.
+
+CREATE TABLE stock_engine_transaccion (
+    transaccion_id BIGINT NOT NULL PRIMARY KEY
+);
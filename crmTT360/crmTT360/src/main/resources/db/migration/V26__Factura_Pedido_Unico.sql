@@ -0,0 +1,9 @@
+-- Flyway Migration Script: V26__Factura_Pedido_Unico.sql
+-- Description: Un pedido se factura una sola vez. FacturaService.crearFactura comprueba que el pedido no
+-- tenga factura, pero un alta manual en paralelo con FacturacionMasivaService (o un doble envío) podía
+-- pasar esa comprobación a la vez; la restricción única hace que la segunda inserción falle y el
+-- servicio la devuelve como conflicto (409).
+-- El índice único sustituye al que MySQL creó para la clave foránea de pedido_id.
+-- Si ya hubiera pedidos con varias facturas, deben resolverse antes de aplicar esta migración.
+
+ALTER TABLE factura ADD CONSTRAINT uk_factura_pedido UNIQUE (pedido_id);
@@ -0,0 +1,14 @@
+-- Flyway Migration Script: V4__Item_Stock_Shard.sql
+-- Description: Contadores de stock fragmentados (shards) para ítems con alta concurrencia.
+-- Un ítem con stock_shards > 0 reparte su stock disponible entre N filas de item_stock_shard;
+-- el stock efectivo es item.stock_disponible + SUM(item_stock_shard.stock).
+
+ALTER TABLE item ADD COLUMN stock_shards INT NOT NULL DEFAULT 0;
+
+CREATE TABLE item_stock_shard (
+    item_id BIGINT NOT NULL,
+    shard_no INT NOT NULL,
+    stock INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (item_id, shard_no),
+    FOREIGN KEY (item_id) REFERENCES item(item_id) ON DELETE CASCADE
+);
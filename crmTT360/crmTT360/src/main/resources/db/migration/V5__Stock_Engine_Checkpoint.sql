@@ -0,0 +1,12 @@
+-- Flyway Migration Script: V5__Stock_Engine_Checkpoint.sql
+-- Description: Punto de control del motor de stock en memoria (StockEngine).
+-- Registra hasta qué posición del journal de stock se han aplicado los deltas a la tabla item,
+-- de modo que al reiniciar solo se reaplican las entradas posteriores.
+
+CREATE TABLE stock_engine_checkpoint (
+    checkpoint_id TINYINT NOT NULL PRIMARY KEY,
+    epoca BIGINT NOT NULL,
+    posicion BIGINT NOT NULL
+);
+
+INSERT INTO stock_engine_checkpoint (checkpoint_id, epoca, posicion) VALUES (1, 0, 0);
@@ -0,0 +1,8 @@
+-- Flyway Migration Script: V6__Item_Stock_Bajo.sql
+-- Description: Columna generada e indexada para localizar ítems con stock bajo sin recorrer la tabla item.
+-- stock_bajo se recalcula en cada UPDATE de stock_disponible o stock_minimo. Para los ítems con stock
+-- fragmentado (stock_disponible = 0) es solo un candidato: la consulta suma también item_stock_shard.
+
+ALTER TABLE item
+    ADD COLUMN stock_bajo BOOLEAN AS (stock_disponible < stock_minimo) STORED,
+    ADD INDEX idx_item_stock_bajo (stock_bajo);
@@ -0,0 +1,5 @@
+-- Flyway Migration Script: V7__Item_Fecha_Vencimiento_Index.sql
+-- Description: Índice sobre fecha_vencimiento para la carga inicial del programador de vencimientos
+-- y las búsquedas de ítems por vencer cuando el índice en memoria aún no está disponible.
+
+CREATE INDEX idx_item_fecha_vencimiento ON item (fecha_vencimiento);
@@ -0,0 +1,100 @@
+-- Flyway Migration Script: V8__Bodega_Ocupacion.sql
+-- Description: Contadores materializados de ocupación por bodega.
+-- La ocupación de una bodega es la suma del stock total (stock_disponible + shards) de sus ítems.
+-- Se reparte en 16 ranuras por bodega (ranura = item_id % 16, o (item_id + shard_no) % 16 para los
+-- shards) para que los ajustes concurrentes de ítems distintos no se serialicen sobre una única fila.
+-- Los triggers mantienen los contadores en la misma transacción que el cambio de stock, cualquiera
+-- que sea su origen (JPA, UPDATE condicional, lotes JDBC o el volcado del StockEngine).
+-- La ocupación real de una bodega es SUM(ocupacion) de sus ranuras; el job de conciliación corrige
+-- cualquier deriva.
+
+CREATE TABLE bodega_ocupacion (
+    bodega_id BIGINT NOT NULL,
+    ranura INT NOT NULL,
+    ocupacion BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (bodega_id, ranura),
+    FOREIGN KEY (bodega_id) REFERENCES bodega(bodega_id) ON DELETE CASCADE
+);
+
+INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+SELECT i.bodega_id, 0, SUM(i.stock_disponible) + COALESCE(SUM(s.stock), 0)
+FROM item i
+LEFT JOIN (SELECT item_id, SUM(stock) AS stock FROM item_stock_shard GROUP BY item_id) s ON s.item_id = i.item_id
+GROUP BY i.bodega_id;
+
+DELIMITER $$
+
+CREATE TRIGGER trg_item_ocupacion_ai AFTER INSERT ON item FOR EACH ROW
+BEGIN
+    IF NEW.stock_disponible <> 0 THEN
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (NEW.bodega_id, NEW.item_id % 16, NEW.stock_disponible)
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion + NEW.stock_disponible;
+    END IF;
+END$$
+
+CREATE TRIGGER trg_item_ocupacion_au AFTER UPDATE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    IF NEW.bodega_id <> OLD.bodega_id THEN
+        -- Cambio de bodega: el stock de los shards también se traslada
+        SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = NEW.item_id;
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (OLD.bodega_id, OLD.item_id % 16, -(OLD.stock_disponible + stock_shards_item))
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion - (OLD.stock_disponible + stock_shards_item);
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (NEW.bodega_id, NEW.item_id % 16, NEW.stock_disponible + stock_shards_item)
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion + NEW.stock_disponible + stock_shards_item;
+    ELSEIF NEW.stock_disponible <> OLD.stock_disponible THEN
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (NEW.bodega_id, NEW.item_id % 16, NEW.stock_disponible - OLD.stock_disponible)
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion + (NEW.stock_disponible - OLD.stock_disponible);
+    END IF;
+END$$
+
+-- BEFORE DELETE: los shards se borran en cascada sin disparar sus triggers, así que se descuentan aquí
+CREATE TRIGGER trg_item_ocupacion_bd BEFORE DELETE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = OLD.item_id;
+    IF OLD.stock_disponible + stock_shards_item <> 0 THEN
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (OLD.bodega_id, OLD.item_id % 16, -(OLD.stock_disponible + stock_shards_item))
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion - (OLD.stock_disponible + stock_shards_item);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_ocupacion_ai AFTER INSERT ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE bodega BIGINT;
+    IF NEW.stock <> 0 THEN
+        SELECT bodega_id INTO bodega FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (bodega, (NEW.item_id + NEW.shard_no) % 16, NEW.stock)
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion + NEW.stock;
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_ocupacion_au AFTER UPDATE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE bodega BIGINT;
+    IF NEW.stock <> OLD.stock THEN
+        SELECT bodega_id INTO bodega FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (bodega, (NEW.item_id + NEW.shard_no) % 16, NEW.stock - OLD.stock)
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion + (NEW.stock - OLD.stock);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_ocupacion_ad AFTER DELETE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE bodega BIGINT;
+    IF OLD.stock <> 0 THEN
+        SELECT bodega_id INTO bodega FROM item WHERE item_id = OLD.item_id;
+        INSERT INTO bodega_ocupacion (bodega_id, ranura, ocupacion)
+        VALUES (bodega, (OLD.item_id + OLD.shard_no) % 16, -OLD.stock)
+        ON DUPLICATE KEY UPDATE ocupacion = ocupacion - OLD.stock;
+    END IF;
+END$$
+
+DELIMITER ;
@@ -0,0 +1,131 @@
+-- Flyway Migration Script: V9__Inventario_Resumen.sql
+-- Description: Tabla rollup del resumen de inventario por tipo de ítem, categoría y bodega.
+-- Guarda el número de ítems, las unidades (stock_disponible + shards) y el valor (precio * unidades).
+-- Como en bodega_ocupacion, cada clave se reparte en 16 ranuras (item_id % 16, o (item_id + shard_no) % 16
+-- para los shards) para no serializar los ajustes de stock concurrentes sobre una única fila, y los
+-- triggers la mantienen en la misma transacción que el cambio. El resumen de una clave es la suma de
+-- sus ranuras; el job de conciliación la compara con un recálculo completo y corrige la deriva.
+
+CREATE TABLE inventario_resumen (
+    tipo_item VARCHAR(20) NOT NULL,
+    categoria_id BIGINT NOT NULL,
+    bodega_id BIGINT NOT NULL,
+    ranura INT NOT NULL,
+    num_items BIGINT NOT NULL DEFAULT 0,
+    unidades BIGINT NOT NULL DEFAULT 0,
+    valor DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (tipo_item, categoria_id, bodega_id, ranura),
+    INDEX idx_inventario_resumen_categoria (categoria_id),
+    INDEX idx_inventario_resumen_bodega (bodega_id)
+);
+
+INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+SELECT i.tipo_item, i.categoria_id, i.bodega_id, 0, COUNT(*),
+       SUM(i.stock_disponible + COALESCE(s.stock, 0)),
+       SUM(i.precio * (i.stock_disponible + COALESCE(s.stock, 0)))
+FROM item i
+LEFT JOIN (SELECT item_id, SUM(stock) AS stock FROM item_stock_shard GROUP BY item_id) s ON s.item_id = i.item_id
+GROUP BY i.tipo_item, i.categoria_id, i.bodega_id;
+
+DELIMITER $$
+
+CREATE TRIGGER trg_item_resumen_ai AFTER INSERT ON item FOR EACH ROW
+BEGIN
+    INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+    VALUES (NEW.tipo_item, NEW.categoria_id, NEW.bodega_id, NEW.item_id % 16, 1,
+            NEW.stock_disponible, NEW.precio * NEW.stock_disponible)
+    ON DUPLICATE KEY UPDATE num_items = num_items + 1,
+                            unidades = unidades + NEW.stock_disponible,
+                            valor = valor + NEW.precio * NEW.stock_disponible;
+END$$
+
+CREATE TRIGGER trg_item_resumen_au AFTER UPDATE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    IF NEW.tipo_item <> OLD.tipo_item OR NEW.categoria_id <> OLD.categoria_id
+            OR NEW.bodega_id <> OLD.bodega_id OR NEW.precio <> OLD.precio THEN
+        -- Cambio de clave o de precio: se retira la aportación anterior completa y se suma la nueva
+        SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = NEW.item_id;
+        INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+        VALUES (OLD.tipo_item, OLD.categoria_id, OLD.bodega_id, OLD.item_id % 16, -1,
+                -(OLD.stock_disponible + stock_shards_item), -(OLD.precio * (OLD.stock_disponible + stock_shards_item)))
+        ON DUPLICATE KEY UPDATE num_items = num_items - 1,
+                                unidades = unidades - (OLD.stock_disponible + stock_shards_item),
+                                valor = valor - OLD.precio * (OLD.stock_disponible + stock_shards_item);
+        INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+        VALUES (NEW.tipo_item, NEW.categoria_id, NEW.bodega_id, NEW.item_id % 16, 1,
+                NEW.stock_disponible + stock_shards_item, NEW.precio * (NEW.stock_disponible + stock_shards_item))
+        ON DUPLICATE KEY UPDATE num_items = num_items + 1,
+                                unidades = unidades + NEW.stock_disponible + stock_shards_item,
+                                valor = valor + NEW.precio * (NEW.stock_disponible + stock_shards_item);
+    ELSEIF NEW.stock_disponible <> OLD.stock_disponible THEN
+        INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+        VALUES (NEW.tipo_item, NEW.categoria_id, NEW.bodega_id, NEW.item_id % 16, 0,
+                NEW.stock_disponible - OLD.stock_disponible, NEW.precio * (NEW.stock_disponible - OLD.stock_disponible))
+        ON DUPLICATE KEY UPDATE unidades = unidades + (NEW.stock_disponible - OLD.stock_disponible),
+                                valor = valor + NEW.precio * (NEW.stock_disponible - OLD.stock_disponible);
+    END IF;
+END$$
+
+-- BEFORE DELETE: los shards se borran en cascada sin disparar sus triggers, así que se descuentan aquí
+CREATE TRIGGER trg_item_resumen_bd BEFORE DELETE ON item FOR EACH ROW
+BEGIN
+    DECLARE stock_shards_item BIGINT DEFAULT 0;
+    SELECT COALESCE(SUM(stock), 0) INTO stock_shards_item FROM item_stock_shard WHERE item_id = OLD.item_id;
+    INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+    VALUES (OLD.tipo_item, OLD.categoria_id, OLD.bodega_id, OLD.item_id % 16, -1,
+            -(OLD.stock_disponible + stock_shards_item), -(OLD.precio * (OLD.stock_disponible + stock_shards_item)))
+    ON DUPLICATE KEY UPDATE num_items = num_items - 1,
+                            unidades = unidades - (OLD.stock_disponible + stock_shards_item),
+                            valor = valor - OLD.precio * (OLD.stock_disponible + stock_shards_item);
+END$$
+
+CREATE TRIGGER trg_shard_resumen_ai AFTER INSERT ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE tipo VARCHAR(20);
+    DECLARE categoria BIGINT;
+    DECLARE bodega BIGINT;
+    DECLARE precio_item DECIMAL(10, 2);
+    IF NEW.stock <> 0 THEN
+        SELECT tipo_item, categoria_id, bodega_id, precio INTO tipo, categoria, bodega, precio_item
+        FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+        VALUES (tipo, categoria, bodega, (NEW.item_id + NEW.shard_no) % 16, 0, NEW.stock, precio_item * NEW.stock)
+        ON DUPLICATE KEY UPDATE unidades = unidades + NEW.stock,
+                                valor = valor + precio_item * NEW.stock;
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_resumen_au AFTER UPDATE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE tipo VARCHAR(20);
+    DECLARE categoria BIGINT;
+    DECLARE bodega BIGINT;
+    DECLARE precio_item DECIMAL(10, 2);
+    IF NEW.stock <> OLD.stock THEN
+        SELECT tipo_item, categoria_id, bodega_id, precio INTO tipo, categoria, bodega, precio_item
+        FROM item WHERE item_id = NEW.item_id;
+        INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+        VALUES (tipo, categoria, bodega, (NEW.item_id + NEW.shard_no) % 16, 0, (NEW.stock - OLD.stock), precio_item * (NEW.stock - OLD.stock))
+        ON DUPLICATE KEY UPDATE unidades = unidades + (NEW.stock - OLD.stock),
+                                valor = valor + precio_item * (NEW.stock - OLD.stock);
+    END IF;
+END$$
+
+CREATE TRIGGER trg_shard_resumen_ad AFTER DELETE ON item_stock_shard FOR EACH ROW
+BEGIN
+    DECLARE tipo VARCHAR(20);
+    DECLARE categoria BIGINT;
+    DECLARE bodega BIGINT;
+    DECLARE precio_item DECIMAL(10, 2);
+    IF OLD.stock <> 0 THEN
+        SELECT tipo_item, categoria_id, bodega_id, precio INTO tipo, categoria, bodega, precio_item
+        FROM item WHERE item_id = OLD.item_id;
+        INSERT INTO inventario_resumen (tipo_item, categoria_id, bodega_id, ranura, num_items, unidades, valor)
+        VALUES (tipo, categoria, bodega, (OLD.item_id + OLD.shard_no) % 16, 0, (-OLD.stock), precio_item * (-OLD.stock))
+        ON DUPLICATE KEY UPDATE unidades = unidades + (-OLD.stock),
+                                valor = valor + precio_item * (-OLD.stock);
+    END IF;
+END$$
+
+DELIMITER ;
@@ -0,0 +1,145 @@
+package com.telastech360.crmTT360.repository;
+
+import com.telastech360.crmTT360.entity.Bodega;
+import com.telastech360.crmTT360.entity.ClienteInterno;
+import com.telastech360.crmTT360.entity.Factura;
+import com.telastech360.crmTT360.entity.Producto;
+import com.telastech360.crmTT360.service.BodegaService;
+import com.telastech360.crmTT360.service.ClienteInternoService;
+import com.telastech360.crmTT360.service.FacturaService;
+import com.telastech360.crmTT360.service.PedidoService;
+import com.telastech360.crmTT360.service.ProductoService;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comprueba con EXPLAIN que las búsquedas avanzadas (/buscar) se resuelven con el índice previsto.
+ * Cada caso ejecuta la búsqueda real del servicio, captura con un StatementInspector de Hibernate la
+ * consulta que generan EspecificacionBusqueda y PaginacionUtil, y la explica con los mismos valores.
+ * Se comprueba el índice elegido (columna key) de la tabla filtrada, no solo los utilizables.
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BusquedaAvanzadaPlanIntegrationTest {
+
+    private static final int TAMANO_PAGINA = 20;
+    private static final CapturaSql CAPTURA = new CapturaSql();
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PedidoService pedidoService;
+    @Autowired private FacturaService facturaService;
+    @Autowired private ProductoService productoService;
+    @Autowired private ClienteInternoService clienteInternoService;
+    @Autowired private BodegaService bodegaService;
+
+    @TestConfiguration
+    static class ConfiguracionCaptura {
+        @Bean
+        HibernatePropertiesCustomizer capturaSql() {
+            return propiedades -> propiedades.put(AvailableSettings.STATEMENT_INSPECTOR, CAPTURA);
+        }
+    }
+
+    /** Guarda las sentencias que Hibernate envía a la base de datos. */
+    static class CapturaSql implements StatementInspector {
+        private final List<String> sentencias = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            sentencias.add(sql);
+            return sql;
+        }
+    }
+
+    // Caso: búsqueda del servicio, valores de sus filtros en el orden del WHERE e índices aceptados
+    Stream<Arguments> busquedas() {
+        return Stream.of(
+                Arguments.of("Pedidos por cliente",
+                        (Runnable) () -> pedidoService.buscarPedidos(1L, null, null, null, null, 0, TAMANO_PAGINA, null),
+                        List.of(1L), Set.of("idx_pedido_cliente_id")),
+                Arguments.of("Pedidos por estado",
+                        (Runnable) () -> pedidoService.buscarPedidos(null, 1L, null, null, null, 0, TAMANO_PAGINA, null),
+                        List.of(1L), Set.of("idx_pedido_estado_fecha", "idx_pedido_estado_id")),
+                Arguments.of("Facturas por tipo y total mínimo",
+                        (Runnable) () -> facturaService.buscarFacturas(null, Factura.TipoMovimiento.VENTA,
+                                new BigDecimal("100"), null, null, 0, TAMANO_PAGINA, null),
+                        List.of("VENTA", new BigDecimal("100")), Set.of("idx_factura_tipo_total", "idx_factura_fecha_creacion")),
+                Arguments.of("Facturas por pedido",
+                        (Runnable) () -> facturaService.buscarFacturas(1L, null, null, null, null, 0, TAMANO_PAGINA, null),
+                        List.of(1L), Set.of("uk_factura_pedido", "pedido_id")),
+                Arguments.of("Facturas ordenadas por total",
+                        (Runnable) () -> facturaService.buscarFacturas(null, null, null, null, null, 0, TAMANO_PAGINA, "total,desc"),
+                        List.of(), Set.of("idx_factura_total")),
+                Arguments.of("Facturas por tipo ordenadas por total",
+                        (Runnable) () -> facturaService.buscarFacturas(null, Factura.TipoMovimiento.VENTA, null, null, null,
+                                0, TAMANO_PAGINA, "total,desc"),
+                        List.of("VENTA"), Set.of("idx_factura_tipo_total")),
+                Arguments.of("Productos por tipo de prenda y talla",
+                        (Runnable) () -> productoService.buscarProductos(Producto.TipoPrenda.CAMISA, Producto.Talla.M,
+                                null, null, null, null, 0, TAMANO_PAGINA, null),
+                        List.of("CAMISA", "M"), Set.of("idx_producto_tipo_talla")),
+                Arguments.of("Productos por prefijo de color",
+                        (Runnable) () -> productoService.buscarProductos(null, null, "Azu", null, null, null,
+                                0, TAMANO_PAGINA, null),
+                        List.of("Azu%"), Set.of("idx_producto_color")),
+                Arguments.of("Clientes por prefijo de nombre",
+                        (Runnable) () -> clienteInternoService.buscarClientes(null, "Dep", null, null, 0, TAMANO_PAGINA, null),
+                        List.of("Dep%"), Set.of("idx_cliente_interno_nombre")),
+                Arguments.of("Clientes por prefijo de código",
+                        (Runnable) () -> clienteInternoService.buscarClientes("CLI", null, null, null, 0, TAMANO_PAGINA, null),
+                        List.of("CLI%"), Set.of("codigo_interno", "idx_cliente_interno_nombre")),
+                Arguments.of("Bodegas por tipo",
+                        (Runnable) () -> bodegaService.buscarBodegas(null, Bodega.TipoBodega.TEMPORAL, null, 0, TAMANO_PAGINA, null),
+                        List.of("TEMPORAL"), Set.of("idx_bodega_tipo", "nombre")),
+                Arguments.of("Bodegas por prefijo de nombre",
+                        (Runnable) () -> bodegaService.buscarBodegas("Bod", null, null, 0, TAMANO_PAGINA, null),
+                        List.of("Bod%"), Set.of("nombre")));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("busquedas")
+    void busquedaAvanzada_UsaIndicePrevisto(String caso, Runnable busqueda, List<Object> valores, Set<String> indices) {
+        // Act: la primera sentencia de la búsqueda es la consulta paginada
+        CAPTURA.sentencias.clear();
+        busqueda.run();
+        assertFalse(CAPTURA.sentencias.isEmpty(), () -> "La búsqueda no ejecutó ninguna consulta: " + caso);
+        String consulta = CAPTURA.sentencias.get(0);
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + consulta,
+                parametros(consulta, valores).toArray());
+
+        // Assert
+        assertFalse(plan.isEmpty());
+        assertTrue(plan.stream().anyMatch(fila -> indices.contains(fila.get("key"))),
+                () -> caso + ": se esperaba uno de " + indices + " en: " + consulta + " -> " + plan);
+    }
+
+    // Los valores de los filtros seguidos del tamaño de página para el LIMIT, tantos como marcadores haya
+    private static List<Object> parametros(String consulta, List<Object> valores) {
+        long marcadores = consulta.chars().filter(c -> c == '?').count();
+        List<Object> parametros = new ArrayList<>(valores);
+        while (parametros.size() < marcadores) {
+            parametros.add(TAMANO_PAGINA);
+        }
+        return parametros.subList(0, (int) marcadores);
+    }
+}
@@ -0,0 +1,119 @@
+package com.telastech360.crmTT360.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telastech360.crmTT360.dto.AjusteStockDTO;
+import com.telastech360.crmTT360.dto.AjusteStockLoteResultadoDTO;
+import com.telastech360.crmTT360.dto.AjusteStockResultadoDTO;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.AjusteStockRepository;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AjusteStockLoteServiceTest {
+
+    @Mock private ItemRepository itemRepository;
+    @Mock private AjusteStockRepository ajusteStockRepository;
+    @Mock private ItemStockShardService itemStockShardService;
+    @Mock private StockEngine stockEngine;
+    @Mock private AlertaStockBajoService alertaStockBajoService;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private AjusteStockLoteService ajusteStockLoteService;
+
+    @BeforeEach
+    void setUp() {
+        ajusteStockLoteService = new AjusteStockLoteService(itemRepository, ajusteStockRepository, itemStockShardService,
+                stockEngine, alertaStockBajoService, transactionManager, new ObjectMapper(), 2);
+    }
+
+    private AjusteStockLoteResultadoDTO procesar(String json) throws IOException {
+        return ajusteStockLoteService.procesar(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    @DisplayName("Procesar - Filas del mismo ítem se encadenan y se aplica el delta neto")
+    void procesar_MismoItem_EncadenaYAplicaNeto() throws IOException {
+        // Arrange
+        when(itemRepository.bloquearStockParaActualizar(Set.of(1L)))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 5, 0}));
+
+        // Act
+        AjusteStockLoteResultadoDTO informe = procesar("[{\"itemId\":1,\"cantidad\":-4,\"motivo\":\"Conteo\"},{\"itemId\":1,\"cantidad\":-2}]");
+
+        // Assert
+        assertEquals(2, informe.getTotal());
+        assertEquals(1, informe.getAplicados());
+        assertEquals(AjusteStockResultadoDTO.Estado.APLICADO, informe.getResultados().get(0).getEstado());
+        assertEquals(AjusteStockResultadoDTO.Estado.RECHAZADO, informe.getResultados().get(1).getEstado());
+        verify(ajusteStockRepository).aplicarDeltas(Map.of(1L, -4));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<AjusteStockDTO>> registrados = ArgumentCaptor.forClass(List.class);
+        verify(ajusteStockRepository).registrarAjustes(registrados.capture());
+        assertEquals("Conteo", registrados.getValue().get(0).getMotivo());
+        verify(alertaStockBajoService).registrarCambio(Set.of(1L));
+    }
+
+    @Test
+    @DisplayName("Procesar - Filas inválidas e ítems inexistentes se informan sin abortar el tramo")
+    void procesar_FilasInvalidasYNoEncontradas_SeInforman() throws IOException {
+        // Arrange
+        when(itemRepository.bloquearStockParaActualizar(Set.of(99L))).thenReturn(List.of());
+
+        // Act
+        AjusteStockLoteResultadoDTO informe = procesar("[{\"itemId\":\"x\",\"cantidad\":3},{\"itemId\":99,\"cantidad\":3}]");
+
+        // Assert
+        assertEquals(AjusteStockResultadoDTO.Estado.INVALIDO, informe.getResultados().get(0).getEstado());
+        assertEquals(AjusteStockResultadoDTO.Estado.NO_ENCONTRADO, informe.getResultados().get(1).getEstado());
+        assertEquals(0, informe.getAplicados());
+        verify(alertaStockBajoService, never()).registrarCambio(any());
+    }
+
+    @Test
+    @DisplayName("Procesar - Se divide en tramos con una transacción cada uno; un error solo deshace su tramo")
+    void procesar_Tramos_ErrorDeshaceSoloSuTramo() throws IOException {
+        // Arrange
+        when(itemRepository.bloquearStockParaActualizar(any()))
+                .thenReturn(List.of(new Object[]{1L, "Tela", 10, 0}, new Object[]{2L, "Botón", 10, 0}))
+                .thenReturn(List.<Object[]>of(new Object[]{3L, "Hilo", 10, 0}));
+        doNothing().doThrow(new QueryTimeoutException("timeout")).when(ajusteStockRepository).aplicarDeltas(anyMap());
+
+        // Act
+        AjusteStockLoteResultadoDTO informe = procesar("[{\"itemId\":1,\"cantidad\":5},{\"itemId\":2,\"cantidad\":5},{\"itemId\":3,\"cantidad\":5}]");
+
+        // Assert
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager).rollback(any());
+        assertEquals(2, informe.getAplicados());
+        assertEquals(AjusteStockResultadoDTO.Estado.ERROR, informe.getResultados().get(2).getEstado());
+    }
+
+    @Test
+    @DisplayName("Procesar - Cuerpo que no es un array lanza InvalidDataException")
+    void procesar_NoEsArray_LanzaInvalidData() {
+        // Act & Assert
+        assertThrows(InvalidDataException.class, () -> procesar("{\"itemId\":1,\"cantidad\":5}"));
+        verifyNoInteractions(transactionManager);
+    }
+}
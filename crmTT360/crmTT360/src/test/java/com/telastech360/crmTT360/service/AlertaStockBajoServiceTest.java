@@ -0,0 +1,109 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.repository.ItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlertaStockBajoServiceTest {
+
+    @Mock private ItemRepository itemRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private AlertaStockBajoService alertaStockBajoService;
+
+    @BeforeEach
+    void setUp() {
+        alertaStockBajoService = new AlertaStockBajoService(itemRepository, transactionManager, 60_000);
+    }
+
+    @AfterEach
+    void limpiarSincronizacion() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Registrar Cambio - Sin transacción: el ítem que cae bajo el mínimo entra en el conjunto")
+    void registrarCambio_CruceHaciaAbajo_EntraEnConjunto() {
+        // Arrange
+        alertaStockBajoService.suscribir();
+        when(itemRepository.findNivelesDeStock(any())).thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 4, 10}));
+
+        // Act
+        alertaStockBajoService.registrarCambio(List.of(1L));
+
+        // Assert
+        assertEquals(Set.of(1L), alertaStockBajoService.obtenerItemsConStockBajo());
+    }
+
+    @Test
+    @DisplayName("Registrar Cambio - El ítem repuesto sale del conjunto y el eliminado también")
+    void registrarCambio_Reposicion_SaleDelConjunto() {
+        // Arrange
+        when(itemRepository.findNivelesDeStock(any()))
+                .thenReturn(List.of(new Object[]{1L, "Tela", 4, 10}, new Object[]{2L, "Botón", 0, 5}))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 12, 10})); // 2L eliminado
+        alertaStockBajoService.registrarCambio(List.of(1L, 2L));
+
+        // Act
+        alertaStockBajoService.registrarCambio(List.of(1L, 2L));
+
+        // Assert
+        assertTrue(alertaStockBajoService.obtenerItemsConStockBajo().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Registrar Cambio - En transacción: se evalúa una sola vez al confirmar")
+    void registrarCambio_EnTransaccion_EvaluaAlConfirmar() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        when(itemRepository.findNivelesDeStock(any())).thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 4, 10}));
+
+        // Act
+        alertaStockBajoService.registrarCambio(List.of(1L));
+        alertaStockBajoService.registrarCambio(List.of(2L, 1L));
+        verify(itemRepository, never()).findNivelesDeStock(any());
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        // Assert
+        assertEquals(1, sincronizaciones.size());
+        verify(itemRepository).findNivelesDeStock(argThat(ids -> Set.copyOf(ids).equals(Set.of(1L, 2L))));
+        assertEquals(Set.of(1L), alertaStockBajoService.obtenerItemsConStockBajo());
+    }
+
+    @Test
+    @DisplayName("Registrar Cambio - Transacción deshecha: no se evalúa")
+    void registrarCambio_TransaccionDeshecha_NoEvalua() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        alertaStockBajoService.registrarCambio(List.of(1L));
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // Assert
+        verify(itemRepository, never()).findNivelesDeStock(any());
+    }
+}
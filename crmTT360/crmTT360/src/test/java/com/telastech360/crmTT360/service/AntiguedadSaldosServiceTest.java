@@ -0,0 +1,111 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.AntiguedadSaldosDTO;
+import com.telastech360.crmTT360.dto.InformeAntiguedadSaldosDTO;
+import com.telastech360.crmTT360.entity.Factura.TipoMovimiento;
+import com.telastech360.crmTT360.repository.FacturaAntiguedadRepository;
+import com.telastech360.crmTT360.repository.FacturaAntiguedadRepository.ConsumidorFacturaPendiente;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AntiguedadSaldosServiceTest {
+
+    private static final Instant AHORA = Timestamp.valueOf("2024-04-30 12:00:00").toInstant();
+
+    @Mock private FacturaAntiguedadRepository facturaAntiguedadRepository;
+
+    private Instant instante;
+    private AntiguedadSaldosService antiguedadSaldosService;
+
+    @BeforeEach
+    void setUp() {
+        instante = AHORA;
+        Clock reloj = new Clock() {
+            @Override public ZoneId getZone() { return ZoneId.systemDefault(); }
+            @Override public Clock withZone(ZoneId zone) { return this; }
+            @Override public Instant instant() { return instante; }
+        };
+        antiguedadSaldosService = new AntiguedadSaldosService(facturaAntiguedadRepository, 60_000, reloj);
+        doAnswer(invocacion -> {
+            ConsumidorFacturaPendiente consumidor = invocacion.getArgument(0);
+            consumidor.aceptar(1L, "Tienda Centro", TipoMovimiento.VENTA, Timestamp.valueOf("2024-04-30 08:00:00"), new BigDecimal("10.00"));
+            consumidor.aceptar(1L, "Tienda Centro", TipoMovimiento.VENTA, Timestamp.valueOf("2024-03-31 23:00:00"), new BigDecimal("20.00"));
+            consumidor.aceptar(1L, "Tienda Centro", TipoMovimiento.VENTA, Timestamp.valueOf("2024-03-30 09:00:00"), new BigDecimal("30.00"));
+            consumidor.aceptar(1L, "Tienda Centro", TipoMovimiento.VENTA, Timestamp.valueOf("2024-01-31 09:00:00"), new BigDecimal("40.00"));
+            consumidor.aceptar(1L, "Tienda Centro", TipoMovimiento.VENTA, Timestamp.valueOf("2024-01-30 09:00:00"), new BigDecimal("50.00"));
+            consumidor.aceptar(2L, "Taller Norte", TipoMovimiento.COMPRA, Timestamp.valueOf("2024-04-01 09:00:00"), new BigDecimal("5.00"));
+            return null;
+        }).when(facturaAntiguedadRepository).recorrerPendientes(any());
+    }
+
+    @Test
+    @DisplayName("Obtener Informe - Reparte el saldo en tramos por cliente y tipo de movimiento")
+    void obtenerInforme_AgrupaPorTramos() {
+        // Act
+        InformeAntiguedadSaldosDTO informe = antiguedadSaldosService.obtenerInforme(null, null);
+
+        // Assert
+        assertEquals("2024-04-30", informe.getFechaCorte().toString());
+        assertEquals(2, informe.getSaldos().size());
+        AntiguedadSaldosDTO venta = informe.getSaldos().get(0);
+        assertEquals(1L, venta.getClienteId());
+        assertEquals(TipoMovimiento.VENTA, venta.getTipoMovimiento());
+        assertEquals(5, venta.getNumeroFacturas());
+        // 0 y 30 días; 31 días; 90 días; 91 días
+        assertEquals(new BigDecimal("30.00"), venta.getHasta30Dias());
+        assertEquals(new BigDecimal("30.00"), venta.getDe31a60Dias());
+        assertEquals(new BigDecimal("40.00"), venta.getDe61a90Dias());
+        assertEquals(new BigDecimal("50.00"), venta.getMasDe90Dias());
+        assertEquals(new BigDecimal("150.00"), venta.getTotal());
+        AntiguedadSaldosDTO compra = informe.getSaldos().get(1);
+        assertEquals(2L, compra.getClienteId());
+        assertEquals(new BigDecimal("5.00"), compra.getHasta30Dias());
+    }
+
+    @Test
+    @DisplayName("Obtener Informe - Sirve el informe guardado y filtra sin volver a recorrer las facturas")
+    void obtenerInforme_UsaCacheYFiltra() {
+        // Act
+        InformeAntiguedadSaldosDTO completo = antiguedadSaldosService.obtenerInforme(null, null);
+        InformeAntiguedadSaldosDTO compras = antiguedadSaldosService.obtenerInforme(null, TipoMovimiento.COMPRA);
+        InformeAntiguedadSaldosDTO cliente = antiguedadSaldosService.obtenerInforme(1L, null);
+
+        // Assert
+        verify(facturaAntiguedadRepository, times(1)).recorrerPendientes(any());
+        assertEquals(completo.getCalculadoEn(), compras.getCalculadoEn());
+        assertEquals(List.of(2L), compras.getSaldos().stream().map(AntiguedadSaldosDTO::getClienteId).toList());
+        assertEquals(List.of(1L), cliente.getSaldos().stream().map(AntiguedadSaldosDTO::getClienteId).toList());
+    }
+
+    @Test
+    @DisplayName("Obtener Informe - Recalcula cuando caduca la caché")
+    void obtenerInforme_RecalculaAlCaducar() {
+        // Act
+        antiguedadSaldosService.obtenerInforme(null, null);
+        instante = AHORA.plus(Duration.ofSeconds(59));
+        antiguedadSaldosService.obtenerInforme(null, null);
+        instante = AHORA.plus(Duration.ofSeconds(61));
+        InformeAntiguedadSaldosDTO recalculado = antiguedadSaldosService.obtenerInforme(null, null);
+
+        // Assert
+        verify(facturaAntiguedadRepository, times(2)).recorrerPendientes(any());
+        assertEquals(Timestamp.from(instante), recalculado.getCalculadoEn());
+    }
+}
@@ -0,0 +1,97 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoResumenDTO;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.PedidoArchivoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ArchivadorPedidosServiceTest {
+
+    private static final long DIA = 86_400_000L;
+    private static final long AHORA = 1000 * DIA;
+
+    @Mock private PedidoArchivoRepository pedidoArchivoRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private ArchivadorPedidosService archivadorPedidosService;
+
+    @BeforeEach
+    void setUp() {
+        archivadorPedidosService = new ArchivadorPedidosService(pedidoArchivoRepository, transactionManager, 365, 2,
+                Clock.fixed(Instant.ofEpochMilli(AHORA), ZoneOffset.UTC));
+    }
+
+    @Test
+    @DisplayName("Archivar - Procesa lotes hasta que uno viene incompleto, cada uno en su transacción")
+    void archivar_LotesHastaAgotar() {
+        // Arrange
+        Timestamp limite = new Timestamp(AHORA - 365 * DIA);
+        when(pedidoArchivoRepository.archivarLote(limite, 2))
+                .thenReturn(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+
+        // Act
+        int archivados = archivadorPedidosService.archivar();
+
+        // Assert
+        assertEquals(5, archivados);
+        verify(pedidoArchivoRepository, times(3)).archivarLote(limite, 2);
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Archivar - Sin pedidos archivables hace una sola consulta")
+    void archivar_SinPedidos() {
+        // Arrange
+        when(pedidoArchivoRepository.archivarLote(any(), eq(2))).thenReturn(List.of());
+
+        // Act & Assert
+        assertEquals(0, archivadorPedidosService.archivar());
+        verify(pedidoArchivoRepository, times(1)).archivarLote(any(), eq(2));
+    }
+
+    @Test
+    @DisplayName("Histórico - Sin fechas consulta desde el inicio hasta ahora con el límite por defecto")
+    void buscarHistoricoCliente_ValoresPorDefecto() {
+        // Arrange
+        when(pedidoArchivoRepository.buscarHistoricoCliente(7L, new Timestamp(0), new Timestamp(AHORA + 1),
+                ArchivadorPedidosService.LIMITE_HISTORICO_POR_DEFECTO))
+                .thenReturn(List.<Object[]>of(new Object[]{9L, 7L, 3L, "COMPLETADO", new Timestamp(DIA), BigDecimal.TEN}));
+
+        // Act
+        List<PedidoResumenDTO> historico = archivadorPedidosService.buscarHistoricoCliente(7L, null, null, null);
+
+        // Assert
+        assertEquals(1, historico.size());
+        assertEquals(9L, historico.get(0).getPedidoId());
+        assertEquals("COMPLETADO", historico.get(0).getEstado());
+    }
+
+    @Test
+    @DisplayName("Histórico - Rango invertido o límite fuera de rango lanzan InvalidDataException")
+    void buscarHistoricoCliente_ParametrosInvalidos() {
+        Timestamp t = new Timestamp(DIA);
+        assertThrows(InvalidDataException.class, () -> archivadorPedidosService.buscarHistoricoCliente(7L, t, t, null));
+        assertThrows(InvalidDataException.class, () -> archivadorPedidosService.buscarHistoricoCliente(7L, null, null, 0));
+        assertThrows(InvalidDataException.class, () -> archivadorPedidosService.buscarHistoricoCliente(7L, null, null,
+                ArchivadorPedidosService.LIMITE_HISTORICO_MAXIMO + 1));
+        verifyNoInteractions(pedidoArchivoRepository);
+    }
+}
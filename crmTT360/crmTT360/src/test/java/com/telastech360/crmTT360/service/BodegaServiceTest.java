@@ -0,0 +1,164 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.BodegaUtilizacionDTO;
+import com.telastech360.crmTT360.entity.Bodega;
+import com.telastech360.crmTT360.exception.PreconditionFailedException;
+import com.telastech360.crmTT360.repository.BodegaOcupacionRepository;
+import com.telastech360.crmTT360.repository.BodegaRepository;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para las consultas de ocupación de BodegaService.
+ */
+@ExtendWith(MockitoExtension.class)
+class BodegaServiceTest {
+
+    @Mock private BodegaRepository bodegaRepository;
+    @Mock private EstadoRepository estadoRepository;
+    @Mock private UsuarioRepository usuarioRepository;
+    @Mock private ItemRepository itemRepository;
+    @Mock private BodegaOcupacionRepository bodegaOcupacionRepository;
+    @Mock private PoliticaReintentoOptimista politicaReintentoOptimista;
+
+    @InjectMocks
+    private BodegaService bodegaService;
+
+    private Bodega bodegaCentral;
+    private Bodega bodegaNorte;
+
+    @BeforeEach
+    void setUp() {
+        bodegaCentral = new Bodega();
+        bodegaCentral.setBodegaId(1L);
+        bodegaCentral.setNombre("Central");
+        bodegaCentral.setCapacidadMaxima(800);
+
+        bodegaNorte = new Bodega();
+        bodegaNorte.setBodegaId(2L);
+        bodegaNorte.setNombre("Norte");
+        bodegaNorte.setCapacidadMaxima(100);
+    }
+
+    @Test
+    @DisplayName("Obtener Utilización - Calcula capacidad libre y porcentaje desde el contador")
+    void obtenerUtilizacion_DesdeContador() {
+        // Arrange
+        when(bodegaRepository.findById(1L)).thenReturn(Optional.of(bodegaCentral));
+        when(bodegaOcupacionRepository.obtenerOcupacion(1L)).thenReturn(200L);
+
+        // Act
+        BodegaUtilizacionDTO utilizacion = bodegaService.obtenerUtilizacion(1L);
+
+        // Assert
+        assertEquals(200L, utilizacion.getOcupacion());
+        assertEquals(600L, utilizacion.getCapacidadDisponible());
+        assertEquals(new BigDecimal("25.00"), utilizacion.getPorcentajeUtilizacion());
+        verifyNoInteractions(itemRepository);
+    }
+
+    @Test
+    @DisplayName("Listar Utilización - Las bodegas sin contadores tienen ocupación 0")
+    void listarUtilizacion_BodegaSinContador_OcupacionCero() {
+        // Arrange
+        when(bodegaRepository.findAllByOrderByNombreAsc()).thenReturn(List.of(bodegaCentral, bodegaNorte));
+        when(bodegaOcupacionRepository.obtenerOcupaciones()).thenReturn(Map.of(2L, 120L));
+
+        // Act
+        List<BodegaUtilizacionDTO> utilizacion = bodegaService.listarUtilizacion();
+
+        // Assert
+        assertEquals(0L, utilizacion.get(0).getOcupacion());
+        assertEquals(-20L, utilizacion.get(1).getCapacidadDisponible());
+        assertEquals(new BigDecimal("120.00"), utilizacion.get(1).getPorcentajeUtilizacion());
+    }
+
+    @Test
+    @DisplayName("Aplicar Ocupación Pendiente - Traslada un lote de deltas de los triggers")
+    void aplicarOcupacionPendiente_TrasladaLote() {
+        // Arrange
+        when(bodegaOcupacionRepository.aplicarPendientes(BodegaService.LOTE_APLICACION_OCUPACION)).thenReturn(3).thenReturn(0);
+
+        // Act & Assert
+        assertEquals(3, bodegaService.aplicarOcupacionPendiente());
+        assertEquals(0, bodegaService.aplicarOcupacionPendiente());
+        verifyNoInteractions(bodegaRepository, itemRepository);
+    }
+
+    @Test
+    @DisplayName("Conciliar Ocupación - Solo corrige cuando hay deriva")
+    void conciliarOcupacion_CorrigeDeriva() {
+        // Arrange
+        when(bodegaOcupacionRepository.calcularDerivas()).thenReturn(Map.of()).thenReturn(Map.of(1L, -5L));
+
+        // Act & Assert
+        assertEquals(0, bodegaService.conciliarOcupacion());
+        verify(bodegaOcupacionRepository, never()).corregir(anyMap());
+        assertEquals(1, bodegaService.conciliarOcupacion());
+        verify(bodegaOcupacionRepository).corregir(Map.of(1L, -5L));
+    }
+
+    @Test
+    @DisplayName("Buscar Bodegas - Orden pedido más el ID como desempate")
+    @SuppressWarnings("unchecked")
+    void buscarBodegas_OrdenConDesempate() {
+        // Arrange
+        ArgumentCaptor<Pageable> paginacion = ArgumentCaptor.forClass(Pageable.class);
+        when(bodegaRepository.findAll(any(Specification.class), paginacion.capture()))
+                .thenAnswer(inv -> new PageImpl<>(List.of(bodegaCentral), inv.getArgument(1), 1));
+
+        // Act
+        Page<Bodega> pagina = bodegaService.buscarBodegas("Bodega C", null, null, null, null, "nombre,desc");
+
+        // Assert
+        assertEquals(List.of(bodegaCentral), pagina.getContent());
+        assertEquals(Sort.by(Sort.Direction.DESC, "nombre", "bodegaId"), paginacion.getValue().getSort());
+        assertEquals(20, paginacion.getValue().getPageSize());
+    }
+
+    @Test
+    @DisplayName("Actualizar Bodega - If-Match desactualizado con el mismo nombre lanza PreconditionFailedException")
+    @SuppressWarnings("unchecked")
+    void actualizarBodega_VersionDesactualizadaMismoNombre_DebeLanzarExcepcion() {
+        // Arrange
+        bodegaCentral.setVersion(2L);
+        Bodega cambios = new Bodega();
+        cambios.setNombre("central");
+        cambios.setCapacidadMaxima(900);
+        when(politicaReintentoOptimista.ejecutar(anyString(), eq(false), any(Supplier.class)))
+                .thenAnswer(inv -> ((Supplier<?>) inv.getArgument(2)).get());
+        when(bodegaRepository.findById(1L)).thenReturn(Optional.of(bodegaCentral));
+
+        // Act & Assert
+        assertThrows(PreconditionFailedException.class, () -> bodegaService.actualizarBodega(1L, cambios, 1L));
+        assertEquals(800, bodegaCentral.getCapacidadMaxima());
+        verify(bodegaRepository, never()).save(any(Bodega.class));
+    }
+}
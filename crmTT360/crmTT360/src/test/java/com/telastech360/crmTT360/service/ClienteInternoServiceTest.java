@@ -0,0 +1,84 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.entity.ClienteInterno;
+import com.telastech360.crmTT360.exception.PreconditionFailedException;
+import com.telastech360.crmTT360.repository.ClienteInternoRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import com.telastech360.crmTT360.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Pruebas unitarias para la actualización de ClienteInternoService.
+ */
+@ExtendWith(MockitoExtension.class)
+class ClienteInternoServiceTest {
+
+    @Mock private ClienteInternoRepository clienteRepository;
+    @Mock private UsuarioRepository usuarioRepository;
+    @Mock private PedidoRepository pedidoRepository;
+    @Mock private PoliticaReintentoOptimista politicaReintentoOptimista;
+
+    @InjectMocks
+    private ClienteInternoService clienteInternoService;
+
+    private ClienteInterno clienteExistente;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        clienteExistente = new ClienteInterno();
+        clienteExistente.setClienteId(1L);
+        clienteExistente.setCodigoInterno("CLI-001");
+        clienteExistente.setNombre("Tienda Centro");
+        clienteExistente.setVersion(5L);
+        when(politicaReintentoOptimista.ejecutar(anyString(), anyBoolean(), any(Supplier.class)))
+                .thenAnswer(inv -> ((Supplier<?>) inv.getArgument(2)).get());
+        when(clienteRepository.findById(1L)).thenReturn(Optional.of(clienteExistente));
+    }
+
+    @Test
+    @DisplayName("Actualizar Cliente - If-Match desactualizado con el mismo código lanza PreconditionFailedException")
+    void actualizarCliente_VersionDesactualizadaMismoCodigo_DebeLanzarExcepcion() {
+        // Arrange
+        ClienteInterno cambios = new ClienteInterno();
+        cambios.setCodigoInterno("cli-001");
+        cambios.setNombre("Tienda Centro Renovada");
+
+        // Act & Assert
+        assertThrows(PreconditionFailedException.class, () -> clienteInternoService.actualizarCliente(1L, cambios, 4L));
+        assertEquals("Tienda Centro", clienteExistente.getNombre());
+        verify(clienteRepository, never()).save(any(ClienteInterno.class));
+    }
+
+    @Test
+    @DisplayName("Actualizar Cliente - If-Match vigente con el mismo código guarda los cambios")
+    void actualizarCliente_VersionVigenteMismoCodigo_Exito() {
+        // Arrange
+        ClienteInterno cambios = new ClienteInterno();
+        cambios.setCodigoInterno("CLI-001");
+        cambios.setNombre("Tienda Centro Renovada");
+        when(clienteRepository.save(clienteExistente)).thenReturn(clienteExistente);
+
+        // Act
+        ClienteInterno actualizado = clienteInternoService.actualizarCliente(1L, cambios, 5L);
+
+        // Assert
+        assertEquals("Tienda Centro Renovada", actualizado.getNombre());
+        verify(clienteRepository, never()).existsByCodigoInterno(anyString());
+    }
+}
@@ -0,0 +1,147 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoSlaDTO;
+import com.telastech360.crmTT360.dto.PedidosSlaResumenDTO;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ColaSlaPedidosServiceTest {
+
+    private static final long HORA = 3_600_000L;
+
+    @Mock private PedidoRepository pedidoRepository;
+    @Mock private EstadoRepository estadoRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final RelojManual reloj = new RelojManual(100 * HORA);
+    private ColaSlaPedidosService colaSlaPedidosService;
+
+    @BeforeEach
+    void setUp() {
+        // Plazo de 24 h y ventana de urgencia de 4 h
+        colaSlaPedidosService = new ColaSlaPedidosService(pedidoRepository, estadoRepository, transactionManager,
+                24, 240, 60_000, reloj);
+        Estado pendiente = new Estado(Estado.TipoEstado.PEDIDO, "PENDIENTE");
+        pendiente.setEstadoId(1L);
+        Estado enviado = new Estado(Estado.TipoEstado.PEDIDO, "ENVIADO");
+        enviado.setEstadoId(2L);
+        when(estadoRepository.findEstadosPedido()).thenReturn(List.of(pendiente, enviado));
+    }
+
+    private static PedidoCreadoEvent creado(long pedidoId, long estadoId, long fechaMs) {
+        return new PedidoCreadoEvent(pedidoId, 10L, estadoId, new Timestamp(fechaMs), BigDecimal.ONE, Map.of());
+    }
+
+    @Test
+    @DisplayName("Inicializar - Carga los pendientes por el índice de estado y separa los ya vencidos")
+    void inicializar_CargaPendientes() {
+        // Arrange
+        when(pedidoRepository.findFechasPorEstados(List.of(1L))).thenReturn(List.of(
+                new Object[]{1L, new Timestamp(70 * HORA)},   // límite 94 h: vencido
+                new Object[]{2L, new Timestamp(78 * HORA)},   // límite 102 h: urgente
+                new Object[]{3L, new Timestamp(90 * HORA)})); // límite 114 h: en plazo
+
+        // Act
+        colaSlaPedidosService.inicializar();
+
+        // Assert
+        PedidosSlaResumenDTO resumen = colaSlaPedidosService.obtenerResumen(10);
+        assertEquals(3, resumen.getPendientes());
+        assertEquals(1, resumen.getUrgentes());
+        assertEquals(1, resumen.getVencidos());
+        assertEquals(List.of(1L, 2L, 3L), resumen.getPrimeros().stream().map(PedidoSlaDTO::getPedidoId).toList());
+        assertTrue(resumen.getPrimeros().get(0).isVencido());
+        assertEquals(List.of(1L, 2L), colaSlaPedidosService.obtenerIdsUrgentes());
+    }
+
+    @Test
+    @DisplayName("Eventos - Solo entran los pedidos PENDIENTE y salen al cambiar de estado o eliminarse")
+    void eventos_MantienenLaCola() {
+        // Arrange
+        when(pedidoRepository.findFechasPorEstados(List.of(1L))).thenReturn(List.of());
+        colaSlaPedidosService.inicializar();
+
+        // Act
+        colaSlaPedidosService.alCrearPedido(creado(1L, 1L, 99 * HORA));
+        colaSlaPedidosService.alCrearPedido(creado(2L, 1L, 99 * HORA));
+        colaSlaPedidosService.alCrearPedido(creado(3L, 2L, 99 * HORA));
+        colaSlaPedidosService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(1L, 1L), 2L));
+        colaSlaPedidosService.alEliminarPedido(new PedidoEliminadoEvent(2L));
+
+        // Assert
+        assertEquals(0, colaSlaPedidosService.obtenerResumen(10).getPendientes());
+        verify(pedidoRepository, never()).findFechasByIds(any());
+    }
+
+    @Test
+    @DisplayName("Cambiar Estado a PENDIENTE - Lee la fecha solo de los pedidos que no estaban en la cola")
+    void alCambiarEstado_APendiente_CargaSoloNuevos() {
+        // Arrange
+        when(pedidoRepository.findFechasPorEstados(List.of(1L))).thenReturn(List.of());
+        colaSlaPedidosService.inicializar();
+        colaSlaPedidosService.alCrearPedido(creado(1L, 1L, 99 * HORA));
+        when(pedidoRepository.findFechasByIds(List.of(5L))).thenReturn(List.<Object[]>of(new Object[]{5L, new Timestamp(95 * HORA)}));
+
+        // Act
+        colaSlaPedidosService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(1L, 2L, 5L, 2L), 1L));
+
+        // Assert
+        assertEquals(List.of(5L, 1L), colaSlaPedidosService.obtenerResumen(10).getPrimeros().stream()
+                .map(PedidoSlaDTO::getPedidoId).toList());
+    }
+
+    @Test
+    @DisplayName("Revisar Vencimientos - Mueve a vencidos solo los pedidos cuya fecha límite ya llegó")
+    void revisarVencimientos_MueveVencidos() {
+        // Arrange
+        when(pedidoRepository.findFechasPorEstados(List.of(1L))).thenReturn(List.of());
+        colaSlaPedidosService.inicializar();
+        colaSlaPedidosService.alCrearPedido(creado(1L, 1L, 80 * HORA)); // límite 104 h
+        colaSlaPedidosService.alCrearPedido(creado(2L, 1L, 90 * HORA)); // límite 114 h
+
+        // Act
+        reloj.avanzar(5 * HORA);
+        colaSlaPedidosService.revisarVencimientos();
+
+        // Assert
+        PedidosSlaResumenDTO resumen = colaSlaPedidosService.obtenerResumen(10);
+        assertEquals(1, resumen.getVencidos());
+        assertEquals(0, resumen.getUrgentes());
+        assertTrue(resumen.getPrimeros().get(0).isVencido());
+        assertFalse(resumen.getPrimeros().get(1).isVencido());
+    }
+
+    private static final class RelojManual extends Clock {
+        private long ahora;
+
+        RelojManual(long ahora) { this.ahora = ahora; }
+
+        void avanzar(long ms) { ahora += ms; }
+
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return Instant.ofEpochMilli(ahora); }
+        @Override public long millis() { return ahora; }
+    }
+}
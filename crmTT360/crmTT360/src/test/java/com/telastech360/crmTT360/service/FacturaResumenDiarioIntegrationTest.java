@@ -0,0 +1,173 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.FacturaDTO;
+import com.telastech360.crmTT360.dto.TotalFacturadoDiaDTO;
+import com.telastech360.crmTT360.entity.*;
+import com.telastech360.crmTT360.repository.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Recorre el ciclo de vida de una factura contra MySQL (alta, pago, modificación y archivo) y comprueba
+ * que los triggers mantienen factura_resumen_diario: tras cada paso el rollup del día coincide con lo
+ * esperado y la conciliación no encuentra diferencias.
+ */
+@SpringBootTest
+@Transactional
+class FacturaResumenDiarioIntegrationTest {
+
+    // Día de facturación sin otras facturas, para que el rollup y la conciliación solo vean las de la prueba
+    private static final LocalDate DIA = LocalDate.of(2099, 3, 10);
+    private static final Timestamp FECHA_PEDIDO = Timestamp.valueOf("2001-01-01 10:00:00");
+
+    @Autowired private FacturaService facturaService;
+    @Autowired private FacturaResumenDiarioRepository facturaResumenDiarioRepository;
+    @Autowired private PedidoArchivoRepository pedidoArchivoRepository;
+    @Autowired private PedidoRepository pedidoRepository;
+    @Autowired private PedidoDetalleRepository pedidoDetalleRepository;
+    @Autowired private ClienteInternoRepository clienteInternoRepository;
+    @Autowired private ItemRepository itemRepository;
+    @Autowired private BodegaRepository bodegaRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private EstadoRepository estadoRepository;
+    @Autowired private ProveedorRepository proveedorRepository;
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private RolRepository rolRepository;
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private EntityManager entityManager;
+
+    private Pedido pedido;
+
+    @BeforeEach
+    void setUpTestData() {
+        Estado estadoItem = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ITEM, "Activo Item Test Int")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ITEM, "Activo Item Test Int")));
+        Estado estadoBodega = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")));
+        // El archivo solo mueve pedidos COMPLETADO o CANCELADO
+        Estado estadoCompletado = estadoRepository.findByTipoAndValor(Estado.TipoEstado.PEDIDO, "COMPLETADO")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.PEDIDO, "COMPLETADO")));
+        Bodega bodega = bodegaRepository.findByNombre("Bodega Test Item Int")
+                .orElseGet(() -> {
+                    Bodega b = new Bodega();
+                    b.setNombre("Bodega Test Item Int");
+                    b.setTipoBodega(Bodega.TipoBodega.PRODUCTO_TERMINADO);
+                    b.setCapacidadMaxima(1000);
+                    b.setUbicacion("Ubic Test Item Int");
+                    b.setEstado(estadoBodega);
+                    return bodegaRepository.saveAndFlush(b);
+                });
+        Categoria categoria = categoriaRepository.findByNombre("Cat Test Item Int")
+                .orElseGet(() -> categoriaRepository.saveAndFlush(new Categoria("Cat Test Item Int")));
+        Proveedor proveedor = proveedorRepository.findByEmail("prov.item.int@test.com")
+                .orElseGet(() -> proveedorRepository.saveAndFlush(new Proveedor("Prov Test Item Int", "prov.item.int@test.com")));
+        Rol rolAdmin = rolRepository.findByNombre("ADMIN")
+                .orElseGet(() -> {
+                    Rol nuevoRol = new Rol();
+                    nuevoRol.setNombre("ADMIN");
+                    nuevoRol.setDescripcion("Rol Admin Test");
+                    return rolRepository.saveAndFlush(nuevoRol);
+                });
+        Usuario usuario = usuarioRepository.findByEmail("admin.item.int@test.com")
+                .orElseGet(() -> {
+                    Usuario u = new Usuario();
+                    u.setNombre("Admin Test Loader Item Int");
+                    u.setEmail("admin.item.int@test.com");
+                    u.setPasswordHash(passwordEncoder.encode("PasswordAdmin123."));
+                    u.setRol(rolAdmin);
+                    u.setEstado("ACTIVO");
+                    return usuarioRepository.saveAndFlush(u);
+                });
+
+        Producto producto = new Producto();
+        producto.setCodigo("ITEMFAC" + System.nanoTime());
+        producto.setNombre("Item Facturacion Int");
+        producto.setUnidadMedida("Unidad");
+        producto.setPrecio(new BigDecimal("10.00"));
+        producto.setStockDisponible(100);
+        producto.setStockMinimo(0);
+        producto.setStockMaximo(500);
+        producto.setBodega(bodega);
+        producto.setCategoria(categoria);
+        producto.setEstado(estadoItem);
+        producto.setProveedor(proveedor);
+        producto.setUsuario(usuario);
+        producto.setTipoPrenda(Producto.TipoPrenda.CAMISA);
+        producto.setTalla(Producto.Talla.M);
+        producto.setColor("Rojo Test Int");
+        producto.setComposicion("Algodon Test Int");
+        producto.setFechaFabricacion(new Date(System.currentTimeMillis()));
+        Item item = itemRepository.saveAndFlush(producto);
+
+        ClienteInterno cliente = new ClienteInterno();
+        cliente.setCodigoInterno("FAC" + (System.nanoTime() % 1_000_000_000L));
+        cliente.setNombre("Cliente Facturacion Int");
+        cliente.setTipo(ClienteInterno.TipoCliente.INTERNO);
+        cliente.setResponsable(usuario);
+        cliente = clienteInternoRepository.saveAndFlush(cliente);
+
+        // Pedido antiguo y cerrado, para que el archivo lo seleccione con una fecha límite de 2001
+        pedido = new Pedido(cliente, estadoCompletado);
+        pedido.setFechaPedido(FECHA_PEDIDO);
+        pedido = pedidoRepository.saveAndFlush(pedido);
+        pedidoDetalleRepository.saveAndFlush(new PedidoDetalle(pedido, item, 2, new BigDecimal("10.00")));
+    }
+
+    private List<TotalFacturadoDiaDTO> rollupDelDia() {
+        entityManager.flush(); // Los triggers se disparan al escribir las filas
+        return facturaResumenDiarioRepository.obtenerTotalesPorDia(Date.valueOf(DIA), Date.valueOf(DIA), null);
+    }
+
+    private void assertRollup(Factura.TipoMovimiento tipo, long numeroFacturas, String total, String totalPagado) {
+        List<TotalFacturadoDiaDTO> rollup = rollupDelDia();
+        assertEquals(1, rollup.size(), () -> "Rollup del día: " + rollup.size() + " claves");
+        TotalFacturadoDiaDTO fila = rollup.get(0);
+        assertEquals(tipo, fila.getTipoMovimiento());
+        assertEquals(numeroFacturas, fila.getNumeroFacturas());
+        assertEquals(0, new BigDecimal(total).compareTo(fila.getTotal()), () -> "Total: " + fila.getTotal());
+        assertEquals(0, new BigDecimal(totalPagado).compareTo(fila.getTotalPagado()), () -> "Pagado: " + fila.getTotalPagado());
+        assertTrue(facturaResumenDiarioRepository.calcularDiferencias(Date.valueOf(DIA)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Resumen Diario - Alta, pago, modificación y archivo mantienen el rollup conciliado")
+    void cicloDeVidaFactura_MantieneRollup() {
+        // Alta: 2 x 10.00, pendiente de pago
+        FacturaDTO alta = new FacturaDTO(Factura.TipoMovimiento.VENTA, null, Timestamp.valueOf(DIA.atTime(9, 0)));
+        alta.setPedidoId(pedido.getPedidoId());
+        FacturaDTO creada = facturaService.crearFactura(alta);
+        assertRollup(Factura.TipoMovimiento.VENTA, 1, "20.00", "0.00");
+
+        // Pago
+        creada.setEstadoPago(true);
+        FacturaDTO pagada = facturaService.actualizarFactura(creada.getFacturaId(), creada);
+        assertRollup(Factura.TipoMovimiento.VENTA, 1, "20.00", "20.00");
+
+        // Modificación de tipo: la aportación pasa de VENTA a COMPRA; el total enviado se ignora
+        pagada.setTipoMovimiento(Factura.TipoMovimiento.COMPRA);
+        pagada.setTotal(new BigDecimal("25.00"));
+        facturaService.actualizarFactura(pagada.getFacturaId(), pagada);
+        assertRollup(Factura.TipoMovimiento.COMPRA, 1, "20.00", "20.00");
+
+        // Archivo: la factura sale de la tabla activa pero sigue contando en su día
+        List<Long> archivados = pedidoArchivoRepository.archivarLote(Timestamp.valueOf("2001-02-01 00:00:00"), 100);
+        assertTrue(archivados.contains(pedido.getPedidoId()));
+        entityManager.clear();
+        assertFalse(pedidoRepository.existsById(pedido.getPedidoId()));
+        assertRollup(Factura.TipoMovimiento.COMPRA, 1, "20.00", "20.00");
+    }
+}
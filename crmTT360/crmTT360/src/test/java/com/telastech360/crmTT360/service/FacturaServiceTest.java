@@ -0,0 +1,164 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.FacturaDTO;
+import com.telastech360.crmTT360.dto.TotalFacturadoDiaDTO;
+import com.telastech360.crmTT360.entity.Factura;
+import com.telastech360.crmTT360.entity.Pedido;
+import com.telastech360.crmTT360.exception.DuplicateResourceException;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.mapper.FacturaMapper;
+import com.telastech360.crmTT360.repository.FacturaRepository;
+import com.telastech360.crmTT360.repository.FacturaResumenDiarioRepository;
+import com.telastech360.crmTT360.repository.PedidoDetalleRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FacturaServiceTest {
+
+    @Mock private FacturaRepository facturaRepository;
+    @Mock private FacturaMapper facturaMapper;
+    @Mock private PedidoRepository pedidoRepository;
+    @Mock private PoliticaReintentoOptimista politicaReintentoOptimista;
+    @Mock private PedidoDetalleRepository pedidoDetalleRepository;
+    @Mock private FacturaResumenDiarioRepository facturaResumenDiarioRepository;
+
+    private FacturaService facturaService;
+
+    @BeforeEach
+    void setUp() {
+        // 2024-03-31T10:00:00Z: con 30 días de conciliación se comprueba desde el 1 de marzo
+        facturaService = new FacturaService(facturaRepository, facturaMapper, pedidoRepository, politicaReintentoOptimista,
+                pedidoDetalleRepository, facturaResumenDiarioRepository, 30,
+                Clock.fixed(Instant.parse("2024-03-31T10:00:00Z"), ZoneOffset.UTC));
+    }
+
+    @Test
+    @DisplayName("Crear Factura - Usa el total calculado de los detalles del pedido")
+    void crearFactura_UsaTotalCalculado() {
+        // Arrange
+        FacturaDTO dto = new FacturaDTO();
+        dto.setPedidoId(5L);
+        dto.setTotal(new BigDecimal("1.00"));
+        Pedido pedido = new Pedido();
+        Factura factura = new Factura();
+        FacturaDTO creada = new FacturaDTO();
+        when(pedidoRepository.findById(5L)).thenReturn(Optional.of(pedido));
+        when(pedidoDetalleRepository.sumarImportesPorPedido(List.of(5L)))
+                .thenReturn(List.<Object[]>of(new Object[]{5L, new BigDecimal("12.3450")}));
+        when(facturaMapper.toEntity(dto)).thenReturn(factura);
+        when(facturaRepository.saveAndFlush(factura)).thenReturn(factura);
+        when(facturaMapper.toDTO(factura)).thenReturn(creada);
+
+        // Act
+        FacturaDTO resultado = facturaService.crearFactura(dto);
+
+        // Assert
+        assertSame(creada, resultado);
+        assertSame(pedido, factura.getPedido());
+        assertEquals(new BigDecimal("12.35"), factura.getTotal());
+    }
+
+    @Test
+    @DisplayName("Crear Factura - Un pedido que ya tiene factura devuelve conflicto sin insertar")
+    void crearFactura_PedidoYaFacturado_Conflicto() {
+        // Arrange
+        FacturaDTO dto = new FacturaDTO();
+        dto.setPedidoId(5L);
+        when(pedidoRepository.findById(5L)).thenReturn(Optional.of(new Pedido()));
+        when(facturaRepository.existsByPedidoId(5L)).thenReturn(true);
+
+        // Act & Assert
+        assertThrows(DuplicateResourceException.class, () -> facturaService.crearFactura(dto));
+        verify(facturaRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("Crear Factura - Una factura creada en paralelo para el pedido se devuelve como conflicto")
+    void crearFactura_FacturaConcurrente_Conflicto() {
+        // Arrange: la comprobación pasa, pero la restricción única rechaza la inserción
+        FacturaDTO dto = new FacturaDTO();
+        dto.setPedidoId(5L);
+        Factura factura = new Factura();
+        when(pedidoRepository.findById(5L)).thenReturn(Optional.of(new Pedido()));
+        when(pedidoDetalleRepository.sumarImportesPorPedido(List.of(5L)))
+                .thenReturn(List.<Object[]>of(new Object[]{5L, new BigDecimal("10.00")}));
+        when(facturaMapper.toEntity(dto)).thenReturn(factura);
+        when(facturaRepository.saveAndFlush(factura))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry '5' for key 'uk_factura_pedido'"));
+
+        // Act & Assert
+        DuplicateResourceException exception = assertThrows(DuplicateResourceException.class,
+                () -> facturaService.crearFactura(dto));
+        assertEquals("El pedido 5 ya tiene una factura.", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Total Facturado Por Día - Lee del rollup por días completos")
+    void calcularTotalFacturadoPorDia_LeeDelRollup() {
+        // Arrange
+        Timestamp inicio = Timestamp.valueOf("2024-03-01 08:30:00");
+        Timestamp fin = Timestamp.valueOf("2024-03-02 17:45:00");
+        List<TotalFacturadoDiaDTO> totales = List.of(new TotalFacturadoDiaDTO(Date.valueOf("2024-03-01"),
+                Factura.TipoMovimiento.VENTA, 3L, new BigDecimal("300.00"), new BigDecimal("100.00")));
+        ArgumentCaptor<Date> desde = ArgumentCaptor.forClass(Date.class);
+        ArgumentCaptor<Date> hasta = ArgumentCaptor.forClass(Date.class);
+        when(facturaResumenDiarioRepository.obtenerTotalesPorDia(desde.capture(), hasta.capture(),
+                eq(Factura.TipoMovimiento.VENTA))).thenReturn(totales);
+
+        // Act
+        List<TotalFacturadoDiaDTO> resultado =
+                facturaService.calcularTotalFacturadoPorDia(inicio, fin, Factura.TipoMovimiento.VENTA);
+
+        // Assert
+        assertSame(totales, resultado);
+        assertEquals("2024-03-01", desde.getValue().toString());
+        assertEquals("2024-03-02", hasta.getValue().toString());
+        verifyNoInteractions(facturaRepository);
+    }
+
+    @Test
+    @DisplayName("Total Facturado Por Día - Rechaza un inicio posterior al fin")
+    void calcularTotalFacturadoPorDia_RangoInvalido() {
+        // Act & Assert
+        assertThrows(InvalidDataException.class, () -> facturaService.calcularTotalFacturadoPorDia(
+                Timestamp.valueOf("2024-03-02 00:00:00"), Timestamp.valueOf("2024-03-01 00:00:00"), null));
+        verifyNoInteractions(facturaResumenDiarioRepository);
+    }
+
+    @Test
+    @DisplayName("Conciliar Resumen Diario - Corrige solo las claves con deriva de los últimos días")
+    void conciliarResumenDiario_CorrigeDiferencias() {
+        // Arrange
+        Date desde = Date.valueOf("2024-03-01");
+        List<Object[]> diferencias = List.<Object[]>of(new Object[]{Date.valueOf("2024-03-15"), "VENTA", -1L,
+                new BigDecimal("-50.00"), BigDecimal.ZERO});
+        when(facturaResumenDiarioRepository.calcularDiferencias(desde)).thenReturn(List.of()).thenReturn(diferencias);
+
+        // Act & Assert
+        assertEquals(0, facturaService.conciliarResumenDiario());
+        verify(facturaResumenDiarioRepository, never()).corregir(any());
+        assertEquals(1, facturaService.conciliarResumenDiario());
+        verify(facturaResumenDiarioRepository).corregir(diferencias);
+    }
+}
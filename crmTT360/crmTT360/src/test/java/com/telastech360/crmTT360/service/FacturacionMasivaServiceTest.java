@@ -0,0 +1,135 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.FacturacionMasivaDTO;
+import com.telastech360.crmTT360.exception.ResourceInUseException;
+import com.telastech360.crmTT360.repository.FacturacionMasivaRepository;
+import com.telastech360.crmTT360.repository.PedidoDetalleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FacturacionMasivaServiceTest {
+
+    private static final Timestamp AHORA = new Timestamp(1_000_000);
+
+    @Mock private FacturacionMasivaRepository facturacionMasivaRepository;
+    @Mock private PedidoDetalleRepository pedidoDetalleRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final List<Runnable> tareas = new ArrayList<>();
+    private FacturacionMasivaService facturacionMasivaService;
+
+    @BeforeEach
+    void setUp() {
+        // Las tareas en segundo plano se guardan para ejecutarlas (o no) desde cada test
+        facturacionMasivaService = new FacturacionMasivaService(facturacionMasivaRepository, pedidoDetalleRepository,
+                transactionManager, tareas::add, 2, Clock.fixed(Instant.ofEpochMilli(AHORA.getTime()), ZoneOffset.UTC));
+    }
+
+    private static FacturacionMasivaDTO ejecucion(long ultimoPedidoId) {
+        return new FacturacionMasivaDTO(7L, "EN_CURSO", ultimoPedidoId, 0, 0, BigDecimal.ZERO, AHORA, AHORA, null, null);
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Factura tramo a tramo con los importes agregados y registra el avance")
+    void ejecutar_FacturaPorTramos() {
+        // Arrange
+        when(facturacionMasivaRepository.bloquearPedidosSinFactura(0L, 2)).thenReturn(List.of(1L, 2L));
+        when(facturacionMasivaRepository.bloquearPedidosSinFactura(2L, 2)).thenReturn(List.of(5L));
+        when(facturacionMasivaRepository.buscarPedidosFacturados(anyList())).thenReturn(Set.of());
+        when(pedidoDetalleRepository.sumarImportesPorPedido(List.of(1L, 2L))).thenReturn(List.of(
+                new Object[]{1L, new BigDecimal("10.0050")}, new Object[]{2L, new BigDecimal("4.0000")}));
+        // El pedido 5 no tiene detalles: no aparece en la agregación y se omite
+        when(pedidoDetalleRepository.sumarImportesPorPedido(List.of(5L))).thenReturn(List.of());
+
+        // Act
+        int facturadas = facturacionMasivaService.ejecutar(ejecucion(0L));
+
+        // Assert
+        assertEquals(2, facturadas);
+        verify(facturacionMasivaRepository).insertarFacturas(
+                Map.of(1L, new BigDecimal("10.01"), 2L, new BigDecimal("4.00")), AHORA);
+        verify(facturacionMasivaRepository).registrarAvance(7L, 2L, 2, 0, new BigDecimal("14.01"), AHORA);
+        verify(facturacionMasivaRepository).registrarAvance(7L, 5L, 0, 1, BigDecimal.ZERO, AHORA);
+        verify(facturacionMasivaRepository, times(1)).insertarFacturas(anyMap(), any());
+        verify(facturacionMasivaRepository).finalizar(7L, FacturacionMasivaService.COMPLETADA, null, AHORA);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Al reanudar continúa tras el último pedido y descarta los facturados mientras tanto")
+    void ejecutar_ReanudaSinFacturarDosVeces() {
+        // Arrange
+        when(facturacionMasivaRepository.bloquearPedidosSinFactura(40L, 2)).thenReturn(List.of(41L, 42L), List.of());
+        when(facturacionMasivaRepository.buscarPedidosFacturados(List.of(41L, 42L))).thenReturn(Set.of(41L));
+        when(pedidoDetalleRepository.sumarImportesPorPedido(List.of(42L)))
+                .thenReturn(List.<Object[]>of(new Object[]{42L, new BigDecimal("3.50")}));
+        when(facturacionMasivaRepository.bloquearPedidosSinFactura(42L, 2)).thenReturn(List.of());
+
+        // Act
+        int facturadas = facturacionMasivaService.ejecutar(ejecucion(40L));
+
+        // Assert
+        assertEquals(1, facturadas);
+        verify(facturacionMasivaRepository).insertarFacturas(Map.of(42L, new BigDecimal("3.50")), AHORA);
+        verify(facturacionMasivaRepository).registrarAvance(7L, 42L, 1, 0, new BigDecimal("3.50"), AHORA);
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Un error deja la ejecución FALLIDA con su mensaje")
+    void ejecutar_Error_Fallida() {
+        // Arrange
+        when(facturacionMasivaRepository.bloquearPedidosSinFactura(0L, 2)).thenThrow(new IllegalStateException("Sin conexión"));
+
+        // Act
+        int facturadas = facturacionMasivaService.ejecutar(ejecucion(0L));
+
+        // Assert
+        assertEquals(0, facturadas);
+        verify(facturacionMasivaRepository).finalizar(7L, FacturacionMasivaService.FALLIDA, "Sin conexión", AHORA);
+        verify(facturacionMasivaRepository, never()).insertarFacturas(anyMap(), any());
+    }
+
+    @Test
+    @DisplayName("Iniciar - Reanuda la ejecución interrumpida y rechaza otra mientras sigue en curso")
+    void iniciar_ReanudaYRechazaConcurrente() {
+        // Arrange
+        when(facturacionMasivaRepository.buscarEjecucionEnCurso()).thenReturn(Optional.of(ejecucion(40L)));
+
+        // Act
+        FacturacionMasivaDTO iniciada = facturacionMasivaService.iniciar();
+
+        // Assert
+        assertEquals(7L, iniciada.getEjecucionId());
+        assertEquals(40L, iniciada.getUltimoPedidoId());
+        verify(facturacionMasivaRepository, never()).crearEjecucion(any());
+        assertThrows(ResourceInUseException.class, () -> facturacionMasivaService.iniciar());
+
+        // La tarea en segundo plano libera la ejecución al terminar
+        when(facturacionMasivaRepository.bloquearPedidosSinFactura(40L, 2)).thenReturn(List.of());
+        tareas.get(0).run();
+        when(facturacionMasivaRepository.buscarEjecucionEnCurso()).thenReturn(Optional.empty());
+        when(facturacionMasivaRepository.crearEjecucion(AHORA)).thenReturn(8L);
+        assertEquals(8L, facturacionMasivaService.iniciar().getEjecucionId());
+    }
+}
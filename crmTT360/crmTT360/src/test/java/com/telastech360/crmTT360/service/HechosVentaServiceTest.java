@@ -0,0 +1,205 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.AgregadoVentasDTO;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.exception.ResourceInUseException;
+import com.telastech360.crmTT360.repository.HechosVentaRepository;
+import com.telastech360.crmTT360.repository.HechosVentaRepository.ConsumidorLinea;
+import com.telastech360.crmTT360.service.HechosVentaService.Agrupacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HechosVentaServiceTest {
+
+    private static final LocalDate HOY = LocalDate.of(2024, 3, 31);
+
+    @Mock private HechosVentaRepository hechosVentaRepository;
+
+    private ForkJoinPool pool;
+    private HechosVentaService hechosVentaService;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+        hechosVentaService = new HechosVentaService(hechosVentaRepository, pool,
+                Clock.fixed(HOY.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    private static Timestamp fecha(LocalDate dia) {
+        return Timestamp.valueOf(dia.atTime(10, 30));
+    }
+
+    private void cargar(Object[]... lineas) {
+        doAnswer(invocacion -> {
+            ConsumidorLinea consumidor = invocacion.getArgument(0);
+            for (Object[] l : lineas) {
+                consumidor.aceptar((Long) l[0], (Long) l[1], (Long) l[2], fecha((LocalDate) l[3]), (Integer) l[4],
+                        new BigDecimal((String) l[5]), (Long) l[6], (Long) l[7]);
+            }
+            return null;
+        }).when(hechosVentaRepository).recorrerLineas(any(ConsumidorLinea.class));
+        hechosVentaService.inicializar();
+    }
+
+    private static Map<Long, BigDecimal> importePorId(List<AgregadoVentasDTO> grupos) {
+        return grupos.stream().collect(Collectors.toMap(AgregadoVentasDTO::getId, AgregadoVentasDTO::getImporte));
+    }
+
+    @Test
+    @DisplayName("Agregar - Suma por día, ítem, cliente, categoría y bodega con filtros")
+    void agregar_PorDimensiones() {
+        // Arrange: pedido, ítem, cliente, día, cantidad, precio, categoría, bodega
+        cargar(new Object[]{1L, 10L, 100L, HOY, 2, "5.5000", 7L, 70L},
+                new Object[]{1L, 11L, 100L, HOY, 1, "20.0000", 8L, 70L},
+                new Object[]{2L, 10L, null, HOY.minusDays(1), 3, "5.5000", 7L, 70L},
+                new Object[]{3L, 11L, 200L, HOY.minusDays(40), 9, "20.0000", 8L, 71L});
+
+        // Act
+        List<AgregadoVentasDTO> total = hechosVentaService.agregar(null, null, null, null, null);
+        List<AgregadoVentasDTO> porDia = hechosVentaService.agregar(Agrupacion.DIA, HOY.minusDays(1), HOY, null, null);
+        List<AgregadoVentasDTO> porItem = hechosVentaService.agregar(Agrupacion.ITEM, null, null, null, null);
+        List<AgregadoVentasDTO> porCliente = hechosVentaService.agregar(Agrupacion.CLIENTE, null, null, null, null);
+        List<AgregadoVentasDTO> porBodega = hechosVentaService.agregar(Agrupacion.BODEGA, HOY.minusDays(60), HOY, null, null);
+        List<AgregadoVentasDTO> categoriaDeCliente = hechosVentaService.agregar(Agrupacion.CATEGORIA, null, null, 100L, 10L);
+
+        // Assert
+        assertEquals(1, total.size());
+        assertNull(total.get(0).getId());
+        assertEquals(3, total.get(0).getLineas());
+        assertEquals(6, total.get(0).getCantidad());
+        assertEquals(new BigDecimal("47.5000"), total.get(0).getImporte());
+        assertEquals(List.of(HOY.minusDays(1), HOY), porDia.stream().map(g -> g.getDia().toLocalDate()).toList());
+        assertEquals(new BigDecimal("16.5000"), porDia.get(0).getImporte());
+        assertEquals(List.of(10L, 11L), porItem.stream().map(AgregadoVentasDTO::getId).toList());
+        assertEquals(Map.of(10L, new BigDecimal("27.5000"), 11L, new BigDecimal("20.0000")), importePorId(porItem));
+        // El pedido sin cliente forma su propio grupo, con ID null
+        assertEquals(2, porCliente.size());
+        assertEquals(100L, porCliente.get(0).getId());
+        assertNull(porCliente.get(1).getId());
+        // La bodega es un atributo del ítem: todas las líneas del ítem 11 cuentan en la última leída (71)
+        assertEquals(Map.of(70L, new BigDecimal("27.5000"), 71L, new BigDecimal("200.0000")), importePorId(porBodega));
+        assertEquals(1, categoriaDeCliente.size());
+        assertEquals(7L, categoriaDeCliente.get(0).getId());
+        assertEquals(new BigDecimal("11.0000"), categoriaDeCliente.get(0).getImporte());
+        assertTrue(hechosVentaService.agregar(Agrupacion.ITEM, null, null, 999L, null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Anexar Pendientes - Añade las líneas de los pedidos nuevos y omite los ya cargados")
+    void anexarPendientes_AnadePedidosNuevos() {
+        // Arrange
+        cargar(new Object[]{5L, 10L, 100L, HOY, 1, "1.0000", 7L, 70L});
+        doAnswer(invocacion -> {
+            ConsumidorLinea consumidor = invocacion.getArgument(1);
+            consumidor.aceptar(6L, 12L, 100L, fecha(HOY), 4, new BigDecimal("2.5000"), 7L, 72L);
+            return null;
+        }).when(hechosVentaRepository).recorrerLineas(eq(List.of(6L)), any(ConsumidorLinea.class));
+
+        // Act
+        hechosVentaService.alCrearPedido(new PedidoCreadoEvent(5L, 100L, 1L, fecha(HOY), BigDecimal.ONE, Map.of()));
+        hechosVentaService.alCrearPedido(new PedidoCreadoEvent(6L, 100L, 1L, fecha(HOY), BigDecimal.TEN, Map.of(12L, 4)));
+        hechosVentaService.anexarPendientes();
+
+        // Assert
+        List<AgregadoVentasDTO> total = hechosVentaService.agregar(Agrupacion.TOTAL, null, null, null, null);
+        assertEquals(2, total.get(0).getLineas());
+        assertEquals(new BigDecimal("11.0000"), total.get(0).getImporte());
+        assertEquals(Map.of(70L, new BigDecimal("1.0000"), 72L, new BigDecimal("10.0000")),
+                importePorId(hechosVentaService.agregar(Agrupacion.BODEGA, null, null, null, null)));
+        verify(hechosVentaRepository, times(1)).recorrerLineas(anyCollection(), any(ConsumidorLinea.class));
+    }
+
+    @Test
+    @DisplayName("Anexar Pendientes - Añade un pedido con ID menor que el máximo cargado si la carga no lo leyó")
+    void anexarPendientes_PedidoConfirmadoFueraDeOrden() {
+        // Arrange: el pedido 6 se confirmó después que el 8 y no estaba en la carga
+        cargar(new Object[]{5L, 10L, 100L, HOY, 1, "1.0000", 7L, 70L},
+                new Object[]{8L, 10L, 100L, HOY, 2, "1.0000", 7L, 70L});
+        doAnswer(invocacion -> {
+            ConsumidorLinea consumidor = invocacion.getArgument(1);
+            consumidor.aceptar(6L, 10L, 100L, fecha(HOY), 3, new BigDecimal("1.0000"), 7L, 70L);
+            return null;
+        }).when(hechosVentaRepository).recorrerLineas(eq(List.of(6L)), any(ConsumidorLinea.class));
+
+        // Act
+        hechosVentaService.alCrearPedido(new PedidoCreadoEvent(8L, 100L, 1L, fecha(HOY), new BigDecimal("2"), Map.of(10L, 2)));
+        hechosVentaService.alCrearPedido(new PedidoCreadoEvent(6L, 100L, 1L, fecha(HOY), new BigDecimal("3"), Map.of(10L, 3)));
+        hechosVentaService.anexarPendientes();
+        hechosVentaService.alCrearPedido(new PedidoCreadoEvent(6L, 100L, 1L, fecha(HOY), new BigDecimal("3"), Map.of(10L, 3)));
+        hechosVentaService.anexarPendientes();
+
+        // Assert
+        List<AgregadoVentasDTO> total = hechosVentaService.agregar(Agrupacion.TOTAL, null, null, null, null);
+        assertEquals(3, total.get(0).getLineas());
+        assertEquals(6, total.get(0).getCantidad());
+        verify(hechosVentaRepository, times(1)).recorrerLineas(anyCollection(), any(ConsumidorLinea.class));
+    }
+
+    @Test
+    @DisplayName("Agregar - El recorrido en paralelo coincide con la suma de todas las líneas")
+    void agregar_RecorridoParaleloMuchasLineas() {
+        // Arrange: 300.000 líneas en 50 ítems y 10 días
+        int lineas = 300_000;
+        doAnswer(invocacion -> {
+            ConsumidorLinea consumidor = invocacion.getArgument(0);
+            for (int i = 0; i < lineas; i++) {
+                consumidor.aceptar(i, i % 50, (long) (i % 7 + 1), fecha(HOY.minusDays(i % 10)), 1 + i % 3,
+                        BigDecimal.ONE, 1L + i % 4, 1L);
+            }
+            return null;
+        }).when(hechosVentaRepository).recorrerLineas(any(ConsumidorLinea.class));
+        hechosVentaService.inicializar();
+
+        // Act
+        List<AgregadoVentasDTO> porItem = hechosVentaService.agregar(Agrupacion.ITEM, HOY.minusDays(9), HOY, null, null);
+        List<AgregadoVentasDTO> porDia = hechosVentaService.agregar(Agrupacion.DIA, HOY.minusDays(9), HOY, null, null);
+
+        // Assert
+        long esperado = 0;
+        for (int i = 0; i < lineas; i++) {
+            esperado += 1 + i % 3;
+        }
+        assertEquals(50, porItem.size());
+        assertEquals(esperado, porItem.stream().mapToLong(AgregadoVentasDTO::getCantidad).sum());
+        assertEquals(lineas, porItem.stream().mapToLong(AgregadoVentasDTO::getLineas).sum());
+        assertEquals(10, porDia.size());
+        assertEquals(lineas / 10, porDia.get(0).getLineas());
+    }
+
+    @Test
+    @DisplayName("Agregar - Rechaza rangos inválidos y las consultas antes de la carga")
+    void agregar_Validaciones() {
+        // Act & Assert
+        assertThrows(ResourceInUseException.class, () -> hechosVentaService.agregar(Agrupacion.TOTAL, null, null, null, null));
+        cargar();
+        assertThrows(InvalidDataException.class, () -> hechosVentaService.agregar(Agrupacion.DIA, HOY, HOY.minusDays(1), null, null));
+        assertThrows(InvalidDataException.class,
+                () -> hechosVentaService.agregar(Agrupacion.DIA, HOY.minusDays(HechosVentaService.DIAS_MAXIMOS), HOY, null, null));
+        assertTrue(hechosVentaService.agregar(Agrupacion.DIA, null, null, null, null).isEmpty());
+    }
+}
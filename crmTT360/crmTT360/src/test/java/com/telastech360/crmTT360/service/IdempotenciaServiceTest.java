@@ -0,0 +1,222 @@
+package com.telastech360.crmTT360.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telastech360.crmTT360.dto.PedidoDTO;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.repository.ClaveIdempotenciaRepository;
+import com.telastech360.crmTT360.repository.ClaveIdempotenciaRepository.Registro;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaServiceTest {
+
+    @Mock private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private IdempotenciaService idempotenciaService;
+    private PedidoDTO solicitud;
+    private AtomicInteger ejecuciones;
+
+    @BeforeEach
+    void setUp() {
+        idempotenciaService = new IdempotenciaService(claveIdempotenciaRepository, new ObjectMapper(),
+                transactionManager, 60_000, 2_000, 300_000, 100);
+        solicitud = new PedidoDTO(null, 10L, 1L, List.of());
+        ejecuciones = new AtomicInteger();
+    }
+
+    private PedidoDTO crear() {
+        return new PedidoDTO(100L + ejecuciones.incrementAndGet(), 10L, 1L, List.of());
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Sin clave: se ejecuta la operación sin registrar nada")
+    void ejecutar_SinClave_EjecutaDirectamente() {
+        // Act
+        IdempotenciaService.Resultado<PedidoDTO> resultado = idempotenciaService.ejecutar("CREAR_PEDIDO", null,
+                solicitud, PedidoDTO.class, this::crear);
+
+        // Assert
+        assertEquals(101L, resultado.respuesta().getPedidoId());
+        assertFalse(resultado.repetida());
+        verifyNoInteractions(claveIdempotenciaRepository, transactionManager);
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Reintento con la misma clave devuelve la respuesta guardada sin volver a ejecutar")
+    void ejecutar_Reintento_DevuelveRespuestaGuardada() {
+        // Arrange
+        when(claveIdempotenciaRepository.reservar(eq("CREAR_PEDIDO"), eq("k1"), anyString(), any(), any())).thenReturn(true);
+        when(claveIdempotenciaRepository.completar(eq("CREAR_PEDIDO"), eq("k1"), any(), anyString())).thenReturn(true);
+
+        // Act
+        IdempotenciaService.Resultado<PedidoDTO> primera = idempotenciaService.ejecutar("CREAR_PEDIDO", "k1",
+                solicitud, PedidoDTO.class, this::crear);
+        IdempotenciaService.Resultado<PedidoDTO> reintento = idempotenciaService.ejecutar("CREAR_PEDIDO", "k1",
+                new PedidoDTO(null, 10L, 1L, List.of()), PedidoDTO.class, this::crear);
+
+        // Assert
+        assertFalse(primera.repetida());
+        assertTrue(reintento.repetida());
+        assertEquals(101L, reintento.respuesta().getPedidoId());
+        assertEquals(1, ejecuciones.get());
+        verify(claveIdempotenciaRepository, times(1)).reservar(any(), any(), any(), any(), any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Misma clave con una solicitud distinta lanza InvalidDataException")
+    void ejecutar_MismaClaveSolicitudDistinta_LanzaInvalidData() {
+        // Arrange
+        when(claveIdempotenciaRepository.reservar(any(), any(), any(), any(), any())).thenReturn(true);
+        when(claveIdempotenciaRepository.completar(any(), any(), any(), any())).thenReturn(true);
+        idempotenciaService.ejecutar("CREAR_PEDIDO", "k1", solicitud, PedidoDTO.class, this::crear);
+
+        // Act & Assert
+        assertThrows(InvalidDataException.class, () -> idempotenciaService.ejecutar("CREAR_PEDIDO", "k1",
+                new PedidoDTO(null, 99L, 1L, List.of()), PedidoDTO.class, this::crear));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Clave completada por otra instancia: se lee de la tabla sin ejecutar")
+    void ejecutar_CompletadaEnOtraInstancia_LeeDeLaTabla() throws Exception {
+        // Arrange
+        ObjectMapper objectMapper = new ObjectMapper();
+        String huella = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(objectMapper.writeValueAsBytes(solicitud)));
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        when(claveIdempotenciaRepository.reservar(any(), any(), any(), any(), any())).thenReturn(false);
+        when(claveIdempotenciaRepository.buscar("CREAR_PEDIDO", "k1")).thenReturn(Optional.of(new Registro(huella, true,
+                objectMapper.writeValueAsString(new PedidoDTO(55L, 10L, 1L, List.of())), ahora,
+                new Timestamp(ahora.getTime() + 60_000))));
+
+        // Act
+        IdempotenciaService.Resultado<PedidoDTO> resultado = idempotenciaService.ejecutar("CREAR_PEDIDO", "k1",
+                solicitud, PedidoDTO.class, this::crear);
+
+        // Assert
+        assertTrue(resultado.repetida());
+        assertEquals(55L, resultado.respuesta().getPedidoId());
+        assertEquals(0, ejecuciones.get());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Clave descartada de la caché llena: el reintento se resuelve con la tabla")
+    void ejecutar_CacheLlena_ReintentoLeeDeLaTabla() throws Exception {
+        // Arrange: caché de una sola clave
+        ObjectMapper objectMapper = new ObjectMapper();
+        IdempotenciaService servicio = new IdempotenciaService(claveIdempotenciaRepository, objectMapper,
+                transactionManager, 60_000, 2_000, 300_000, 1);
+        String huella = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(objectMapper.writeValueAsBytes(solicitud)));
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        when(claveIdempotenciaRepository.reservar(eq("CREAR_PEDIDO"), eq("k1"), anyString(), any(), any()))
+                .thenReturn(true, false);
+        when(claveIdempotenciaRepository.reservar(eq("CREAR_PEDIDO"), eq("k2"), anyString(), any(), any())).thenReturn(true);
+        when(claveIdempotenciaRepository.completar(any(), any(), any(), any())).thenReturn(true);
+        when(claveIdempotenciaRepository.buscar("CREAR_PEDIDO", "k1")).thenReturn(Optional.of(new Registro(huella, true,
+                objectMapper.writeValueAsString(new PedidoDTO(101L, 10L, 1L, List.of())), ahora,
+                new Timestamp(ahora.getTime() + 60_000))));
+        servicio.ejecutar("CREAR_PEDIDO", "k1", solicitud, PedidoDTO.class, this::crear);
+        servicio.ejecutar("CREAR_PEDIDO", "k2", solicitud, PedidoDTO.class, this::crear);
+
+        // Act
+        IdempotenciaService.Resultado<PedidoDTO> reintento = servicio.ejecutar("CREAR_PEDIDO", "k1",
+                solicitud, PedidoDTO.class, this::crear);
+
+        // Assert
+        assertTrue(reintento.repetida());
+        assertEquals(101L, reintento.respuesta().getPedidoId());
+        assertEquals(2, ejecuciones.get());
+        verify(claveIdempotenciaRepository).buscar("CREAR_PEDIDO", "k1");
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Si la operación falla se libera la clave y un reintento vuelve a ejecutarla")
+    void ejecutar_Fallo_LiberaLaClave() {
+        // Arrange
+        when(claveIdempotenciaRepository.reservar(any(), any(), any(), any(), any())).thenReturn(true);
+        when(claveIdempotenciaRepository.completar(any(), any(), any(), any())).thenReturn(true);
+
+        // Act
+        assertThrows(ResourceNotFoundException.class, () -> idempotenciaService.ejecutar("CREAR_PEDIDO", "k1",
+                solicitud, PedidoDTO.class, () -> {
+                    throw new ResourceNotFoundException("Cliente no encontrado con ID: 10");
+                }));
+        IdempotenciaService.Resultado<PedidoDTO> reintento = idempotenciaService.ejecutar("CREAR_PEDIDO", "k1",
+                solicitud, PedidoDTO.class, this::crear);
+
+        // Assert
+        verify(claveIdempotenciaRepository).liberar(eq("CREAR_PEDIDO"), eq("k1"), any());
+        verify(transactionManager).rollback(any());
+        assertFalse(reintento.repetida());
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Duplicados concurrentes esperan a la primera solicitud en lugar de competir")
+    void ejecutar_DuplicadosConcurrentes_EsperanALaPrimera() throws Exception {
+        // Arrange
+        when(claveIdempotenciaRepository.reservar(any(), any(), any(), any(), any())).thenReturn(true);
+        when(claveIdempotenciaRepository.completar(any(), any(), any(), any())).thenReturn(true);
+        CountDownLatch enEjecucion = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+
+        try {
+            // Act
+            Future<IdempotenciaService.Resultado<PedidoDTO>> primera = hilos.submit(() -> idempotenciaService.ejecutar(
+                    "CREAR_PEDIDO", "k1", solicitud, PedidoDTO.class, () -> {
+                        enEjecucion.countDown();
+                        try {
+                            liberar.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return crear();
+                    }));
+            assertTrue(enEjecucion.await(5, TimeUnit.SECONDS));
+            Future<IdempotenciaService.Resultado<PedidoDTO>> duplicada = hilos.submit(() -> idempotenciaService.ejecutar(
+                    "CREAR_PEDIDO", "k1", solicitud, PedidoDTO.class, this::crear));
+            Thread.sleep(100);
+            assertFalse(duplicada.isDone());
+            liberar.countDown();
+
+            // Assert
+            assertEquals(101L, primera.get(5, TimeUnit.SECONDS).respuesta().getPedidoId());
+            IdempotenciaService.Resultado<PedidoDTO> repetida = duplicada.get(5, TimeUnit.SECONDS);
+            assertTrue(repetida.repetida());
+            assertEquals(101L, repetida.respuesta().getPedidoId());
+            assertEquals(1, ejecuciones.get());
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.entity.*;
+import com.telastech360.crmTT360.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ajustes de stock concurrentes contra MySQL: el UPDATE condicional de ItemRepository.actualizarStock
+ * debe impedir que el stock de la fila quede negativo aunque muchos hilos descuenten a la vez.
+ * Sin @Transactional en la clase: cada ajuste se confirma en su propia transacción.
+ */
+@SpringBootTest
+class ItemServiceStockConcurrenteIntegrationTest {
+
+    private static final int STOCK_INICIAL = 4000;
+    // Bastantes más hilos que conexiones en el pool de Hikari (10 por defecto), para que haya esperas de conexión y de bloqueo
+    private static final int HILOS = 64;
+    private static final int DESCUENTOS_POR_HILO = 80;
+
+    @Autowired private ItemService itemService;
+    @Autowired private ItemRepository itemRepository;
+    @Autowired private BodegaRepository bodegaRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private EstadoRepository estadoRepository;
+    @Autowired private ProveedorRepository proveedorRepository;
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private RolRepository rolRepository;
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private Item item;
+
+    @BeforeEach
+    void setUpTestData() {
+        Estado estadoItem = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ITEM, "Activo Item Test Int")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ITEM, "Activo Item Test Int")));
+        Estado estadoBodega = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")));
+        Bodega bodega = bodegaRepository.findByNombre("Bodega Test Stock Concurrente")
+                .orElseGet(() -> {
+                    Bodega b = new Bodega();
+                    b.setNombre("Bodega Test Stock Concurrente");
+                    b.setTipoBodega(Bodega.TipoBodega.PRODUCTO_TERMINADO);
+                    b.setCapacidadMaxima(100000);
+                    b.setUbicacion("Ubic Test Stock Concurrente");
+                    b.setEstado(estadoBodega);
+                    return bodegaRepository.saveAndFlush(b);
+                });
+        Categoria categoria = categoriaRepository.findByNombre("Cat Test Item Int")
+                .orElseGet(() -> categoriaRepository.saveAndFlush(new Categoria("Cat Test Item Int")));
+        Proveedor proveedor = proveedorRepository.findByEmail("prov.item.int@test.com")
+                .orElseGet(() -> proveedorRepository.saveAndFlush(new Proveedor("Prov Test Item Int", "prov.item.int@test.com")));
+        Rol rolAdmin = rolRepository.findByNombre("ADMIN")
+                .orElseGet(() -> {
+                    Rol nuevoRol = new Rol();
+                    nuevoRol.setNombre("ADMIN");
+                    nuevoRol.setDescripcion("Rol Admin Test");
+                    return rolRepository.saveAndFlush(nuevoRol);
+                });
+        Usuario usuario = usuarioRepository.findByEmail("admin.item.int@test.com")
+                .orElseGet(() -> {
+                    Usuario u = new Usuario();
+                    u.setNombre("Admin Test Loader Item Int");
+                    u.setEmail("admin.item.int@test.com");
+                    u.setPasswordHash(passwordEncoder.encode("PasswordAdmin123."));
+                    u.setRol(rolAdmin);
+                    u.setEstado("ACTIVO");
+                    return usuarioRepository.saveAndFlush(u);
+                });
+
+        Producto producto = new Producto();
+        producto.setCodigo("ITEMCONC" + System.nanoTime());
+        producto.setNombre("Item Stock Concurrente");
+        producto.setUnidadMedida("Unidad");
+        producto.setPrecio(new BigDecimal("10.00"));
+        producto.setStockDisponible(STOCK_INICIAL);
+        producto.setStockMinimo(0);
+        producto.setStockMaximo(10000);
+        producto.setBodega(bodega);
+        producto.setCategoria(categoria);
+        producto.setEstado(estadoItem);
+        producto.setProveedor(proveedor);
+        producto.setUsuario(usuario);
+        producto.setTipoPrenda(Producto.TipoPrenda.CAMISA);
+        producto.setTalla(Producto.Talla.M);
+        producto.setColor("Gris Test Int");
+        producto.setComposicion("Algodon Test Int");
+        producto.setFechaFabricacion(new Date(System.currentTimeMillis()));
+        item = itemRepository.saveAndFlush(producto);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (item != null) {
+            itemRepository.deleteById(item.getItemId());
+        }
+    }
+
+    private int stockEnBaseDeDatos() {
+        return jdbcTemplate.queryForObject("SELECT stock_disponible FROM item WHERE item_id = ?",
+                Integer.class, item.getItemId());
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - Descuentos concurrentes sobre una fila real nunca dejan stock negativo")
+    void intentarAjustarStock_DescuentosConcurrentes_NoQuedaNegativo() throws Exception {
+        // Arrange: 5120 descuentos de 1 unidad para 4000 unidades
+        Long itemId = item.getItemId();
+        AtomicInteger aplicados = new AtomicInteger();
+        AtomicInteger rechazados = new AtomicInteger();
+        AtomicInteger minimoObservado = new AtomicInteger(Integer.MAX_VALUE);
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS + 1);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Act
+        try {
+            for (int h = 0; h < HILOS; h++) {
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < DESCUENTOS_POR_HILO; i++) {
+                        if (itemService.intentarAjustarStock(itemId, -1)) {
+                            aplicados.incrementAndGet();
+                        } else {
+                            rechazados.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // Lector que observa la fila mientras se descuenta
+            Future<?> lector = executor.submit(() -> {
+                salida.await();
+                while (tareas.stream().anyMatch(t -> !t.isDone())) {
+                    minimoObservado.accumulateAndGet(stockEnBaseDeDatos(), Math::min);
+                }
+                return null;
+            });
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+            lector.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertEquals(HILOS * DESCUENTOS_POR_HILO, aplicados.get() + rechazados.get());
+        // Sin actualizaciones perdidas: el stock final es el inicial menos los descuentos aplicados
+        assertEquals(STOCK_INICIAL - aplicados.get(), stockEnBaseDeDatos());
+        assertEquals(STOCK_INICIAL, aplicados.get());
+        assertTrue(minimoObservado.get() >= 0, () -> "Stock negativo observado: " + minimoObservado.get());
+    }
+}
@@ -17,10 +17,23 @@ import java.math.BigDecimal;
 import java.util.Optional;
 import java.util.List; // Importar List
 import java.util.Collections; // Importar Collections
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq; // Importar eq
 import static org.mockito.Mockito.*;
@@ -38,6 +51,12 @@ class ItemServiceTest {
     @Mock private ProveedorRepository proveedorRepository;
     @Mock private UsuarioRepository usuarioRepository;
     @Mock private ItemMapper itemMapper;
+    @Mock private ItemStockShardService itemStockShardService;
+    @Mock private StockEngine stockEngine;
+    @Mock private AlertaStockBajoService alertaStockBajoService;
+    @Mock private ProgramadorVencimientos programadorVencimientos;
+    @Mock private InventarioResumenRepository inventarioResumenRepository;
+    @Mock private PoliticaReintentoOptimista politicaReintentoOptimista;
 
     @InjectMocks
     private ItemService itemService;
@@ -243,6 +262,8 @@ class ItemServiceTest {
         // Arrange
         Long itemId = itemEntidad.getItemId();
         int cantidadAjuste = -150; // Más que el stock disponible (100)
+        when(itemRepository.actualizarStock(itemId, cantidadAjuste)).thenReturn(0); // UPDATE condicional no aplica
+        when(itemRepository.findStockShardsById(itemId)).thenReturn(Optional.of(0)); // Existe, sin shards
         when(itemRepository.findById(itemId)).thenReturn(Optional.of(itemEntidad));
 
         // Act & Assert
@@ -252,7 +273,7 @@ class ItemServiceTest {
 
         assertTrue(exception.getMessage().contains("Stock insuficiente"));
 
-        verify(itemRepository).findById(itemId);
+        verify(itemRepository).actualizarStock(itemId, cantidadAjuste);
         verify(itemRepository, never()).save(any(Item.class)); // No se debe guardar
     }
 
@@ -262,9 +283,7 @@ class ItemServiceTest {
         // Arrange
         Long itemId = itemEntidad.getItemId();
         int cantidadAjuste = 50;
-        int stockEsperado = itemEntidad.getStockDisponible() + cantidadAjuste;
-        when(itemRepository.findById(itemId)).thenReturn(Optional.of(itemEntidad));
-        when(itemRepository.save(any(Item.class))).thenAnswer(i -> i.getArgument(0));
+        when(itemRepository.actualizarStock(itemId, cantidadAjuste)).thenReturn(1);
 
         // Act
         assertDoesNotThrow(() -> {
@@ -272,9 +291,9 @@ class ItemServiceTest {
         });
 
         // Assert
-        assertEquals(stockEsperado, itemEntidad.getStockDisponible()); // Verificar que el stock se actualizó en la entidad mockeada
-        verify(itemRepository).findById(itemId);
-        verify(itemRepository).save(itemEntidad); // Verificar que se guardó la entidad
+        verify(itemRepository).actualizarStock(itemId, cantidadAjuste);
+        verify(itemRepository, never()).findById(anyLong()); // Sin carga de la entidad
+        verify(itemRepository, never()).save(any(Item.class));
     }
 
     @Test
@@ -283,9 +302,7 @@ class ItemServiceTest {
         // Arrange
         Long itemId = itemEntidad.getItemId();
         int cantidadAjuste = -30;
-        int stockEsperado = itemEntidad.getStockDisponible() + cantidadAjuste;
-        when(itemRepository.findById(itemId)).thenReturn(Optional.of(itemEntidad));
-        when(itemRepository.save(any(Item.class))).thenAnswer(i -> i.getArgument(0));
+        when(itemRepository.actualizarStock(itemId, cantidadAjuste)).thenReturn(1);
 
         // Act
         assertDoesNotThrow(() -> {
@@ -293,9 +310,9 @@ class ItemServiceTest {
         });
 
         // Assert
-        assertEquals(stockEsperado, itemEntidad.getStockDisponible());
-        verify(itemRepository).findById(itemId);
-        verify(itemRepository).save(itemEntidad);
+        verify(itemRepository).actualizarStock(itemId, cantidadAjuste);
+        verify(itemRepository, never()).findById(anyLong());
+        verify(itemRepository, never()).save(any(Item.class));
     }
 
     @Test
@@ -304,7 +321,8 @@ class ItemServiceTest {
         // Arrange
         Long idInexistente = 999L;
         int cantidadAjuste = 10;
-        when(itemRepository.findById(idInexistente)).thenReturn(Optional.empty());
+        when(itemRepository.actualizarStock(idInexistente, cantidadAjuste)).thenReturn(0);
+        when(itemRepository.findStockShardsById(idInexistente)).thenReturn(Optional.empty());
 
         // Act & Assert
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
@@ -312,8 +330,232 @@ class ItemServiceTest {
         });
         assertEquals("Ítem no encontrado con ID: " + idInexistente, exception.getMessage());
 
-        verify(itemRepository).findById(idInexistente);
+        verify(itemRepository).findStockShardsById(idInexistente);
         verify(itemRepository, never()).save(any());
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Intentar Ajustar Stock - Concurrente (Stock final exacto)")
+    void intentarAjustarStock_Concurrente_StockFinalExacto() throws Exception {
+        // Arrange: el mock reproduce la semántica del UPDATE condicional de la BD
+        // (stock_disponible + cantidad >= 0) sobre un contador atómico compartido.
+        Long itemId = itemEntidad.getItemId();
+        int stockInicial = 3000;
+        int totalDescuentos = 5000;
+        AtomicInteger stock = new AtomicInteger(stockInicial);
+        when(itemRepository.actualizarStock(eq(itemId), anyInt())).thenAnswer(inv -> {
+            int cantidad = inv.getArgument(1);
+            while (true) {
+                int actual = stock.get();
+                if (actual + cantidad < 0) return 0;
+                if (stock.compareAndSet(actual, actual + cantidad)) return 1;
+            }
+        });
+        when(itemRepository.findStockShardsById(itemId)).thenReturn(Optional.of(0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch inicio = new CountDownLatch(1);
+        AtomicInteger exitos = new AtomicInteger();
+        AtomicInteger rechazos = new AtomicInteger();
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < totalDescuentos; i++) {
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                if (itemService.intentarAjustarStock(itemId, -1)) {
+                    exitos.incrementAndGet();
+                } else {
+                    rechazos.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        assertEquals(stockInicial, exitos.get());
+        assertEquals(totalDescuentos - stockInicial, rechazos.get());
+        assertEquals(0, stock.get());
+        verify(itemRepository, never()).findById(anyLong());
+        verify(itemRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Reservar Stock - Éxito (bloqueo ordenado y descuento en lote)")
+    void reservarStock_Exito() {
+        // Arrange
+        Map<Long, Integer> cantidades = new TreeMap<>(Map.of(7L, 2, 3L, 5));
+        when(itemRepository.bloquearStockParaActualizar(any())).thenReturn(List.of(
+                new Object[]{3L, "Tela", 10, 0},
+                new Object[]{7L, "Botón", 2, 0}));
+        when(itemRepository.descontarStockEnLote(cantidades)).thenReturn(2);
+
+        // Act
+        assertDoesNotThrow(() -> itemService.reservarStock(cantidades));
+
+        // Assert
+        verify(itemRepository).bloquearStockParaActualizar(argThat(ids -> List.copyOf(ids).equals(List.of(3L, 7L))));
+        verify(itemRepository).descontarStockEnLote(cantidades);
+        verify(itemRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Reservar Stock - Insuficiente (no descuenta nada)")
+    void reservarStock_Insuficiente_DebeLanzarExcepcion() {
+        // Arrange
+        Map<Long, Integer> cantidades = new TreeMap<>(Map.of(3L, 5, 7L, 3));
+        when(itemRepository.bloquearStockParaActualizar(any())).thenReturn(List.of(
+                new Object[]{3L, "Tela", 10, 0},
+                new Object[]{7L, "Botón", 2, 0}));
+
+        // Act & Assert
+        IllegalOperationException exception = assertThrows(IllegalOperationException.class,
+                () -> itemService.reservarStock(cantidades));
+        assertTrue(exception.getMessage().contains("Stock insuficiente para el ítem 'Botón'"));
+        verify(itemRepository, never()).descontarStockEnLote(anyMap());
+    }
+
+    @Test
+    @DisplayName("Reservar Stock - Item No Encontrado")
+    void reservarStock_ItemNoEncontrado_DebeLanzarExcepcion() {
+        // Arrange
+        Map<Long, Integer> cantidades = new TreeMap<>(Map.of(3L, 1, 99L, 1));
+        when(itemRepository.bloquearStockParaActualizar(any())).thenReturn(List.<Object[]>of(new Object[]{3L, "Tela", 10, 0}));
+
+        // Act & Assert
+        ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class,
+                () -> itemService.reservarStock(cantidades));
+        assertEquals("Ítem no encontrado con ID: 99", exception.getMessage());
+        verify(itemRepository, never()).descontarStockEnLote(anyMap());
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - Ítem fragmentado se ajusta sobre sus shards")
+    void ajustarStock_ItemFragmentado_DelegaEnShards() {
+        // Arrange
+        Long itemId = itemEntidad.getItemId();
+        when(itemRepository.actualizarStock(itemId, -4)).thenReturn(0); // La fila item no aplica (stock_shards > 0)
+        when(itemRepository.findStockShardsById(itemId)).thenReturn(Optional.of(8));
+        when(itemStockShardService.intentarAjustarStock(itemId, 8, -4)).thenReturn(true);
+
+        // Act
+        assertDoesNotThrow(() -> itemService.ajustarStock(itemId, -4));
+
+        // Assert
+        verify(itemStockShardService).intentarAjustarStock(itemId, 8, -4);
+        verify(itemRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Reservar Stock - Ítems fragmentados no se bloquean ni entran en el lote")
+    void reservarStock_ItemFragmentado_NoSeBloquea() {
+        // Arrange
+        Map<Long, Integer> cantidades = new TreeMap<>(Map.of(3L, 5, 7L, 2));
+        when(itemRepository.findItemIdsFragmentados(any())).thenReturn(List.of(7L));
+        when(itemRepository.actualizarStock(7L, -2)).thenReturn(0);
+        when(itemRepository.findStockShardsById(7L)).thenReturn(Optional.of(4));
+        when(itemStockShardService.intentarAjustarStock(7L, 4, -2)).thenReturn(true);
+        when(itemRepository.bloquearStockParaActualizar(any())).thenReturn(List.<Object[]>of(new Object[]{3L, "Tela", 10, 0}));
+
+        // Act
+        assertDoesNotThrow(() -> itemService.reservarStock(cantidades));
+
+        // Assert
+        verify(itemRepository).bloquearStockParaActualizar(argThat(ids -> List.copyOf(ids).equals(List.of(3L))));
+        verify(itemRepository).descontarStockEnLote(Map.of(3L, 5));
+    }
+
+    @Test
+    @DisplayName("Reservar Stock - Con el motor en memoria activo solo los ítems no gestionados van a la BD")
+    void reservarStock_MotorActivo_SoloRestantesEnBD() {
+        // Arrange
+        Map<Long, Integer> cantidades = new TreeMap<>(Map.of(3L, 5, 7L, 2));
+        when(stockEngine.activo()).thenReturn(true);
+        when(stockEngine.reservar(cantidades)).thenReturn(new TreeMap<>(Map.of(7L, 2))); // 7 no gestionado
+        when(itemRepository.bloquearStockParaActualizar(any())).thenReturn(List.<Object[]>of(new Object[]{7L, "Botón", 10, 0}));
+
+        // Act
+        assertDoesNotThrow(() -> itemService.reservarStock(cantidades));
+
+        // Assert
+        verify(itemRepository).bloquearStockParaActualizar(argThat(ids -> List.copyOf(ids).equals(List.of(7L))));
+        verify(itemRepository).descontarStockEnLote(Map.of(7L, 2));
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - Con el motor en memoria activo no se ejecuta el UPDATE")
+    void ajustarStock_MotorActivo_NoTocaBD() {
+        // Arrange
+        Long itemId = itemEntidad.getItemId();
+        when(stockEngine.activo()).thenReturn(true);
+        when(stockEngine.intentarAjustar(itemId, -4)).thenReturn(true);
+
+        // Act
+        assertDoesNotThrow(() -> itemService.ajustarStock(itemId, -4));
+
+        // Assert
+        verify(itemRepository, never()).actualizarStock(anyLong(), anyInt());
+        verify(itemRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Obtener Resumen Inventario - Se lee del rollup sin agrupar la tabla item")
+    void obtenerResumenInventario_LeeRollup() {
+        // Arrange
+        List<Object[]> rollup = List.<Object[]>of(new Object[]{Item.TipoItem.MATERIA_PRIMA, 3L, 120L, new BigDecimal("960.00")});
+        when(inventarioResumenRepository.obtenerResumen(null, 2L)).thenReturn(rollup);
+
+        // Act
+        List<Object[]> resumen = itemService.obtenerResumenInventario(null, 2L);
+
+        // Assert
+        assertSame(rollup, resumen);
+        verifyNoInteractions(itemRepository);
+    }
+
+    @Test
+    @DisplayName("Conciliar Resumen Inventario - Corrige solo las claves con deriva")
+    void conciliarResumenInventario_CorrigeDiferencias() {
+        // Arrange
+        List<Object[]> diferencias = List.<Object[]>of(new Object[]{"PRODUCTO_TERMINADO", 1L, 2L, 0L, -4L, new BigDecimal("-40.00")});
+        when(inventarioResumenRepository.calcularDiferencias()).thenReturn(List.of()).thenReturn(diferencias);
+
+        // Act & Assert
+        assertEquals(0, itemService.conciliarResumenInventario());
+        verify(inventarioResumenRepository, never()).corregir(any());
+        assertEquals(1, itemService.conciliarResumenInventario());
+        verify(inventarioResumenRepository).corregir(diferencias);
+    }
+
+    @Test
+    @DisplayName("Aplicar Resumen Pendiente - Traslada un lote de deltas de los triggers")
+    void aplicarResumenInventarioPendiente_TrasladaLote() {
+        // Arrange
+        when(inventarioResumenRepository.aplicarPendientes(ItemService.LOTE_APLICACION_RESUMEN)).thenReturn(7).thenReturn(0);
+
+        // Act & Assert
+        assertEquals(7, itemService.aplicarResumenInventarioPendiente());
+        assertEquals(0, itemService.aplicarResumenInventarioPendiente());
+        verifyNoInteractions(itemRepository);
+    }
+
+    @Test
+    @DisplayName("Actualizar Ítem - If-Match desactualizado con el mismo código lanza PreconditionFailedException")
+    @SuppressWarnings("unchecked")
+    void actualizarItem_VersionDesactualizadaMismoCodigo_DebeLanzarExcepcion() {
+        // Arrange
+        itemEntidad.setVersion(4L);
+        when(politicaReintentoOptimista.ejecutar(anyString(), eq(false), any(Supplier.class)))
+                .thenAnswer(inv -> ((Supplier<?>) inv.getArgument(2)).get());
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(itemEntidad));
+
+        // Act & Assert
+        assertThrows(PreconditionFailedException.class, () -> itemService.actualizarItem(1L, itemDto, 3L));
+        verify(itemRepository, never()).save(any(Item.class));
+    }
+}
@@ -0,0 +1,170 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.entity.*;
+import com.telastech360.crmTT360.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Descuentos concurrentes sobre un ítem fragmentado contra MySQL. Los descuentos grandes superan el
+ * stock de cualquier shard y siempre pasan por el bloqueo ordenado de todos los shards, mientras otros
+ * hilos descuentan unidades sueltas de un shard aleatorio: ninguna combinación debe interbloquearse
+ * (un interbloqueo llegaría como excepción a Future.get) ni dejar un shard en negativo.
+ * Sin @Transactional en la clase: cada ajuste se confirma en su propia transacción.
+ */
+@SpringBootTest
+class ItemStockShardServiceConcurrenteIntegrationTest {
+
+    private static final int SHARDS = 8;
+    private static final int STOCK_INICIAL = SHARDS * 500;
+    private static final int DESCUENTO_GRANDE = 600; // Mayor que el stock de cualquier shard
+    private static final int HILOS = 32;
+    private static final int AJUSTES_POR_HILO = 50;
+
+    @Autowired private ItemStockShardService itemStockShardService;
+    @Autowired private ItemRepository itemRepository;
+    @Autowired private BodegaRepository bodegaRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private EstadoRepository estadoRepository;
+    @Autowired private ProveedorRepository proveedorRepository;
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private RolRepository rolRepository;
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private Item item;
+
+    @BeforeEach
+    void setUpTestData() {
+        Estado estadoItem = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ITEM, "Activo Item Test Int")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ITEM, "Activo Item Test Int")));
+        Estado estadoBodega = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")));
+        Bodega bodega = bodegaRepository.findByNombre("Bodega Test Stock Concurrente")
+                .orElseGet(() -> {
+                    Bodega b = new Bodega();
+                    b.setNombre("Bodega Test Stock Concurrente");
+                    b.setTipoBodega(Bodega.TipoBodega.PRODUCTO_TERMINADO);
+                    b.setCapacidadMaxima(100000);
+                    b.setUbicacion("Ubic Test Stock Concurrente");
+                    b.setEstado(estadoBodega);
+                    return bodegaRepository.saveAndFlush(b);
+                });
+        Categoria categoria = categoriaRepository.findByNombre("Cat Test Item Int")
+                .orElseGet(() -> categoriaRepository.saveAndFlush(new Categoria("Cat Test Item Int")));
+        Proveedor proveedor = proveedorRepository.findByEmail("prov.item.int@test.com")
+                .orElseGet(() -> proveedorRepository.saveAndFlush(new Proveedor("Prov Test Item Int", "prov.item.int@test.com")));
+        Rol rolAdmin = rolRepository.findByNombre("ADMIN")
+                .orElseGet(() -> {
+                    Rol nuevoRol = new Rol();
+                    nuevoRol.setNombre("ADMIN");
+                    nuevoRol.setDescripcion("Rol Admin Test");
+                    return rolRepository.saveAndFlush(nuevoRol);
+                });
+        Usuario usuario = usuarioRepository.findByEmail("admin.item.int@test.com")
+                .orElseGet(() -> {
+                    Usuario u = new Usuario();
+                    u.setNombre("Admin Test Loader Item Int");
+                    u.setEmail("admin.item.int@test.com");
+                    u.setPasswordHash(passwordEncoder.encode("PasswordAdmin123."));
+                    u.setRol(rolAdmin);
+                    u.setEstado("ACTIVO");
+                    return usuarioRepository.saveAndFlush(u);
+                });
+
+        Producto producto = new Producto();
+        producto.setCodigo("ITEMSHARD" + System.nanoTime());
+        producto.setNombre("Item Shards Concurrente");
+        producto.setUnidadMedida("Unidad");
+        producto.setPrecio(new BigDecimal("10.00"));
+        producto.setStockDisponible(STOCK_INICIAL);
+        producto.setStockMinimo(0);
+        producto.setStockMaximo(10000);
+        producto.setBodega(bodega);
+        producto.setCategoria(categoria);
+        producto.setEstado(estadoItem);
+        producto.setProveedor(proveedor);
+        producto.setUsuario(usuario);
+        producto.setTipoPrenda(Producto.TipoPrenda.CAMISA);
+        producto.setTalla(Producto.Talla.M);
+        producto.setColor("Negro Test Int");
+        producto.setComposicion("Algodon Test Int");
+        producto.setFechaFabricacion(new Date(System.currentTimeMillis()));
+        item = itemRepository.saveAndFlush(producto);
+        itemStockShardService.configurarShards(item.getItemId(), SHARDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (item != null) {
+            jdbcTemplate.update("DELETE FROM item_stock_shard WHERE item_id = ?", item.getItemId());
+            itemRepository.deleteById(item.getItemId());
+        }
+    }
+
+    private int consultarShards(String agregado) {
+        return jdbcTemplate.queryForObject("SELECT " + agregado + " FROM item_stock_shard WHERE item_id = ?",
+                Integer.class, item.getItemId());
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - Descuentos concurrentes que fuerzan el bloqueo de todos los shards no se interbloquean")
+    void intentarAjustarStock_RepartoConcurrente_SinInterbloqueos() throws Exception {
+        // Arrange: la mitad de los hilos descuenta de 600 en 600 y la otra mitad de 1 en 1
+        Long itemId = item.getItemId();
+        AtomicInteger unidadesDescontadas = new AtomicInteger();
+        AtomicInteger grandesAplicados = new AtomicInteger();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Act
+        try {
+            for (int h = 0; h < HILOS; h++) {
+                int cantidad = h % 2 == 0 ? DESCUENTO_GRANDE : 1;
+                tareas.add(executor.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < AJUSTES_POR_HILO; i++) {
+                        if (itemStockShardService.intentarAjustarStock(itemId, SHARDS, -cantidad)) {
+                            unidadesDescontadas.addAndGet(cantidad);
+                            if (cantidad == DESCUENTO_GRANDE) {
+                                grandesAplicados.incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertTrue(grandesAplicados.get() > 0, "Ningún descuento pasó por el reparto bajo bloqueo");
+        assertEquals(STOCK_INICIAL - unidadesDescontadas.get(), consultarShards("SUM(stock)"));
+        assertTrue(consultarShards("MIN(stock)") >= 0);
+    }
+}
@@ -0,0 +1,226 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.entity.ItemStockShard;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.repository.ItemStockShardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItemStockShardServiceTest {
+
+    private static final Long ITEM_ID = 1L;
+
+    @Mock private ItemRepository itemRepository;
+    @Mock private ItemStockShardRepository itemStockShardRepository;
+
+    private ItemStockShardService itemStockShardService;
+
+    @BeforeEach
+    void setUp() {
+        itemStockShardService = new ItemStockShardService(itemRepository, itemStockShardRepository, 8);
+    }
+
+    private static List<ItemStockShard> shards(int... stocks) {
+        List<ItemStockShard> shards = new ArrayList<>();
+        for (int i = 0; i < stocks.length; i++) {
+            shards.add(new ItemStockShard(ITEM_ID, i, stocks[i]));
+        }
+        return shards;
+    }
+
+    private static int[] stocks(Iterable<ItemStockShard> shards) {
+        return StreamSupport.stream(shards.spliterator(), false).mapToInt(ItemStockShard::getStock).toArray();
+    }
+
+    // Simula la lectura y el UPDATE condicional por shard sobre un array de stocks
+    private void simularAjusteShard(int[] stock) {
+        lenient().when(itemStockShardRepository.leerStockShard(eq(ITEM_ID), anyInt())).thenAnswer(inv -> {
+            int shardNo = inv.getArgument(1);
+            return shardNo < stock.length ? Optional.of(stock[shardNo]) : Optional.empty();
+        });
+        lenient().when(itemStockShardRepository.ajustarStockShard(eq(ITEM_ID), anyInt(), anyInt())).thenAnswer(inv -> {
+            int shardNo = inv.getArgument(1);
+            int cantidad = inv.getArgument(2);
+            if (shardNo >= stock.length || stock[shardNo] + cantidad < 0) {
+                return 0;
+            }
+            stock[shardNo] += cantidad;
+            return 1;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private int[] stocksGuardados() {
+        ArgumentCaptor<Iterable<ItemStockShard>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(itemStockShardRepository).saveAll(captor.capture());
+        return stocks(captor.getValue());
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - El decremento se aplica sobre un único shard con stock, sin bloquear el resto")
+    void intentarAjustarStock_DecrementoEnUnShard() {
+        // Arrange
+        int[] stock = {5, 5, 5, 5};
+        simularAjusteShard(stock);
+
+        // Act
+        boolean ajustado = itemStockShardService.intentarAjustarStock(ITEM_ID, 4, -3);
+
+        // Assert
+        assertTrue(ajustado);
+        assertEquals(17, Arrays.stream(stock).sum());
+        assertEquals(2, Arrays.stream(stock).min().getAsInt());
+        verify(itemStockShardRepository, times(1)).ajustarStockShard(eq(ITEM_ID), anyInt(), eq(-3));
+        verify(itemStockShardRepository, never()).findByItemIdParaActualizar(any());
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - El incremento va a un único shard")
+    void intentarAjustarStock_IncrementoEnUnShard() {
+        // Arrange
+        int[] stock = {1, 1, 1};
+        simularAjusteShard(stock);
+
+        // Act
+        boolean ajustado = itemStockShardService.intentarAjustarStock(ITEM_ID, 3, 4);
+
+        // Assert
+        assertTrue(ajustado);
+        assertEquals(7, Arrays.stream(stock).sum());
+        assertEquals(5, Arrays.stream(stock).max().getAsInt());
+        verify(itemStockShardRepository, times(1)).ajustarStockShard(eq(ITEM_ID), anyInt(), eq(4));
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - Si el shard elegido no cubre el decremento se reparte entre varios bajo bloqueo ordenado")
+    void intentarAjustarStock_ShardsAgotados_RepartirEntreVarios() {
+        // Arrange
+        int[] stock = {2, 2, 2};
+        simularAjusteShard(stock);
+        when(itemStockShardRepository.findByItemIdParaActualizar(ITEM_ID)).thenReturn(shards(stock));
+
+        // Act
+        boolean ajustado = itemStockShardService.intentarAjustarStock(ITEM_ID, 3, -5);
+
+        // Assert
+        assertTrue(ajustado);
+        // Sin UPDATE sobre shards sueltos: el único bloqueo es el de todos los shards en orden
+        verify(itemStockShardRepository, never()).ajustarStockShard(any(), anyInt(), anyInt());
+        assertArrayEquals(new int[]{0, 0, 1}, stocksGuardados());
+    }
+
+    @Test
+    @DisplayName("Ajustar Stock - Sin stock total suficiente en los shards no se descuenta nada")
+    void intentarAjustarStock_StockTotalInsuficiente() {
+        // Arrange
+        int[] stock = {1, 1};
+        simularAjusteShard(stock);
+        when(itemStockShardRepository.findByItemIdParaActualizar(ITEM_ID)).thenReturn(shards(stock));
+
+        // Act
+        boolean ajustado = itemStockShardService.intentarAjustarStock(ITEM_ID, 2, -5);
+
+        // Assert
+        assertFalse(ajustado);
+        assertArrayEquals(new int[]{1, 1}, stock);
+        verify(itemStockShardRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Configurar Shards - Con 0 shards todo el stock vuelve a la fila base")
+    void configurarShards_Cero_DrenaALaFilaBase() {
+        // Arrange
+        List<ItemStockShard> actuales = shards(4, 5);
+        when(itemRepository.bloquearStockParaActualizar(List.of(ITEM_ID)))
+                .thenReturn(List.<Object[]>of(new Object[]{ITEM_ID, "Tela", 3, 2}));
+        when(itemStockShardRepository.findByItemIdParaActualizar(ITEM_ID)).thenReturn(actuales);
+
+        // Act
+        itemStockShardService.configurarShards(ITEM_ID, 0);
+
+        // Assert
+        verify(itemStockShardRepository).deleteAll(actuales);
+        verify(itemRepository).actualizarFragmentacion(ITEM_ID, 0, 12);
+        verify(itemStockShardRepository, never()).saveAll(any());
+    }
+
+    @Test
+    @DisplayName("Configurar Shards - Reparte el stock de la fila y de los shards existentes")
+    void configurarShards_RepartirStockTotal() {
+        // Arrange: 10 unidades en la fila y 1 en los shards actuales
+        when(itemRepository.bloquearStockParaActualizar(List.of(ITEM_ID)))
+                .thenReturn(List.<Object[]>of(new Object[]{ITEM_ID, "Tela", 10, 2}));
+        when(itemStockShardRepository.findByItemIdParaActualizar(ITEM_ID)).thenReturn(shards(1, 0));
+
+        // Act
+        itemStockShardService.configurarShards(ITEM_ID, 3);
+
+        // Assert
+        assertArrayEquals(new int[]{4, 4, 3}, stocksGuardados());
+        verify(itemRepository).actualizarFragmentacion(ITEM_ID, 3, 0);
+        verify(itemStockShardRepository, never()).deleteAll(any());
+    }
+
+    @Test
+    @DisplayName("Configurar Shards - Al reducir el número de shards borra los sobrantes")
+    void configurarShards_ReducirBorraSobrantes() {
+        // Arrange
+        List<ItemStockShard> actuales = shards(3, 3, 3, 3);
+        when(itemRepository.bloquearStockParaActualizar(List.of(ITEM_ID)))
+                .thenReturn(List.<Object[]>of(new Object[]{ITEM_ID, "Tela", 0, 4}));
+        when(itemStockShardRepository.findByItemIdParaActualizar(ITEM_ID)).thenReturn(actuales);
+
+        // Act
+        itemStockShardService.configurarShards(ITEM_ID, 2);
+
+        // Assert
+        verify(itemStockShardRepository).deleteAll(actuales.subList(2, 4));
+        assertArrayEquals(new int[]{6, 6}, stocksGuardados());
+        verify(itemRepository).actualizarFragmentacion(ITEM_ID, 2, 0);
+    }
+
+    @Test
+    @DisplayName("Configurar Shards - Rechaza un número fuera de rango y los ítems inexistentes")
+    void configurarShards_Validaciones() {
+        // Arrange
+        when(itemRepository.bloquearStockParaActualizar(List.of(99L))).thenReturn(List.of());
+
+        // Act & Assert
+        assertThrows(InvalidDataException.class, () -> itemStockShardService.configurarShards(ITEM_ID, 9));
+        assertThrows(InvalidDataException.class, () -> itemStockShardService.configurarShards(ITEM_ID, -1));
+        assertThrows(ResourceNotFoundException.class, () -> itemStockShardService.configurarShards(99L, 2));
+        verify(itemRepository, never()).actualizarFragmentacion(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Rebalancear - Reparte equitativamente el stock total entre los shards")
+    void rebalancear_RepartoEquitativo() {
+        // Arrange
+        when(itemStockShardRepository.findByItemIdParaActualizar(ITEM_ID)).thenReturn(shards(9, 0, 1));
+
+        // Act
+        itemStockShardService.rebalancear(ITEM_ID);
+
+        // Assert
+        assertArrayEquals(new int[]{4, 3, 3}, stocksGuardados());
+        verify(itemStockShardRepository, never()).deleteAll(any());
+    }
+}
@@ -0,0 +1,210 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.ItemMasVendidoDTO;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.VentasItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ItemsMasVendidosServiceTest {
+
+    private static final long HORA_MS = 3_600_000L;
+    // Hora en curso: la 1000 desde la época
+    private static final long AHORA = 1000 * HORA_MS + 120_000;
+
+    @Mock private VentasItemRepository ventasItemRepository;
+    @Mock private EstadoRepository estadoRepository;
+
+    private ItemsMasVendidosService itemsMasVendidosService;
+
+    @BeforeEach
+    void setUp() {
+        // 24 horas retenidas, 3 ítems seguidos por hora
+        itemsMasVendidosService = new ItemsMasVendidosService(ventasItemRepository, estadoRepository, 24, 3,
+                Clock.fixed(Instant.ofEpochMilli(AHORA), ZoneOffset.UTC));
+        Estado pendiente = new Estado();
+        pendiente.setEstadoId(1L);
+        pendiente.setValor("PENDIENTE");
+        Estado cancelado = new Estado();
+        cancelado.setEstadoId(9L);
+        cancelado.setValor("Cancelado");
+        when(estadoRepository.findEstadosPedido()).thenReturn(List.of(pendiente, cancelado));
+        // Carga inicial: 5 unidades del ítem 7 hace 2 horas
+        when(ventasItemRepository.sumarCantidadesPorHora(new Timestamp((1000 - 23) * HORA_MS)))
+                .thenReturn(List.<Object[]>of(new Object[]{7L, 998L, 5L}));
+        itemsMasVendidosService.inicializar();
+    }
+
+    private static PedidoCreadoEvent creado(long pedidoId, long fechaMs, Map<Long, Integer> cantidades) {
+        return new PedidoCreadoEvent(pedidoId, 10L, 1L, new Timestamp(fechaMs), BigDecimal.ONE, cantidades);
+    }
+
+    private static List<Long> ids(List<ItemMasVendidoDTO> ranking) {
+        return ranking.stream().map(ItemMasVendidoDTO::getItemId).toList();
+    }
+
+    @Test
+    @DisplayName("Obtener Más Vendidos - Suma desde memoria las horas del periodo")
+    void obtenerMasVendidos_DesdeMemoria() {
+        // Arrange
+        itemsMasVendidosService.alCrearPedido(creado(1L, AHORA, Map.of(3L, 4, 7L, 1)));
+        itemsMasVendidosService.alCrearPedido(creado(2L, AHORA - HORA_MS, Map.of(3L, 3)));
+
+        // Act
+        List<ItemMasVendidoDTO> ultimas3Horas = itemsMasVendidosService.obtenerMasVendidos(3, 10);
+        List<ItemMasVendidoDTO> ultimaHora = itemsMasVendidosService.obtenerMasVendidos(1, 1);
+
+        // Assert
+        assertEquals(List.of(3L, 7L), ids(ultimas3Horas));
+        assertEquals(7, ultimas3Horas.get(0).getCantidad());
+        assertEquals(6, ultimas3Horas.get(1).getCantidad());
+        assertEquals(0, ultimas3Horas.get(0).getErrorMaximo());
+        assertEquals(List.of(3L), ids(ultimaHora));
+        assertEquals(4, ultimaHora.get(0).getCantidad());
+        verify(ventasItemRepository, never()).buscarMasVendidos(any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Cancelación - Resta las líneas del pedido de la hora en que se creó")
+    void alCambiarEstado_CancelacionResta() {
+        // Arrange
+        itemsMasVendidosService.alCrearPedido(creado(1L, AHORA - HORA_MS, Map.of(3L, 4)));
+        when(ventasItemRepository.buscarLineas(List.of(1L)))
+                .thenReturn(List.<Object[]>of(new Object[]{new Timestamp(AHORA - HORA_MS), 3L, 4}));
+
+        // Act
+        itemsMasVendidosService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(1L, 1L), 9L));
+        // Pendiente a pendiente: no entra ni sale de la cancelación
+        itemsMasVendidosService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(2L, 1L), 1L));
+
+        // Assert
+        assertEquals(List.of(7L), ids(itemsMasVendidosService.obtenerMasVendidos(24, 10)));
+        verify(ventasItemRepository, times(1)).buscarLineas(any());
+    }
+
+    @Test
+    @DisplayName("Reactivación - Un pedido que sale de la cancelación vuelve a sumar sus líneas")
+    void alCambiarEstado_ReactivacionVuelveASumar() {
+        // Arrange
+        itemsMasVendidosService.alCrearPedido(creado(1L, AHORA - HORA_MS, Map.of(3L, 4)));
+        when(ventasItemRepository.buscarLineas(List.of(1L)))
+                .thenReturn(List.<Object[]>of(new Object[]{new Timestamp(AHORA - HORA_MS), 3L, 4}));
+        itemsMasVendidosService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(1L, 1L), 9L));
+
+        // Act
+        itemsMasVendidosService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(1L, 9L), 1L));
+        // Cancelado a cancelado: no cambia nada
+        itemsMasVendidosService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(2L, 9L), 9L));
+
+        // Assert
+        List<ItemMasVendidoDTO> ranking = itemsMasVendidosService.obtenerMasVendidos(24, 10);
+        assertEquals(List.of(7L, 3L), ids(ranking));
+        assertEquals(4, ranking.get(1).getCantidad());
+        verify(ventasItemRepository, times(2)).buscarLineas(any());
+    }
+
+    @Test
+    @DisplayName("Inicializar - Los eventos recibidos durante la carga no se cuentan dos veces")
+    void inicializar_EventosDuranteLaCarga_SinDuplicados() {
+        // Arrange: el pedido 20 ya está en la instantánea de la carga; el 21 se confirmó después
+        ItemsMasVendidosService servicio = new ItemsMasVendidosService(ventasItemRepository, estadoRepository, 24, 3,
+                Clock.fixed(Instant.ofEpochMilli(AHORA), ZoneOffset.UTC));
+        when(ventasItemRepository.sumarCantidadesPorHora(any())).thenAnswer(inv -> {
+            servicio.alCrearPedido(creado(20L, AHORA, Map.of(7L, 5)));
+            servicio.alCrearPedido(creado(21L, AHORA, Map.of(3L, 2)));
+            servicio.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(20L, 1L), 1L));
+            return List.<Object[]>of(new Object[]{7L, 1000L, 5L});
+        });
+        when(ventasItemRepository.buscarEstados(Set.of(20L, 21L))).thenReturn(Map.of(20L, 1L));
+
+        // Act
+        servicio.inicializar();
+
+        // Assert
+        List<ItemMasVendidoDTO> ranking = servicio.obtenerMasVendidos(1, 10);
+        assertEquals(List.of(7L, 3L), ids(ranking));
+        assertEquals(5, ranking.get(0).getCantidad());
+        assertEquals(2, ranking.get(1).getCantidad());
+        verify(ventasItemRepository, never()).buscarLineas(any());
+    }
+
+    @Test
+    @DisplayName("Obtener Más Vendidos - Con más ítems que contadores conserva los más vendidos")
+    void obtenerMasVendidos_SpaceSavingConservaLosMayores() {
+        // Arrange
+        Map<Long, Integer> cantidades = new HashMap<>();
+        cantidades.put(1L, 50);
+        cantidades.put(2L, 40);
+        itemsMasVendidosService.alCrearPedido(creado(1L, AHORA, cantidades));
+        for (long itemId = 100; itemId < 110; itemId++) {
+            itemsMasVendidosService.alCrearPedido(creado(itemId, AHORA, Map.of(itemId, 1)));
+        }
+
+        // Act
+        List<ItemMasVendidoDTO> ranking = itemsMasVendidosService.obtenerMasVendidos(1, 2);
+
+        // Assert
+        assertEquals(List.of(1L, 2L), ids(ranking));
+        assertEquals(50, ranking.get(0).getCantidad());
+        assertEquals(0, ranking.get(0).getErrorMaximo());
+    }
+
+    @Test
+    @DisplayName("Obtener Más Vendidos - Un ítem reemplazado en una hora no queda por debajo de su cantidad real")
+    void obtenerMasVendidos_ReemplazadoEnUnaHora_NoSubestima() {
+        // Arrange: hace una hora el ítem 3 (6 unidades) cede su contador al 4; en la hora actual vuelve con 5
+        long haceUnaHora = AHORA - HORA_MS;
+        itemsMasVendidosService.alCrearPedido(creado(1L, haceUnaHora, Map.of(1L, 10)));
+        itemsMasVendidosService.alCrearPedido(creado(2L, haceUnaHora, Map.of(2L, 8)));
+        itemsMasVendidosService.alCrearPedido(creado(3L, haceUnaHora, Map.of(3L, 6)));
+        itemsMasVendidosService.alCrearPedido(creado(4L, haceUnaHora, Map.of(4L, 7)));
+        itemsMasVendidosService.alCrearPedido(creado(5L, AHORA, Map.of(3L, 5)));
+
+        // Act
+        List<ItemMasVendidoDTO> ranking = itemsMasVendidosService.obtenerMasVendidos(2, 10);
+
+        // Assert: se le suma el mayor contador reemplazado en la hora en que falta, también como error
+        ItemMasVendidoDTO item3 = ranking.stream().filter(dto -> dto.getItemId() == 3L).findFirst().orElseThrow();
+        assertEquals(11, item3.getCantidad());
+        assertEquals(6, item3.getErrorMaximo());
+        // El ítem 1 aparece en la única hora con reemplazos y la hora actual no reemplazó ninguno
+        ItemMasVendidoDTO item1 = ranking.stream().filter(dto -> dto.getItemId() == 1L).findFirst().orElseThrow();
+        assertEquals(10, item1.getCantidad());
+        assertEquals(0, item1.getErrorMaximo());
+        assertEquals(List.of(4L, 3L, 1L, 2L), ids(ranking));
+    }
+
+    @Test
+    @DisplayName("Obtener Más Vendidos - Fuera de las horas retenidas calcula en la base de datos")
+    void obtenerMasVendidos_FueraDeMemoria_ConsultaExacta() {
+        // Arrange
+        List<ItemMasVendidoDTO> exacto = List.of(new ItemMasVendidoDTO(3L, 99L, 0L));
+        when(ventasItemRepository.buscarMasVendidos(new Timestamp((1000 - 47) * HORA_MS), 5)).thenReturn(exacto);
+
+        // Act & Assert
+        assertSame(exacto, itemsMasVendidosService.obtenerMasVendidos(48, 5));
+        assertThrows(InvalidDataException.class, () -> itemsMasVendidosService.obtenerMasVendidos(0, 5));
+        assertThrows(InvalidDataException.class, () -> itemsMasVendidosService.obtenerMasVendidos(24, 101));
+    }
+}
@@ -0,0 +1,133 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoDTO;
+import com.telastech360.crmTT360.dto.PedidoDetalleDTO;
+import com.telastech360.crmTT360.entity.*;
+import com.telastech360.crmTT360.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Benchmark de latencia de {@link PedidoService#crearPedidoConDetalles(PedidoDTO)} según el número de líneas.
+ * Requiere la base de datos MySQL configurada; no forma parte de la ejecución normal de pruebas
+ * (el nombre no termina en Test). Ejecutar con: {@code mvn test -Dtest=PedidoCreacionBenchmark}.
+ * Todo se ejecuta en una transacción que se revierte al final, por lo que no deja datos.
+ */
+@SpringBootTest
+@Transactional
+class PedidoCreacionBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(PedidoCreacionBenchmark.class);
+
+    private static final int[] LINEAS = {1, 10, 50, 200};
+    private static final int CALENTAMIENTO = 3;
+    private static final int REPETICIONES = 10;
+
+    @Autowired private PedidoService pedidoService;
+    @Autowired private ItemRepository itemRepository;
+    @Autowired private BodegaRepository bodegaRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private EstadoRepository estadoRepository;
+    @Autowired private ProveedorRepository proveedorRepository;
+    @Autowired private UsuarioRepository usuarioRepository;
+
+    private Estado estadoPedido;
+    private List<Long> itemIds;
+
+    @BeforeEach
+    void setUpDatos() {
+        estadoPedido = estadoRepository.findByTipoAndValor(Estado.TipoEstado.PEDIDO, "PENDIENTE")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.PEDIDO, "PENDIENTE")));
+        Estado estadoItem = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ITEM, "Activo Benchmark")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ITEM, "Activo Benchmark")));
+        Bodega bodega = bodegaRepository.findByNombre("Bodega Benchmark").orElseGet(() -> {
+            Bodega b = new Bodega();
+            b.setNombre("Bodega Benchmark");
+            b.setTipoBodega(Bodega.TipoBodega.PRODUCTO_TERMINADO);
+            b.setCapacidadMaxima(Integer.MAX_VALUE);
+            b.setUbicacion("Benchmark");
+            b.setEstado(estadoItem);
+            return bodegaRepository.saveAndFlush(b);
+        });
+        Categoria categoria = categoriaRepository.findByNombre("Cat Benchmark")
+                .orElseGet(() -> categoriaRepository.saveAndFlush(new Categoria("Cat Benchmark")));
+        Proveedor proveedor = proveedorRepository.findByEmail("prov.benchmark@test.com")
+                .orElseGet(() -> proveedorRepository.saveAndFlush(new Proveedor("Prov Benchmark", "prov.benchmark@test.com")));
+        Usuario usuario = usuarioRepository.findAll().stream().findFirst()
+                .orElseThrow(() -> new IllegalStateException("Se requiere al menos un usuario (DataLoader)."));
+
+        int maxLineas = Arrays.stream(LINEAS).max().orElse(1);
+        itemIds = new ArrayList<>(maxLineas);
+        for (int i = 0; i < maxLineas; i++) {
+            Producto producto = new Producto();
+            producto.setCodigo("BENCH" + System.nanoTime() + "-" + i);
+            producto.setNombre("Item Benchmark " + i);
+            producto.setUnidadMedida("Unidad");
+            producto.setPrecio(new BigDecimal("10.00"));
+            producto.setStockDisponible(1_000_000);
+            producto.setStockMinimo(0);
+            producto.setBodega(bodega);
+            producto.setCategoria(categoria);
+            producto.setEstado(estadoItem);
+            producto.setProveedor(proveedor);
+            producto.setUsuario(usuario);
+            producto.setTipoPrenda(Producto.TipoPrenda.CAMISA);
+            producto.setTalla(Producto.Talla.M);
+            producto.setColor("Gris");
+            producto.setComposicion("Algodón");
+            producto.setFechaFabricacion(new Date(System.currentTimeMillis()));
+            itemIds.add(itemRepository.save(producto).getItemId());
+        }
+        itemRepository.flush();
+    }
+
+    @Test
+    @DisplayName("Benchmark - Latencia de creación de pedido vs. número de líneas")
+    void latenciaCreacionPedidoPorNumeroDeLineas() {
+        log.info("{} | {} | {}", String.format("%8s", "líneas"), String.format("%12s", "media (ms)"), String.format("%12s", "mín (ms)"));
+        for (int lineas : LINEAS) {
+            PedidoDTO pedidoDto = construirPedido(lineas);
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                pedidoService.crearPedidoConDetalles(pedidoDto);
+            }
+            long totalNanos = 0;
+            long minNanos = Long.MAX_VALUE;
+            for (int i = 0; i < REPETICIONES; i++) {
+                long inicio = System.nanoTime();
+                Pedido pedido = pedidoService.crearPedidoConDetalles(pedidoDto);
+                long duracion = System.nanoTime() - inicio;
+                assertNotNull(pedido.getPedidoId());
+                totalNanos += duracion;
+                minNanos = Math.min(minNanos, duracion);
+            }
+            log.info("{} | {} | {}", String.format("%8d", lineas),
+                    String.format("%12.3f", totalNanos / (REPETICIONES * 1_000_000.0)),
+                    String.format("%12.3f", minNanos / 1_000_000.0));
+        }
+    }
+
+    private PedidoDTO construirPedido(int lineas) {
+        PedidoDTO dto = new PedidoDTO();
+        dto.setEstadoId(estadoPedido.getEstadoId());
+        List<PedidoDetalleDTO> detalles = new ArrayList<>(lineas);
+        for (int i = 0; i < lineas; i++) {
+            detalles.add(new PedidoDetalleDTO(itemIds.get(i), 1, new BigDecimal("10.00")));
+        }
+        dto.setDetalles(detalles);
+        return dto;
+    }
+}
@@ -0,0 +1,148 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoEstadoLoteDTO;
+import com.telastech360.crmTT360.dto.PedidoEstadoLoteResultadoDTO;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.repository.PedidoDetalleRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import com.telastech360.crmTT360.repository.TransicionEstadoPedidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PedidoEstadoLoteServiceTest {
+
+    @Mock private PedidoRepository pedidoRepository;
+    @Mock private PedidoDetalleRepository pedidoDetalleRepository;
+    @Mock private EstadoRepository estadoRepository;
+    @Mock private ItemRepository itemRepository;
+    @Mock private TransicionEstadoPedidoRepository transicionEstadoPedidoRepository;
+    @Mock private ItemStockShardService itemStockShardService;
+    @Mock private StockEngine stockEngine;
+    @Mock private AlertaStockBajoService alertaStockBajoService;
+    @Mock private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private PedidoEstadoLoteService pedidoEstadoLoteService;
+
+    private Estado pendiente;
+    private Estado completado;
+    private Estado cancelado;
+
+    @BeforeEach
+    void setUp() {
+        pendiente = estado(1L, "Pendiente");
+        completado = estado(2L, "COMPLETADO");
+        cancelado = estado(3L, "CANCELADO");
+    }
+
+    private static Estado estado(Long id, String valor) {
+        Estado estado = new Estado(Estado.TipoEstado.PEDIDO, valor);
+        estado.setEstadoId(id);
+        return estado;
+    }
+
+    @Test
+    @DisplayName("Cambiar Estado - Cancelación: transiciones validadas, un UPDATE y stock restaurado agregado por ítem")
+    void cambiarEstado_Cancelacion_ActualizaYRestauraAgregado() {
+        // Arrange
+        when(estadoRepository.findById(3L)).thenReturn(Optional.of(cancelado));
+        when(pedidoRepository.bloquearEstados(Set.of(10L, 11L, 12L, 13L, 99L))).thenReturn(List.of(
+                new Object[]{10L, 1L}, new Object[]{11L, 1L}, new Object[]{12L, 2L}, new Object[]{13L, 3L}));
+        when(estadoRepository.findAllById(any())).thenReturn(List.of(pendiente, completado, cancelado));
+        when(transicionEstadoPedidoRepository.buscarOrigenesPermitidos("CANCELADO"))
+                .thenReturn(Map.of("PENDIENTE", true, "EN_PROCESO", true));
+        when(pedidoDetalleRepository.sumarCantidadesPorItem(List.of(10L, 11L))).thenReturn(List.of(
+                new Object[]{100L, 7L, 0}, new Object[]{200L, 3L, 4}));
+
+        // Act
+        PedidoEstadoLoteResultadoDTO resultado = pedidoEstadoLoteService.cambiarEstado(
+                new PedidoEstadoLoteDTO(List.of(11L, 10L, 12L, 13L, 99L, 10L), 3L));
+
+        // Assert
+        assertEquals(List.of(10L, 11L), resultado.getActualizados());
+        assertEquals(List.of(13L), resultado.getSinCambios());
+        assertEquals(List.of(12L, 99L), resultado.getRechazados().stream()
+                .map(PedidoEstadoLoteResultadoDTO.Rechazo::pedidoId).toList());
+        assertTrue(resultado.getRechazados().get(0).mensaje().contains("COMPLETADO -> CANCELADO"));
+        assertEquals(2, resultado.getItemsConStockRestaurado());
+        verify(pedidoRepository).actualizarEstadoPedidos(List.of(10L, 11L), cancelado);
+        InOrder orden = inOrder(itemRepository);
+        orden.verify(itemRepository).bloquearStockParaActualizar(Set.of(100L));
+        orden.verify(itemRepository).restaurarStockDePedidos(List.of(10L, 11L), Set.of(100L));
+        verify(itemStockShardService).intentarAjustarStock(200L, 4, 3);
+        verify(alertaStockBajoService).registrarCambio(Set.of(100L, 200L));
+    }
+
+    @Test
+    @DisplayName("Cambiar Estado - Transición sin restauración de stock no toca el inventario")
+    void cambiarEstado_Completar_NoRestauraStock() {
+        // Arrange
+        when(estadoRepository.findById(2L)).thenReturn(Optional.of(completado));
+        when(pedidoRepository.bloquearEstados(Set.of(10L))).thenReturn(List.<Object[]>of(new Object[]{10L, 1L}));
+        when(estadoRepository.findAllById(any())).thenReturn(List.of(pendiente));
+        when(transicionEstadoPedidoRepository.buscarOrigenesPermitidos("COMPLETADO")).thenReturn(Map.of("PENDIENTE", false));
+
+        // Act
+        PedidoEstadoLoteResultadoDTO resultado = pedidoEstadoLoteService.cambiarEstado(new PedidoEstadoLoteDTO(List.of(10L), 2L));
+
+        // Assert
+        assertEquals(List.of(10L), resultado.getActualizados());
+        assertEquals(0, resultado.getItemsConStockRestaurado());
+        verify(pedidoRepository).actualizarEstadoPedidos(List.of(10L), completado);
+        verifyNoInteractions(pedidoDetalleRepository, itemRepository, alertaStockBajoService);
+    }
+
+    @Test
+    @DisplayName("Cambiar Estado - Con el motor de stock activo, sus ítems se restauran en memoria")
+    void cambiarEstado_MotorActivo_RestauraEnMotor() {
+        // Arrange
+        when(estadoRepository.findById(3L)).thenReturn(Optional.of(cancelado));
+        when(pedidoRepository.bloquearEstados(Set.of(10L))).thenReturn(List.<Object[]>of(new Object[]{10L, 1L}));
+        when(estadoRepository.findAllById(any())).thenReturn(List.of(pendiente));
+        when(transicionEstadoPedidoRepository.buscarOrigenesPermitidos("CANCELADO")).thenReturn(Map.of("PENDIENTE", true));
+        when(pedidoDetalleRepository.sumarCantidadesPorItem(List.of(10L)))
+                .thenReturn(List.<Object[]>of(new Object[]{100L, 5L, 0}));
+        when(stockEngine.activo()).thenReturn(true);
+        when(stockEngine.intentarAjustar(100L, 5)).thenReturn(true);
+
+        // Act
+        pedidoEstadoLoteService.cambiarEstado(new PedidoEstadoLoteDTO(List.of(10L), 3L));
+
+        // Assert
+        verify(itemRepository, never()).restaurarStockDePedidos(anyCollection(), anyCollection());
+        verify(alertaStockBajoService).registrarCambio(Set.of(100L));
+    }
+
+    @Test
+    @DisplayName("Cambiar Estado - Estado destino inexistente lanza ResourceNotFoundException")
+    void cambiarEstado_EstadoInexistente_LanzaNotFound() {
+        // Arrange
+        when(estadoRepository.findById(9L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+                () -> pedidoEstadoLoteService.cambiarEstado(new PedidoEstadoLoteDTO(List.of(10L), 9L)));
+        verifyNoInteractions(pedidoRepository);
+    }
+}
@@ -0,0 +1,185 @@
+package com.telastech360.crmTT360.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telastech360.crmTT360.dto.PedidoLoteResultadoDTO;
+import com.telastech360.crmTT360.dto.PedidoLoteResultadoDTO.Estado;
+import com.telastech360.crmTT360.entity.ClienteInterno;
+import com.telastech360.crmTT360.repository.ClienteInternoRepository;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.ItemRepository;
+import com.telastech360.crmTT360.repository.PedidoLoteRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PedidoLoteServiceTest {
+
+    @Mock private ClienteInternoRepository clienteRepository;
+    @Mock private EstadoRepository estadoRepository;
+    @Mock private ItemRepository itemRepository;
+    @Mock private PedidoLoteRepository pedidoLoteRepository;
+    @Mock private ItemStockShardService itemStockShardService;
+    @Mock private StockEngine stockEngine;
+    @Mock private AlertaStockBajoService alertaStockBajoService;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private ApplicationEventPublisher eventPublisher;
+
+    private PedidoLoteService pedidoLoteService;
+    private List<List<PedidoLoteResultadoDTO>> tramos;
+
+    @BeforeEach
+    void setUp() {
+        pedidoLoteService = new PedidoLoteService(clienteRepository, estadoRepository, itemRepository,
+                pedidoLoteRepository, itemStockShardService, stockEngine, alertaStockBajoService, eventPublisher, transactionManager,
+                new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), 2);
+        tramos = new ArrayList<>();
+    }
+
+    private List<PedidoLoteResultadoDTO> importar(String cuerpo) throws IOException {
+        pedidoLoteService.importar(new ByteArrayInputStream(cuerpo.getBytes(StandardCharsets.UTF_8)), tramos::add);
+        return tramos.stream().flatMap(List::stream).toList();
+    }
+
+    private static String pedido(long clienteId, long itemId, int cantidad) {
+        return "{\"clienteId\":" + clienteId + ",\"estadoId\":1,\"detalles\":[{\"itemId\":" + itemId
+                + ",\"cantidad\":" + cantidad + ",\"precioUnitario\":2.50}]}";
+    }
+
+    private void prepararMaestros(Long... clienteIds) {
+        List<ClienteInterno> clientes = new ArrayList<>();
+        for (Long clienteId : clienteIds) {
+            ClienteInterno cliente = new ClienteInterno();
+            cliente.setClienteId(clienteId);
+            clientes.add(cliente);
+        }
+        when(clienteRepository.findAllById(any())).thenReturn(clientes);
+        com.telastech360.crmTT360.entity.Estado estado = new com.telastech360.crmTT360.entity.Estado();
+        estado.setEstadoId(1L);
+        when(estadoRepository.findAllById(any())).thenReturn(List.of(estado));
+    }
+
+    @Test
+    @DisplayName("Importar - NDJSON: el stock reservado por un pedido no está disponible para el siguiente del tramo")
+    void importar_Ndjson_EncadenaStockDentroDelTramo() throws IOException {
+        // Arrange
+        prepararMaestros(10L);
+        when(itemRepository.bloquearStockParaActualizar(Set.of(1L)))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 5, 0}));
+        when(pedidoLoteRepository.insertarPedidos(anyList())).thenReturn(List.of(100L));
+
+        // Act
+        List<PedidoLoteResultadoDTO> resultados = importar(pedido(10, 1, 4) + "\n" + pedido(10, 1, 2) + "\n");
+
+        // Assert
+        assertEquals(Estado.CREADO, resultados.get(0).getEstado());
+        assertEquals(100L, resultados.get(0).getPedidoId());
+        assertEquals(Estado.RECHAZADO, resultados.get(1).getEstado());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> detalles = ArgumentCaptor.forClass(List.class);
+        verify(pedidoLoteRepository).insertarDetalles(detalles.capture());
+        assertEquals(1, detalles.getValue().size());
+        assertEquals(100L, detalles.getValue().get(0)[0]);
+        verify(itemRepository).descontarStockEnLote(Map.of(1L, 4));
+        verify(alertaStockBajoService).registrarCambio(Set.of(1L));
+    }
+
+    @Test
+    @DisplayName("Importar - Array JSON: se procesa en tramos, una transacción y una entrega por tramo")
+    void importar_Array_ProcesaPorTramos() throws IOException {
+        // Arrange
+        prepararMaestros(10L);
+        when(itemRepository.bloquearStockParaActualizar(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 100, 0}));
+        when(pedidoLoteRepository.insertarPedidos(anyList())).thenReturn(List.of(1L, 2L)).thenReturn(List.of(3L));
+
+        // Act
+        List<PedidoLoteResultadoDTO> resultados = importar("[" + pedido(10, 1, 1) + "," + pedido(10, 1, 1) + ","
+                + pedido(10, 1, 1) + "]");
+
+        // Assert
+        assertEquals(2, tramos.size());
+        assertEquals(List.of(0, 1, 2), resultados.stream().map(PedidoLoteResultadoDTO::getFila).toList());
+        assertEquals(List.of(1L, 2L, 3L), resultados.stream().map(PedidoLoteResultadoDTO::getPedidoId).toList());
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Importar - Pedidos inválidos y con referencias inexistentes se informan sin abortar el tramo")
+    void importar_InvalidosYNoEncontrados_SeInforman() throws IOException {
+        // Arrange
+        prepararMaestros();
+        when(itemRepository.bloquearStockParaActualizar(Set.of(1L)))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 5, 0}));
+
+        // Act
+        List<PedidoLoteResultadoDTO> resultados = importar("{\"estadoId\":1,\"detalles\":[]}\n" + pedido(99, 1, 1));
+
+        // Assert
+        assertEquals(Estado.INVALIDO, resultados.get(0).getEstado());
+        assertEquals(Estado.NO_ENCONTRADO, resultados.get(1).getEstado());
+        assertTrue(resultados.get(1).getMensaje().contains("99"));
+        verify(pedidoLoteRepository, never()).insertarPedidos(anyList());
+        verify(alertaStockBajoService, never()).registrarCambio(any());
+    }
+
+    @Test
+    @DisplayName("Importar - Error de base de datos deshace solo su tramo y se informa como ERROR")
+    void importar_ErrorBaseDeDatos_DeshaceElTramo() throws IOException {
+        // Arrange
+        prepararMaestros(10L);
+        when(itemRepository.bloquearStockParaActualizar(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 5, 0}));
+        when(pedidoLoteRepository.insertarPedidos(anyList())).thenThrow(new QueryTimeoutException("timeout"));
+
+        // Act
+        List<PedidoLoteResultadoDTO> resultados = importar(pedido(10, 1, 1));
+
+        // Assert
+        assertEquals(Estado.ERROR, resultados.get(0).getEstado());
+        assertNull(resultados.get(0).getPedidoId());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    @DisplayName("Importar - JSON mal formado: se confirma lo pendiente y se detiene con una fila INVALIDO")
+    void importar_JsonMalFormado_SeDetiene() throws IOException {
+        // Arrange
+        prepararMaestros(10L);
+        when(itemRepository.bloquearStockParaActualizar(any()))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Tela", 5, 0}));
+        when(pedidoLoteRepository.insertarPedidos(anyList())).thenReturn(List.of(7L));
+
+        // Act
+        List<PedidoLoteResultadoDTO> resultados = importar(pedido(10, 1, 1) + "\n{\"clienteId\": }\n" + pedido(10, 1, 1));
+
+        // Assert
+        assertEquals(2, resultados.size());
+        assertEquals(Estado.CREADO, resultados.get(0).getEstado());
+        assertEquals(Estado.INVALIDO, resultados.get(1).getEstado());
+        assertEquals(1, resultados.get(1).getFila());
+        verify(pedidoLoteRepository, times(1)).insertarPedidos(anyList());
+    }
+}
@@ -0,0 +1,147 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoPaginaDTO;
+import com.telastech360.crmTT360.entity.*;
+import com.telastech360.crmTT360.repository.*;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cuenta con las estadísticas de Hibernate las sentencias que emite el listado paginado de pedidos
+ * sobre MySQL: la página y sus detalles deben cargarse con dos consultas sea cual sea el tamaño de
+ * la página, sin una consulta por pedido.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class PedidoServicePaginacionIntegrationTest {
+
+    private static final int PEDIDOS = 60;
+
+    @Autowired private PedidoService pedidoService;
+    @Autowired private PedidoRepository pedidoRepository;
+    @Autowired private PedidoDetalleRepository pedidoDetalleRepository;
+    @Autowired private ClienteInternoRepository clienteInternoRepository;
+    @Autowired private ItemRepository itemRepository;
+    @Autowired private BodegaRepository bodegaRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private EstadoRepository estadoRepository;
+    @Autowired private ProveedorRepository proveedorRepository;
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private RolRepository rolRepository;
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private EntityManager entityManager;
+
+    @BeforeEach
+    void setUpTestData() {
+        Estado estadoItem = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ITEM, "Activo Item Test Int")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ITEM, "Activo Item Test Int")));
+        Estado estadoBodega = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ACTIVO, "Activo Bodega Test")));
+        Estado estadoPedido = estadoRepository.findByTipoAndValor(Estado.TipoEstado.PEDIDO, "Pendiente Test Int")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.PEDIDO, "Pendiente Test Int")));
+        Bodega bodega = bodegaRepository.findByNombre("Bodega Test Item Int")
+                .orElseGet(() -> {
+                    Bodega b = new Bodega();
+                    b.setNombre("Bodega Test Item Int");
+                    b.setTipoBodega(Bodega.TipoBodega.PRODUCTO_TERMINADO);
+                    b.setCapacidadMaxima(1000);
+                    b.setUbicacion("Ubic Test Item Int");
+                    b.setEstado(estadoBodega);
+                    return bodegaRepository.saveAndFlush(b);
+                });
+        Categoria categoria = categoriaRepository.findByNombre("Cat Test Item Int")
+                .orElseGet(() -> categoriaRepository.saveAndFlush(new Categoria("Cat Test Item Int")));
+        Proveedor proveedor = proveedorRepository.findByEmail("prov.item.int@test.com")
+                .orElseGet(() -> proveedorRepository.saveAndFlush(new Proveedor("Prov Test Item Int", "prov.item.int@test.com")));
+        Rol rolAdmin = rolRepository.findByNombre("ADMIN")
+                .orElseGet(() -> {
+                    Rol nuevoRol = new Rol();
+                    nuevoRol.setNombre("ADMIN");
+                    nuevoRol.setDescripcion("Rol Admin Test");
+                    return rolRepository.saveAndFlush(nuevoRol);
+                });
+        Usuario usuario = usuarioRepository.findByEmail("admin.item.int@test.com")
+                .orElseGet(() -> {
+                    Usuario u = new Usuario();
+                    u.setNombre("Admin Test Loader Item Int");
+                    u.setEmail("admin.item.int@test.com");
+                    u.setPasswordHash(passwordEncoder.encode("PasswordAdmin123."));
+                    u.setRol(rolAdmin);
+                    u.setEstado("ACTIVO");
+                    return usuarioRepository.saveAndFlush(u);
+                });
+
+        Producto producto = new Producto();
+        producto.setCodigo("ITEMPAG" + System.nanoTime());
+        producto.setNombre("Item Paginacion Int");
+        producto.setUnidadMedida("Unidad");
+        producto.setPrecio(new BigDecimal("10.00"));
+        producto.setStockDisponible(1000);
+        producto.setStockMinimo(0);
+        producto.setStockMaximo(5000);
+        producto.setBodega(bodega);
+        producto.setCategoria(categoria);
+        producto.setEstado(estadoItem);
+        producto.setProveedor(proveedor);
+        producto.setUsuario(usuario);
+        producto.setTipoPrenda(Producto.TipoPrenda.CAMISA);
+        producto.setTalla(Producto.Talla.M);
+        producto.setColor("Verde Test Int");
+        producto.setComposicion("Algodon Test Int");
+        producto.setFechaFabricacion(new Date(System.currentTimeMillis()));
+        Item item = itemRepository.saveAndFlush(producto);
+
+        ClienteInterno cliente = new ClienteInterno();
+        cliente.setCodigoInterno("PAG" + (System.nanoTime() % 1_000_000_000L));
+        cliente.setNombre("Cliente Paginacion Int");
+        cliente.setTipo(ClienteInterno.TipoCliente.INTERNO);
+        cliente.setResponsable(usuario);
+        cliente = clienteInternoRepository.saveAndFlush(cliente);
+
+        // Pedidos con fecha futura para que ocupen las primeras páginas del listado
+        long base = System.currentTimeMillis() + 86_400_000L;
+        for (int i = 0; i < PEDIDOS; i++) {
+            Pedido pedido = new Pedido(cliente, estadoPedido);
+            pedido.setFechaPedido(new Timestamp(base + i * 1000L));
+            pedido = pedidoRepository.save(pedido);
+            pedidoDetalleRepository.save(new PedidoDetalle(pedido, item, 1, new BigDecimal("10.00")));
+        }
+        // Sin entidades en el contexto de persistencia: el listado debe cargar todo lo que use
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 50})
+    @DisplayName("Listar Pedidos Paginados - Dos sentencias por página sea cual sea su tamaño")
+    void listarPedidosPaginados_DosSentenciasPorPagina(int limite) {
+        // Arrange
+        Statistics estadisticas = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        // Act
+        PedidoPaginaDTO pagina = pedidoService.listarPedidosPaginados(null, limite);
+
+        // Assert
+        assertEquals(limite, pagina.getPedidos().size());
+        assertTrue(pagina.getPedidos().stream().allMatch(dto -> dto.getDetalles().size() == 1));
+        assertNotNull(pagina.getSiguienteCursor());
+        assertEquals(2, estadisticas.getPrepareStatementCount(),
+                () -> "Sentencias ejecutadas: " + String.join(" | ", estadisticas.getQueries()));
+    }
+}
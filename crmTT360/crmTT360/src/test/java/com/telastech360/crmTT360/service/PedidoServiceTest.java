@@ -1,29 +1,46 @@
 package com.telastech360.crmTT360.service;
 
+import com.telastech360.crmTT360.dto.PaginaDTO;
 import com.telastech360.crmTT360.dto.PedidoDTO;
 import com.telastech360.crmTT360.dto.PedidoDetalleDTO;
+import com.telastech360.crmTT360.dto.PedidoPaginaDTO;
 import com.telastech360.crmTT360.entity.*;
 import com.telastech360.crmTT360.exception.IllegalOperationException;
 import com.telastech360.crmTT360.exception.InvalidDataException;
 import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.mapper.PedidoDetalleMapper;
+import com.telastech360.crmTT360.mapper.PedidoMapper;
 import com.telastech360.crmTT360.repository.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +53,10 @@ class PedidoServiceTest {
     @Mock private PedidoDetalleRepository pedidoDetalleRepository;
     @Mock private ItemService itemService; // <<<--- Mock añadido
     @Mock private FacturaRepository facturaRepository; // Añadir si se usa en los tests
+    @Mock private PoliticaReintentoOptimista politicaReintentoOptimista;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private ColaSlaPedidosService colaSlaPedidosService;
+    @Spy private PedidoMapper pedidoMapper = new PedidoMapper(new PedidoDetalleMapper());
 
     @InjectMocks
     private PedidoService pedidoService;
@@ -83,7 +104,7 @@ class PedidoServiceTest {
         // Arrange
         when(clienteRepository.findById(pedidoDto.getClienteId())).thenReturn(Optional.of(cliente));
         when(estadoRepository.findById(pedidoDto.getEstadoId())).thenReturn(Optional.of(estadoPendiente));
-        when(itemRepository.findById(itemProducto.getItemId())).thenReturn(Optional.of(itemProducto));
+        when(itemRepository.getReferenceById(itemProducto.getItemId())).thenReturn(itemProducto);
         when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> {
             Pedido p = invocation.getArgument(0);
             p.setPedidoId(1L);
@@ -92,7 +113,7 @@ class PedidoServiceTest {
             }
             return p;
         });
-        doNothing().when(itemService).ajustarStock(anyLong(), anyInt());
+        doNothing().when(itemService).reservarStock(anyMap());
 
         // Act
         Pedido resultado = pedidoService.crearPedidoConDetalles(pedidoDto);
@@ -106,22 +127,68 @@ class PedidoServiceTest {
         assertEquals(1, resultado.getDetalles().size());
         assertEquals(itemProducto.getItemId(), resultado.getDetalles().get(0).getProducto().getItemId());
         assertEquals(5, resultado.getDetalles().get(0).getCantidad());
+        assertEquals(0, new BigDecimal("127.50").compareTo(resultado.getTotal()));
 
         verify(clienteRepository).findById(pedidoDto.getClienteId());
         verify(estadoRepository).findById(pedidoDto.getEstadoId());
-        verify(itemRepository, times(2)).findById(itemProducto.getItemId());
+        verify(itemRepository, never()).findById(anyLong()); // Sin carga de ítems por línea
         verify(pedidoRepository).save(any(Pedido.class));
-        verify(itemService, times(1)).ajustarStock(eq(itemProducto.getItemId()), eq(-5));
+        verify(itemService, times(1)).reservarStock(eq(Map.of(itemProducto.getItemId(), 5)));
+        verify(itemService, never()).ajustarStock(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Crear Pedido - Un ítem repetido en varias líneas reserva y guarda la cantidad sumada")
+    void crearPedidoConDetalles_ItemRepetido_SumaCantidades() {
+        // Arrange
+        pedidoDto.setDetalles(List.of(new PedidoDetalleDTO(itemProducto.getItemId(), 5, new BigDecimal("25.50")),
+                new PedidoDetalleDTO(102L, 1, new BigDecimal("10.00")),
+                new PedidoDetalleDTO(itemProducto.getItemId(), 3, new BigDecimal("25.5"))));
+        Item otroItem = new Producto();
+        otroItem.setItemId(102L);
+        when(clienteRepository.findById(pedidoDto.getClienteId())).thenReturn(Optional.of(cliente));
+        when(estadoRepository.findById(pedidoDto.getEstadoId())).thenReturn(Optional.of(estadoPendiente));
+        when(itemRepository.getReferenceById(itemProducto.getItemId())).thenReturn(itemProducto);
+        when(itemRepository.getReferenceById(102L)).thenReturn(otroItem);
+        when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> {
+            Pedido p = invocation.getArgument(0);
+            p.setPedidoId(1L);
+            return p;
+        });
+
+        // Act
+        Pedido resultado = pedidoService.crearPedidoConDetalles(pedidoDto);
+
+        // Assert
+        verify(itemService).reservarStock(eq(Map.of(itemProducto.getItemId(), 8, 102L, 1)));
+        assertEquals(2, resultado.getDetalles().size());
+        assertEquals(itemProducto, resultado.getDetalles().get(0).getProducto());
+        assertEquals(8, resultado.getDetalles().get(0).getCantidad());
+        assertEquals(0, new BigDecimal("214.00").compareTo(resultado.getTotal()));
+    }
+
+    @Test
+    @DisplayName("Crear Pedido - Un ítem repetido con precios distintos no se puede combinar")
+    void crearPedidoConDetalles_ItemRepetidoConPreciosDistintos_DebeLanzarExcepcion() {
+        // Arrange
+        pedidoDto.setDetalles(List.of(new PedidoDetalleDTO(itemProducto.getItemId(), 5, new BigDecimal("25.50")),
+                new PedidoDetalleDTO(itemProducto.getItemId(), 3, new BigDecimal("20.00"))));
+        when(clienteRepository.findById(pedidoDto.getClienteId())).thenReturn(Optional.of(cliente));
+        when(estadoRepository.findById(pedidoDto.getEstadoId())).thenReturn(Optional.of(estadoPendiente));
+
+        // Act & Assert
+        assertThrows(InvalidDataException.class, () -> pedidoService.crearPedidoConDetalles(pedidoDto));
+        verifyNoInteractions(itemService, pedidoRepository);
     }
 
     @Test
     @DisplayName("Crear Pedido - Stock Insuficiente")
     void crearPedidoConDetalles_StockInsuficiente() {
         // Arrange
-        itemProducto.setStockDisponible(3); // Stock insuficiente
         when(clienteRepository.findById(pedidoDto.getClienteId())).thenReturn(Optional.of(cliente));
         when(estadoRepository.findById(pedidoDto.getEstadoId())).thenReturn(Optional.of(estadoPendiente));
-        when(itemRepository.findById(itemProducto.getItemId())).thenReturn(Optional.of(itemProducto));
+        doThrow(new IllegalOperationException("Stock insuficiente para el ítem 'Camisa Test'. Disponible: 3, Solicitado: 5"))
+                .when(itemService).reservarStock(anyMap());
 
         // Act & Assert
         IllegalOperationException exception = assertThrows(IllegalOperationException.class, () -> {
@@ -129,9 +196,8 @@ class PedidoServiceTest {
         });
 
         assertTrue(exception.getMessage().contains("Stock insuficiente para el ítem"));
-        verify(itemRepository).findById(itemProducto.getItemId());
         verify(pedidoRepository, never()).save(any(Pedido.class));
-        verify(itemService, never()).ajustarStock(anyLong(), anyInt());
+        verifyNoInteractions(itemRepository);
     }
 
     // ... (otros tests de PedidoServiceTest) ...
@@ -169,15 +235,15 @@ class PedidoServiceTest {
     void crearPedidoConDetalles_ItemNoEncontrado() {
         when(clienteRepository.findById(pedidoDto.getClienteId())).thenReturn(Optional.of(cliente));
         when(estadoRepository.findById(pedidoDto.getEstadoId())).thenReturn(Optional.of(estadoPendiente));
-        when(itemRepository.findById(itemProducto.getItemId())).thenReturn(Optional.empty());
+        doThrow(new ResourceNotFoundException("Ítem no encontrado con ID: " + itemProducto.getItemId()))
+                .when(itemService).reservarStock(anyMap());
 
         ResourceNotFoundException exception = assertThrows(ResourceNotFoundException.class, () -> {
             pedidoService.crearPedidoConDetalles(pedidoDto);
         });
 
         assertEquals("Ítem no encontrado con ID: " + itemProducto.getItemId(), exception.getMessage());
-        verify(itemRepository).findById(itemProducto.getItemId());
-        verifyNoInteractions(pedidoRepository, itemService);
+        verifyNoInteractions(pedidoRepository, itemRepository);
     }
 
     @Test
@@ -194,4 +260,130 @@ class PedidoServiceTest {
         assertEquals("El pedido debe contener al menos un detalle.", exception.getMessage());
         verifyNoInteractions(itemRepository, pedidoRepository, itemService);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Obtener Totales - Una consulta, en el orden solicitado y sin inexistentes")
+    void obtenerTotales_UnaConsulta() {
+        // Arrange
+        when(pedidoRepository.findTotalesByIds(any())).thenReturn(List.of(
+                new Object[]{2L, new BigDecimal("10.00")}, new Object[]{1L, new BigDecimal("127.50")}));
+
+        // Act
+        Map<Long, BigDecimal> totales = pedidoService.obtenerTotales(List.of(1L, 2L, 3L));
+
+        // Assert
+        assertEquals(List.of(1L, 2L), new ArrayList<>(totales.keySet()));
+        assertEquals(new BigDecimal("127.50"), totales.get(1L));
+        verify(pedidoRepository, times(1)).findTotalesByIds(any());
+        verify(pedidoRepository, never()).findByIdWithDetails(anyLong());
+    }
+
+    @Test
+    @DisplayName("Obtener Totales - Demasiados IDs")
+    void obtenerTotales_DemasiadosIds() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= PedidoService.MAX_TOTALES_POR_CONSULTA + 1; id++) {
+            ids.add(id);
+        }
+
+        assertThrows(InvalidDataException.class, () -> pedidoService.obtenerTotales(ids));
+        verifyNoInteractions(pedidoRepository);
+    }
+
+    @Test
+    @DisplayName("Calcular Total - Pedido no encontrado")
+    void calcularTotalPedido_NoEncontrado() {
+        when(pedidoRepository.findTotalById(99L)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> pedidoService.calcularTotalPedido(99L));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 50, 200})
+    @DisplayName("Listar Pedidos Paginados - Una llamada a cada repositorio por página sea cual sea su tamaño")
+    void listarPedidosPaginados_UnaLlamadaPorRepositorio(int limite) {
+        // Arrange: una fila de más que el límite indica que hay página siguiente
+        List<Pedido> pedidos = new ArrayList<>();
+        List<PedidoDetalle> detalles = new ArrayList<>();
+        for (long id = limite + 1; id >= 1; id--) {
+            Pedido pedido = spy(new Pedido(cliente, estadoPendiente));
+            pedido.setPedidoId(id);
+            pedido.setFechaPedido(new Timestamp(1_700_000_000_000L + id * 1000));
+            pedidos.add(pedido);
+            detalles.add(new PedidoDetalle(pedido, itemProducto, 1, new BigDecimal("2.00")));
+        }
+        when(pedidoRepository.findPrimeraPagina(Limit.of(limite + 1))).thenReturn(pedidos);
+        when(pedidoDetalleRepository.findByPedidoIds(anyList())).thenReturn(detalles.subList(0, limite));
+
+        // Act
+        PedidoPaginaDTO pagina = pedidoService.listarPedidosPaginados(null, limite);
+
+        // Assert
+        assertEquals(limite, pagina.getPedidos().size());
+        assertTrue(pagina.getPedidos().stream().allMatch(dto -> dto.getDetalles().size() == 1));
+        assertNotNull(pagina.getSiguienteCursor());
+        verify(pedidoRepository, times(1)).findPrimeraPagina(any());
+        verify(pedidoDetalleRepository, times(1)).findByPedidoIds(anyList());
+        verifyNoMoreInteractions(pedidoRepository, pedidoDetalleRepository);
+        pedidos.forEach(pedido -> verify(pedido, never()).getDetalles()); // Sin cargar la colección LAZY
+    }
+
+    @Test
+    @DisplayName("Listar Pedidos Paginados - El cursor continúa tras el último pedido de la página")
+    void listarPedidosPaginados_ConCursor() {
+        // Arrange
+        Timestamp fecha = new Timestamp(1_700_000_000_000L);
+        String cursor = new PedidoService.CursorPedido(fecha, 7L).codificar();
+        when(pedidoRepository.findPaginaDespuesDe(fecha, 7L, Limit.of(51))).thenReturn(List.of(pedidoGuardado));
+        when(pedidoDetalleRepository.findByPedidoIds(List.of(1L))).thenReturn(List.of());
+
+        // Act
+        PedidoPaginaDTO pagina = pedidoService.listarPedidosPaginados(cursor, null);
+
+        // Assert
+        assertEquals(1, pagina.getPedidos().size());
+        assertNull(pagina.getSiguienteCursor());
+    }
+
+    @Test
+    @DisplayName("Listar Pedidos Paginados - Cursor inválido")
+    void listarPedidosPaginados_CursorInvalido() {
+        assertThrows(InvalidDataException.class, () -> pedidoService.listarPedidosPaginados("no-es-un-cursor", 10));
+        verifyNoInteractions(pedidoRepository);
+    }
+
+    @Test
+    @DisplayName("Buscar Pedidos - Página con orden por defecto, ID como desempate y detalles en una consulta")
+    @SuppressWarnings("unchecked")
+    void buscarPedidos_OrdenPorDefectoYDetallesEnLote() {
+        // Arrange
+        ArgumentCaptor<Pageable> paginacion = ArgumentCaptor.forClass(Pageable.class);
+        when(pedidoRepository.findAll(any(Specification.class), paginacion.capture()))
+                .thenAnswer(inv -> new PageImpl<>(List.of(pedidoGuardado), inv.getArgument(1), 21));
+        when(pedidoDetalleRepository.findByPedidoIds(List.of(1L))).thenReturn(pedidoGuardado.getDetalles());
+
+        // Act
+        PaginaDTO<PedidoDTO> resultado = pedidoService.buscarPedidos(10L, null, null, null, null, 1, 10, null);
+
+        // Assert
+        assertEquals(1, resultado.getContenido().size());
+        assertEquals(1, resultado.getContenido().get(0).getDetalles().size());
+        assertEquals(21, resultado.getTotalElementos());
+        assertEquals(3, resultado.getTotalPaginas());
+        assertEquals(1, paginacion.getValue().getPageNumber());
+        assertEquals(Sort.by(Sort.Direction.DESC, "fechaPedido", "pedidoId"), paginacion.getValue().getSort());
+        verify(pedidoDetalleRepository, times(1)).findByPedidoIds(anyList());
+    }
+
+    @Test
+    @DisplayName("Buscar Pedidos - Orden por un campo no permitido o tamaño fuera de rango")
+    void buscarPedidos_ParametrosInvalidos() {
+        assertThrows(InvalidDataException.class,
+                () -> pedidoService.buscarPedidos(null, null, null, null, null, 0, 10, "cliente.nombre,asc"));
+        assertThrows(InvalidDataException.class,
+                () -> pedidoService.buscarPedidos(null, null, null, null, null, 0, 10, "pedidoId,arriba"));
+        assertThrows(InvalidDataException.class,
+                () -> pedidoService.buscarPedidos(null, null, null, null, null, 0, 500, null));
+        verifyNoInteractions(pedidoRepository);
+    }
+}
@@ -0,0 +1,114 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoResumenDTO;
+import com.telastech360.crmTT360.entity.Estado;
+import com.telastech360.crmTT360.repository.EstadoRepository;
+import com.telastech360.crmTT360.repository.PedidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PedidosRecientesServiceTest {
+
+    @Mock private PedidoRepository pedidoRepository;
+    @Mock private EstadoRepository estadoRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private PedidosRecientesService pedidosRecientesService;
+
+    @BeforeEach
+    void setUp() {
+        pedidosRecientesService = new PedidosRecientesService(pedidoRepository, estadoRepository, transactionManager, 3);
+        Estado pendiente = new Estado(Estado.TipoEstado.PEDIDO, "PENDIENTE");
+        pendiente.setEstadoId(1L);
+        Estado cancelado = new Estado(Estado.TipoEstado.PEDIDO, "CANCELADO");
+        cancelado.setEstadoId(2L);
+        lenient().when(estadoRepository.findAll()).thenReturn(List.of(pendiente, cancelado));
+    }
+
+    private static PedidoCreadoEvent creado(long pedidoId) {
+        return new PedidoCreadoEvent(pedidoId, 10L, 1L, new Timestamp(pedidoId * 1000), BigDecimal.TEN, Map.of());
+    }
+
+    private List<Long> idsRecientes() {
+        return pedidosRecientesService.obtenerRecientes(10).stream().map(PedidoResumenDTO::getPedidoId).toList();
+    }
+
+    @Test
+    @DisplayName("Inicializar - Carga con una consulta limitada a la capacidad")
+    void inicializar_ConsultaLimitada() {
+        // Arrange
+        when(pedidoRepository.findResumenesRecientes(Limit.of(3))).thenReturn(List.of(
+                new Object[]{5L, 10L, 1L, "PENDIENTE", new Timestamp(5000), BigDecimal.ONE},
+                new Object[]{4L, null, 2L, "CANCELADO", new Timestamp(4000), BigDecimal.ONE}));
+
+        // Act
+        pedidosRecientesService.inicializar();
+
+        // Assert
+        assertEquals(List.of(5L, 4L), idsRecientes());
+        assertNull(pedidosRecientesService.obtenerRecientes(10).get(1).getClienteId());
+    }
+
+    @Test
+    @DisplayName("Crear Pedido - Al llenarse el buffer se descarta el más antiguo")
+    void alCrearPedido_BufferLleno_DescartaElMasAntiguo() {
+        // Act
+        for (long id = 1; id <= 5; id++) {
+            pedidosRecientesService.alCrearPedido(creado(id));
+        }
+
+        // Assert
+        assertEquals(List.of(5L, 4L, 3L), idsRecientes());
+        assertEquals(List.of(5L), pedidosRecientesService.obtenerRecientes(1).stream().map(PedidoResumenDTO::getPedidoId).toList());
+    }
+
+    @Test
+    @DisplayName("Cambiar Estado - Actualiza solo los pedidos del buffer sin modificar las copias ya devueltas")
+    void alCambiarEstado_ActualizaEntradas() {
+        // Arrange
+        pedidosRecientesService.inicializar();
+        pedidosRecientesService.alCrearPedido(creado(1));
+        pedidosRecientesService.alCrearPedido(creado(2));
+        PedidoResumenDTO anterior = pedidosRecientesService.obtenerRecientes(1).get(0);
+
+        // Act
+        pedidosRecientesService.alCambiarEstado(new PedidoEstadoCambiadoEvent(Map.of(2L, 1L, 99L, 1L), 2L));
+
+        // Assert
+        List<PedidoResumenDTO> recientes = pedidosRecientesService.obtenerRecientes(10);
+        assertEquals("CANCELADO", recientes.get(0).getEstado());
+        assertEquals("PENDIENTE", recientes.get(1).getEstado());
+        assertEquals("PENDIENTE", anterior.getEstado());
+    }
+
+    @Test
+    @DisplayName("Eliminar Pedido - Lo quita del buffer conservando el orden")
+    void alEliminarPedido_QuitaEntrada() {
+        // Arrange
+        for (long id = 1; id <= 4; id++) {
+            pedidosRecientesService.alCrearPedido(creado(id));
+        }
+
+        // Act
+        pedidosRecientesService.alEliminarPedido(new PedidoEliminadoEvent(3L));
+        pedidosRecientesService.alCrearPedido(creado(5));
+
+        // Assert
+        assertEquals(List.of(5L, 4L, 2L), idsRecientes());
+    }
+}
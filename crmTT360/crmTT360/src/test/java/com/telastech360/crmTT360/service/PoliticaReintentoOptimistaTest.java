@@ -0,0 +1,89 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.exception.PreconditionFailedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PoliticaReintentoOptimistaTest {
+
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private PoliticaReintentoOptimista politica;
+
+    @BeforeEach
+    void setUp() {
+        politica = new PoliticaReintentoOptimista(transactionManager, 3, 0);
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Conflicto optimista: reintenta en una transacción nueva hasta tener éxito")
+    void ejecutar_Conflicto_ReintentaHastaExito() {
+        // Arrange
+        AtomicInteger intentos = new AtomicInteger();
+
+        // Act
+        String resultado = politica.ejecutar("Prueba", true, () -> {
+            if (intentos.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Item", 1L);
+            }
+            return "ok";
+        });
+
+        // Assert
+        assertEquals("ok", resultado);
+        assertEquals(3, intentos.get());
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Conflicto persistente: se propaga tras agotar los intentos")
+    void ejecutar_ConflictoPersistente_Propaga() {
+        // Arrange
+        AtomicInteger intentos = new AtomicInteger();
+
+        // Act & Assert
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> politica.ejecutar("Prueba", true, () -> {
+            intentos.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Item", 1L);
+        }));
+        assertEquals(3, intentos.get());
+    }
+
+    @Test
+    @DisplayName("Ejecutar - Sin reintentos (If-Match): un solo intento")
+    void ejecutar_SinReintentar_UnSoloIntento() {
+        // Arrange
+        AtomicInteger intentos = new AtomicInteger();
+
+        // Act & Assert
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> politica.ejecutar("Prueba", false, () -> {
+            intentos.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Item", 1L);
+        }));
+        assertEquals(1, intentos.get());
+    }
+
+    @Test
+    @DisplayName("Verificar Versión - Versión distinta lanza PreconditionFailedException; null no comprueba")
+    void verificarVersion_Distinta_Lanza() {
+        // Act & Assert
+        assertThrows(PreconditionFailedException.class,
+                () -> PoliticaReintentoOptimista.verificarVersion("Ítem 1", 4L, 3L));
+        assertDoesNotThrow(() -> PoliticaReintentoOptimista.verificarVersion("Ítem 1", 4L, 4L));
+        assertDoesNotThrow(() -> PoliticaReintentoOptimista.verificarVersion("Ítem 1", 4L, null));
+    }
+}
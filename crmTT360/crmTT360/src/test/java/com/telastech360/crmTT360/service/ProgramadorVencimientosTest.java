@@ -0,0 +1,167 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.repository.ItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProgramadorVencimientosTest {
+
+    private static final ZoneId ZONA = ZoneOffset.UTC;
+    private static final LocalDate HOY = LocalDate.of(2025, 3, 10);
+    private static final long TICK_MS = 60_000;
+
+    @Mock private ItemRepository itemRepository;
+    @Mock private ApplicationEventPublisher eventPublisher;
+
+    private RelojAjustable reloj;
+    private ProgramadorVencimientos programador;
+
+    @BeforeEach
+    void setUp() {
+        reloj = new RelojAjustable(HOY.atStartOfDay(ZONA).plusHours(8).toInstant());
+        programador = new ProgramadorVencimientos(itemRepository, eventPublisher, new int[]{7, 1}, TICK_MS, reloj);
+    }
+
+    @AfterEach
+    void limpiarSincronizacion() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Avanzar - Emite POR_VENCER en cada antelación y VENCIDO al terminar el día")
+    void avanzar_EmiteAvisosEnOrden() {
+        // Arrange: vence en 8 días
+        when(itemRepository.findVencimientosDesde(any())).thenReturn(List.<Object[]>of(new Object[]{5L, Date.valueOf(HOY.plusDays(8))}));
+        programador.cargar();
+
+        // Act & Assert
+        irA(HOY.plusDays(1));
+        assertEquals(List.of(new AlertaVencimientoEvent(5L, HOY.plusDays(8), AlertaVencimientoEvent.Tipo.POR_VENCER, 7)), eventos(1));
+        irA(HOY.plusDays(7));
+        assertEquals(new AlertaVencimientoEvent(5L, HOY.plusDays(8), AlertaVencimientoEvent.Tipo.POR_VENCER, 1), eventos(2).get(1));
+        assertEquals(List.of(5L), programador.buscarIdsPorVencer(HOY, HOY.plusDays(10)));
+        irA(HOY.plusDays(9));
+        assertEquals(new AlertaVencimientoEvent(5L, HOY.plusDays(8), AlertaVencimientoEvent.Tipo.VENCIDO, 0), eventos(3).get(2));
+        assertTrue(programador.buscarIdsPorVencer(HOY, HOY.plusDays(10)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Cargar - Los avisos cuyo momento ya pasó no se repiten al arrancar")
+    void cargar_NoRepiteAvisosPasados() {
+        // Arrange: vence en 3 días, el aviso de 7 días ya pasó
+        when(itemRepository.findVencimientosDesde(any())).thenReturn(List.<Object[]>of(new Object[]{5L, Date.valueOf(HOY.plusDays(3))}));
+        programador.cargar();
+
+        // Act
+        irA(HOY.plusDays(2));
+
+        // Assert
+        assertEquals(List.of(new AlertaVencimientoEvent(5L, HOY.plusDays(3), AlertaVencimientoEvent.Tipo.POR_VENCER, 1)), eventos(1));
+    }
+
+    @Test
+    @DisplayName("Registrar - En transacción: el cambio de fecha se aplica al confirmar y reprograma los avisos")
+    void registrar_EnTransaccion_AplicaAlConfirmar() {
+        // Arrange
+        when(itemRepository.findVencimientosDesde(any())).thenReturn(List.<Object[]>of(new Object[]{5L, Date.valueOf(HOY.plusDays(8))}));
+        programador.cargar();
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        programador.registrar(5L, Date.valueOf(HOY.plusDays(30)));
+        assertEquals(List.of(5L), programador.buscarIdsPorVencer(HOY, HOY.plusDays(10)));
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        sincronizaciones.forEach(TransactionSynchronization::afterCommit);
+
+        // Assert
+        assertTrue(programador.buscarIdsPorVencer(HOY, HOY.plusDays(10)).isEmpty());
+        assertEquals(List.of(5L), programador.buscarIdsPorVencer(HOY, HOY.plusDays(30)));
+        irA(HOY.plusDays(2));
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Retirar - El ítem eliminado no emite avisos")
+    void retirar_CancelaAvisos() {
+        // Arrange
+        when(itemRepository.findVencimientosDesde(any())).thenReturn(List.<Object[]>of(new Object[]{5L, Date.valueOf(HOY.plusDays(1))}));
+        programador.cargar();
+
+        // Act
+        programador.retirar(5L);
+        irA(HOY.plusDays(5));
+
+        // Assert
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        assertTrue(programador.buscarIdsPorVencer(HOY, HOY.plusDays(5)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Buscar IDs por vencer - Sin cargar devuelve null para consultar la BD")
+    void buscarIdsPorVencer_SinCargar_DevuelveNull() {
+        assertNull(programador.buscarIdsPorVencer(HOY, HOY.plusDays(5)));
+    }
+
+    /** Avanza el reloj hasta el inicio del día indicado, tick a tick como el planificador. */
+    private void irA(LocalDate dia) {
+        long objetivo = dia.atStartOfDay(ZONA).toInstant().toEpochMilli();
+        while (reloj.millis() < objetivo) {
+            reloj.ahora = reloj.ahora.plusMillis(Math.min(TICK_MS * 60, objetivo - reloj.millis()));
+            programador.avanzar();
+        }
+    }
+
+    private List<Object> eventos(int esperados) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(esperados)).publishEvent(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static final class RelojAjustable extends Clock {
+        private Instant ahora;
+
+        private RelojAjustable(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONA;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.dto.PedidoDTO;
+import com.telastech360.crmTT360.dto.PedidoDetalleDTO;
+import com.telastech360.crmTT360.dto.SolicitudPedidoDTO;
+import com.telastech360.crmTT360.entity.Pedido;
+import com.telastech360.crmTT360.exception.IllegalOperationException;
+import com.telastech360.crmTT360.exception.InvalidDataException;
+import com.telastech360.crmTT360.exception.ResourceNotFoundException;
+import com.telastech360.crmTT360.exception.TooManyRequestsException;
+import com.telastech360.crmTT360.mapper.PedidoMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SolicitudesPedidoServiceTest {
+
+    @Mock private PedidoService pedidoService;
+    @Mock private PedidoMapper pedidoMapper;
+    @Mock private IdempotenciaService idempotenciaService;
+
+    private SolicitudesPedidoService solicitudesPedidoService;
+
+    @BeforeEach
+    void setUp() {
+        // Sin trabajadores: los tests procesan la cola llamando a procesarSiguiente
+        solicitudesPedidoService = new SolicitudesPedidoService(pedidoService, pedidoMapper, idempotenciaService,
+                Runnable::run, 2, 0, 60_000, 3, 0, Clock.fixed(Instant.ofEpochMilli(1_000_000), ZoneOffset.UTC));
+    }
+
+    private static PedidoDTO pedidoValido() {
+        PedidoDTO dto = new PedidoDTO();
+        dto.setClienteId(1L);
+        dto.setEstadoId(1L);
+        PedidoDetalleDTO detalle = new PedidoDetalleDTO();
+        detalle.setItemId(5L);
+        detalle.setCantidad(2);
+        detalle.setPrecioUnitario(BigDecimal.TEN);
+        dto.setDetalles(List.of(detalle));
+        return dto;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void idempotenciaEjecutaAccion() {
+        when(idempotenciaService.ejecutar(eq(SolicitudesPedidoService.OPERACION_IDEMPOTENCIA), any(), any(), eq(PedidoDTO.class), any()))
+                .thenAnswer(inv -> new IdempotenciaService.Resultado<>(((Supplier<PedidoDTO>) inv.getArgument(4)).get(), false));
+    }
+
+    @Test
+    @DisplayName("Encolar y Procesar - La solicitud pasa de EN_COLA a COMPLETADA con el ID del pedido")
+    void encolarYProcesar_Completada() throws InterruptedException {
+        // Arrange
+        PedidoDTO dto = pedidoValido();
+        Pedido pedido = new Pedido();
+        PedidoDTO creado = pedidoValido();
+        creado.setPedidoId(42L);
+        idempotenciaEjecutaAccion();
+        when(pedidoService.crearPedidoConDetalles(dto)).thenReturn(pedido);
+        when(pedidoMapper.toDTO(pedido)).thenReturn(creado);
+
+        // Act
+        SolicitudPedidoDTO aceptada = solicitudesPedidoService.encolar(dto, "clave-1");
+        boolean procesada = solicitudesPedidoService.procesarSiguiente(0);
+
+        // Assert
+        assertEquals("EN_COLA", aceptada.getEstado());
+        assertTrue(procesada);
+        SolicitudPedidoDTO estado = solicitudesPedidoService.consultar(aceptada.getSolicitudId());
+        assertEquals("COMPLETADA", estado.getEstado());
+        assertEquals(42L, estado.getPedidoId());
+        verify(idempotenciaService).ejecutar(eq("CREAR_PEDIDO"), eq("clave-1"), eq(dto), eq(PedidoDTO.class), any());
+    }
+
+    @Test
+    @DisplayName("Procesar - Un error de negocio deja la solicitud FALLIDA con su mensaje")
+    void procesar_ErrorDeNegocio_Fallida() throws InterruptedException {
+        // Arrange
+        idempotenciaEjecutaAccion();
+        when(pedidoService.crearPedidoConDetalles(any())).thenThrow(new IllegalOperationException("Stock insuficiente"));
+        SolicitudPedidoDTO aceptada = solicitudesPedidoService.encolar(pedidoValido(), null);
+
+        // Act
+        solicitudesPedidoService.procesarSiguiente(0);
+
+        // Assert
+        SolicitudPedidoDTO estado = solicitudesPedidoService.consultar(aceptada.getSolicitudId());
+        assertEquals("FALLIDA", estado.getEstado());
+        assertEquals("Stock insuficiente", estado.getMensaje());
+        assertNull(estado.getPedidoId());
+    }
+
+    @Test
+    @DisplayName("Encolar - Con la cola llena se rechaza con TooManyRequestsException y Retry-After")
+    void encolar_ColaLlena_LanzaTooManyRequests() {
+        // Arrange
+        solicitudesPedidoService.encolar(pedidoValido(), null);
+        solicitudesPedidoService.encolar(pedidoValido(), null);
+
+        // Act & Assert
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> solicitudesPedidoService.encolar(pedidoValido(), null));
+        assertEquals(3, ex.getSegundosReintento());
+    }
+
+    @Test
+    @DisplayName("Encolar - Un pedido sin detalles se rechaza sin encolarse")
+    void encolar_SinDetalles_LanzaInvalidData() throws InterruptedException {
+        // Arrange
+        PedidoDTO dto = pedidoValido();
+        dto.setDetalles(List.of());
+
+        // Act & Assert
+        assertThrows(InvalidDataException.class, () -> solicitudesPedidoService.encolar(dto, null));
+        assertFalse(solicitudesPedidoService.procesarSiguiente(0));
+    }
+
+    @Test
+    @DisplayName("Purgar - Olvida las solicitudes terminadas y conserva las que siguen en cola")
+    void purgarTerminadas_OlvidaSoloTerminadas() throws InterruptedException {
+        // Arrange
+        solicitudesPedidoService = new SolicitudesPedidoService(pedidoService, pedidoMapper, idempotenciaService,
+                Runnable::run, 2, 0, -1, 3, 0, Clock.fixed(Instant.ofEpochMilli(1_000_000), ZoneOffset.UTC));
+        idempotenciaEjecutaAccion();
+        when(pedidoService.crearPedidoConDetalles(any())).thenThrow(new IllegalOperationException("Error"));
+        SolicitudPedidoDTO terminada = solicitudesPedidoService.encolar(pedidoValido(), null);
+        solicitudesPedidoService.procesarSiguiente(0);
+        SolicitudPedidoDTO enCola = solicitudesPedidoService.encolar(pedidoValido(), null);
+
+        // Act
+        solicitudesPedidoService.purgarTerminadas();
+
+        // Assert
+        assertThrows(ResourceNotFoundException.class, () -> solicitudesPedidoService.consultar(terminada.getSolicitudId()));
+        assertEquals("EN_COLA", solicitudesPedidoService.consultar(enCola.getSolicitudId()).getEstado());
+    }
+
+    @Test
+    @DisplayName("Calcular Trabajadores - Nunca supera el número de conexiones")
+    void calcularTrabajadores_AcotadoPorConexiones() {
+        assertEquals(5, SolicitudesPedidoService.calcularTrabajadores(0, 10));
+        assertEquals(10, SolicitudesPedidoService.calcularTrabajadores(50, 10));
+        assertEquals(1, SolicitudesPedidoService.calcularTrabajadores(0, 1));
+    }
+}
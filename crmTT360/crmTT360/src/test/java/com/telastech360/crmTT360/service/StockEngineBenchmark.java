@@ -0,0 +1,150 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.entity.*;
+import com.telastech360.crmTT360.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Benchmark de throughput de descuentos de stock concurrentes sobre un mismo ítem: camino JPA actual
+ * ({@link ItemService#ajustarStock(Long, Integer)} con UPDATE condicional) frente a {@link StockEngine}.
+ * Requiere la base de datos MySQL configurada; no forma parte de la ejecución normal de pruebas.
+ * Ejecutar con: {@code mvn test -Dtest=StockEngineBenchmark}. No ejecutar contra una base de datos
+ * usada por una instancia con el motor activo: el benchmark avanza el punto de control del journal.
+ * El ítem de prueba se elimina al terminar.
+ */
+@SpringBootTest
+class StockEngineBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(StockEngineBenchmark.class);
+
+    private static final int HILOS = 16;
+    private static final int DESCUENTOS_POR_HILO = 500;
+    private static final int CALENTAMIENTO = 200;
+
+    @Autowired private ItemService itemService;
+    @Autowired private ItemRepository itemRepository;
+    @Autowired private StockEngineRepository stockEngineRepository;
+    @Autowired private AlertaStockBajoService alertaStockBajoService;
+    @Autowired private BodegaRepository bodegaRepository;
+    @Autowired private CategoriaRepository categoriaRepository;
+    @Autowired private EstadoRepository estadoRepository;
+    @Autowired private ProveedorRepository proveedorRepository;
+    @Autowired private UsuarioRepository usuarioRepository;
+
+    @TempDir
+    Path directorioJournal;
+
+    private Long itemId;
+
+    @BeforeEach
+    void setUpDatos() {
+        Estado estadoItem = estadoRepository.findByTipoAndValor(Estado.TipoEstado.ITEM, "Activo Benchmark")
+                .orElseGet(() -> estadoRepository.saveAndFlush(new Estado(Estado.TipoEstado.ITEM, "Activo Benchmark")));
+        Bodega bodega = bodegaRepository.findByNombre("Bodega Benchmark").orElseGet(() -> {
+            Bodega b = new Bodega();
+            b.setNombre("Bodega Benchmark");
+            b.setTipoBodega(Bodega.TipoBodega.PRODUCTO_TERMINADO);
+            b.setCapacidadMaxima(Integer.MAX_VALUE);
+            b.setUbicacion("Benchmark");
+            b.setEstado(estadoItem);
+            return bodegaRepository.saveAndFlush(b);
+        });
+        Categoria categoria = categoriaRepository.findByNombre("Cat Benchmark")
+                .orElseGet(() -> categoriaRepository.saveAndFlush(new Categoria("Cat Benchmark")));
+        Proveedor proveedor = proveedorRepository.findByEmail("prov.benchmark@test.com")
+                .orElseGet(() -> proveedorRepository.saveAndFlush(new Proveedor("Prov Benchmark", "prov.benchmark@test.com")));
+        Usuario usuario = usuarioRepository.findAll().stream().findFirst()
+                .orElseThrow(() -> new IllegalStateException("Se requiere al menos un usuario (DataLoader)."));
+
+        Producto producto = new Producto();
+        producto.setCodigo("BENCH-ENGINE-" + System.nanoTime());
+        producto.setNombre("Item Benchmark Motor");
+        producto.setUnidadMedida("Unidad");
+        producto.setPrecio(new BigDecimal("10.00"));
+        producto.setStockDisponible(10_000_000);
+        producto.setStockMinimo(0);
+        producto.setBodega(bodega);
+        producto.setCategoria(categoria);
+        producto.setEstado(estadoItem);
+        producto.setProveedor(proveedor);
+        producto.setUsuario(usuario);
+        producto.setTipoPrenda(Producto.TipoPrenda.CAMISA);
+        producto.setTalla(Producto.Talla.M);
+        producto.setColor("Gris");
+        producto.setComposicion("Algodón");
+        producto.setFechaFabricacion(new Date(System.currentTimeMillis()));
+        itemId = itemRepository.saveAndFlush(producto).getItemId();
+    }
+
+    @AfterEach
+    void limpiarDatos() {
+        itemRepository.deleteById(itemId);
+    }
+
+    @Test
+    @DisplayName("Benchmark - Descuentos concurrentes: JPA vs. motor en memoria")
+    void throughputDescuentosConcurrentes() throws Exception {
+        int stockAntes = itemRepository.findById(itemId).orElseThrow().getStockDisponible();
+
+        medir("JPA (UPDATE condicional)", () -> itemService.ajustarStock(itemId, -1));
+
+        StockEngine stockEngine = new StockEngine(stockEngineRepository, alertaStockBajoService, true, directorioJournal.toString(), 64 * 1024 * 1024);
+        stockEngine.iniciar();
+        medir("StockEngine (memoria + journal)", () -> stockEngine.intentarAjustar(itemId, -1));
+        stockEngine.detener();
+
+        int descontados = 2 * (HILOS * DESCUENTOS_POR_HILO + CALENTAMIENTO);
+        assertEquals(stockAntes - descontados, itemRepository.findById(itemId).orElseThrow().getStockDisponible());
+    }
+
+    private void medir(String nombre, Runnable descuento) throws Exception {
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            descuento.run();
+        }
+        CountDownLatch inicio = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        List<Future<?>> tareas = new ArrayList<>(HILOS);
+        for (int h = 0; h < HILOS; h++) {
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                for (int i = 0; i < DESCUENTOS_POR_HILO; i++) {
+                    descuento.run();
+                }
+                return null;
+            }));
+        }
+        long t0 = System.nanoTime();
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(5, TimeUnit.MINUTES);
+        }
+        long nanos = System.nanoTime() - t0;
+        executor.shutdown();
+
+        int total = HILOS * DESCUENTOS_POR_HILO;
+        log.info("{} | {} ops/s | {} µs/op (media por hilo)", String.format("%-32s", nombre),
+                String.format("%10.0f", total / (nanos / 1_000_000_000.0)),
+                String.format("%8.1f", nanos / 1_000.0 / DESCUENTOS_POR_HILO));
+    }
+}
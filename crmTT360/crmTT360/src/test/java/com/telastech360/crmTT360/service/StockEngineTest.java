@@ -0,0 +1,260 @@
+package com.telastech360.crmTT360.service;
+
+import com.telastech360.crmTT360.exception.IllegalOperationException;
+import com.telastech360.crmTT360.repository.StockEngineRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockEngineTest {
+
+    @Mock private StockEngineRepository stockEngineRepository;
+    @Mock private AlertaStockBajoService alertaStockBajoService;
+
+    @TempDir
+    Path directorioJournal;
+
+    private StockEngine stockEngine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(stockEngineRepository.leerCheckpoint()).thenReturn(new long[]{0, 0});
+        stockEngine = new StockEngine(stockEngineRepository, alertaStockBajoService, true, directorioJournal.toString(), 64 * 1024 * 1024);
+        stockEngine.iniciar();
+        clearInvocations(stockEngineRepository);
+    }
+
+    private StockEngine reiniciar() throws Exception {
+        StockEngine reiniciado = new StockEngine(stockEngineRepository, alertaStockBajoService, true, directorioJournal.toString(), 64 * 1024 * 1024);
+        reiniciado.iniciar();
+        return reiniciado;
+    }
+
+    // Ejecuta la operación dentro de una transacción simulada y devuelve sus sincronizaciones sin completarla
+    private static List<TransactionSynchronization> enTransaccion(Runnable operacion) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            operacion.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void confirmar(List<TransactionSynchronization> sincronizaciones) {
+        sincronizaciones.forEach(s -> s.beforeCommit(false));
+        sincronizaciones.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+
+    @Test
+    @DisplayName("Reservar - Descuenta en memoria sin escribir en la BD hasta el volcado")
+    void reservar_DescuentaEnMemoria() {
+        // Arrange
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        when(stockEngineRepository.cargarStock(7L)).thenReturn(new Object[]{"Botón", 5, 0});
+
+        // Act
+        Map<Long, Integer> restantes = stockEngine.reservar(Map.of(3L, 4, 7L, 5));
+
+        // Assert
+        assertTrue(restantes.isEmpty());
+        assertFalse(stockEngine.intentarAjustar(7L, -1));
+        assertTrue(stockEngine.intentarAjustar(3L, -6));
+        verify(stockEngineRepository, never()).aplicarDeltas(anyMap(), anyLong(), anyLong(), anyCollection());
+    }
+
+    @Test
+    @DisplayName("Reservar - Stock insuficiente en un ítem no reserva ninguno")
+    void reservar_Insuficiente_NoReservaNinguno() {
+        // Arrange
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        when(stockEngineRepository.cargarStock(7L)).thenReturn(new Object[]{"Botón", 2, 0});
+
+        // Act & Assert
+        IllegalOperationException exception = assertThrows(IllegalOperationException.class,
+                () -> stockEngine.reservar(Map.of(3L, 4, 7L, 3)));
+        assertEquals("Stock insuficiente para el ítem 'Botón'. Disponible: 2, Solicitado: 3", exception.getMessage());
+        assertTrue(stockEngine.intentarAjustar(3L, -10)); // El descuento de 3L se deshizo
+    }
+
+    @Test
+    @DisplayName("Reservar - Ítems inexistentes o fragmentados se devuelven para la BD")
+    void reservar_NoGestionados_SeDevuelven() {
+        // Arrange
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        when(stockEngineRepository.cargarStock(7L)).thenReturn(new Object[]{"Botón", 0, 4});
+        when(stockEngineRepository.cargarStock(99L)).thenReturn(null);
+
+        // Act
+        Map<Long, Integer> restantes = stockEngine.reservar(Map.of(3L, 1, 7L, 2, 99L, 3));
+
+        // Assert
+        assertEquals(Map.of(7L, 2, 99L, 3), restantes);
+        assertNull(stockEngine.intentarAjustar(99L, -1));
+    }
+
+    @Test
+    @DisplayName("Volcar - Aplica los deltas netos y avanza el punto de control")
+    void volcar_AplicaDeltasNetos() {
+        // Arrange
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        stockEngine.reservar(Map.of(3L, 4));
+        stockEngine.intentarAjustar(3L, 1); // Sin transacción: se aplica de inmediato
+
+        // Act
+        stockEngine.volcar();
+        stockEngine.volcar(); // Sin pendientes: no vuelve a escribir
+
+        // Assert
+        // Dos escrituras sin transacción: cada una con su registro y su marca de confirmación
+        verify(stockEngineRepository).aplicarDeltas(eq(Map.of(3L, -3)), eq(1L), eq(4L * StockJournal.TAMANO_REGISTRO), eq(List.of()));
+    }
+
+    @Test
+    @DisplayName("Iniciar - Reaplica las entradas del journal no volcadas")
+    void iniciar_RecuperaJournalNoVolcado() throws Exception {
+        // Arrange: cambios sin volcar y "caída" (no se llama a detener)
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        when(stockEngineRepository.cargarStock(7L)).thenReturn(new Object[]{"Botón", 5, 0});
+        stockEngine.reservar(Map.of(3L, 4, 7L, 1));
+        stockEngine.reservar(Map.of(3L, 2));
+        when(stockEngineRepository.leerCheckpoint()).thenReturn(new long[]{1, 0});
+
+        // Act
+        reiniciar();
+
+        // Assert
+        verify(stockEngineRepository).aplicarDeltas(Map.of(3L, -6, 7L, -1), 2L, 0L, Set.of());
+    }
+
+    @Test
+    @DisplayName("Iniciar - Una reserva cuya transacción no llegó a confirmarse no se reaplica")
+    void iniciar_CaidaAntesDeConfirmar_NoCambiaStock() throws Exception {
+        // Arrange: reserva dentro de una transacción y "caída" antes de confirmarla
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        enTransaccion(() -> stockEngine.reservar(Map.of(3L, 4)));
+        stockEngine.volcar(); // Sin confirmar: no se vuelca
+        when(stockEngineRepository.leerCheckpoint()).thenReturn(new long[]{1, 0});
+
+        // Act
+        reiniciar();
+
+        // Assert
+        verify(stockEngineRepository, never()).aplicarDeltas(anyMap(), eq(1L), anyLong(), anyCollection());
+        verify(stockEngineRepository).aplicarDeltas(Map.of(), 2L, 0L, Set.of());
+    }
+
+    @Test
+    @DisplayName("Iniciar - Una transacción confirmada en la BD sin marca en el journal se reaplica")
+    void iniciar_CaidaTrasConfirmarEnBD_ReaplicaTransaccion() throws Exception {
+        // Arrange: la BD confirma (beforeCommit registra la transacción) y la aplicación cae antes de afterCompletion
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        List<TransactionSynchronization> sincronizaciones = enTransaccion(() -> stockEngine.reservar(Map.of(3L, 4)));
+        sincronizaciones.forEach(s -> s.beforeCommit(false));
+        ArgumentCaptor<Long> transaccion = ArgumentCaptor.forClass(Long.class);
+        verify(stockEngineRepository).registrarTransaccion(transaccion.capture());
+        when(stockEngineRepository.transaccionesRegistradas(any())).thenReturn(Set.of(transaccion.getValue()));
+        when(stockEngineRepository.leerCheckpoint()).thenReturn(new long[]{1, 0});
+
+        // Act
+        reiniciar();
+
+        // Assert
+        verify(stockEngineRepository).aplicarDeltas(Map.of(3L, -4), 2L, 0L, Set.of(transaccion.getValue()));
+    }
+
+    @Test
+    @DisplayName("Transacción - Los deltas se vuelcan al confirmar y los descuentos se revierten al deshacer")
+    void transaccion_ConfirmarVuelca_DeshacerRevierte() {
+        // Arrange
+        when(stockEngineRepository.cargarStock(3L)).thenReturn(new Object[]{"Tela", 10, 0});
+        List<TransactionSynchronization> deshecha = enTransaccion(() -> stockEngine.reservar(Map.of(3L, 8)));
+        List<TransactionSynchronization> confirmada = enTransaccion(() -> {
+            assertFalse(stockEngine.intentarAjustar(3L, -3)); // Quedan 2 mientras la otra sigue en curso
+            stockEngine.reservar(Map.of(3L, 2));
+            assertTrue(stockEngine.intentarAjustar(3L, 5)); // El incremento espera a la confirmación
+        });
+
+        // Act
+        deshecha.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        confirmar(confirmada);
+        stockEngine.volcar();
+
+        // Assert: 10 - 2 + 5
+        ArgumentCaptor<Long> transaccion = ArgumentCaptor.forClass(Long.class);
+        verify(stockEngineRepository).registrarTransaccion(transaccion.capture());
+        verify(stockEngineRepository).aplicarDeltas(eq(Map.of(3L, 3)), eq(1L), anyLong(), eq(List.of(transaccion.getValue())));
+        assertTrue(stockEngine.intentarAjustar(3L, -13));
+        assertFalse(stockEngine.intentarAjustar(3L, -1));
+    }
+
+    @Test
+    @DisplayName("Reservar - Concurrencia: nunca se reserva más del stock disponible")
+    void reservar_Concurrente_StockFinalExacto() throws Exception {
+        // Arrange
+        int stockInicial = 3000;
+        int hilos = 16;
+        int totalDescuentos = 5000;
+        when(stockEngineRepository.cargarStock(1L)).thenReturn(new Object[]{"Tela", stockInicial, 0});
+        AtomicInteger exitos = new AtomicInteger();
+        AtomicInteger rechazos = new AtomicInteger();
+        CountDownLatch inicio = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < totalDescuentos; i++) {
+            tareas.add(executor.submit(() -> {
+                inicio.await();
+                if (stockEngine.intentarAjustar(1L, -1)) {
+                    exitos.incrementAndGet();
+                } else {
+                    rechazos.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        stockEngine.volcar();
+
+        // Assert
+        assertEquals(stockInicial, exitos.get());
+        assertEquals(totalDescuentos - stockInicial, rechazos.get());
+        verify(stockEngineRepository).aplicarDeltas(eq(Map.of(1L, -stockInicial)), eq(1L),
+                eq(2L * stockInicial * StockJournal.TAMANO_REGISTRO), eq(List.of()));
+    }
+}